@@ -0,0 +1,460 @@
+package hr.fer.zemris.java.fractals;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import hr.fer.zemris.java.fractals.viewer.IFractalResultObserver;
+import hr.fer.zemris.java.render.RenderRuntime;
+import hr.fer.zemris.math.ComplexRootedPolynomial;
+
+/**
+ * Renders many fractals, each with its own kernel and viewport, for example
+ * thumbnails of a family of root configurations. The images are split into
+ * sections of rows which are all calculated by the worker threads of one
+ * {@link RenderRuntime}, and each image is handed over to a sink as soon as
+ * its last section is done.
+ * <p>
+ * At most a fixed number of images is in flight at any time: the next image
+ * is only started once an earlier one has been handed over, so memory use
+ * does not depend on the size of the batch. Since the images are taken from
+ * an {@link Iterable}, the batch itself may be generated on the fly.
+ *
+ * @author 0036502252
+ *
+ */
+public class BatchRenderer {
+	/**
+	 * The number of rows calculated by one thread job.
+	 */
+	private static final int SECTION_ROWS = 16;
+	/**
+	 * The runtime whose worker threads calculate the images.
+	 */
+	private final RenderRuntime runtime;
+	/**
+	 * The maximum number of images in flight.
+	 */
+	private final int maxInFlight;
+
+	/**
+	 * A single image of a batch.
+	 */
+	public static class Job {
+		/**
+		 * The kernel which calculates the pixels.
+		 */
+		final IterationKernel kernel;
+		/**
+		 * Real part of the starting pixel.
+		 */
+		final double reMin;
+		/**
+		 * Real part of the last pixel.
+		 */
+		final double reMax;
+		/**
+		 * Imaginary part of the starting pixel.
+		 */
+		final double imMin;
+		/**
+		 * Imaginary part of the last pixel.
+		 */
+		final double imMax;
+		/**
+		 * Width of the image.
+		 */
+		final int width;
+		/**
+		 * Height of the image.
+		 */
+		final int height;
+
+		/**
+		 * Constructs a new {@link Job} of a Newton-Raphson fractal.
+		 *
+		 * @param roots
+		 *            the roots of the polynom
+		 * @param reMin
+		 *            real part of the starting pixel
+		 * @param reMax
+		 *            real part of the last pixel
+		 * @param imMin
+		 *            imaginary part of the starting pixel
+		 * @param imMax
+		 *            imaginary part of the last pixel
+		 * @param width
+		 *            width of the image
+		 * @param height
+		 *            height of the image
+		 * @throws IllegalArgumentException
+		 *             if the image is smaller than 2x2
+		 */
+		public Job(ComplexRootedPolynomial roots, double reMin, double reMax,
+				double imMin, double imMax, int width, int height) {
+			this(new NewtonKernel(roots), reMin, reMax, imMin, imMax, width,
+					height);
+		}
+
+		/**
+		 * Constructs a new {@link Job}.
+		 *
+		 * @param kernel
+		 *            the kernel which calculates the pixels
+		 * @param reMin
+		 *            real part of the starting pixel
+		 * @param reMax
+		 *            real part of the last pixel
+		 * @param imMin
+		 *            imaginary part of the starting pixel
+		 * @param imMax
+		 *            imaginary part of the last pixel
+		 * @param width
+		 *            width of the image
+		 * @param height
+		 *            height of the image
+		 * @throws IllegalArgumentException
+		 *             if the image is smaller than 2x2
+		 */
+		public Job(IterationKernel kernel, double reMin, double reMax,
+				double imMin, double imMax, int width, int height) {
+			if (width < 2 || height < 2) {
+				throw new IllegalArgumentException(
+						"The image must be at least 2x2 pixels!");
+			}
+			this.kernel = Objects.requireNonNull(kernel);
+			this.reMin = reMin;
+			this.reMax = reMax;
+			this.imMin = imMin;
+			this.imMax = imMax;
+			this.width = width;
+			this.height = height;
+		}
+	}
+
+	/**
+	 * Constructs a new {@link BatchRenderer} which uses the shared runtime.
+	 *
+	 * @param maxInFlight
+	 *            the maximum number of images in flight
+	 */
+	public BatchRenderer(int maxInFlight) {
+		this(RenderRuntime.shared(), maxInFlight);
+	}
+
+	/**
+	 * Constructs a new {@link BatchRenderer}.
+	 *
+	 * @param runtime
+	 *            the runtime whose threads calculate the images
+	 * @param maxInFlight
+	 *            the maximum number of images in flight
+	 * @throws IllegalArgumentException
+	 *             if <code>maxInFlight</code> is not positive
+	 */
+	public BatchRenderer(RenderRuntime runtime, int maxInFlight) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException(
+					"At least one image must be allowed in flight!");
+		}
+		this.runtime = Objects.requireNonNull(runtime);
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Renders the images of a batch, and waits until all of them have been
+	 * handed over to the sink. The sink receives the coloring data of each
+	 * image together with its number of colors and its index in the batch, as
+	 * the request number. It is called from the worker threads, one image at
+	 * a time, in the order the images are finished.
+	 * <p>
+	 * If an image can not be calculated, or the runtime is closed while the
+	 * batch is rendered, no further images are started and the failure is
+	 * thrown once the images in flight are done. Images which were not
+	 * calculated completely are not handed over.
+	 *
+	 * @param jobs
+	 *            the images of the batch
+	 * @param sink
+	 *            receives the finished images
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if an image could not be calculated, or the sink failed
+	 */
+	public void render(Iterable<Job> jobs, IFractalResultObserver sink)
+			throws InterruptedException, ExecutionException {
+		Objects.requireNonNull(sink);
+		Semaphore inFlight = new Semaphore(maxInFlight);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		ArrayDeque<Section> pending = new ArrayDeque<>();
+		Object batch = new Object();
+		Iterator<Job> iterator = jobs.iterator();
+		long index = 0;
+
+		while (true) {
+			// the next job is only taken once there is room for its image
+			acquire(inFlight, pending);
+			if (failure.get() != null || !iterator.hasNext()) {
+				inFlight.release();
+				break;
+			}
+			Image image;
+			try {
+				image = new Image(iterator.next(), index++, sink, inFlight,
+						failure);
+			} catch (RuntimeException ex) {
+				failure.compareAndSet(null, ex);
+				inFlight.release();
+				break;
+			}
+			start(image, batch, pending);
+		}
+
+		// the sections of every image in flight are done or cancelled
+		while (!pending.isEmpty()) {
+			pending.poll().settle();
+		}
+
+		if (failure.get() != null) {
+			throw new ExecutionException(failure.get());
+		}
+	}
+
+	/**
+	 * Takes the permit of a new image. While there is none, waits for the
+	 * sections submitted first, so that sections cancelled by closing the
+	 * runtime are accounted for. Sections already done are forgotten.
+	 *
+	 * @param inFlight
+	 *            the permits of the images in flight
+	 * @param pending
+	 *            the sections submitted and not yet settled, in the order
+	 *            they were submitted
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	private static void acquire(Semaphore inFlight,
+			ArrayDeque<Section> pending) throws InterruptedException {
+		while (!pending.isEmpty() && pending.peek().future.isDone()) {
+			pending.poll().settle();
+		}
+		while (!inFlight.tryAcquire()) {
+			if (pending.isEmpty()) {
+				inFlight.acquire();
+				return;
+			}
+			pending.poll().settle();
+		}
+	}
+
+	/**
+	 * Submits the sections of one image. The job calculating the last section
+	 * hands the image over to the sink and releases its permit.
+	 *
+	 * @param image
+	 *            the image
+	 * @param batch
+	 *            identifies the batch in the runtime
+	 * @param pending
+	 *            receives the submitted sections
+	 */
+	private void start(Image image, Object batch, ArrayDeque<Section> pending) {
+		Job job = image.job;
+		int sections = (job.height + SECTION_ROWS - 1) / SECTION_ROWS;
+
+		int submitted = 0;
+		try {
+			for (int yMin = 0; yMin < job.height; yMin += SECTION_ROWS) {
+				Calculation section = job.kernel.newCalculation(job.reMin,
+						job.reMax, job.imMin, job.imMax, job.width,
+						job.height, yMin,
+						Math.min(yMin + SECTION_ROWS, job.height) - 1,
+						image.data);
+
+				Future<Void> future = runtime.submit(batch, () -> {
+					Throwable sectionFailure = null;
+					try {
+						section.call();
+					} catch (Exception ex) {
+						sectionFailure = ex;
+					} finally {
+						image.done(1, sectionFailure);
+					}
+					return null;
+				});
+				pending.add(new Section(future, image));
+				submitted++;
+			}
+		} catch (RuntimeException ex) {
+			// the sections which were not submitted will never finish, and
+			// the image must not be handed over without them
+			image.done(sections - submitted, ex);
+		}
+	}
+
+	/**
+	 * Hands a finished image over to the sink, unless calculating it failed.
+	 *
+	 * @param data
+	 *            coloring data of the image
+	 * @param numberOfColors
+	 *            the number of colors in the coloring data
+	 * @param index
+	 *            the index of the image in the batch
+	 * @param sink
+	 *            receives the finished image
+	 * @param imageFailure
+	 *            the failure of the image, or null
+	 * @param failure
+	 *            receives the first failure of the batch
+	 */
+	private synchronized void finish(short[] data, short numberOfColors,
+			long index, IFractalResultObserver sink, Throwable imageFailure,
+			AtomicReference<Throwable> failure) {
+		if (imageFailure != null) {
+			failure.compareAndSet(null, imageFailure);
+			return;
+		}
+		try {
+			sink.acceptResult(data, numberOfColors, index);
+		} catch (RuntimeException ex) {
+			failure.compareAndSet(null, ex);
+		}
+	}
+
+	/**
+	 * An image in flight, which counts its sections down.
+	 */
+	private class Image {
+		/**
+		 * The job of the image.
+		 */
+		private final Job job;
+		/**
+		 * The index of the image in the batch.
+		 */
+		private final long index;
+		/**
+		 * Coloring data of the image.
+		 */
+		private final short[] data;
+		/**
+		 * The number of sections which are not done yet.
+		 */
+		private final AtomicInteger remaining;
+		/**
+		 * The first failure of the image.
+		 */
+		private final AtomicReference<Throwable> imageFailure =
+				new AtomicReference<>();
+		/**
+		 * Receives the finished image.
+		 */
+		private final IFractalResultObserver sink;
+		/**
+		 * The permits of the images in flight.
+		 */
+		private final Semaphore inFlight;
+		/**
+		 * Receives the first failure of the batch.
+		 */
+		private final AtomicReference<Throwable> failure;
+
+		/**
+		 * Constructs a new {@link Image}.
+		 *
+		 * @param job
+		 *            the job of the image
+		 * @param index
+		 *            the index of the image in the batch
+		 * @param sink
+		 *            receives the finished image
+		 * @param inFlight
+		 *            the permits of the images in flight
+		 * @param failure
+		 *            receives the first failure of the batch
+		 */
+		Image(Job job, long index, IFractalResultObserver sink,
+				Semaphore inFlight, AtomicReference<Throwable> failure) {
+			this.job = job;
+			this.index = index;
+			this.sink = sink;
+			this.inFlight = inFlight;
+			this.failure = failure;
+			data = new short[job.width * job.height];
+			remaining = new AtomicInteger(
+					(job.height + SECTION_ROWS - 1) / SECTION_ROWS);
+		}
+
+		/**
+		 * Counts sections of the image as done. After the last one, hands the
+		 * image over and releases its permit.
+		 *
+		 * @param sections
+		 *            the number of sections
+		 * @param sectionFailure
+		 *            why the sections failed, or null if they were calculated
+		 */
+		void done(int sections, Throwable sectionFailure) {
+			if (sectionFailure != null) {
+				imageFailure.compareAndSet(null, sectionFailure);
+			}
+			if (remaining.addAndGet(-sections) == 0) {
+				finish(data, job.kernel.getNumberOfColors(), index, sink,
+						imageFailure.get(), failure);
+				inFlight.release();
+			}
+		}
+	}
+
+	/**
+	 * A section submitted to the runtime.
+	 */
+	private static class Section {
+		/**
+		 * The future result of the section.
+		 */
+		final Future<Void> future;
+		/**
+		 * The image of the section.
+		 */
+		final Image image;
+
+		/**
+		 * Constructs a new {@link Section}.
+		 *
+		 * @param future
+		 *            the future result of the section
+		 * @param image
+		 *            the image of the section
+		 */
+		Section(Future<Void> future, Image image) {
+			this.future = future;
+			this.image = image;
+		}
+
+		/**
+		 * Waits until the section is done. A section cancelled before it ran
+		 * is counted as failed, since it never counts itself.
+		 *
+		 * @throws InterruptedException
+		 *             if interrupted while waiting
+		 */
+		void settle() throws InterruptedException {
+			try {
+				future.get();
+			} catch (CancellationException ex) {
+				image.done(1, ex);
+			} catch (ExecutionException ex) {
+				// the section counted itself, and its failure, when it ended
+			}
+		}
+	}
+}
@@ -1,10 +1,13 @@
 package hr.fer.zemris.java.fractals;
 
+import java.util.Objects;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import hr.fer.zemris.math.Complex;
 import hr.fer.zemris.math.ComplexPolynomial;
 import hr.fer.zemris.math.ComplexRootedPolynomial;
+import hr.fer.zemris.math.NewtonBatch;
 
 /**
  * Each thread runs this method and calculates its portion of the fractal image.
@@ -18,65 +21,128 @@ public class Calculation implements Callable<Void> {
 	 * Indicates the real part of the starting pixel if it were represented as a
 	 * complex number on a 2D plane.
 	 */
-	private double reMin;
+	protected double reMin;
 	/**
 	 * The real part of the complex number representing the last pixel.
 	 */
-	private double reMax;
+	protected double reMax;
 	/**
 	 * The imaginary part of the complex number representing the starting pixel.
 	 */
-	private double imMin;
+	protected double imMin;
 	/**
 	 * The imaginary part of the complex number representing the last pixel.
 	 */
-	private double imMax;
+	protected double imMax;
 	/**
 	 * The total width of the image.
 	 */
-	private int width;
+	protected int width;
 	/**
 	 * The total height of the image.
 	 */
-	private int height;
+	protected int height;
 	/**
 	 * The starting height at which the thread commences calculation.
 	 */
-	private int yMin;
+	protected int yMin;
 	/**
 	 * The height at which the thread ends calculation.
 	 */
-	private int yMax;
+	protected int yMax;
 	/**
 	 * Stores coloring data.
 	 */
-	private short[] data;
+	protected short[] data;
 
 	/**
 	 * The polynom used for calculation.
 	 */
-	private ComplexPolynomial polynom;
+	protected ComplexPolynomial polynom;
 	/**
 	 * The roots of the polynom used for calculation.
 	 */
-	private ComplexRootedPolynomial roots;
+	protected ComplexRootedPolynomial roots;
 	/**
 	 * The derived polynom.
 	 */
-	private ComplexPolynomial derived;
+	protected ComplexPolynomial derived;
+	/**
+	 * Real parts of the roots.
+	 */
+	protected double[] rootsRe;
+	/**
+	 * Imaginary parts of the roots.
+	 */
+	protected double[] rootsIm;
+	/**
+	 * Squared radii of the immediate convergence discs around the roots.
+	 * 
+	 * @see ComplexRootedPolynomial#getConvergenceRadii()
+	 */
+	protected double[] discRadiiSquared;
+	/**
+	 * Newton steps shorter than this may start inside a convergence disc;
+	 * longer ones can not, since within a disc a step is shorter than twice
+	 * the radius.
+	 */
+	private double discStepLimit;
 	/**
 	 * The threshold used for getting root indexes.
 	 */
-	private static final double ROOT_THRESHOLD = 1E-3;
+	protected static final double ROOT_THRESHOLD = 1E-3;
 	/**
 	 * The threshold used for double comparison.
 	 */
-	private static final double CONVERGENCE_THRESHOLD = 1E-3;
+	protected static final double CONVERGENCE_THRESHOLD = 1E-3;
 	/**
 	 * The maximum number of iterations of calculations after which the thread
 	 * decides that the pixel does not converge.
 	 */
-	private static final int MAX_ITERATIONS = 16 * 16 * 16;
+	protected static final int MAX_ITERATIONS = 16 * 16 * 16;
+	/**
+	 * If an iterate comes back this close to a previously saved iterate
+	 * without converging, the orbit is considered to be caught in a cycle.
+	 */
+	protected static final double CYCLE_THRESHOLD = 1E-9;
+	/**
+	 * The number of pixels iterated at once by kernels which work on a batch
+	 * of pixels.
+	 */
+	protected static final int LANES = 64;
+	/**
+	 * The number of pixels this job classified as non-convergent because their
+	 * orbit was caught in a cycle.
+	 */
+	protected int bailouts;
+	/**
+	 * The number of buckets in the iteration count histogram. Bucket
+	 * <code>i</code> counts pixels which needed between <code>2^i</code> and
+	 * <code>2^(i+1) - 1</code> iterations.
+	 */
+	public static final int HISTOGRAM_BUCKETS = 32
+			- Integer.numberOfLeadingZeros(MAX_ITERATIONS);
+	/**
+	 * The total number of Newton-Raphson iterations run by this job.
+	 */
+	private long iterations;
+	/**
+	 * The number of pixels which used up all {@link #MAX_ITERATIONS}.
+	 */
+	private int maxedOut;
+	/**
+	 * The iteration count histogram of the pixels calculated by this job.
+	 */
+	private long[] histogram = new long[HISTOGRAM_BUCKETS];
+	/**
+	 * The wall time spent running this job, in nanoseconds.
+	 */
+	private long wallTime;
+	/**
+	 * Set when the request this job belongs to has been superseded. Checked
+	 * before each row of the image.
+	 */
+	private AtomicBoolean cancelled = new AtomicBoolean();
 
 	/**
 	 * Creates a new {@link Calculation} thread job.
@@ -110,6 +176,54 @@ public class Calculation implements Callable<Void> {
 	public Calculation(double reMin, double reMax, double imMin, double imMax,
 			int width, int height, int yMin, int yMax, short[] data,
 			ComplexPolynomial polynom, ComplexRootedPolynomial roots) {
+		this(reMin, reMax, imMin, imMax, width, height, yMin, yMax, data);
+		this.polynom = polynom;
+		this.roots = roots;
+		this.derived = polynom.derive();
+
+		Complex[] rootValues = roots.getRoots();
+		double[] radii = roots.getConvergenceRadii();
+		rootsRe = new double[rootValues.length];
+		rootsIm = new double[rootValues.length];
+		discRadiiSquared = new double[rootValues.length];
+		for (int i = 0; i < rootValues.length; i++) {
+			rootsRe[i] = rootValues[i].getReal();
+			rootsIm[i] = rootValues[i].getImaginary();
+			discRadiiSquared[i] = radii[i] * radii[i];
+			discStepLimit = Math.max(discStepLimit, 2 * radii[i]);
+		}
+	}
+
+	/**
+	 * Creates a new {@link Calculation} thread job for a kernel which does not
+	 * iterate a polynom, such as an escape-time fractal. Such kernels
+	 * override {@link #calculatePixel(int, int)}, and have no roots.
+	 * 
+	 * @param reMin
+	 *            real part of the complex number representing the starting
+	 *            pixel
+	 * @param reMax
+	 *            real part of the complex number representing the last pixel
+	 * @param imMin
+	 *            imaginary part of the complex number representing the starting
+	 *            pixel
+	 * @param imMax
+	 *            imaginary part of the complex number representing the last
+	 *            pixel
+	 * @param width
+	 *            total width of the image
+	 * @param height
+	 *            total height of the image
+	 * @param yMin
+	 *            starting height at which the thread commences calculation
+	 * @param yMax
+	 *            height at which the thread ends calculation
+	 * @param data
+	 *            coloring data
+	 */
+	protected Calculation(double reMin, double reMax, double imMin,
+			double imMax, int width, int height, int yMin, int yMax,
+			short[] data) {
 		this.reMin = reMin;
 		this.reMax = reMax;
 		this.imMin = imMin;
@@ -119,9 +233,10 @@ public class Calculation implements Callable<Void> {
 		this.yMin = yMin;
 		this.yMax = yMax;
 		this.data = data;
-		this.polynom = polynom;
-		this.roots = roots;
-		this.derived = polynom.derive();
+
+		rootsRe = new double[0];
+		rootsIm = new double[0];
+		discRadiiSquared = new double[0];
 	}
 
 	/**
@@ -129,42 +244,321 @@ public class Calculation implements Callable<Void> {
 	 */
 	@Override
 	public Void call() throws Exception {
+		long start = System.nanoTime();
 		int offset = yMin * width;
+		NewtonBatch batch = newBatch();
+		RowBuffers row = batch == null ? null : new RowBuffers(width);
 
 		for (int y = yMin; y <= yMax; y++) {
+			if (isCancelled()) {
+				break;
+			}
+			if (batch != null) {
+				calculateRow(batch, row, y, offset);
+				offset += width;
+				continue;
+			}
 			for (int x = 0; x < width; x++) {
+				data[offset++] = calculatePixel(x, y);
+			}
+		}
 
-				double cre = x * (reMax - reMin) / (width - 1) + reMin;
+		addWallTime(System.nanoTime() - start);
+		return null;
+	}
 
-				double cim = (height - 1 - y) * (imMax - imMin) / (height - 1)
-						+ imMin;
+	/**
+	 * Creates the kernel used to calculate whole rows of this job at once.
+	 * Kernels which can only calculate single pixels return null, and the
+	 * rows are calculated one pixel at a time using
+	 * {@link #calculatePixel(int, int)}.
+	 * 
+	 * @return the kernel for whole rows, or null
+	 */
+	protected NewtonBatch newBatch() {
+		return null;
+	}
 
-				Complex zn = new Complex(cre, cim);
-				Complex zn1;
+	/**
+	 * Calculates a whole row of the image using a batch kernel.
+	 * 
+	 * @param batch
+	 *            the kernel
+	 * @param row
+	 *            buffers for the pixels of the row
+	 * @param y
+	 *            the vertical position of the row
+	 * @param offset
+	 *            the index of the first pixel of the row in the coloring data
+	 */
+	private void calculateRow(NewtonBatch batch, RowBuffers row, int y,
+			int offset) {
+		double cim = (height - 1 - y) * (imMax - imMin) / (height - 1)
+				+ imMin;
+		for (int x = 0; x < width; x++) {
+			row.re[x] = x * (reMax - reMin) / (width - 1) + reMin;
+			row.im[x] = cim;
+		}
 
-				int iter = 0;
-				double module = 0;
+		bailouts += batch.iterate(row.re, row.im, width, row.roots,
+				row.iterations);
 
-				do {
-					Complex numerator = polynom.apply(zn);
-					Complex denominator = derived.apply(zn);
-					Complex fraction = numerator.div(denominator);
+		System.arraycopy(row.roots, 0, data, offset, width);
+		for (int x = 0; x < width; x++) {
+			recordIterations(row.iterations[x]);
+		}
+	}
 
-					zn1 = zn.sub(fraction);
-					module = zn1.sub(zn).module();
-					iter++;
-					zn = zn1;
-				} while (module > CONVERGENCE_THRESHOLD
-						&& iter < MAX_ITERATIONS);
+	/**
+	 * Sets the flag which is used for cancelling this job. Once the flag is
+	 * set, the job stops before calculating its next row.
+	 * 
+	 * @param cancelled
+	 *            the cancellation flag
+	 */
+	public void setCancellationFlag(AtomicBoolean cancelled) {
+		this.cancelled = Objects.requireNonNull(cancelled);
+	}
+
+	/**
+	 * @return true if the request this job belongs to has been superseded
+	 */
+	public boolean isCancelled() {
+		return cancelled.get();
+	}
+
+	/**
+	 * @return the number of pixels this job classified as non-convergent
+	 *         because their orbit was caught in a cycle
+	 */
+	public int getBailouts() {
+		return bailouts;
+	}
+
+	/**
+	 * Records the number of iterations needed for a single pixel. Every
+	 * kernel calls this once per pixel it iterates.
+	 * 
+	 * @param iter
+	 *            the number of iterations
+	 */
+	protected final void recordIterations(int iter) {
+		recordIterations(iter, MAX_ITERATIONS);
+	}
+
+	/**
+	 * Records the number of iterations needed for a single pixel, by a kernel
+	 * with its own iteration limit. Pixels which needed more iterations than
+	 * the histogram covers are counted in its last bucket.
+	 * 
+	 * @param iter
+	 *            the number of iterations
+	 * @param limit
+	 *            the maximum number of iterations of the kernel
+	 */
+	protected final void recordIterations(int iter, int limit) {
+		iterations += iter;
+		histogram[Math.min(31 - Integer.numberOfLeadingZeros(Math.max(iter, 1)),
+				HISTOGRAM_BUCKETS - 1)]++;
+		if (iter >= limit) {
+			maxedOut++;
+		}
+	}
+
+	/**
+	 * Records iterations whose result was thrown away, for example because
+	 * the pixel was recalculated in a higher precision. They count towards
+	 * the total number of iterations, but not towards the histogram.
+	 * 
+	 * @param iter
+	 *            the number of iterations
+	 */
+	protected final void recordDiscardedIterations(int iter) {
+		iterations += iter;
+	}
+
+	/**
+	 * Adds to the wall time spent running this job. Used by jobs which
+	 * calculate pixels through this calculation.
+	 * 
+	 * @param nanos
+	 *            the elapsed time, in nanoseconds
+	 */
+	void addWallTime(long nanos) {
+		wallTime += nanos;
+	}
+
+	/**
+	 * @return the wall time spent running this job, in nanoseconds
+	 */
+	long getWallTime() {
+		return wallTime;
+	}
+
+	/**
+	 * @return the total number of iterations run by this job
+	 */
+	long getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * @return the number of pixels which used up all iterations
+	 */
+	int getMaxedOut() {
+		return maxedOut;
+	}
+
+	/**
+	 * @return the iteration count histogram of this job
+	 */
+	long[] getHistogram() {
+		return histogram;
+	}
 
-				int index = roots.indexOfClosestRootFor(zn1, ROOT_THRESHOLD);
+	/**
+	 * Runs Newton-Raphson iteration for a single pixel of the image. Orbits
+	 * which never converge are detected using Brent's method: the iterate is
+	 * saved at every power of two iterations, and if a later iterate returns
+	 * to the saved one the pixel is classified as non-convergent right away.
+	 * 
+	 * @param x
+	 *            the horizontal position of the pixel
+	 * @param y
+	 *            the vertical position of the pixel
+	 * @return the index of the root the pixel converges to, or 0 if it does
+	 *         not converge
+	 */
+	protected short calculatePixel(int x, int y) {
+		double cre = x * (reMax - reMin) / (width - 1) + reMin;
+
+		double cim = (height - 1 - y) * (imMax - imMin) / (height - 1)
+				+ imMin;
+
+		Complex zn = new Complex(cre, cim);
+		Complex zn1;
+		Complex saved = zn;
+		int checkpoint = 1;
 
-				data[offset++] = (short) (index == -1 ? 0 : index);
+		int iter = 0;
+		double module = 0;
 
+		do {
+			Complex numerator = polynom.apply(zn);
+			Complex denominator = derived.apply(zn);
+			Complex fraction = numerator.div(denominator);
+
+			zn1 = zn.sub(fraction);
+			module = zn1.sub(zn).module();
+			iter++;
+
+			int root = rootInConvergenceDisc(module, zn.getReal(),
+					zn.getImaginary());
+			if (root > 0) {
+				recordIterations(iter);
+				return (short) root;
+			}
+			zn = zn1;
+
+			if (module > CONVERGENCE_THRESHOLD) {
+				if (isCycle(zn.getReal() - saved.getReal(),
+						zn.getImaginary() - saved.getImaginary())) {
+					bailouts++;
+					recordIterations(iter);
+					return 0;
+				}
+				if (iter == checkpoint) {
+					saved = zn;
+					checkpoint <<= 1;
+				}
+			}
+		} while (module > CONVERGENCE_THRESHOLD && iter < MAX_ITERATIONS);
+		recordIterations(iter);
+
+		int index = roots.indexOfClosestRootFor(zn1, ROOT_THRESHOLD);
+
+		return (short) (index == -1 ? 0 : index);
+	}
+
+	/**
+	 * Checks whether an iterate lies in the immediate convergence disc of a
+	 * root, which means the orbit is certain to converge to that root and the
+	 * pixel can be classified without iterating further. The roots are only
+	 * searched when the Newton step taken from the iterate is short enough for
+	 * the iterate to be inside a disc.
+	 * 
+	 * @param step
+	 *            the length of the Newton step taken from the iterate
+	 * @param re
+	 *            real part of the iterate
+	 * @param im
+	 *            imaginary part of the iterate
+	 * @return the index of the root, starting from 1, or 0 if the iterate is
+	 *         not inside any disc
+	 * @see ComplexRootedPolynomial#getConvergenceRadii()
+	 */
+	protected final int rootInConvergenceDisc(double step, double re,
+			double im) {
+		if (!(step < discStepLimit)) {
+			return 0;
+		}
+		for (int i = 0; i < rootsRe.length; i++) {
+			double dRe = re - rootsRe[i];
+			double dIm = im - rootsIm[i];
+			if (dRe * dRe + dIm * dIm < discRadiiSquared[i]) {
+				return i + 1;
 			}
 		}
+		return 0;
+	}
 
-		return null;
+	/**
+	 * Checks whether an iterate has returned to the saved iterate.
+	 * 
+	 * @param dRe
+	 *            real part of the distance from the saved iterate
+	 * @param dIm
+	 *            imaginary part of the distance from the saved iterate
+	 * @return true if the orbit is caught in a cycle
+	 */
+	protected static boolean isCycle(double dRe, double dIm) {
+		return dRe * dRe + dIm * dIm < CYCLE_THRESHOLD * CYCLE_THRESHOLD;
+	}
+
+	/**
+	 * The starting points and results of the pixels of one row, for the batch
+	 * kernels.
+	 */
+	private static class RowBuffers {
+		/**
+		 * Real parts of the pixels.
+		 */
+		final double[] re;
+		/**
+		 * Imaginary parts of the pixels.
+		 */
+		final double[] im;
+		/**
+		 * The indexes of the roots the pixels converge to.
+		 */
+		final short[] roots;
+		/**
+		 * The numbers of iterations run for the pixels.
+		 */
+		final int[] iterations;
+
+		/**
+		 * Constructs buffers for a row.
+		 * 
+		 * @param width
+		 *            width of the row
+		 */
+		RowBuffers(int width) {
+			re = new double[width];
+			im = new double[width];
+			roots = new short[width];
+			iterations = new int[width];
+		}
 	}
 
 }
@@ -0,0 +1,222 @@
+package hr.fer.zemris.java.fractals;
+
+import hr.fer.zemris.math.Complex;
+import hr.fer.zemris.math.ComplexPolynomial;
+import hr.fer.zemris.math.ComplexRootedPolynomial;
+import hr.fer.zemris.math.DoubleDouble;
+
+/**
+ * A {@link Calculation} which runs Newton-Raphson iteration in double-double
+ * precision. Used for deep zooms, where neighbouring pixels are closer to
+ * each other than plain doubles can tell apart.
+ * <p>
+ * The polynomial and its derivative are evaluated together using Horner's
+ * scheme, and every intermediate value is kept in a fixed set of
+ * {@link DoubleDouble} instances owned by the job, so no objects are created
+ * per iteration.
+ *
+ * @author 0036502252
+ *
+ */
+public class DeepZoomCalculation extends Calculation {
+	/**
+	 * Real parts of the polynomial factors, from the highest power down.
+	 */
+	private double[] factorsRe;
+	/**
+	 * Imaginary parts of the polynomial factors, from the highest power down.
+	 */
+	private double[] factorsIm;
+
+	/**
+	 * Distance between two horizontally adjacent pixels.
+	 */
+	private DoubleDouble reStep;
+	/**
+	 * Distance between two vertically adjacent pixels.
+	 */
+	private DoubleDouble imStep;
+
+	/**
+	 * Real part of the current iterate.
+	 */
+	private DoubleDouble zRe = new DoubleDouble();
+	/**
+	 * Imaginary part of the current iterate.
+	 */
+	private DoubleDouble zIm = new DoubleDouble();
+	/**
+	 * Real part of the polynomial value.
+	 */
+	private DoubleDouble pRe = new DoubleDouble();
+	/**
+	 * Imaginary part of the polynomial value.
+	 */
+	private DoubleDouble pIm = new DoubleDouble();
+	/**
+	 * Real part of the derivative value.
+	 */
+	private DoubleDouble dRe = new DoubleDouble();
+	/**
+	 * Imaginary part of the derivative value.
+	 */
+	private DoubleDouble dIm = new DoubleDouble();
+	/**
+	 * First temporary value used by complex multiplication and division.
+	 */
+	private DoubleDouble t1 = new DoubleDouble();
+	/**
+	 * Second temporary value used by complex multiplication and division.
+	 */
+	private DoubleDouble t2 = new DoubleDouble();
+	/**
+	 * Holds the squared module of the derivative during division.
+	 */
+	private DoubleDouble t3 = new DoubleDouble();
+
+	/**
+	 * Creates a new {@link DeepZoomCalculation} thread job. The parameters
+	 * are the same as in
+	 * {@link Calculation#Calculation(double, double, double, double, int, int, int, int, short[], ComplexPolynomial, ComplexRootedPolynomial)}.
+	 *
+	 * @param reMin
+	 *            real part of the complex number representing the starting
+	 *            pixel
+	 * @param reMax
+	 *            real part of the complex number representing the last pixel
+	 * @param imMin
+	 *            imaginary part of the complex number representing the starting
+	 *            pixel
+	 * @param imMax
+	 *            imaginary part of the complex number representing the last
+	 *            pixel
+	 * @param width
+	 *            total width of the image
+	 * @param height
+	 *            total height of the image
+	 * @param yMin
+	 *            starting height at which the thread commences calculation
+	 * @param yMax
+	 *            height at which the thread ends calculation
+	 * @param data
+	 *            coloring data
+	 * @param polynom
+	 *            polynom used for calculation
+	 * @param roots
+	 *            roots of the polynom used for calculation
+	 */
+	public DeepZoomCalculation(double reMin, double reMax, double imMin,
+			double imMax, int width, int height, int yMin, int yMax,
+			short[] data, ComplexPolynomial polynom,
+			ComplexRootedPolynomial roots) {
+		super(reMin, reMax, imMin, imMax, width, height, yMin, yMax, data,
+				polynom, roots);
+
+		Complex[] factors = polynom.getFactors();
+		factorsRe = new double[factors.length];
+		factorsIm = new double[factors.length];
+		for (int i = 0; i < factors.length; i++) {
+			factorsRe[i] = factors[i].getReal();
+			factorsIm[i] = factors[i].getImaginary();
+		}
+
+		// the difference of two close doubles is exact, so the step keeps
+		// full precision even when the viewport is tiny
+		reStep = new DoubleDouble(reMax).sub(reMin).div(width - 1);
+		imStep = new DoubleDouble(imMax).sub(imMin).div(height - 1);
+	}
+
+	@Override
+	protected short calculatePixel(int x, int y) {
+		zRe.set(reStep).mul(x).add(reMin);
+		zIm.set(imStep).mul(height - 1 - y).add(imMin);
+
+		double savedRe = zRe.getHi();
+		double savedIm = zIm.getHi();
+		int checkpoint = 1;
+
+		int iter = 0;
+		double module = 0;
+
+		do {
+			evaluate();
+
+			// step = p / p' = p * conj(p') / |p'|^2
+			t3.set(dRe).mul(dRe);
+			t1.set(dIm).mul(dIm);
+			t3.add(t1);
+
+			t1.set(pRe).mul(dRe);
+			t2.set(pIm).mul(dIm);
+			t1.add(t2).div(t3);
+
+			t2.set(pIm).mul(dRe);
+			pRe.mul(dIm);
+			t2.sub(pRe).div(t3);
+
+			double stepRe = t1.getHi();
+			double stepIm = t2.getHi();
+			module = Math.sqrt(stepRe * stepRe + stepIm * stepIm);
+			iter++;
+
+			int root = rootInConvergenceDisc(module, zRe.getHi(),
+					zIm.getHi());
+			if (root > 0) {
+				recordIterations(iter);
+				return (short) root;
+			}
+			zRe.sub(t1);
+			zIm.sub(t2);
+
+			if (module > CONVERGENCE_THRESHOLD) {
+				if (isCycle(zRe.getHi() - savedRe, zIm.getHi() - savedIm)) {
+					bailouts++;
+					recordIterations(iter);
+					return 0;
+				}
+				if (iter == checkpoint) {
+					savedRe = zRe.getHi();
+					savedIm = zIm.getHi();
+					checkpoint <<= 1;
+				}
+			}
+		} while (module > CONVERGENCE_THRESHOLD && iter < MAX_ITERATIONS);
+		recordIterations(iter);
+
+		int index = roots.indexOfClosestRootFor(
+				new Complex(zRe.getHi(), zIm.getHi()), ROOT_THRESHOLD);
+
+		return (short) (index == -1 ? 0 : index);
+	}
+
+	/**
+	 * Evaluates the polynomial and its derivative at the current iterate,
+	 * storing the results into <code>p</code> and <code>d</code>.
+	 */
+	private void evaluate() {
+		pRe.set(factorsRe[0]);
+		pIm.set(factorsIm[0]);
+		dRe.set(0);
+		dIm.set(0);
+
+		for (int i = 1, n = factorsRe.length; i < n; i++) {
+			// d = d * z + p
+			t1.set(dRe).mul(zRe);
+			t2.set(dIm).mul(zIm);
+			t1.sub(t2).add(pRe);
+			dIm.mul(zRe);
+			t2.set(dRe).mul(zIm);
+			dIm.add(t2).add(pIm);
+			dRe.set(t1);
+
+			// p = p * z + a[i]
+			t1.set(pRe).mul(zRe);
+			t2.set(pIm).mul(zIm);
+			t1.sub(t2).add(factorsRe[i]);
+			pIm.mul(zRe);
+			t2.set(pRe).mul(zIm);
+			pIm.add(t2).add(factorsIm[i]);
+			pRe.set(t1);
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package hr.fer.zemris.java.fractals;
+
+/**
+ * A {@link Calculation} of an escape-time fractal, iterating
+ * <code>z = z^2 + c</code> until the orbit leaves the circle of radius 2. For
+ * the Mandelbrot set <code>c</code> is the pixel and the orbit starts at 0; for
+ * a Julia set <code>c</code> is fixed and the orbit starts at the pixel.
+ * <p>
+ * Pixels are colored by the number of iterations needed to escape, cycling
+ * through the colors, and pixels which never escape get the color 0. Orbits
+ * caught in a cycle are detected using Brent's method, like in Newton-Raphson
+ * iteration, so most of the pixels inside the set stop long before the
+ * iteration limit.
+ *
+ * @author 0036502252
+ *
+ */
+class EscapeTimeCalculation extends Calculation {
+	/**
+	 * Orbits farther than 2 from the origin escape to infinity.
+	 */
+	private static final double ESCAPE_RADIUS_SQUARED = 4;
+	/**
+	 * If true, the orbit starts at the pixel and <code>c</code> is fixed.
+	 */
+	private boolean julia;
+	/**
+	 * Real part of the fixed <code>c</code> of a Julia set.
+	 */
+	private double cRe;
+	/**
+	 * Imaginary part of the fixed <code>c</code> of a Julia set.
+	 */
+	private double cIm;
+	/**
+	 * The maximum number of iterations for a pixel.
+	 */
+	private int maxIterations;
+	/**
+	 * The number of colors, including the color 0.
+	 */
+	private short numberOfColors;
+
+	/**
+	 * Creates a new {@link EscapeTimeCalculation} thread job.
+	 *
+	 * @param reMin
+	 *            real part of the complex number representing the starting
+	 *            pixel
+	 * @param reMax
+	 *            real part of the complex number representing the last pixel
+	 * @param imMin
+	 *            imaginary part of the complex number representing the starting
+	 *            pixel
+	 * @param imMax
+	 *            imaginary part of the complex number representing the last
+	 *            pixel
+	 * @param width
+	 *            total width of the image
+	 * @param height
+	 *            total height of the image
+	 * @param yMin
+	 *            starting height at which the thread commences calculation
+	 * @param yMax
+	 *            height at which the thread ends calculation
+	 * @param data
+	 *            coloring data
+	 * @param julia
+	 *            true for a Julia set, false for the Mandelbrot set
+	 * @param cRe
+	 *            real part of the fixed <code>c</code> of a Julia set
+	 * @param cIm
+	 *            imaginary part of the fixed <code>c</code> of a Julia set
+	 * @param maxIterations
+	 *            the maximum number of iterations for a pixel
+	 * @param numberOfColors
+	 *            the number of colors, including the color 0
+	 */
+	EscapeTimeCalculation(double reMin, double reMax, double imMin,
+			double imMax, int width, int height, int yMin, int yMax,
+			short[] data, boolean julia, double cRe, double cIm,
+			int maxIterations, short numberOfColors) {
+		super(reMin, reMax, imMin, imMax, width, height, yMin, yMax, data);
+		this.julia = julia;
+		this.cRe = cRe;
+		this.cIm = cIm;
+		this.maxIterations = maxIterations;
+		this.numberOfColors = numberOfColors;
+	}
+
+	@Override
+	protected short calculatePixel(int x, int y) {
+		double re = x * (reMax - reMin) / (width - 1) + reMin;
+		double im = (height - 1 - y) * (imMax - imMin) / (height - 1)
+				+ imMin;
+
+		double zRe;
+		double zIm;
+		double addRe;
+		double addIm;
+		if (julia) {
+			zRe = re;
+			zIm = im;
+			addRe = cRe;
+			addIm = cIm;
+		} else {
+			if (inMainBulbs(re, im)) {
+				recordIterations(0, maxIterations);
+				return 0;
+			}
+			zRe = 0;
+			zIm = 0;
+			addRe = re;
+			addIm = im;
+		}
+
+		double savedRe = zRe;
+		double savedIm = zIm;
+		int checkpoint = 1;
+
+		for (int iter = 0; iter < maxIterations; iter++) {
+			double zRe2 = zRe * zRe;
+			double zIm2 = zIm * zIm;
+			if (zRe2 + zIm2 > ESCAPE_RADIUS_SQUARED) {
+				recordIterations(iter, maxIterations);
+				return color(iter, numberOfColors);
+			}
+			zIm = 2 * zRe * zIm + addIm;
+			zRe = zRe2 - zIm2 + addRe;
+
+			if (isCycle(zRe - savedRe, zIm - savedIm)) {
+				bailouts++;
+				recordIterations(iter + 1, maxIterations);
+				return 0;
+			}
+			if (iter + 1 == checkpoint) {
+				savedRe = zRe;
+				savedIm = zIm;
+				checkpoint <<= 1;
+			}
+		}
+		recordIterations(maxIterations, maxIterations);
+		return 0;
+	}
+
+	/**
+	 * Checks whether a point lies in the main cardioid or the period-2 bulb
+	 * of the Mandelbrot set, which together cover most of its area.
+	 *
+	 * @param re
+	 *            real part of the point
+	 * @param im
+	 *            imaginary part of the point
+	 * @return true if the point is certainly inside the set
+	 */
+	private static boolean inMainBulbs(double re, double im) {
+		double im2 = im * im;
+		double shifted = re - 0.25;
+		double q = shifted * shifted + im2;
+		if (q * (q + shifted) <= 0.25 * im2) {
+			return true;
+		}
+		double bulb = re + 1;
+		return bulb * bulb + im2 <= 1. / 16;
+	}
+
+	/**
+	 * Colors a pixel by the number of iterations its orbit needed, cycling
+	 * through the colors other than 0.
+	 *
+	 * @param iter
+	 *            the number of iterations
+	 * @param numberOfColors
+	 *            the number of colors, including the color 0
+	 * @return the color of the pixel
+	 */
+	static short color(int iter, short numberOfColors) {
+		return (short) (1 + iter % (numberOfColors - 1));
+	}
+
+	/**
+	 * Finds the number of colors used for an iteration limit: one color per
+	 * iteration, up to 256 of them, and the color 0.
+	 *
+	 * @param maxIterations
+	 *            the maximum number of iterations for a pixel
+	 * @return the number of colors, including the color 0
+	 */
+	static short numberOfColors(int maxIterations) {
+		return (short) (Math.min(maxIterations, 256) + 1);
+	}
+}
@@ -0,0 +1,217 @@
+package hr.fer.zemris.java.fractals;
+
+import hr.fer.zemris.math.Complex;
+import hr.fer.zemris.math.ComplexPolynomial;
+import hr.fer.zemris.math.ComplexRootedPolynomial;
+
+/**
+ * A {@link Calculation} which runs Newton-Raphson iteration in single
+ * precision. Used for zoomed-out views, where float precision is more than
+ * enough to tell which basin a pixel belongs to.
+ * <p>
+ * A pixel whose classification is ambiguous in single precision (the orbit
+ * does not converge, overflows, or ends up near more than one root) escalates
+ * the job to double precision: that pixel and every later pixel of the job
+ * are calculated by the double kernel.
+ *
+ * @author 0036502252
+ *
+ */
+public class FloatCalculation extends Calculation {
+	/**
+	 * Real parts of the polynomial factors, from the highest power down.
+	 */
+	private float[] factorsRe;
+	/**
+	 * Imaginary parts of the polynomial factors, from the highest power down.
+	 */
+	private float[] factorsIm;
+	/**
+	 * Real parts of the roots.
+	 */
+	private float[] rootsRe;
+	/**
+	 * Imaginary parts of the roots.
+	 */
+	private float[] rootsIm;
+	/**
+	 * Set once the job has escalated to double precision.
+	 */
+	private boolean escalated;
+
+	/**
+	 * Creates a new {@link FloatCalculation} thread job. The parameters are
+	 * the same as in
+	 * {@link Calculation#Calculation(double, double, double, double, int, int, int, int, short[], ComplexPolynomial, ComplexRootedPolynomial)}.
+	 *
+	 * @param reMin
+	 *            real part of the complex number representing the starting
+	 *            pixel
+	 * @param reMax
+	 *            real part of the complex number representing the last pixel
+	 * @param imMin
+	 *            imaginary part of the complex number representing the starting
+	 *            pixel
+	 * @param imMax
+	 *            imaginary part of the complex number representing the last
+	 *            pixel
+	 * @param width
+	 *            total width of the image
+	 * @param height
+	 *            total height of the image
+	 * @param yMin
+	 *            starting height at which the thread commences calculation
+	 * @param yMax
+	 *            height at which the thread ends calculation
+	 * @param data
+	 *            coloring data
+	 * @param polynom
+	 *            polynom used for calculation
+	 * @param roots
+	 *            roots of the polynom used for calculation
+	 */
+	public FloatCalculation(double reMin, double reMax, double imMin,
+			double imMax, int width, int height, int yMin, int yMax,
+			short[] data, ComplexPolynomial polynom,
+			ComplexRootedPolynomial roots) {
+		super(reMin, reMax, imMin, imMax, width, height, yMin, yMax, data,
+				polynom, roots);
+
+		Complex[] factors = polynom.getFactors();
+		factorsRe = new float[factors.length];
+		factorsIm = new float[factors.length];
+		for (int i = 0; i < factors.length; i++) {
+			factorsRe[i] = (float) factors[i].getReal();
+			factorsIm[i] = (float) factors[i].getImaginary();
+		}
+
+		Complex[] rootValues = roots.getRoots();
+		rootsRe = new float[rootValues.length];
+		rootsIm = new float[rootValues.length];
+		for (int i = 0; i < rootValues.length; i++) {
+			rootsRe[i] = (float) rootValues[i].getReal();
+			rootsIm[i] = (float) rootValues[i].getImaginary();
+		}
+	}
+
+	/**
+	 * @return true if this job has escalated to double precision
+	 */
+	public boolean isEscalated() {
+		return escalated;
+	}
+
+	@Override
+	protected short calculatePixel(int x, int y) {
+		if (!escalated) {
+			int index = calculatePixelFloat(x, y);
+			if (index >= 0) {
+				return (short) index;
+			}
+			escalated = true;
+		}
+		return super.calculatePixel(x, y);
+	}
+
+	/**
+	 * Runs Newton-Raphson iteration for a single pixel in single precision.
+	 *
+	 * @param x
+	 *            the horizontal position of the pixel
+	 * @param y
+	 *            the vertical position of the pixel
+	 * @return the index of the root the pixel converges to, or -1 if the
+	 *         result is ambiguous in single precision
+	 */
+	private int calculatePixelFloat(int x, int y) {
+		float zRe = (float) (x * (reMax - reMin) / (width - 1) + reMin);
+		float zIm = (float) ((height - 1 - y) * (imMax - imMin) / (height - 1)
+				+ imMin);
+
+		float savedRe = zRe;
+		float savedIm = zIm;
+		int checkpoint = 1;
+
+		int iter = 0;
+		float module;
+
+		do {
+			// Horner's scheme for the polynomial p and its derivative d
+			float pRe = factorsRe[0];
+			float pIm = factorsIm[0];
+			float dRe = 0;
+			float dIm = 0;
+			for (int i = 1, n = factorsRe.length; i < n; i++) {
+				float t = dRe * zRe - dIm * zIm + pRe;
+				dIm = dRe * zIm + dIm * zRe + pIm;
+				dRe = t;
+
+				t = pRe * zRe - pIm * zIm + factorsRe[i];
+				pIm = pRe * zIm + pIm * zRe + factorsIm[i];
+				pRe = t;
+			}
+
+			float denominator = dRe * dRe + dIm * dIm;
+			float stepRe = (pRe * dRe + pIm * dIm) / denominator;
+			float stepIm = (pIm * dRe - pRe * dIm) / denominator;
+
+			module = (float) Math.sqrt(stepRe * stepRe + stepIm * stepIm);
+			iter++;
+
+			int root = rootInConvergenceDisc(module, zRe, zIm);
+			if (root > 0) {
+				recordIterations(iter);
+				return root;
+			}
+			zRe -= stepRe;
+			zIm -= stepIm;
+
+			if (module != module) {
+				recordDiscardedIterations(iter);
+				return -1; // overflow or division by zero
+			}
+			if (module > CONVERGENCE_THRESHOLD) {
+				if (isCycle(zRe - savedRe, zIm - savedIm)) {
+					recordDiscardedIterations(iter);
+					return -1;
+				}
+				if (iter == checkpoint) {
+					savedRe = zRe;
+					savedIm = zIm;
+					checkpoint <<= 1;
+				}
+			}
+		} while (module > CONVERGENCE_THRESHOLD && iter < MAX_ITERATIONS);
+
+		if (module > CONVERGENCE_THRESHOLD) {
+			recordDiscardedIterations(iter);
+			return -1;
+		}
+
+		// the closest root must be within the threshold, and the second
+		// closest clearly farther away
+		int closest = -1;
+		float closestDistance = Float.POSITIVE_INFINITY;
+		float secondDistance = Float.POSITIVE_INFINITY;
+		for (int i = 0; i < rootsRe.length; i++) {
+			float dRe = zRe - rootsRe[i];
+			float dIm = zIm - rootsIm[i];
+			float distance = dRe * dRe + dIm * dIm;
+			if (distance < closestDistance) {
+				secondDistance = closestDistance;
+				closestDistance = distance;
+				closest = i;
+			} else if (distance < secondDistance) {
+				secondDistance = distance;
+			}
+		}
+
+		float threshold = (float) (ROOT_THRESHOLD * ROOT_THRESHOLD);
+		if (closestDistance >= threshold || secondDistance < 4 * threshold) {
+			recordDiscardedIterations(iter);
+			return -1;
+		}
+		recordIterations(iter);
+		return closest + 1;
+	}
+}
@@ -0,0 +1,141 @@
+package hr.fer.zemris.java.fractals;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Writes fractal coloring data, as produced by {@link MyProducer}, into
+ * image files. Pixel values are root indexes, so they are written as an
+ * indexed image where index 0 (no convergence) is black and each root gets
+ * its own hue.
+ *
+ * @author 0036502252
+ *
+ */
+public class FractalImageWriter {
+	/**
+	 * The maximum number of colors in an indexed PNG image.
+	 */
+	private static final int MAX_COLORS = 256;
+	/**
+	 * Red components of the palette.
+	 */
+	private final byte[] red;
+	/**
+	 * Green components of the palette.
+	 */
+	private final byte[] green;
+	/**
+	 * Blue components of the palette.
+	 */
+	private final byte[] blue;
+
+	/**
+	 * Constructs a new {@link FractalImageWriter}.
+	 *
+	 * @param numberOfColors
+	 *            the number of distinct values in the coloring data, including
+	 *            0; values above 255 share colors
+	 */
+	public FractalImageWriter(int numberOfColors) {
+		int colors = Math.max(2, Math.min(numberOfColors, MAX_COLORS));
+		red = new byte[colors];
+		green = new byte[colors];
+		blue = new byte[colors];
+
+		for (int i = 1; i < colors; i++) {
+			int rgb = Color.HSBtoRGB((float) (i - 1) / (colors - 1), 0.75f,
+					0.95f);
+			red[i] = (byte) (rgb >> 16);
+			green[i] = (byte) (rgb >> 8);
+			blue[i] = (byte) rgb;
+		}
+	}
+
+	/**
+	 * Writes the coloring data as an indexed PNG image.
+	 *
+	 * @param data
+	 *            coloring data
+	 * @param width
+	 *            width of the image
+	 * @param height
+	 *            height of the image
+	 * @param file
+	 *            the output file
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	public void writePng(short[] data, int width, int height, Path file)
+			throws IOException {
+		IndexColorModel model = new IndexColorModel(8, red.length, red, green,
+				blue);
+		BufferedImage image = new BufferedImage(width, height,
+				BufferedImage.TYPE_BYTE_INDEXED, model);
+		byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer())
+				.getData();
+
+		for (int i = 0, n = width * height; i < n; i++) {
+			pixels[i] = (byte) colorIndex(data[i]);
+		}
+
+		if (!ImageIO.write(image, "png", file.toFile())) {
+			throw new IOException("No PNG writer is available!");
+		}
+	}
+
+	/**
+	 * Writes the coloring data as a binary (P6) PPM image.
+	 *
+	 * @param data
+	 *            coloring data
+	 * @param width
+	 *            width of the image
+	 * @param height
+	 *            height of the image
+	 * @param file
+	 *            the output file
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	public void writePpm(short[] data, int width, int height, Path file)
+			throws IOException {
+		try (OutputStream os = new BufferedOutputStream(
+				Files.newOutputStream(file), 1 << 16)) {
+			os.write(("P6\n" + width + " " + height + "\n255\n")
+					.getBytes(StandardCharsets.US_ASCII));
+
+			byte[] row = new byte[3 * width];
+			for (int y = 0, offset = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					int c = colorIndex(data[offset++]);
+					row[3 * x] = red[c];
+					row[3 * x + 1] = green[c];
+					row[3 * x + 2] = blue[c];
+				}
+				os.write(row);
+			}
+		}
+	}
+
+	/**
+	 * Maps a value from the coloring data to a palette index.
+	 *
+	 * @param value
+	 *            the value from the coloring data
+	 * @return the palette index
+	 */
+	private int colorIndex(short value) {
+		return value < red.length ? value : 1 + (value - 1) % (red.length - 1);
+	}
+}
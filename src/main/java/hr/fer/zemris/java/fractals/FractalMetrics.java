@@ -0,0 +1,255 @@
+package hr.fer.zemris.java.fractals;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Per-frame statistics of a fractal producer. Calculation jobs count their
+ * own iterations while they run, without any sharing between threads; the
+ * counters are merged here once per frame, after all jobs have finished.
+ * That keeps the statistics cheap enough to be always on.
+ *
+ * @author 0036502252
+ *
+ */
+public class FractalMetrics implements FractalMetricsMXBean {
+	/**
+	 * Used for giving each registered instance a unique name.
+	 */
+	private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+	/**
+	 * The number of finished frames.
+	 */
+	private long frames;
+	/**
+	 * The total number of iterations in all frames.
+	 */
+	private long totalIterations;
+	/**
+	 * The wall time of the last frame, in nanoseconds.
+	 */
+	private long lastFrameNanos;
+	/**
+	 * The wall time of each section of the last frame, in nanoseconds.
+	 */
+	private long[] lastSectionNanos = new long[0];
+	/**
+	 * The number of iterations in the last frame.
+	 */
+	private long lastIterations;
+	/**
+	 * The iteration count histogram of the last frame.
+	 */
+	private long[] lastHistogram = new long[Calculation.HISTOGRAM_BUCKETS];
+	/**
+	 * The number of pixels in the last frame which used up all iterations.
+	 */
+	private long lastMaxedOut;
+	/**
+	 * The number of pixels in the last frame bailed out by cycle detection.
+	 */
+	private long lastBailouts;
+	/**
+	 * The pool queue depth once all jobs of the last frame were submitted.
+	 */
+	private int lastQueueDepth;
+	/**
+	 * The number of pixels in the last frame filled by rectangle
+	 * subdivision.
+	 */
+	private long lastFilledPixels;
+	/**
+	 * If true, a summary line is printed after every frame.
+	 */
+	private volatile boolean frameLogEnabled;
+	/**
+	 * The name this instance is registered under, or null if it is not
+	 * registered.
+	 */
+	private ObjectName name;
+
+	/**
+	 * Merges the counters of the finished jobs of a frame.
+	 *
+	 * @param jobs
+	 *            the finished jobs of the frame
+	 * @param frameNanos
+	 *            the wall time of the frame, in nanoseconds
+	 * @param queueDepth
+	 *            the pool queue depth once all jobs were submitted
+	 * @param filledPixels
+	 *            the number of pixels filled by rectangle subdivision
+	 *            instead of being iterated
+	 */
+	public void recordFrame(List<Calculation> jobs, long frameNanos,
+			int queueDepth, long filledPixels) {
+		long[] sectionNanos = new long[jobs.size()];
+		long[] histogram = new long[Calculation.HISTOGRAM_BUCKETS];
+		long iterations = 0;
+		long maxedOut = 0;
+		long bailouts = 0;
+
+		for (int i = 0; i < sectionNanos.length; i++) {
+			Calculation job = jobs.get(i);
+			sectionNanos[i] = job.getWallTime();
+			iterations += job.getIterations();
+			maxedOut += job.getMaxedOut();
+			bailouts += job.getBailouts();
+			long[] jobHistogram = job.getHistogram();
+			for (int b = 0; b < histogram.length; b++) {
+				histogram[b] += jobHistogram[b];
+			}
+		}
+
+		synchronized (this) {
+			frames++;
+			totalIterations += iterations;
+			lastFrameNanos = frameNanos;
+			lastSectionNanos = sectionNanos;
+			lastIterations = iterations;
+			lastHistogram = histogram;
+			lastMaxedOut = maxedOut;
+			lastBailouts = bailouts;
+			lastQueueDepth = queueDepth;
+			lastFilledPixels = filledPixels;
+		}
+
+		if (frameLogEnabled) {
+			System.out.println(frameSummary());
+		}
+	}
+
+	/**
+	 * @return a single line describing the last frame
+	 */
+	public synchronized String frameSummary() {
+		long slowest = 0;
+		for (long nanos : lastSectionNanos) {
+			slowest = Math.max(slowest, nanos);
+		}
+		return String.format(Locale.ROOT,
+				"Frame %d: %.1f ms, %d sections (slowest %.1f ms), "
+						+ "%d iterations, %.4f%% at max, %d bailouts, "
+						+ "%d filled, queue depth %d",
+				frames, lastFrameNanos / 1E6, lastSectionNanos.length,
+				slowest / 1E6, lastIterations,
+				100 * getLastFrameMaxIterationFraction(), lastBailouts,
+				lastFilledPixels, lastQueueDepth);
+	}
+
+	/**
+	 * Registers this instance with the platform MBean server, unless it is
+	 * already registered. Failures are reported but otherwise ignored, since
+	 * metrics are optional.
+	 *
+	 * @param type
+	 *            the kind of producer, used in the object name
+	 */
+	public synchronized void register(String type) {
+		if (name != null) {
+			return;
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(
+					"hr.fer.zemris.java.fractals:type=" + type + ",name="
+							+ INSTANCES.incrementAndGet());
+			server.registerMBean(this, objectName);
+			name = objectName;
+		} catch (JMException | SecurityException ex) {
+			System.err.println(
+					"Metrics are not available through JMX: " + ex);
+		}
+	}
+
+	/**
+	 * Unregisters this instance from the platform MBean server, if it was
+	 * registered. Failures are reported but otherwise ignored.
+	 */
+	public synchronized void unregister() {
+		if (name == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException | SecurityException ex) {
+			System.err.println("Metrics could not be unregistered: " + ex);
+		}
+		name = null;
+	}
+
+	@Override
+	public synchronized long getFrames() {
+		return frames;
+	}
+
+	@Override
+	public synchronized long getTotalIterations() {
+		return totalIterations;
+	}
+
+	@Override
+	public synchronized double getLastFrameMillis() {
+		return lastFrameNanos / 1E6;
+	}
+
+	@Override
+	public synchronized double[] getLastFrameSectionMillis() {
+		double[] millis = new double[lastSectionNanos.length];
+		for (int i = 0; i < millis.length; i++) {
+			millis[i] = lastSectionNanos[i] / 1E6;
+		}
+		return millis;
+	}
+
+	@Override
+	public synchronized long getLastFrameIterations() {
+		return lastIterations;
+	}
+
+	@Override
+	public synchronized long[] getLastFrameHistogram() {
+		return lastHistogram.clone();
+	}
+
+	@Override
+	public synchronized double getLastFrameMaxIterationFraction() {
+		long pixels = 0;
+		for (long count : lastHistogram) {
+			pixels += count;
+		}
+		return pixels == 0 ? 0 : (double) lastMaxedOut / pixels;
+	}
+
+	@Override
+	public synchronized long getLastFrameBailouts() {
+		return lastBailouts;
+	}
+
+	@Override
+	public synchronized long getLastFrameFilledPixels() {
+		return lastFilledPixels;
+	}
+
+	@Override
+	public synchronized int getLastFrameQueueDepth() {
+		return lastQueueDepth;
+	}
+
+	@Override
+	public boolean isFrameLogEnabled() {
+		return frameLogEnabled;
+	}
+
+	@Override
+	public void setFrameLogEnabled(boolean enabled) {
+		this.frameLogEnabled = enabled;
+	}
+}
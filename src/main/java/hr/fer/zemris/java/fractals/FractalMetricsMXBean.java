@@ -0,0 +1,82 @@
+package hr.fer.zemris.java.fractals;
+
+/**
+ * Management interface of {@link FractalMetrics}, exported through JMX. The
+ * <code>LastFrame</code> attributes describe the most recently finished
+ * frame, the others are totals since the producer was created.
+ *
+ * @author 0036502252
+ *
+ */
+public interface FractalMetricsMXBean {
+
+	/**
+	 * @return the number of finished frames
+	 */
+	long getFrames();
+
+	/**
+	 * @return the total number of Newton-Raphson iterations in all frames
+	 */
+	long getTotalIterations();
+
+	/**
+	 * @return the wall time of the last frame, in milliseconds
+	 */
+	double getLastFrameMillis();
+
+	/**
+	 * @return the wall time of each section of the last frame, in
+	 *         milliseconds
+	 */
+	double[] getLastFrameSectionMillis();
+
+	/**
+	 * @return the number of Newton-Raphson iterations in the last frame
+	 */
+	long getLastFrameIterations();
+
+	/**
+	 * @return the iteration count histogram of the last frame, where bucket
+	 *         <code>i</code> counts pixels which needed between
+	 *         <code>2^i</code> and <code>2^(i+1) - 1</code> iterations
+	 */
+	long[] getLastFrameHistogram();
+
+	/**
+	 * @return the fraction of iterated pixels in the last frame which used up
+	 *         the maximum number of iterations
+	 */
+	double getLastFrameMaxIterationFraction();
+
+	/**
+	 * @return the number of pixels in the last frame bailed out by cycle
+	 *         detection
+	 */
+	long getLastFrameBailouts();
+
+	/**
+	 * @return the number of pixels in the last frame which were filled by
+	 *         rectangle subdivision instead of being iterated
+	 */
+	long getLastFrameFilledPixels();
+
+	/**
+	 * @return the number of jobs waiting in the render queue once all jobs
+	 *         of the last frame were submitted
+	 */
+	int getLastFrameQueueDepth();
+
+	/**
+	 * @return true if a summary line is printed after every frame
+	 */
+	boolean isFrameLogEnabled();
+
+	/**
+	 * Turns the per-frame summary line on or off.
+	 *
+	 * @param enabled
+	 *            true to print a summary line after every frame
+	 */
+	void setFrameLogEnabled(boolean enabled);
+}
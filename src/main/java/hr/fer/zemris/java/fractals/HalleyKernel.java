@@ -0,0 +1,200 @@
+package hr.fer.zemris.java.fractals;
+
+import java.util.Objects;
+
+import hr.fer.zemris.math.ComplexPolynomial;
+import hr.fer.zemris.math.ComplexRootedPolynomial;
+
+/**
+ * Halley's method for a polynom given by its roots. Like with Newton-Raphson
+ * iteration, each pixel is colored by the root its orbit converges to, but
+ * the convergence is cubic, so the basins have smoother borders.
+ * <p>
+ * The step is calculated straight from the roots: with
+ * <code>S1 = 1/(z-z1) + ... + 1/(z-zn)</code> and
+ * <code>S2 = 1/(z-z1)^2 + ... + 1/(z-zn)^2</code>, the Halley step
+ * <code>2pp'/(2p'^2 - pp'')</code> equals <code>2S1/(S1^2 + S2)</code>.
+ *
+ * @author 0036502252
+ *
+ */
+public final class HalleyKernel implements IterationKernel {
+	/**
+	 * The roots of the polynom.
+	 */
+	private final ComplexRootedPolynomial roots;
+	/**
+	 * The polynom.
+	 */
+	private final ComplexPolynomial polynom;
+
+	/**
+	 * Constructs a new {@link HalleyKernel}.
+	 *
+	 * @param roots
+	 *            the roots of the polynom
+	 */
+	public HalleyKernel(ComplexRootedPolynomial roots) {
+		this.roots = Objects.requireNonNull(roots);
+		this.polynom = roots.toComplexPolynom();
+	}
+
+	@Override
+	public short getNumberOfColors() {
+		return (short) (polynom.order() + 1);
+	}
+
+	@Override
+	public Calculation newCalculation(double reMin, double reMax,
+			double imMin, double imMax, int width, int height, int yMin,
+			int yMax, short[] data) {
+		return new HalleyCalculation(reMin, reMax, imMin, imMax, width,
+				height, yMin, yMax, data, polynom, roots);
+	}
+
+	/**
+	 * A {@link Calculation} running Halley's method from the roots of the
+	 * polynom.
+	 *
+	 * @author 0036502252
+	 *
+	 */
+	private static class HalleyCalculation extends Calculation {
+
+		/**
+		 * Creates a new {@link HalleyCalculation} thread job.
+		 *
+		 * @param reMin
+		 *            real part of the complex number representing the
+		 *            starting pixel
+		 * @param reMax
+		 *            real part of the complex number representing the last
+		 *            pixel
+		 * @param imMin
+		 *            imaginary part of the complex number representing the
+		 *            starting pixel
+		 * @param imMax
+		 *            imaginary part of the complex number representing the
+		 *            last pixel
+		 * @param width
+		 *            total width of the image
+		 * @param height
+		 *            total height of the image
+		 * @param yMin
+		 *            starting height at which the thread commences
+		 *            calculation
+		 * @param yMax
+		 *            height at which the thread ends calculation
+		 * @param data
+		 *            coloring data
+		 * @param polynom
+		 *            polynom used for calculation
+		 * @param roots
+		 *            roots of the polynom used for calculation
+		 */
+		HalleyCalculation(double reMin, double reMax, double imMin,
+				double imMax, int width, int height, int yMin, int yMax,
+				short[] data, ComplexPolynomial polynom,
+				ComplexRootedPolynomial roots) {
+			super(reMin, reMax, imMin, imMax, width, height, yMin, yMax,
+					data, polynom, roots);
+		}
+
+		@Override
+		protected short calculatePixel(int x, int y) {
+			double zRe = x * (reMax - reMin) / (width - 1) + reMin;
+			double zIm = (height - 1 - y) * (imMax - imMin) / (height - 1)
+					+ imMin;
+
+			double savedRe = zRe;
+			double savedIm = zIm;
+			int checkpoint = 1;
+
+			int iter = 0;
+			double module;
+
+			do {
+				// S1 = sum of 1/(z - r), S2 = sum of 1/(z - r)^2
+				double s1Re = 0;
+				double s1Im = 0;
+				double s2Re = 0;
+				double s2Im = 0;
+				int nearest = 0;
+				double nearestDistance = Double.POSITIVE_INFINITY;
+				for (int i = 0, n = rootsRe.length; i < n; i++) {
+					double dRe = zRe - rootsRe[i];
+					double dIm = zIm - rootsIm[i];
+					double distance = dRe * dRe + dIm * dIm;
+					double invRe = dRe / distance;
+					double invIm = -dIm / distance;
+					s1Re += invRe;
+					s1Im += invIm;
+					s2Re += invRe * invRe - invIm * invIm;
+					s2Im += 2 * invRe * invIm;
+					if (distance < nearestDistance) {
+						nearestDistance = distance;
+						nearest = i;
+					}
+				}
+				iter++;
+
+				if (nearestDistance == 0) {
+					recordIterations(iter);
+					return (short) (nearest + 1);
+				}
+
+				// the step is 2*S1/(S1^2 + S2)
+				double denRe = s1Re * s1Re - s1Im * s1Im + s2Re;
+				double denIm = 2 * s1Re * s1Im + s2Im;
+				double denModule = denRe * denRe + denIm * denIm;
+				double stepRe = 2 * (s1Re * denRe + s1Im * denIm) / denModule;
+				double stepIm = 2 * (s1Im * denRe - s1Re * denIm) / denModule;
+				zRe -= stepRe;
+				zIm -= stepIm;
+				module = Math.sqrt(stepRe * stepRe + stepIm * stepIm);
+
+				if (module > CONVERGENCE_THRESHOLD) {
+					if (isCycle(zRe - savedRe, zIm - savedIm)) {
+						bailouts++;
+						recordIterations(iter);
+						return 0;
+					}
+					if (iter == checkpoint) {
+						savedRe = zRe;
+						savedIm = zIm;
+						checkpoint <<= 1;
+					}
+				}
+			} while (module > CONVERGENCE_THRESHOLD && iter < MAX_ITERATIONS);
+			recordIterations(iter);
+
+			return closestRoot(zRe, zIm);
+		}
+
+		/**
+		 * Finds the root closest to the final iterate.
+		 *
+		 * @param zRe
+		 *            real part of the iterate
+		 * @param zIm
+		 *            imaginary part of the iterate
+		 * @return the index of the closest root, starting from 1, or 0 if it
+		 *         is farther than {@link #ROOT_THRESHOLD}
+		 */
+		private short closestRoot(double zRe, double zIm) {
+			int nearest = 0;
+			double nearestDistance = Double.POSITIVE_INFINITY;
+			for (int i = 0, n = rootsRe.length; i < n; i++) {
+				double dRe = zRe - rootsRe[i];
+				double dIm = zIm - rootsIm[i];
+				double distance = dRe * dRe + dIm * dIm;
+				if (distance < nearestDistance) {
+					nearestDistance = distance;
+					nearest = i;
+				}
+			}
+			return (short) (nearestDistance < ROOT_THRESHOLD * ROOT_THRESHOLD
+					? nearest + 1 : 0);
+		}
+	}
+}
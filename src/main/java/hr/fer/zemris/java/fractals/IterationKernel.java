@@ -0,0 +1,48 @@
+package hr.fer.zemris.java.fractals;
+
+/**
+ * A kind of fractal which can be calculated by {@link MyProducer} and
+ * {@link BatchRenderer}. A kernel only knows how to calculate the pixels of an
+ * image: it creates the {@link Calculation} jobs for sections of rows, and
+ * the producer splits the image, schedules the jobs on the render runtime,
+ * cancels superseded requests and records metrics in the same way for every
+ * kernel. A producer is bound to a single kernel for its whole life.
+ *
+ * @author 0036502252
+ *
+ */
+public interface IterationKernel {
+
+	/**
+	 * @return the number of colors in the coloring data of an image,
+	 *         including the color 0
+	 */
+	short getNumberOfColors();
+
+	/**
+	 * Creates a calculation job for the given rows of an image.
+	 *
+	 * @param reMin
+	 *            real part of the starting pixel
+	 * @param reMax
+	 *            real part of the last pixel
+	 * @param imMin
+	 *            imaginary part of the starting pixel
+	 * @param imMax
+	 *            imaginary part of the last pixel
+	 * @param width
+	 *            total width of the image
+	 * @param height
+	 *            total height of the image
+	 * @param yMin
+	 *            starting row of the job
+	 * @param yMax
+	 *            last row of the job
+	 * @param data
+	 *            coloring data
+	 * @return the calculation job
+	 */
+	Calculation newCalculation(double reMin, double reMax, double imMin,
+			double imMax, int width, int height, int yMin, int yMax,
+			short[] data);
+}
@@ -0,0 +1,57 @@
+package hr.fer.zemris.java.fractals;
+
+import java.util.Objects;
+
+import hr.fer.zemris.math.Complex;
+
+/**
+ * The filled Julia set of <code>z = z^2 + c</code> for a fixed
+ * <code>c</code>: the points whose orbit stays bounded.
+ *
+ * @author 0036502252
+ * @see EscapeTimeCalculation
+ *
+ */
+public final class JuliaKernel implements IterationKernel {
+	/**
+	 * The fixed <code>c</code>.
+	 */
+	private final Complex c;
+	/**
+	 * The maximum number of iterations for a pixel.
+	 */
+	private final int maxIterations;
+
+	/**
+	 * Constructs a new {@link JuliaKernel}.
+	 *
+	 * @param c
+	 *            the fixed <code>c</code>
+	 * @param maxIterations
+	 *            the maximum number of iterations for a pixel
+	 * @throws IllegalArgumentException
+	 *             if the number of iterations is not positive
+	 */
+	public JuliaKernel(Complex c, int maxIterations) {
+		if (maxIterations < 1) {
+			throw new IllegalArgumentException(
+					"There must be at least one iteration!");
+		}
+		this.c = Objects.requireNonNull(c);
+		this.maxIterations = maxIterations;
+	}
+
+	@Override
+	public short getNumberOfColors() {
+		return EscapeTimeCalculation.numberOfColors(maxIterations);
+	}
+
+	@Override
+	public Calculation newCalculation(double reMin, double reMax,
+			double imMin, double imMax, int width, int height, int yMin,
+			int yMax, short[] data) {
+		return new EscapeTimeCalculation(reMin, reMax, imMin, imMax, width,
+				height, yMin, yMax, data, true, c.getReal(), c.getImaginary(),
+				maxIterations, getNumberOfColors());
+	}
+}
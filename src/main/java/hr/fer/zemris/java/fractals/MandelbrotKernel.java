@@ -0,0 +1,46 @@
+package hr.fer.zemris.java.fractals;
+
+/**
+ * The Mandelbrot set: the points <code>c</code> for which the orbit of 0
+ * under <code>z = z^2 + c</code> stays bounded.
+ *
+ * @author 0036502252
+ * @see EscapeTimeCalculation
+ *
+ */
+public final class MandelbrotKernel implements IterationKernel {
+	/**
+	 * The maximum number of iterations for a pixel.
+	 */
+	private final int maxIterations;
+
+	/**
+	 * Constructs a new {@link MandelbrotKernel}.
+	 *
+	 * @param maxIterations
+	 *            the maximum number of iterations for a pixel
+	 * @throws IllegalArgumentException
+	 *             if the number of iterations is not positive
+	 */
+	public MandelbrotKernel(int maxIterations) {
+		if (maxIterations < 1) {
+			throw new IllegalArgumentException(
+					"There must be at least one iteration!");
+		}
+		this.maxIterations = maxIterations;
+	}
+
+	@Override
+	public short getNumberOfColors() {
+		return EscapeTimeCalculation.numberOfColors(maxIterations);
+	}
+
+	@Override
+	public Calculation newCalculation(double reMin, double reMax,
+			double imMin, double imMax, int width, int height, int yMin,
+			int yMax, short[] data) {
+		return new EscapeTimeCalculation(reMin, reMax, imMin, imMax, width,
+				height, yMin, yMax, data, false, 0, 0, maxIterations,
+				getNumberOfColors());
+	}
+}
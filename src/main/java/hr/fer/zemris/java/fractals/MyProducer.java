@@ -1,37 +1,102 @@
 package hr.fer.zemris.java.fractals;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import hr.fer.zemris.java.fractals.viewer.IFractalProducer;
 import hr.fer.zemris.java.fractals.viewer.IFractalResultObserver;
-import hr.fer.zemris.math.ComplexPolynomial;
+import hr.fer.zemris.java.render.RenderRuntime;
 import hr.fer.zemris.math.ComplexRootedPolynomial;
 
 /**
  * Implementation of an {@link IFractalProducer}. Provides multithreading
- * support for drawing fractals based on Newton-Raphson iteration.
+ * support for drawing fractals. The pixels are calculated by an
+ * {@link IterationKernel}, Newton-Raphson iteration unless another kernel is
+ * given; splitting the image, scheduling, cancellation and metrics are the
+ * same for every kernel. The metrics of a producer are registered with JMX
+ * until it is closed.
  * @author 0036502252
  *
  */
-public class MyProducer implements IFractalProducer {
+public class MyProducer implements IFractalProducer, AutoCloseable {
 	/**
-	 * Thread pool used for multithreading.
+	 * The runtime whose worker threads calculate the image. Each request is
+	 * submitted under its own cancellation flag, so concurrent requests take
+	 * turns.
 	 */
-	private ExecutorService pool;
+	private RenderRuntime runtime;
 	/**
-	 * The complex polynomial used for generating fractals.
+	 * The kernel which calculates the pixels.
 	 */
-	private ComplexPolynomial polynom;
+	private final IterationKernel kernel;
 	/**
-	 * The roots of the complex polynomial.
+	 * The side of a square tile used by rectangle subdivision.
 	 */
-	private ComplexRootedPolynomial roots;
+	private static final int TILE_SIZE = 64;
+	/**
+	 * The side of a square tile calculated in memory when rendering into a
+	 * file.
+	 */
+	private static final int FILE_TILE_SIZE = 256;
+	/**
+	 * The size of the header of a file written by
+	 * {@link #produceToFile(double, double, double, double, int, int, Path)}.
+	 */
+	public static final int FILE_HEADER_SIZE = 16;
+	/**
+	 * Identifies a file written by
+	 * {@link #produceToFile(double, double, double, double, int, int, Path)};
+	 * the characters <code>NWTN</code>.
+	 */
+	public static final int FILE_MAGIC = 0x4E57544E;
+	/**
+	 * The byte order of a file written by
+	 * {@link #produceToFile(double, double, double, double, int, int, Path)}.
+	 */
+	public static final ByteOrder FILE_BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+	/**
+	 * If true, the image is calculated using rectangle subdivision.
+	 */
+	private boolean subdivide;
+	/**
+	 * If true, coarse previews of the image are sent to the observer before
+	 * the final image.
+	 */
+	private volatile boolean progressive;
+	/**
+	 * Pixel spacings of the progressive passes, from the coarsest one down to
+	 * the final pass.
+	 */
+	private static final int[] PROGRESSIVE_STEPS = { 8, 4, 2, 1 };
+	/**
+	 * Statistics of the produced frames.
+	 */
+	private FractalMetrics metrics = new FractalMetrics();
+	/**
+	 * The number of the newest request received so far.
+	 */
+	private long latestRequestNo = Long.MIN_VALUE;
+	/**
+	 * The cancellation flag of the newest request. Set when an even newer
+	 * request arrives, which makes the jobs of the superseded request stop.
+	 */
+	private AtomicBoolean latestCancelled;
 
 	/**
 	 * Constructs a new {@link MyProducer}.
@@ -39,42 +104,425 @@ public class MyProducer implements IFractalProducer {
 	 * fractal
 	 */
 	public MyProducer(ComplexRootedPolynomial roots) {
-		this.roots = roots;
-		this.polynom = roots.toComplexPolynom();
-		pool = Executors.newFixedThreadPool(
-				Runtime.getRuntime().availableProcessors(),
-				new MyThreadFactory());
+		this(roots, false);
+	}
 
+	/**
+	 * Constructs a new {@link MyProducer}.
+	 * @param roots the complex polynomial roots used for generating a 
+	 * fractal
+	 * @param subdivide if true, solid areas of the image are filled using
+	 * rectangle subdivision instead of iterating every pixel
+	 * @see SubdivisionCalculation
+	 */
+	public MyProducer(ComplexRootedPolynomial roots, boolean subdivide) {
+		this(roots, subdivide, RenderRuntime.shared());
 	}
 
 	/**
-	 * A simple {@link ThreadFactory} implementation which generates a daemon
-	 * thread.
-	 * @author 0036502252
-	 *
+	 * Constructs a new {@link MyProducer}.
+	 * @param roots the complex polynomial roots used for generating a 
+	 * fractal
+	 * @param subdivide if true, solid areas of the image are filled using
+	 * rectangle subdivision instead of iterating every pixel
+	 * @param runtime the runtime whose threads calculate the image
+	 * @see SubdivisionCalculation
 	 */
-	static class MyThreadFactory implements ThreadFactory {
-		@Override
-		public Thread newThread(Runnable target) {
-			Thread t = new Thread(target);
-			t.setDaemon(true);
-			return t;
-		}
+	public MyProducer(ComplexRootedPolynomial roots, boolean subdivide,
+			RenderRuntime runtime) {
+		this(new NewtonKernel(roots), subdivide, runtime);
+	}
+
+	/**
+	 * Constructs a new {@link MyProducer} which uses the shared runtime.
+	 * @param kernel the kernel which calculates the pixels
+	 */
+	public MyProducer(IterationKernel kernel) {
+		this(kernel, false, RenderRuntime.shared());
+	}
+
+	/**
+	 * Constructs a new {@link MyProducer}.
+	 * @param kernel the kernel which calculates the pixels
+	 * @param subdivide if true, solid areas of the image are filled using
+	 * rectangle subdivision instead of iterating every pixel
+	 * @param runtime the runtime whose threads calculate the image
+	 * @see SubdivisionCalculation
+	 */
+	public MyProducer(IterationKernel kernel, boolean subdivide,
+			RenderRuntime runtime) {
+		this.subdivide = subdivide;
+		this.kernel = Objects.requireNonNull(kernel);
+		this.runtime = Objects.requireNonNull(runtime);
 
+		metrics.setFrameLogEnabled(Boolean.getBoolean("fractals.frameLog"));
+		metrics.register("MyProducer");
 	}
 
 	/**
 	 * Produces a new fractal drawing which is sent to the GUI. Delegates a 
-	 * portion of the image to each thread for faster computation.
+	 * portion of the image to each thread for faster computation. If a newer
+	 * request arrives while this one is being calculated, the calculation is
+	 * cancelled and the observer is not notified. The same happens if the
+	 * runtime is closed in the meantime.
 	 */
 	@Override
 	public void produce(double reMin, double reMax, double imMin, double imMax,
 			int width, int height, long requestNo,
 			IFractalResultObserver observer) {
 
+		AtomicBoolean cancelled = startRequest(requestNo);
+		if (cancelled.get()) {
+			return;
+		}
+
+		long start = System.nanoTime();
 		short[] data = new short[width * height];
 
-		final int numOfSections = 8 * Runtime.getRuntime().availableProcessors();
+		List<Calculation> jobs = new ArrayList<>();
+		long[] filled = new long[1];
+		int queueDepth = 0;
+		try {
+			if (progressive) {
+				queueDepth = produceProgressive(reMin, reMax, imMin, imMax,
+						width, height, data, cancelled, jobs, requestNo,
+						observer);
+			} else if (subdivide) {
+				queueDepth = produceSubdivided(reMin, reMax, imMin, imMax,
+						width, height, data, cancelled, jobs, filled);
+			} else {
+				queueDepth = produceSections(reMin, reMax, imMin, imMax,
+						width, height, data, cancelled, jobs);
+			}
+		} catch (RejectedExecutionException ex) {
+			if (!runtime.isClosed()) {
+				throw ex;
+			}
+			// closed while the jobs were submitted; the queued ones were
+			// cancelled with it
+			cancelled.set(true);
+		}
+
+		if (cancelled.get()) {
+			System.out.println("Zahtjev " + requestNo + " je zamijenjen "
+					+ "novijim, rezultat se odbacuje.");
+			return;
+		}
+		metrics.recordFrame(jobs, System.nanoTime() - start, queueDepth,
+				filled[0]);
+
+		System.out.println(
+				"Racunanje gotovo. Idem obavijestiti promatraca tj. GUI!");
+
+		observer.acceptResult(data, kernel.getNumberOfColors(), requestNo);
+	}
+
+	/**
+	 * Renders the fractal straight into a file, for images too large to be
+	 * held in memory. The image is calculated in square tiles and each tile is
+	 * copied into the file through a memory mapping of the band of rows it
+	 * belongs to, so the heap only ever holds the tiles being calculated,
+	 * regardless of the size of the image.
+	 * <p>
+	 * The file starts with a header of {@link #FILE_HEADER_SIZE} bytes:
+	 * {@link #FILE_MAGIC}, the width and the height as ints, the number of
+	 * colors as a short and two reserved bytes. The header is followed by the
+	 * coloring data as shorts, row by row. All values are in
+	 * {@link #FILE_BYTE_ORDER}.
+	 * 
+	 * @param reMin
+	 *            real part of the starting pixel
+	 * @param reMax
+	 *            real part of the last pixel
+	 * @param imMin
+	 *            imaginary part of the starting pixel
+	 * @param imMax
+	 *            imaginary part of the last pixel
+	 * @param width
+	 *            total width of the image
+	 * @param height
+	 *            total height of the image
+	 * @param file
+	 *            the output file, which is replaced if it exists
+	 * @throws IOException
+	 *             if the file can not be written, a tile could not be
+	 *             calculated, the calling thread is interrupted or the
+	 *             runtime is closed
+	 * @throws IllegalArgumentException
+	 *             if the image is smaller than 2x2 or too wide to be mapped
+	 */
+	public void produceToFile(double reMin, double reMax, double imMin,
+			double imMax, int width, int height, Path file) throws IOException {
+		if (width < 2 || height < 2) {
+			throw new IllegalArgumentException(
+					"The image must be at least 2x2 pixels!");
+		}
+		// a single mapping is limited to 2 GB, and holds at least 3 rows
+		long rowBytes = 2L * width;
+		int bandRows = (int) Math.min(FILE_TILE_SIZE,
+				Integer.MAX_VALUE / rowBytes - 1);
+		if (bandRows < 2) {
+			throw new IllegalArgumentException("The image is too wide!");
+		}
+
+		long start = System.nanoTime();
+		AtomicBoolean cancelled = new AtomicBoolean();
+
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE)
+					.order(FILE_BYTE_ORDER);
+			header.putInt(FILE_MAGIC).putInt(width).putInt(height)
+					.putShort(kernel.getNumberOfColors()).putShort((short) 0);
+			header.flip();
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+
+			for (int yMin = 0; yMin < height;) {
+				int yMax = tileEnd(yMin, bandRows, height);
+				MappedByteBuffer band = channel.map(MapMode.READ_WRITE,
+						FILE_HEADER_SIZE + yMin * rowBytes,
+						(yMax - yMin + 1) * rowBytes);
+
+				List<Future<Void>> results = new ArrayList<>();
+				for (int xMin = 0; xMin < width;) {
+					int xMax = tileEnd(xMin, FILE_TILE_SIZE, width);
+					int tileXMin = xMin;
+					int tileYMin = yMin;
+					results.add(runtime.submit(cancelled, () -> {
+						produceTile(reMin, reMax, imMin, imMax, width, height,
+								tileXMin, xMax, tileYMin, yMax, cancelled,
+								band);
+						return null;
+					}));
+					xMin = xMax + 1;
+				}
+
+				for (Future<Void> job : results) {
+					try {
+						job.get();
+					} catch (InterruptedException ex) {
+						cancelled.set(true);
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException(
+								"Interrupted while rendering " + file);
+					} catch (ExecutionException ex) {
+						cancelled.set(true);
+						throw new IOException(
+								"Could not calculate a tile of " + file,
+								ex.getCause());
+					} catch (CancellationException ex) {
+						cancelled.set(true);
+						throw new IOException("The runtime was closed while "
+								+ "rendering " + file, ex);
+					}
+				}
+				band.force();
+				yMin = yMax + 1;
+			}
+		}
+
+		System.out.println("Racunanje gotovo. Slika je zapisana u " + file
+				+ " (" + (System.nanoTime() - start) / 1000000 + " ms).");
+	}
+
+	/**
+	 * Calculates one tile of an image rendered into a file and copies it into
+	 * the mapped band of rows the tile belongs to.
+	 * 
+	 * @param reMin
+	 *            real part of the starting pixel of the image
+	 * @param reMax
+	 *            real part of the last pixel of the image
+	 * @param imMin
+	 *            imaginary part of the starting pixel of the image
+	 * @param imMax
+	 *            imaginary part of the last pixel of the image
+	 * @param width
+	 *            total width of the image
+	 * @param height
+	 *            total height of the image
+	 * @param xMin
+	 *            first column of the tile
+	 * @param xMax
+	 *            last column of the tile
+	 * @param yMin
+	 *            first row of the tile, which is also the first row of the
+	 *            band
+	 * @param yMax
+	 *            last row of the tile
+	 * @param cancelled
+	 *            the cancellation flag of the rendering
+	 * @param band
+	 *            the mapped band of rows
+	 * @throws Exception
+	 *             if the calculation fails
+	 */
+	private void produceTile(double reMin, double reMax, double imMin,
+			double imMax, int width, int height, int xMin, int xMax,
+			int yMin, int yMax, AtomicBoolean cancelled, MappedByteBuffer band)
+			throws Exception {
+		int tileWidth = xMax - xMin + 1;
+		int tileHeight = yMax - yMin + 1;
+		short[] data = new short[tileWidth * tileHeight];
+
+		Calculation image = kernel.newCalculation(reMin, reMax, imMin, imMax,
+				width, height, yMin, yMax, null);
+		Calculation pixels = new TileCalculation(image, xMin, yMin,
+				tileWidth, tileHeight, data);
+		pixels.setCancellationFlag(cancelled);
+		if (subdivide) {
+			new SubdivisionCalculation(pixels, data, tileWidth, 0,
+					tileWidth - 1, 0, tileHeight - 1).call();
+		} else {
+			pixels.call();
+		}
+
+		// positions are per buffer, so each tile writes through its own view
+		ShortBuffer target = band.duplicate().order(FILE_BYTE_ORDER)
+				.asShortBuffer();
+		for (int y = 0; y < tileHeight; y++) {
+			target.position(y * width + xMin);
+			target.put(data, y * tileWidth, tileWidth);
+		}
+	}
+
+	/**
+	 * A {@link Calculation} of a tile which is stored as an image of its own.
+	 * Pixels are calculated by a calculation of the whole image, so they are
+	 * exactly the same as if the whole image was calculated at once.
+	 */
+	private static class TileCalculation extends Calculation {
+		/**
+		 * The calculation of the whole image.
+		 */
+		private Calculation image;
+		/**
+		 * The first column of the tile in the whole image.
+		 */
+		private int xOrigin;
+		/**
+		 * The first row of the tile in the whole image.
+		 */
+		private int yOrigin;
+
+		/**
+		 * Constructs a new {@link TileCalculation}.
+		 * 
+		 * @param image
+		 *            the calculation of the whole image
+		 * @param xMin
+		 *            the first column of the tile in the whole image
+		 * @param yMin
+		 *            the first row of the tile in the whole image
+		 * @param tileWidth
+		 *            the width of the tile
+		 * @param tileHeight
+		 *            the height of the tile
+		 * @param data
+		 *            coloring data of the tile
+		 */
+		TileCalculation(Calculation image, int xMin, int yMin, int tileWidth,
+				int tileHeight, short[] data) {
+			super(image.reMin, image.reMax, image.imMin, image.imMax,
+					tileWidth, tileHeight, 0, tileHeight - 1, data);
+			this.image = image;
+			this.xOrigin = xMin;
+			this.yOrigin = yMin;
+		}
+
+		@Override
+		protected short calculatePixel(int x, int y) {
+			return image.calculatePixel(xOrigin + x, yOrigin + y);
+		}
+	}
+
+	/**
+	 * Finds the end of a tile along one axis. A tile is never narrower than
+	 * two pixels, since its viewport would be empty: if only one pixel would
+	 * be left after the tile, it is added to the tile.
+	 * 
+	 * @param start
+	 *            the first pixel of the tile
+	 * @param size
+	 *            the usual size of a tile
+	 * @param total
+	 *            the size of the image along the axis, at least 2
+	 * @return the last pixel of the tile
+	 */
+	static int tileEnd(int start, int size, int total) {
+		int end = Math.min(start + size, total) - 1;
+		return total - 1 - end == 1 ? end + 1 : end;
+	}
+
+	/**
+	 * Turns progressive rendering on or off. In progressive mode every 8th
+	 * pixel is calculated first and a block-upsampled preview is sent to the
+	 * observer; the image is then refined at a spacing of 4, 2 and 1 pixels,
+	 * reusing the samples calculated by the earlier passes.
+	 * 
+	 * @param progressive
+	 *            true to send previews before the final image
+	 */
+	public void setProgressive(boolean progressive) {
+		this.progressive = progressive;
+	}
+
+	/**
+	 * Registers a new request, cancelling the one that was being calculated
+	 * until now. A request which arrives after a newer one has already been
+	 * registered is cancelled immediately.
+	 * 
+	 * @param requestNo
+	 *            the number of the request
+	 * @return the cancellation flag of the request
+	 */
+	private synchronized AtomicBoolean startRequest(long requestNo) {
+		AtomicBoolean cancelled = new AtomicBoolean();
+		if (requestNo < latestRequestNo) {
+			cancelled.set(true);
+			return cancelled;
+		}
+
+		if (latestCancelled != null) {
+			latestCancelled.set(true);
+		}
+		latestRequestNo = requestNo;
+		latestCancelled = cancelled;
+		return cancelled;
+	}
+
+	/**
+	 * Calculates every pixel of the image, splitting it into horizontal
+	 * sections which are calculated in parallel.
+	 * 
+	 * @param reMin
+	 *            real part of the starting pixel
+	 * @param reMax
+	 *            real part of the last pixel
+	 * @param imMin
+	 *            imaginary part of the starting pixel
+	 * @param imMax
+	 *            imaginary part of the last pixel
+	 * @param width
+	 *            total width of the image
+	 * @param height
+	 *            total height of the image
+	 * @param data
+	 *            coloring data
+	 * @param cancelled
+	 *            the cancellation flag of the request
+	 * @param jobs
+	 *            receives the calculations of the frame
+	 * @return the runtime queue depth once all jobs were submitted
+	 */
+	private int produceSections(double reMin, double reMax, double imMin,
+			double imMax, int width, int height, short[] data,
+			AtomicBoolean cancelled, List<Calculation> jobs) {
+		final int numOfSections = 8 * runtime.getParallelism();
 		int sectionWidth = height / numOfSections;
 
 		List<Future<Void>> results = new ArrayList<>();
@@ -87,22 +535,200 @@ public class MyProducer implements IFractalProducer {
 			if (i == numOfSections - 1) {
 				yMax = height - 1;
 			}
-			Calculation posao = new Calculation(reMin, reMax, imMin, imMax,
-					width, height, yMin, yMax, data, polynom, roots);
-			results.add(pool.submit(posao));
+			Calculation posao = kernel.newCalculation(reMin, reMax, imMin,
+					imMax, width, height, yMin, yMax, data);
+			posao.setCancellationFlag(cancelled);
+			jobs.add(posao);
+			results.add(runtime.submit(cancelled, posao));
 		}
+		int queueDepth = runtime.getQueuedTasks();
 
 		for (Future<Void> job : results) {
 			try {
 				job.get();
+			} catch (CancellationException ex) {
+				// the runtime was closed, which ends the request as well
+				cancelled.set(true);
 			} catch (InterruptedException | ExecutionException ignorable) {
 			}
 		}
 
-		System.out.println(
-				"Racunanje gotovo. Idem obavijestiti promatraca tj. GUI!");
+		return queueDepth;
+	}
+
+	/**
+	 * Calculates the image in progressively finer passes, sending a preview
+	 * to the observer after each pass except the last one. Each pass is split
+	 * into horizontal sections which are calculated in parallel.
+	 * 
+	 * @param reMin
+	 *            real part of the starting pixel
+	 * @param reMax
+	 *            real part of the last pixel
+	 * @param imMin
+	 *            imaginary part of the starting pixel
+	 * @param imMax
+	 *            imaginary part of the last pixel
+	 * @param width
+	 *            total width of the image
+	 * @param height
+	 *            total height of the image
+	 * @param data
+	 *            coloring data, which also holds the samples of earlier
+	 *            passes
+	 * @param cancelled
+	 *            the cancellation flag of the request
+	 * @param jobs
+	 *            receives the calculations of the frame
+	 * @param requestNo
+	 *            the number of the request
+	 * @param observer
+	 *            the observer which receives the previews
+	 * @return the largest runtime queue depth once all jobs of a pass were
+	 *         submitted
+	 * @see ProgressivePass
+	 */
+	private int produceProgressive(double reMin, double reMax, double imMin,
+			double imMax, int width, int height, short[] data,
+			AtomicBoolean cancelled, List<Calculation> jobs, long requestNo,
+			IFractalResultObserver observer) {
+		final int numOfSections = 8 * runtime.getParallelism();
+		int sectionWidth = Math.max(1, height / numOfSections);
+
+		int queueDepth = 0;
+		int previousStep = 0;
+
+		for (int step : PROGRESSIVE_STEPS) {
+			List<Future<Void>> results = new ArrayList<>();
+
+			for (int yMin = 0; yMin < height; yMin += sectionWidth) {
+				int yMax = Math.min(yMin + sectionWidth, height) - 1;
+
+				Calculation pixels = kernel.newCalculation(reMin, reMax,
+						imMin, imMax, width, height, yMin, yMax, data);
+				pixels.setCancellationFlag(cancelled);
+				jobs.add(pixels);
+				results.add(runtime.submit(cancelled, new ProgressivePass(
+						pixels, data, width, yMin, yMax, step, previousStep)));
+			}
+			queueDepth = Math.max(queueDepth, runtime.getQueuedTasks());
 
-		observer.acceptResult(data, (short) (polynom.order() + 1), requestNo);
+			for (Future<Void> job : results) {
+				try {
+					job.get();
+				} catch (CancellationException ex) {
+					// the runtime was closed, which ends the request as well
+					cancelled.set(true);
+				} catch (InterruptedException | ExecutionException ignorable) {
+				}
+			}
+
+			if (cancelled.get()) {
+				break;
+			}
+			if (step > 1) {
+				observer.acceptResult(
+						ProgressivePass.upsample(data, width, height, step),
+						kernel.getNumberOfColors(), requestNo);
+			}
+			previousStep = step;
+		}
+
+		return queueDepth;
+	}
+
+	/**
+	 * Calculates the image using rectangle subdivision. The image is split
+	 * into square tiles which are subdivided in parallel.
+	 * 
+	 * @param reMin
+	 *            real part of the starting pixel
+	 * @param reMax
+	 *            real part of the last pixel
+	 * @param imMin
+	 *            imaginary part of the starting pixel
+	 * @param imMax
+	 *            imaginary part of the last pixel
+	 * @param width
+	 *            total width of the image
+	 * @param height
+	 *            total height of the image
+	 * @param data
+	 *            coloring data
+	 * @param cancelled
+	 *            the cancellation flag of the request
+	 * @param jobs
+	 *            receives the calculations of the frame
+	 * @param filled
+	 *            receives the number of pixels filled without iterating
+	 * @return the runtime queue depth once all jobs were submitted
+	 * @see SubdivisionCalculation
+	 */
+	private int produceSubdivided(double reMin, double reMax, double imMin,
+			double imMax, int width, int height, short[] data,
+			AtomicBoolean cancelled, List<Calculation> jobs, long[] filled) {
+		List<Future<Integer>> results = new ArrayList<>();
+
+		for (int yMin = 0; yMin < height; yMin += TILE_SIZE) {
+			int yMax = Math.min(yMin + TILE_SIZE, height) - 1;
+			for (int xMin = 0; xMin < width; xMin += TILE_SIZE) {
+				int xMax = Math.min(xMin + TILE_SIZE, width) - 1;
+
+				Calculation pixels = kernel.newCalculation(reMin, reMax,
+						imMin, imMax, width, height, yMin, yMax, data);
+				pixels.setCancellationFlag(cancelled);
+				jobs.add(pixels);
+				results.add(runtime.submit(cancelled,
+						new SubdivisionCalculation(pixels, data, width, xMin,
+								xMax, yMin, yMax)));
+			}
+		}
+
+		int queueDepth = runtime.getQueuedTasks();
+
+		for (Future<Integer> job : results) {
+			try {
+				filled[0] += job.get();
+			} catch (CancellationException ex) {
+				// the runtime was closed, which ends the request as well
+				cancelled.set(true);
+			} catch (InterruptedException | ExecutionException ignorable) {
+			}
+		}
+
+		return queueDepth;
+	}
+
+	/**
+	 * @return the number of pixels in the last produced frame which were
+	 *         classified as non-convergent because their orbit was caught in a
+	 *         cycle
+	 */
+	public long getLastBailouts() {
+		return metrics.getLastFrameBailouts();
+	}
+
+	/**
+	 * @return statistics of the frames produced so far
+	 */
+	public FractalMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the kernel which calculates the pixels
+	 */
+	public IterationKernel getKernel() {
+		return kernel;
+	}
+
+	/**
+	 * Unregisters the metrics of this producer from JMX. The runtime is left
+	 * running, since it may be shared with other renderers.
+	 */
+	@Override
+	public void close() {
+		metrics.unregister();
 	}
 
 }
@@ -1,6 +1,9 @@
 package hr.fer.zemris.java.fractals;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
 
@@ -24,9 +27,38 @@ public class Newton {
 	 * Main method.
 	 * 
 	 * @param args
-	 *            unused
+	 *            "--progressive" turns on progressive rendering, and
+	 *            "--roots FILE" loads the roots from a file instead of asking
+	 *            for them; other arguments are ignored
 	 */
 	public static void main(String[] args) {
+		List<String> arguments = Arrays.asList(args);
+		int rootsIndex = arguments.indexOf("--roots");
+		ComplexRootedPolynomial roots;
+		if (rootsIndex >= 0 && rootsIndex + 1 < args.length) {
+			try {
+				roots = RootLoader.load(Paths.get(args[rootsIndex + 1]))
+						.toPolynomial();
+			} catch (IOException | ParserException ex) {
+				System.out.println(ex.getMessage());
+				return;
+			}
+		} else {
+			roots = readRoots();
+		}
+
+		System.out.println("Image of fractal will appear shortly. Thank you.");
+		MyProducer producer = new MyProducer(roots, true);
+		producer.setProgressive(arguments.contains("--progressive"));
+		FractalViewer.show(producer);
+	}
+
+	/**
+	 * Asks the user for the roots of the polynom, one per line.
+	 * 
+	 * @return the polynom
+	 */
+	private static ComplexRootedPolynomial readRoots() {
 		Scanner sc = new Scanner(System.in);
 
 		System.out.println("Welcome to Newton-Raphson iteration-based fractal "
@@ -55,11 +87,7 @@ public class Newton {
 		}
 		sc.close();
 		
-		ComplexRootedPolynomial roots = new ComplexRootedPolynomial(
-				(factors.toArray(new Complex[0])));
-
-		System.out.println("Image of fractal will appear shortly. Thank you.");
-		FractalViewer.show(new MyProducer(roots));
+		return new ComplexRootedPolynomial(factors.toArray(new Complex[0]));
 	}
 
 }
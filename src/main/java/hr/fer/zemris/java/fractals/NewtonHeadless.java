@@ -0,0 +1,435 @@
+package hr.fer.zemris.java.fractals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import hr.fer.zemris.java.render.RenderRuntime;
+import hr.fer.zemris.math.ComplexRootedPolynomial;
+
+/**
+ * Renders Newton-Raphson fractals without a display. Takes the roots of a
+ * polynom, a viewport and an image size, renders the fractal through
+ * {@link MyProducer} and writes it to disk. If a second viewport is given,
+ * renders a zoom sequence from the first viewport to the second one.
+ * <p>
+ * The <code>raw</code> format writes the coloring data itself, rendered
+ * straight into the file through
+ * {@link MyProducer#produceToFile(double, double, double, double, int, int, Path)},
+ * so the image size is not limited by the available memory.
+ * <p>
+ * Rendering and encoding run on separate threads: while a frame is being
+ * written to disk, the next one is already being calculated.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * NewtonHeadless --roots FILE|- [--viewport reMin reMax imMin imMax]
+ *                [--size WIDTH HEIGHT] [--zoom-to reMin reMax imMin imMax]
+ *                [--frames N] [--format png|ppm|raw] [--out DIRECTORY]
+ * </pre>
+ *
+ * The roots file contains one root per line, in the same format as accepted
+ * by {@link Newton}.
+ *
+ * @author 0036502252
+ *
+ */
+public class NewtonHeadless {
+	/**
+	 * The maximum number of rendered frames waiting to be written.
+	 */
+	private static final int QUEUE_CAPACITY = 4;
+
+	/**
+	 * A rendered frame waiting to be written.
+	 */
+	private static class Frame {
+		/**
+		 * Marks the end of the sequence.
+		 */
+		static final Frame END = new Frame(-1, null, (short) 0);
+
+		/**
+		 * The index of the frame in the sequence.
+		 */
+		final int index;
+		/**
+		 * Coloring data of the frame.
+		 */
+		final short[] data;
+		/**
+		 * The number of colors in the coloring data.
+		 */
+		final short numberOfColors;
+
+		/**
+		 * Constructs a new {@link Frame}.
+		 *
+		 * @param index
+		 *            index of the frame in the sequence
+		 * @param data
+		 *            coloring data
+		 * @param numberOfColors
+		 *            number of colors in the coloring data
+		 */
+		Frame(int index, short[] data, short numberOfColors) {
+			this.index = index;
+			this.data = data;
+			this.numberOfColors = numberOfColors;
+		}
+	}
+
+	/**
+	 * Main method.
+	 *
+	 * @param args
+	 *            command line arguments, see the class documentation
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+
+		String rootsFile = null;
+		double[] from = { -2, 2, -2, 2 };
+		double[] to = null;
+		int width = 1024;
+		int height = 1024;
+		int frames = 1;
+		String format = "png";
+		Path out = Paths.get(".");
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+				case "--roots":
+					rootsFile = args[++i];
+					break;
+				case "--viewport":
+					from = parseViewport(args, i + 1);
+					i += 4;
+					break;
+				case "--zoom-to":
+					to = parseViewport(args, i + 1);
+					i += 4;
+					break;
+				case "--size":
+					width = Integer.parseInt(args[++i]);
+					height = Integer.parseInt(args[++i]);
+					break;
+				case "--frames":
+					frames = Integer.parseInt(args[++i]);
+					break;
+				case "--format":
+					format = args[++i].toLowerCase(Locale.ROOT);
+					break;
+				case "--out":
+					out = Paths.get(args[++i]);
+					break;
+				default:
+					throw new IllegalArgumentException(
+							"Unknown argument: " + args[i]);
+				}
+			}
+			if (rootsFile == null) {
+				throw new IllegalArgumentException("Roots are required.");
+			}
+			if (width < 2 || height < 2 || frames < 1) {
+				throw new IllegalArgumentException(
+						"Size must be at least 2x2 and there must be at least "
+								+ "one frame.");
+			}
+			if (!format.equals("png") && !format.equals("ppm")
+					&& !format.equals("raw")) {
+				throw new IllegalArgumentException(
+						"Unknown format: " + format);
+			}
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+			System.err.println(ex.getMessage() == null ? "Missing argument."
+					: ex.getMessage());
+			printUsage();
+			System.exit(1);
+			return;
+		}
+
+		ComplexRootedPolynomial roots;
+		try {
+			roots = readRoots(rootsFile);
+			Files.createDirectories(out);
+		} catch (IOException | ParserException ex) {
+			System.err.println(ex.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		if (to == null) {
+			to = from;
+		}
+
+		try {
+			if (format.equals("raw")) {
+				renderToFiles(roots, from, to, frames, width, height, out);
+			} else {
+				render(roots, from, to, frames, width, height, format, out);
+			}
+		} catch (IOException | InterruptedException ex) {
+			System.err.println("Rendering failed: " + ex.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Renders the frames on the calling thread and writes them on a separate
+	 * encoder thread, taken from the I/O executor of the shared
+	 * {@link RenderRuntime}. Closes the runtime when done.
+	 *
+	 * @param roots
+	 *            roots of the polynom
+	 * @param from
+	 *            viewport of the first frame
+	 * @param to
+	 *            viewport of the last frame
+	 * @param frames
+	 *            the number of frames
+	 * @param width
+	 *            width of each frame
+	 * @param height
+	 *            height of each frame
+	 * @param format
+	 *            the image format, png or ppm
+	 * @param out
+	 *            the output directory
+	 * @throws IOException
+	 *             if a frame could not be written
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the encoder
+	 */
+	private static void render(ComplexRootedPolynomial roots, double[] from,
+			double[] to, int frames, int width, int height, String format,
+			Path out) throws IOException, InterruptedException {
+		BlockingQueue<Frame> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		IOException[] failure = new IOException[1];
+
+		RenderRuntime runtime = RenderRuntime.shared();
+		Future<?> encoder = runtime.ioExecutor().submit(() -> {
+			FractalImageWriter writer = null;
+			try {
+				while (true) {
+					Frame frame = queue.take();
+					if (frame == Frame.END) {
+						return;
+					}
+					if (writer == null) {
+						writer = new FractalImageWriter(frame.numberOfColors);
+					}
+					Path file = out.resolve(String.format("frame-%05d.%s",
+							frame.index, format));
+					if (format.equals("png")) {
+						writer.writePng(frame.data, width, height, file);
+					} else {
+						writer.writePpm(frame.data, width, height, file);
+					}
+				}
+			} catch (IOException ex) {
+				failure[0] = ex;
+			} catch (RuntimeException ex) {
+				failure[0] = new IOException("Could not encode a frame!", ex);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		});
+
+		MyProducer producer = new MyProducer(roots, true, runtime);
+		long start = System.nanoTime();
+
+		for (int i = 0; i < frames && !encoder.isDone(); i++) {
+			double[] viewport = interpolate(from, to,
+					frames == 1 ? 0 : (double) i / (frames - 1));
+			int index = i;
+
+			long frameStart = System.nanoTime();
+			producer.produce(viewport[0], viewport[1], viewport[2],
+					viewport[3], width, height, i,
+					(data, numberOfColors, requestNo) -> {
+						try {
+							enqueue(queue, new Frame(index, data,
+									numberOfColors), encoder);
+						} catch (InterruptedException ex) {
+							Thread.currentThread().interrupt();
+						}
+					});
+			double seconds = (System.nanoTime() - frameStart) / 1E9;
+			System.out.printf(Locale.ROOT, "Frame %d: %.3f s, %.0f pixels/s%n",
+					i, seconds, width * (double) height / seconds);
+		}
+
+		enqueue(queue, Frame.END, encoder);
+		try {
+			encoder.get();
+		} catch (ExecutionException ex) {
+			throw new IOException(ex.getCause());
+		}
+		producer.close();
+		runtime.close();
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+
+		double seconds = (System.nanoTime() - start) / 1E9;
+		System.out.printf(Locale.ROOT,
+				"Rendered %d frames in %.3f s: %.2f frames/s, %.0f pixels/s%n",
+				frames, seconds, frames / seconds,
+				frames * (double) width * height / seconds);
+	}
+
+	/**
+	 * Renders the frames straight into raw files, one at a time. Closes the
+	 * shared {@link RenderRuntime} when done.
+	 *
+	 * @param roots
+	 *            roots of the polynom
+	 * @param from
+	 *            viewport of the first frame
+	 * @param to
+	 *            viewport of the last frame
+	 * @param frames
+	 *            the number of frames
+	 * @param width
+	 *            width of each frame
+	 * @param height
+	 *            height of each frame
+	 * @param out
+	 *            the output directory
+	 * @throws IOException
+	 *             if a frame could not be rendered
+	 */
+	private static void renderToFiles(ComplexRootedPolynomial roots,
+			double[] from, double[] to, int frames, int width, int height,
+			Path out) throws IOException {
+		RenderRuntime runtime = RenderRuntime.shared();
+		MyProducer producer = new MyProducer(roots, true, runtime);
+		long start = System.nanoTime();
+
+		try {
+			for (int i = 0; i < frames; i++) {
+				double[] viewport = interpolate(from, to,
+						frames == 1 ? 0 : (double) i / (frames - 1));
+				producer.produceToFile(viewport[0], viewport[1], viewport[2],
+						viewport[3], width, height,
+						out.resolve(String.format("frame-%05d.raw", i)));
+			}
+		} finally {
+			producer.close();
+			runtime.close();
+		}
+
+		double seconds = (System.nanoTime() - start) / 1E9;
+		System.out.printf(Locale.ROOT,
+				"Rendered %d frames in %.3f s: %.0f pixels/s%n", frames,
+				seconds, frames * (double) width * height / seconds);
+	}
+
+	/**
+	 * Hands a frame over to the encoder, waiting while the queue is full.
+	 * Gives up if the encoder has stopped because of an error.
+	 *
+	 * @param queue
+	 *            the queue read by the encoder
+	 * @param frame
+	 *            the frame to be written
+	 * @param encoder
+	 *            the encoder task
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	private static void enqueue(BlockingQueue<Frame> queue, Frame frame,
+			Future<?> encoder) throws InterruptedException {
+		while (!encoder.isDone()
+				&& !queue.offer(frame, 100, TimeUnit.MILLISECONDS)) {
+			// wait for the encoder to catch up
+		}
+	}
+
+	/**
+	 * Calculates the viewport at the given point of a zoom sequence. The
+	 * center moves linearly while the size changes exponentially, so the
+	 * zoom speed appears constant.
+	 *
+	 * @param from
+	 *            the first viewport
+	 * @param to
+	 *            the last viewport
+	 * @param t
+	 *            the position in the sequence, between 0 and 1
+	 * @return the viewport as reMin, reMax, imMin, imMax
+	 */
+	static double[] interpolate(double[] from, double[] to, double t) {
+		double[] viewport = new double[4];
+		for (int axis = 0; axis < 4; axis += 2) {
+			double c0 = (from[axis] + from[axis + 1]) / 2;
+			double c1 = (to[axis] + to[axis + 1]) / 2;
+			double s0 = from[axis + 1] - from[axis];
+			double s1 = to[axis + 1] - to[axis];
+
+			double center = c0 + (c1 - c0) * t;
+			double size = s0 * Math.pow(s1 / s0, t);
+			viewport[axis] = center - size / 2;
+			viewport[axis + 1] = center + size / 2;
+		}
+		return viewport;
+	}
+
+	/**
+	 * Parses four viewport coordinates from the command line.
+	 *
+	 * @param args
+	 *            command line arguments
+	 * @param start
+	 *            index of the first coordinate
+	 * @return the viewport as reMin, reMax, imMin, imMax
+	 */
+	private static double[] parseViewport(String[] args, int start) {
+		double[] viewport = new double[4];
+		for (int i = 0; i < 4; i++) {
+			viewport[i] = Double.parseDouble(args[start + i]);
+		}
+		if (viewport[0] >= viewport[1] || viewport[2] >= viewport[3]) {
+			throw new IllegalArgumentException(
+					"Viewport minimums must be below maximums.");
+		}
+		return viewport;
+	}
+
+	/**
+	 * Reads the roots of a polynom, one per line.
+	 *
+	 * @param file
+	 *            the file with roots, or "-" for standard input
+	 * @return the polynom
+	 * @throws IOException
+	 *             if the file can not be read
+	 * @see RootLoader
+	 */
+	private static ComplexRootedPolynomial readRoots(String file)
+			throws IOException {
+		RootLoader loader = file.equals("-") ? RootLoader.load(System.in)
+				: RootLoader.load(Paths.get(file));
+		return loader.toPolynomial();
+	}
+
+	/**
+	 * Prints the usage message.
+	 */
+	private static void printUsage() {
+		System.err.println("Usage: NewtonHeadless --roots FILE|- "
+				+ "[--viewport reMin reMax imMin imMax] [--size WIDTH HEIGHT] "
+				+ "[--zoom-to reMin reMax imMin imMax] [--frames N] "
+				+ "[--format png|ppm|raw] [--out DIRECTORY]");
+	}
+}
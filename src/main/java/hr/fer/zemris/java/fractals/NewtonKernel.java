@@ -0,0 +1,149 @@
+package hr.fer.zemris.java.fractals;
+
+import java.util.Objects;
+
+import hr.fer.zemris.math.ComplexPolynomial;
+import hr.fer.zemris.math.ComplexRootedPolynomial;
+
+/**
+ * Newton-Raphson iteration of a polynom given by its roots. Each pixel is
+ * colored by the root its orbit converges to. The precision of the
+ * calculation is chosen for each viewport: single precision for zoomed-out
+ * views, double-double precision for deep zooms, and double precision in
+ * between.
+ *
+ * @author 0036502252
+ *
+ */
+public final class NewtonKernel implements IterationKernel {
+	/**
+	 * When the distance between two pixels, relative to the magnitude of the
+	 * coordinates, drops below this value, the calculation switches to
+	 * double-double precision.
+	 */
+	private static final double DEEP_ZOOM_RATIO = 1E-12;
+	/**
+	 * While the distance between two pixels, relative to the magnitude of the
+	 * coordinates, stays above this value, single precision is enough to
+	 * classify the pixels.
+	 */
+	private static final double FLOAT_RATIO = 1E-4;
+	/**
+	 * Single precision is only used for polynoms of lower degree than this;
+	 * the expanded factors of higher degree polynoms are too inaccurate in
+	 * single precision, and most pixels would escalate to double precision.
+	 */
+	private static final int FLOAT_MAX_DEGREE = 12;
+	/**
+	 * The roots of the polynom.
+	 */
+	private final ComplexRootedPolynomial roots;
+	/**
+	 * The polynom.
+	 */
+	private final ComplexPolynomial polynom;
+
+	/**
+	 * Constructs a new {@link NewtonKernel}.
+	 *
+	 * @param roots
+	 *            the roots of the polynom
+	 */
+	public NewtonKernel(ComplexRootedPolynomial roots) {
+		this.roots = Objects.requireNonNull(roots);
+		this.polynom = roots.toComplexPolynom();
+	}
+
+	/**
+	 * @return the roots of the polynom
+	 */
+	public ComplexRootedPolynomial getRoots() {
+		return roots;
+	}
+
+	@Override
+	public short getNumberOfColors() {
+		return (short) (polynom.order() + 1);
+	}
+
+	/**
+	 * Creates a calculation job for the given rows of the image, using the
+	 * kernel for the precision the viewport needs. Double precision is
+	 * calculated from the roots of the polynom, and so is single precision
+	 * for polynoms of high degree.
+	 */
+	@Override
+	public Calculation newCalculation(double reMin, double reMax,
+			double imMin, double imMax, int width, int height, int yMin,
+			int yMax, short[] data) {
+		switch (choosePrecision(reMin, reMax, imMin, imMax, width, height)) {
+		case FLOAT:
+			if (polynom.order() < FLOAT_MAX_DEGREE) {
+				return new FloatCalculation(reMin, reMax, imMin, imMax, width,
+						height, yMin, yMax, data, polynom, roots);
+			}
+			return new RootFormCalculation(reMin, reMax, imMin, imMax, width,
+					height, yMin, yMax, data, polynom, roots);
+		case DOUBLE_DOUBLE:
+			return new DeepZoomCalculation(reMin, reMax, imMin, imMax, width,
+					height, yMin, yMax, data, polynom, roots);
+		default:
+			return new RootFormCalculation(reMin, reMax, imMin, imMax, width,
+					height, yMin, yMax, data, polynom, roots);
+		}
+	}
+
+	/**
+	 * The precision in which Newton-Raphson iteration is calculated.
+	 */
+	enum Precision {
+		/**
+		 * Single precision, which escalates to double when a result is
+		 * ambiguous.
+		 */
+		FLOAT,
+		/**
+		 * Double precision.
+		 */
+		DOUBLE,
+		/**
+		 * Double-double precision, used for deep zooms.
+		 */
+		DOUBLE_DOUBLE
+	}
+
+	/**
+	 * Chooses the cheapest precision which can still tell neighbouring pixels
+	 * of the given viewport apart reliably.
+	 * 
+	 * @param reMin
+	 *            real part of the starting pixel
+	 * @param reMax
+	 *            real part of the last pixel
+	 * @param imMin
+	 *            imaginary part of the starting pixel
+	 * @param imMax
+	 *            imaginary part of the last pixel
+	 * @param width
+	 *            total width of the image
+	 * @param height
+	 *            total height of the image
+	 * @return the precision of the calculation
+	 */
+	static Precision choosePrecision(double reMin, double reMax, double imMin,
+			double imMax, int width, int height) {
+		double pixelSpan = Math.min((reMax - reMin) / Math.max(width - 1, 1),
+				(imMax - imMin) / Math.max(height - 1, 1));
+		double magnitude = Math.max(1, Math.max(
+				Math.max(Math.abs(reMin), Math.abs(reMax)),
+				Math.max(Math.abs(imMin), Math.abs(imMax))));
+
+		if (pixelSpan < magnitude * DEEP_ZOOM_RATIO) {
+			return Precision.DOUBLE_DOUBLE;
+		}
+		if (pixelSpan > magnitude * FLOAT_RATIO) {
+			return Precision.FLOAT;
+		}
+		return Precision.DOUBLE;
+	}
+}
@@ -0,0 +1,215 @@
+package hr.fer.zemris.java.fractals;
+
+import java.util.Objects;
+
+import hr.fer.zemris.math.Complex;
+import hr.fer.zemris.math.ComplexRootedPolynomial;
+
+/**
+ * The Nova fractal: relaxed Newton-Raphson iteration with the pixel added to
+ * every step, <code>z = z - R*p(z)/p'(z) + c</code>, where <code>c</code> is
+ * the pixel and every orbit starts from the same point. Like the Mandelbrot
+ * set, it is a map of the parameter plane.
+ * <p>
+ * Orbits which settle down are colored by the number of iterations they
+ * needed, cycling through the colors. Orbits which escape, are caught in a
+ * cycle or run out of iterations get the color 0.
+ *
+ * @author 0036502252
+ *
+ */
+public final class NovaKernel implements IterationKernel {
+	/**
+	 * The maximum number of iterations used by
+	 * {@link #NovaKernel(ComplexRootedPolynomial)}.
+	 */
+	private static final int DEFAULT_MAX_ITERATIONS = 256;
+	/**
+	 * Real parts of the factors of the polynom, highest power first.
+	 */
+	private final double[] factorsRe;
+	/**
+	 * Imaginary parts of the factors of the polynom, highest power first.
+	 */
+	private final double[] factorsIm;
+	/**
+	 * The relaxation factor.
+	 */
+	private final Complex relaxation;
+	/**
+	 * The starting point of every orbit.
+	 */
+	private final Complex start;
+	/**
+	 * The maximum number of iterations for a pixel.
+	 */
+	private final int maxIterations;
+
+	/**
+	 * Constructs a new {@link NovaKernel} without relaxation, starting every
+	 * orbit from the first root of the polynom, which is a critical point of
+	 * the Newton map.
+	 *
+	 * @param roots
+	 *            the roots of the polynom
+	 */
+	public NovaKernel(ComplexRootedPolynomial roots) {
+		this(roots, Complex.ONE, roots.getRoots()[0], DEFAULT_MAX_ITERATIONS);
+	}
+
+	/**
+	 * Constructs a new {@link NovaKernel}.
+	 *
+	 * @param roots
+	 *            the roots of the polynom
+	 * @param relaxation
+	 *            the relaxation factor
+	 * @param start
+	 *            the starting point of every orbit
+	 * @param maxIterations
+	 *            the maximum number of iterations for a pixel
+	 * @throws IllegalArgumentException
+	 *             if the number of iterations is not positive
+	 */
+	public NovaKernel(ComplexRootedPolynomial roots, Complex relaxation,
+			Complex start, int maxIterations) {
+		if (maxIterations < 1) {
+			throw new IllegalArgumentException(
+					"There must be at least one iteration!");
+		}
+		Complex[] factors = roots.toComplexPolynom().getFactors();
+		this.factorsRe = new double[factors.length];
+		this.factorsIm = new double[factors.length];
+		for (int i = 0; i < factors.length; i++) {
+			factorsRe[i] = factors[i].getReal();
+			factorsIm[i] = factors[i].getImaginary();
+		}
+		this.relaxation = Objects.requireNonNull(relaxation);
+		this.start = Objects.requireNonNull(start);
+		this.maxIterations = maxIterations;
+	}
+
+	@Override
+	public short getNumberOfColors() {
+		return EscapeTimeCalculation.numberOfColors(maxIterations);
+	}
+
+	@Override
+	public Calculation newCalculation(double reMin, double reMax,
+			double imMin, double imMax, int width, int height, int yMin,
+			int yMax, short[] data) {
+		return new NovaCalculation(reMin, reMax, imMin, imMax, width, height,
+				yMin, yMax, data);
+	}
+
+	/**
+	 * A {@link Calculation} of the Nova fractal, evaluating the polynom and
+	 * its derivative together by Horner's method.
+	 *
+	 * @author 0036502252
+	 *
+	 */
+	private class NovaCalculation extends Calculation {
+		/**
+		 * Orbits farther than this from the origin have escaped.
+		 */
+		private static final double ESCAPE_RADIUS_SQUARED = 1E10;
+
+		/**
+		 * Creates a new {@link NovaCalculation} thread job.
+		 *
+		 * @param reMin
+		 *            real part of the complex number representing the
+		 *            starting pixel
+		 * @param reMax
+		 *            real part of the complex number representing the last
+		 *            pixel
+		 * @param imMin
+		 *            imaginary part of the complex number representing the
+		 *            starting pixel
+		 * @param imMax
+		 *            imaginary part of the complex number representing the
+		 *            last pixel
+		 * @param width
+		 *            total width of the image
+		 * @param height
+		 *            total height of the image
+		 * @param yMin
+		 *            starting height at which the thread commences
+		 *            calculation
+		 * @param yMax
+		 *            height at which the thread ends calculation
+		 * @param data
+		 *            coloring data
+		 */
+		NovaCalculation(double reMin, double reMax, double imMin,
+				double imMax, int width, int height, int yMin, int yMax,
+				short[] data) {
+			super(reMin, reMax, imMin, imMax, width, height, yMin, yMax,
+					data);
+		}
+
+		@Override
+		protected short calculatePixel(int x, int y) {
+			double cRe = x * (reMax - reMin) / (width - 1) + reMin;
+			double cIm = (height - 1 - y) * (imMax - imMin) / (height - 1)
+					+ imMin;
+			double rRe = relaxation.getReal();
+			double rIm = relaxation.getImaginary();
+
+			double zRe = start.getReal();
+			double zIm = start.getImaginary();
+			double savedRe = zRe;
+			double savedIm = zIm;
+			int checkpoint = 1;
+
+			for (int iter = 1; iter <= maxIterations; iter++) {
+				// p and p' by Horner's method, p' trailing p by one factor
+				double pRe = factorsRe[0];
+				double pIm = factorsIm[0];
+				double dRe = 0;
+				double dIm = 0;
+				for (int i = 1, n = factorsRe.length; i < n; i++) {
+					double re = dRe * zRe - dIm * zIm + pRe;
+					dIm = dRe * zIm + dIm * zRe + pIm;
+					dRe = re;
+					re = pRe * zRe - pIm * zIm + factorsRe[i];
+					pIm = pRe * zIm + pIm * zRe + factorsIm[i];
+					pRe = re;
+				}
+
+				// the step is R*p/p' = R*p*conj(p')/|p'|^2
+				double dModule = dRe * dRe + dIm * dIm;
+				double qRe = (pRe * dRe + pIm * dIm) / dModule;
+				double qIm = (pIm * dRe - pRe * dIm) / dModule;
+				double stepRe = rRe * qRe - rIm * qIm - cRe;
+				double stepIm = rRe * qIm + rIm * qRe - cIm;
+				zRe -= stepRe;
+				zIm -= stepIm;
+				double module = Math.sqrt(stepRe * stepRe + stepIm * stepIm);
+
+				if (module < CONVERGENCE_THRESHOLD) {
+					recordIterations(iter, maxIterations);
+					return EscapeTimeCalculation.color(iter,
+							getNumberOfColors());
+				}
+				if (!(zRe * zRe + zIm * zIm < ESCAPE_RADIUS_SQUARED)) {
+					recordIterations(iter, maxIterations);
+					return 0;
+				}
+				if (isCycle(zRe - savedRe, zIm - savedIm)) {
+					bailouts++;
+					recordIterations(iter, maxIterations);
+					return 0;
+				}
+				if (iter == checkpoint) {
+					savedRe = zRe;
+					savedIm = zIm;
+					checkpoint <<= 1;
+				}
+			}
+			recordIterations(maxIterations, maxIterations);
+			return 0;
+		}
+	}
+}
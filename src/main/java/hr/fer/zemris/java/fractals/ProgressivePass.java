@@ -0,0 +1,136 @@
+package hr.fer.zemris.java.fractals;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Calculates one pass of a progressive rendering for a range of rows. A pass
+ * with spacing <code>step</code> calculates every pixel whose coordinates are
+ * both divisible by <code>step</code>, skipping the pixels already
+ * calculated by the previous, coarser pass.
+ * <p>
+ * Single pixels are calculated by a {@link Calculation}, and the job stops
+ * before the next row as soon as that calculation is cancelled.
+ *
+ * @author 0036502252
+ *
+ */
+public class ProgressivePass implements Callable<Void> {
+	/**
+	 * Used for calculating single pixels.
+	 */
+	private Calculation pixels;
+	/**
+	 * Samples calculated so far, at full resolution.
+	 */
+	private short[] samples;
+	/**
+	 * The total width of the image.
+	 */
+	private int width;
+	/**
+	 * The starting row of the job.
+	 */
+	private int yMin;
+	/**
+	 * The last row of the job.
+	 */
+	private int yMax;
+	/**
+	 * The pixel spacing of this pass.
+	 */
+	private int step;
+	/**
+	 * The pixel spacing of the previous pass, or 0 if this is the first one.
+	 */
+	private int previousStep;
+
+	/**
+	 * Creates a new {@link ProgressivePass} thread job.
+	 *
+	 * @param pixels
+	 *            calculation used for single pixels
+	 * @param samples
+	 *            samples calculated so far, at full resolution
+	 * @param width
+	 *            total width of the image
+	 * @param yMin
+	 *            starting row of the job
+	 * @param yMax
+	 *            last row of the job
+	 * @param step
+	 *            pixel spacing of this pass
+	 * @param previousStep
+	 *            pixel spacing of the previous pass, or 0 if this is the
+	 *            first one
+	 */
+	public ProgressivePass(Calculation pixels, short[] samples, int width,
+			int yMin, int yMax, int step, int previousStep) {
+		this.pixels = pixels;
+		this.samples = samples;
+		this.width = width;
+		this.yMin = yMin;
+		this.yMax = yMax;
+		this.step = step;
+		this.previousStep = previousStep;
+	}
+
+	/**
+	 * Starts the thread job.
+	 */
+	@Override
+	public Void call() throws Exception {
+		long start = System.nanoTime();
+		int firstRow = (yMin + step - 1) / step * step;
+
+		for (int y = firstRow; y <= yMax; y += step) {
+			if (pixels.isCancelled()) {
+				break;
+			}
+
+			// on rows calculated by the previous pass, only every other
+			// sample is new
+			boolean rowDone = previousStep != 0 && y % previousStep == 0;
+			int xStart = rowDone ? step : 0;
+			int xStep = rowDone ? previousStep : step;
+
+			int offset = y * width;
+			for (int x = xStart; x < width; x += xStep) {
+				samples[offset + x] = pixels.calculatePixel(x, y);
+			}
+		}
+
+		pixels.addWallTime(System.nanoTime() - start);
+		return null;
+	}
+
+	/**
+	 * Creates an image from the samples calculated with the given spacing, by
+	 * repeating each sample over its block of pixels.
+	 *
+	 * @param samples
+	 *            the samples
+	 * @param width
+	 *            total width of the image
+	 * @param height
+	 *            total height of the image
+	 * @param step
+	 *            spacing of the samples
+	 * @return the upsampled image
+	 */
+	public static short[] upsample(short[] samples, int width, int height,
+			int step) {
+		short[] image = new short[width * height];
+
+		for (int y = 0, offset = 0; y < height; y++) {
+			int sourceRow = (y - y % step) * width;
+			for (int x = 0; x < width; x += step) {
+				short value = samples[sourceRow + x];
+				for (int end = Math.min(x + step, width), i = x; i < end; i++) {
+					image[offset++] = value;
+				}
+			}
+		}
+
+		return image;
+	}
+}
@@ -0,0 +1,164 @@
+package hr.fer.zemris.java.fractals;
+
+import hr.fer.zemris.math.ComplexPolynomial;
+import hr.fer.zemris.math.ComplexRootedPolynomial;
+import hr.fer.zemris.math.NewtonBatch;
+
+/**
+ * A {@link Calculation} which runs Newton-Raphson iteration straight from the
+ * roots of the polynom, without its factors. Since
+ * <code>p'(z)/p(z) = 1/(z-z1) + ... + 1/(z-zn)</code>, the Newton step is the
+ * reciprocal of that sum. Used for polynoms of high degree, whose expanded
+ * factors lose too much precision and whose Horner evaluation costs as much
+ * as the sum.
+ * <p>
+ * The root nearest to the iterate is found in the same pass over the roots,
+ * so checking whether the iterate has entered a convergence disc costs
+ * nothing extra.
+ * <p>
+ * Whole rows are calculated by a {@link NewtonBatch}, which iterates
+ * {@link #LANES} pixels at once with the same arithmetic as
+ * {@link #calculatePixel(int, int)}. Single pixels, requested for example by
+ * progressive passes, are still calculated one at a time.
+ *
+ * @author 0036502252
+ *
+ */
+public class RootFormCalculation extends Calculation {
+
+	/**
+	 * Creates a new {@link RootFormCalculation} thread job. The parameters
+	 * are the same as in
+	 * {@link Calculation#Calculation(double, double, double, double, int, int, int, int, short[], ComplexPolynomial, ComplexRootedPolynomial)}.
+	 *
+	 * @param reMin
+	 *            real part of the complex number representing the starting
+	 *            pixel
+	 * @param reMax
+	 *            real part of the complex number representing the last pixel
+	 * @param imMin
+	 *            imaginary part of the complex number representing the starting
+	 *            pixel
+	 * @param imMax
+	 *            imaginary part of the complex number representing the last
+	 *            pixel
+	 * @param width
+	 *            total width of the image
+	 * @param height
+	 *            total height of the image
+	 * @param yMin
+	 *            starting height at which the thread commences calculation
+	 * @param yMax
+	 *            height at which the thread ends calculation
+	 * @param data
+	 *            coloring data
+	 * @param polynom
+	 *            polynom used for calculation
+	 * @param roots
+	 *            roots of the polynom used for calculation
+	 */
+	public RootFormCalculation(double reMin, double reMax, double imMin,
+			double imMax, int width, int height, int yMin, int yMax,
+			short[] data, ComplexPolynomial polynom,
+			ComplexRootedPolynomial roots) {
+		super(reMin, reMax, imMin, imMax, width, height, yMin, yMax, data,
+				polynom, roots);
+	}
+
+	@Override
+	protected NewtonBatch newBatch() {
+		return new NewtonBatch(rootsRe, rootsIm, discRadiiSquared, LANES,
+				CONVERGENCE_THRESHOLD, ROOT_THRESHOLD, CYCLE_THRESHOLD,
+				MAX_ITERATIONS);
+	}
+
+	@Override
+	protected short calculatePixel(int x, int y) {
+		double zRe = x * (reMax - reMin) / (width - 1) + reMin;
+		double zIm = (height - 1 - y) * (imMax - imMin) / (height - 1)
+				+ imMin;
+
+		double savedRe = zRe;
+		double savedIm = zIm;
+		int checkpoint = 1;
+
+		int iter = 0;
+		double module;
+
+		do {
+			// sum of 1/(z - r) over all roots, tracking the nearest root
+			double sumRe = 0;
+			double sumIm = 0;
+			int nearest = 0;
+			double nearestDistance = Double.POSITIVE_INFINITY;
+			for (int i = 0, n = rootsRe.length; i < n; i++) {
+				double dRe = zRe - rootsRe[i];
+				double dIm = zIm - rootsIm[i];
+				double distance = dRe * dRe + dIm * dIm;
+				sumRe += dRe / distance;
+				sumIm -= dIm / distance;
+				if (distance < nearestDistance) {
+					nearestDistance = distance;
+					nearest = i;
+				}
+			}
+			iter++;
+
+			if (nearestDistance < discRadiiSquared[nearest]
+					|| nearestDistance == 0) {
+				recordIterations(iter);
+				return (short) (nearest + 1);
+			}
+
+			// the step is 1/sum = conj(sum)/|sum|^2
+			double sumModule = sumRe * sumRe + sumIm * sumIm;
+			double stepRe = sumRe / sumModule;
+			double stepIm = -sumIm / sumModule;
+			zRe -= stepRe;
+			zIm -= stepIm;
+			module = Math.sqrt(stepRe * stepRe + stepIm * stepIm);
+
+			if (module > CONVERGENCE_THRESHOLD) {
+				if (isCycle(zRe - savedRe, zIm - savedIm)) {
+					bailouts++;
+					recordIterations(iter);
+					return 0;
+				}
+				if (iter == checkpoint) {
+					savedRe = zRe;
+					savedIm = zIm;
+					checkpoint <<= 1;
+				}
+			}
+		} while (module > CONVERGENCE_THRESHOLD && iter < MAX_ITERATIONS);
+		recordIterations(iter);
+
+		return closestRoot(zRe, zIm);
+	}
+
+	/**
+	 * Finds the root closest to the final iterate.
+	 *
+	 * @param zRe
+	 *            real part of the iterate
+	 * @param zIm
+	 *            imaginary part of the iterate
+	 * @return the index of the closest root, starting from 1, or 0 if it is
+	 *         farther than {@link #ROOT_THRESHOLD}
+	 */
+	private short closestRoot(double zRe, double zIm) {
+		int nearest = 0;
+		double nearestDistance = Double.POSITIVE_INFINITY;
+		for (int i = 0, n = rootsRe.length; i < n; i++) {
+			double dRe = zRe - rootsRe[i];
+			double dIm = zIm - rootsIm[i];
+			double distance = dRe * dRe + dIm * dIm;
+			if (distance < nearestDistance) {
+				nearestDistance = distance;
+				nearest = i;
+			}
+		}
+		return (short) (nearestDistance < ROOT_THRESHOLD * ROOT_THRESHOLD
+				? nearest + 1 : 0);
+	}
+}
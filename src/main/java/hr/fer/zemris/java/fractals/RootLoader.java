@@ -0,0 +1,465 @@
+package hr.fer.zemris.java.fractals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import hr.fer.zemris.math.Complex;
+import hr.fer.zemris.math.ComplexRootedPolynomial;
+
+/**
+ * Loads the roots of a polynom in bulk, one root per line, straight from a
+ * byte buffer into arrays of real and imaginary parts. Meant for root files
+ * with many thousands of roots, where {@link ComplexParser} would create
+ * several objects per line.
+ * <p>
+ * Each line uses the same format as accepted by {@link ComplexParser}, for
+ * example <code>1</code>, <code>-i</code>, <code>i0.5</code> or
+ * <code>-2.5 + i3</code>; numbers may also have an exponent, such as
+ * <code>1.5e-7</code>. Blank lines and lines reading <code>done</code> are
+ * skipped. The input is read as ASCII. Errors are reported as a
+ * {@link ParserException} with the number of the offending line.
+ * <p>
+ * Numbers with up to 15 significant digits and a decimal exponent between
+ * -22 and 22 are converted without allocating anything; others are handed
+ * over to {@link Double#parseDouble(String)}. Both conversions are correctly
+ * rounded.
+ *
+ * @author 0036502252
+ *
+ */
+public class RootLoader {
+	/**
+	 * The initial size of the buffer used when reading a stream.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/**
+	 * The largest number of significant digits which fits into a double
+	 * exactly.
+	 */
+	private static final int MAX_EXACT_DIGITS = 15;
+	/**
+	 * Powers of ten which are exactly representable as a double.
+	 */
+	private static final double[] POWERS_OF_TEN = { 1E0, 1E1, 1E2, 1E3, 1E4,
+			1E5, 1E6, 1E7, 1E8, 1E9, 1E10, 1E11, 1E12, 1E13, 1E14, 1E15, 1E16,
+			1E17, 1E18, 1E19, 1E20, 1E21, 1E22 };
+
+	/**
+	 * Real parts of the roots loaded so far.
+	 */
+	private double[] real = new double[16];
+	/**
+	 * Imaginary parts of the roots loaded so far.
+	 */
+	private double[] imaginary = new double[16];
+	/**
+	 * The number of roots loaded so far.
+	 */
+	private int size;
+	/**
+	 * The number of lines read so far.
+	 */
+	private int lineNumber;
+	/**
+	 * The position in the buffer while a line is being parsed.
+	 */
+	private int position;
+	/**
+	 * The value of the number parsed last.
+	 */
+	private double number;
+
+	/**
+	 * Loads roots from a file, which is mapped into memory and parsed in one
+	 * go.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the loader holding the roots
+	 * @throws IOException
+	 *             if the file can not be read
+	 * @throws ParserException
+	 *             if a line is not a valid complex number
+	 */
+	public static RootLoader load(Path file) throws IOException {
+		RootLoader loader = new RootLoader();
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length > Integer.MAX_VALUE) {
+				loader.read(channel);
+			} else {
+				loader.parse(channel.map(MapMode.READ_ONLY, 0, length));
+			}
+		}
+		return loader;
+	}
+
+	/**
+	 * Loads roots from a stream, which is read in chunks. The stream is not
+	 * closed.
+	 *
+	 * @param stream
+	 *            the stream
+	 * @return the loader holding the roots
+	 * @throws IOException
+	 *             if the stream can not be read
+	 * @throws ParserException
+	 *             if a line is not a valid complex number
+	 */
+	public static RootLoader load(InputStream stream) throws IOException {
+		RootLoader loader = new RootLoader();
+		loader.read(Channels.newChannel(stream));
+		return loader;
+	}
+
+	/**
+	 * Reads roots from a channel until its end. Only complete lines are
+	 * parsed; the rest of a chunk is kept until the next one arrives.
+	 *
+	 * @param channel
+	 *            the channel
+	 * @throws IOException
+	 *             if the channel can not be read
+	 * @throws ParserException
+	 *             if a line is not a valid complex number
+	 */
+	public void read(ReadableByteChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		int scanned = 0;
+
+		while (true) {
+			int read = channel.read(buffer);
+			int limit = buffer.position();
+
+			int lineStart = 0;
+			for (int i = scanned; i < limit; i++) {
+				if (buffer.get(i) == '\n') {
+					parseLine(buffer, lineStart, i);
+					lineStart = i + 1;
+				}
+			}
+
+			if (read < 0) {
+				if (lineStart < limit) {
+					parseLine(buffer, lineStart, limit);
+				}
+				return;
+			}
+
+			// keep the unfinished line, growing the buffer if it fills it
+			buffer.limit(limit).position(lineStart);
+			buffer.compact();
+			if (!buffer.hasRemaining()) {
+				ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity());
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+			scanned = buffer.position();
+		}
+	}
+
+	/**
+	 * Parses all lines between the position and the limit of the buffer. The
+	 * last line does not need to end with a line break. The position of the
+	 * buffer is not changed.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @throws ParserException
+	 *             if a line is not a valid complex number
+	 */
+	public void parse(ByteBuffer buffer) {
+		int lineStart = buffer.position();
+		int limit = buffer.limit();
+
+		for (int i = lineStart; i < limit; i++) {
+			if (buffer.get(i) == '\n') {
+				parseLine(buffer, lineStart, i);
+				lineStart = i + 1;
+			}
+		}
+		if (lineStart < limit) {
+			parseLine(buffer, lineStart, limit);
+		}
+	}
+
+	/**
+	 * @return the number of roots loaded so far
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return a copy of the real parts of the roots
+	 */
+	public double[] getReal() {
+		return Arrays.copyOf(real, size);
+	}
+
+	/**
+	 * @return a copy of the imaginary parts of the roots
+	 */
+	public double[] getImaginary() {
+		return Arrays.copyOf(imaginary, size);
+	}
+
+	/**
+	 * Creates the polynom with the loaded roots.
+	 *
+	 * @return the polynom
+	 * @throws ParserException
+	 *             if fewer than two roots were loaded
+	 */
+	public ComplexRootedPolynomial toPolynomial() {
+		if (size < 2) {
+			throw new ParserException("At least two roots are required!");
+		}
+
+		Complex[] roots = new Complex[size];
+		for (int i = 0; i < size; i++) {
+			roots[i] = new Complex(real[i], imaginary[i]);
+		}
+		return new ComplexRootedPolynomial(roots);
+	}
+
+	/**
+	 * Parses a single line.
+	 *
+	 * @param buffer
+	 *            the buffer holding the line
+	 * @param start
+	 *            index of the first character of the line
+	 * @param end
+	 *            index after the last character of the line
+	 */
+	private void parseLine(ByteBuffer buffer, int start, int end) {
+		lineNumber++;
+
+		while (start < end && isSpace(buffer.get(start))) {
+			start++;
+		}
+		while (end > start && isSpace(buffer.get(end - 1))) {
+			end--;
+		}
+		if (start == end || isDone(buffer, start, end)) {
+			return;
+		}
+
+		double re = 0;
+		double im = 0;
+		boolean parsed = false;
+		double sign = 1;
+		position = start;
+
+		while (position < end) {
+			byte c = buffer.get(position);
+
+			if (isSpace(c)) {
+				position++;
+			} else if (c == '+' || c == '-') {
+				sign = c == '+' ? 1 : -1;
+				position++;
+			} else if (c == 'i') {
+				position++;
+				// a lone i stands for the imaginary unit
+				if (position < end && isDigit(buffer.get(position))) {
+					parseNumber(buffer, end);
+					im = sign * number;
+				} else {
+					im = sign;
+				}
+				parsed = true;
+			} else if (isDigit(c)) {
+				parseNumber(buffer, end);
+				re = sign * number;
+				parsed = true;
+			} else {
+				throw error("Invalid character '" + (char) (c & 0xFF)
+						+ "'! Must be of type a + ib, where a, b are real "
+						+ "numbers, and i is the imaginary unit.");
+			}
+		}
+
+		if (!parsed) {
+			throw error("Invalid sequence of characters! Must be of type "
+					+ "a + ib, where a, b are real numbers, and i is the "
+					+ "imaginary unit.");
+		}
+		add(re, im);
+	}
+
+	/**
+	 * Parses an unsigned number starting at the current position into
+	 * {@link #number}.
+	 *
+	 * @param buffer
+	 *            the buffer holding the line
+	 * @param end
+	 *            index after the last character of the line
+	 */
+	private void parseNumber(ByteBuffer buffer, int end) {
+		int start = position;
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean dot = false;
+		boolean anyDigit = false;
+
+		for (; position < end; position++) {
+			byte c = buffer.get(position);
+			if (c >= '0' && c <= '9') {
+				anyDigit = true;
+				if (mantissa == 0 && c == '0') {
+					// leading zeros are not significant
+				} else if (digits < 19) {
+					mantissa = 10 * mantissa + (c - '0');
+					digits++;
+				} else {
+					digits++;
+					exponent++;
+				}
+				if (dot) {
+					exponent--;
+				}
+			} else if (c == '.' && !dot) {
+				dot = true;
+			} else {
+				break;
+			}
+		}
+		if (!anyDigit || position < end && isDigit(buffer.get(position))) {
+			throw error("\"" + text(buffer, start, Math.min(position + 1, end))
+					+ "\" is not a valid number!");
+		}
+
+		if (position < end
+				&& (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+			position++;
+			int exponentSign = 1;
+			if (position < end && (buffer.get(position) == '+'
+					|| buffer.get(position) == '-')) {
+				exponentSign = buffer.get(position) == '-' ? -1 : 1;
+				position++;
+			}
+			int explicit = 0;
+			int exponentStart = position;
+			while (position < end && buffer.get(position) >= '0'
+					&& buffer.get(position) <= '9') {
+				explicit = Math.min(10 * explicit
+						+ (buffer.get(position) - '0'), 100000);
+				position++;
+			}
+			if (position == exponentStart) {
+				throw error("\"" + text(buffer, start, position)
+						+ "\" is not a valid number!");
+			}
+			exponent += exponentSign * explicit;
+		}
+
+		if (mantissa == 0) {
+			number = 0;
+		} else if (digits <= MAX_EXACT_DIGITS
+				&& Math.abs(exponent) < POWERS_OF_TEN.length) {
+			// both operands are exact, so the result is correctly rounded
+			number = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent]
+					: mantissa * POWERS_OF_TEN[exponent];
+		} else {
+			number = Double.parseDouble(text(buffer, start, position));
+		}
+	}
+
+	/**
+	 * Appends a root, growing the arrays if needed.
+	 *
+	 * @param re
+	 *            real part of the root
+	 * @param im
+	 *            imaginary part of the root
+	 */
+	private void add(double re, double im) {
+		if (size == real.length) {
+			real = Arrays.copyOf(real, 2 * size);
+			imaginary = Arrays.copyOf(imaginary, 2 * size);
+		}
+		real[size] = re;
+		imaginary[size] = im;
+		size++;
+	}
+
+	/**
+	 * Creates an exception for the current line.
+	 *
+	 * @param message
+	 *            the message
+	 * @return the exception
+	 */
+	private ParserException error(String message) {
+		return new ParserException("Line " + lineNumber + ": " + message);
+	}
+
+	/**
+	 * Checks whether a line reads <code>done</code>.
+	 *
+	 * @param buffer
+	 *            the buffer holding the line
+	 * @param start
+	 *            index of the first character of the line
+	 * @param end
+	 *            index after the last character of the line
+	 * @return true if the line reads <code>done</code>
+	 */
+	private static boolean isDone(ByteBuffer buffer, int start, int end) {
+		return end - start == 4 && buffer.get(start) == 'd'
+				&& buffer.get(start + 1) == 'o' && buffer.get(start + 2) == 'n'
+				&& buffer.get(start + 3) == 'e';
+	}
+
+	/**
+	 * Decodes part of the buffer as text.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @param start
+	 *            index of the first character
+	 * @param end
+	 *            index after the last character
+	 * @return the text
+	 */
+	private static String text(ByteBuffer buffer, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * @param c
+	 *            the character
+	 * @return true if the character is a digit or a decimal point
+	 */
+	private static boolean isDigit(byte c) {
+		return (c >= '0' && c <= '9') || c == '.';
+	}
+
+	/**
+	 * @param c
+	 *            the character
+	 * @return true if the character is a space, a tab or a carriage return
+	 */
+	private static boolean isSpace(byte c) {
+		return c == ' ' || c == '\t' || c == '\r';
+	}
+}
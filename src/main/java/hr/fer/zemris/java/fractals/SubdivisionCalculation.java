@@ -0,0 +1,212 @@
+package hr.fer.zemris.java.fractals;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Calculates a rectangular tile of the fractal image using rectangle
+ * subdivision (the Mariani-Silver algorithm). The border of a rectangle is
+ * calculated first; if every border pixel converges to the same root, the
+ * interior is filled with that root without iterating. Otherwise the
+ * rectangle is split in two along its longer side and both halves are
+ * processed the same way.
+ * <p>
+ * Single pixels are calculated by a {@link Calculation}, so the same
+ * subdivision works with every precision the producer supports, and the job
+ * stops as soon as that calculation is cancelled. The job returns the number
+ * of pixels which were filled instead of calculated.
+ *
+ * @author 0036502252
+ *
+ */
+public class SubdivisionCalculation implements Callable<Integer> {
+	/**
+	 * Rectangles with a side shorter than this are calculated pixel by pixel.
+	 */
+	private static final int MIN_SIZE = 6;
+	/**
+	 * Used for calculating single pixels.
+	 */
+	private Calculation pixels;
+	/**
+	 * Stores coloring data.
+	 */
+	private short[] data;
+	/**
+	 * The total width of the image.
+	 */
+	private int width;
+	/**
+	 * The leftmost column of the tile.
+	 */
+	private int xMin;
+	/**
+	 * The rightmost column of the tile.
+	 */
+	private int xMax;
+	/**
+	 * The top row of the tile.
+	 */
+	private int yMin;
+	/**
+	 * The bottom row of the tile.
+	 */
+	private int yMax;
+	/**
+	 * The number of pixels filled without iterating.
+	 */
+	private int filled;
+
+	/**
+	 * Creates a new {@link SubdivisionCalculation} thread job.
+	 *
+	 * @param pixels
+	 *            calculation used for single pixels; must write into the same
+	 *            coloring data
+	 * @param data
+	 *            coloring data
+	 * @param width
+	 *            total width of the image
+	 * @param xMin
+	 *            leftmost column of the tile
+	 * @param xMax
+	 *            rightmost column of the tile
+	 * @param yMin
+	 *            top row of the tile
+	 * @param yMax
+	 *            bottom row of the tile
+	 */
+	public SubdivisionCalculation(Calculation pixels, short[] data, int width,
+			int xMin, int xMax, int yMin, int yMax) {
+		this.pixels = pixels;
+		this.data = data;
+		this.width = width;
+		this.xMin = xMin;
+		this.xMax = xMax;
+		this.yMin = yMin;
+		this.yMax = yMax;
+	}
+
+	/**
+	 * Starts the thread job.
+	 */
+	@Override
+	public Integer call() throws Exception {
+		long start = System.nanoTime();
+
+		for (int x = xMin; x <= xMax; x++) {
+			calculate(x, yMin);
+			calculate(x, yMax);
+		}
+		for (int y = yMin + 1; y < yMax && !pixels.isCancelled(); y++) {
+			calculate(xMin, y);
+			calculate(xMax, y);
+		}
+
+		subdivide(xMin, xMax, yMin, yMax);
+
+		pixels.addWallTime(System.nanoTime() - start);
+		return filled;
+	}
+
+	/**
+	 * Fills or splits the given rectangle, whose border has already been
+	 * calculated.
+	 *
+	 * @param x0
+	 *            leftmost column
+	 * @param x1
+	 *            rightmost column
+	 * @param y0
+	 *            top row
+	 * @param y1
+	 *            bottom row
+	 */
+	private void subdivide(int x0, int x1, int y0, int y1) {
+		if (x1 - x0 < 2 || y1 - y0 < 2 || pixels.isCancelled()) {
+			return; // no interior, or nothing left to do
+		}
+
+		short value = data[y0 * width + x0];
+		if (isBorderUniform(x0, x1, y0, y1, value)) {
+			for (int y = y0 + 1; y < y1; y++) {
+				int offset = y * width;
+				for (int x = x0 + 1; x < x1; x++) {
+					data[offset + x] = value;
+				}
+			}
+			filled += (x1 - x0 - 1) * (y1 - y0 - 1);
+			return;
+		}
+
+		if (x1 - x0 < MIN_SIZE || y1 - y0 < MIN_SIZE) {
+			for (int y = y0 + 1; y < y1 && !pixels.isCancelled(); y++) {
+				for (int x = x0 + 1; x < x1; x++) {
+					calculate(x, y);
+				}
+			}
+			return;
+		}
+
+		if (x1 - x0 >= y1 - y0) {
+			int xm = (x0 + x1) / 2;
+			for (int y = y0 + 1; y < y1; y++) {
+				calculate(xm, y);
+			}
+			subdivide(x0, xm, y0, y1);
+			subdivide(xm, x1, y0, y1);
+		} else {
+			int ym = (y0 + y1) / 2;
+			for (int x = x0 + 1; x < x1; x++) {
+				calculate(x, ym);
+			}
+			subdivide(x0, x1, y0, ym);
+			subdivide(x0, x1, ym, y1);
+		}
+	}
+
+	/**
+	 * Checks whether every pixel on the border of the given rectangle has the
+	 * given value.
+	 *
+	 * @param x0
+	 *            leftmost column
+	 * @param x1
+	 *            rightmost column
+	 * @param y0
+	 *            top row
+	 * @param y1
+	 *            bottom row
+	 * @param value
+	 *            the expected value
+	 * @return true if the whole border has the given value
+	 */
+	private boolean isBorderUniform(int x0, int x1, int y0, int y1,
+			short value) {
+		int top = y0 * width;
+		int bottom = y1 * width;
+		for (int x = x0; x <= x1; x++) {
+			if (data[top + x] != value || data[bottom + x] != value) {
+				return false;
+			}
+		}
+		for (int y = y0 + 1; y < y1; y++) {
+			if (data[y * width + x0] != value
+					|| data[y * width + x1] != value) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Calculates a single pixel and stores it into the coloring data.
+	 *
+	 * @param x
+	 *            column of the pixel
+	 * @param y
+	 *            row of the pixel
+	 */
+	private void calculate(int x, int y) {
+		data[y * width + x] = pixels.calculatePixel(x, y);
+	}
+}
@@ -0,0 +1,244 @@
+package hr.fer.zemris.java.raytracer;
+
+import java.util.Arrays;
+
+import hr.fer.zemris.math.MutableVector3;
+import hr.fer.zemris.math.Vector3Array;
+
+/**
+ * What a frame rendered by {@link RayTracerProducerImpl} saw, kept for
+ * reusing its colors in the next frame, as described by {@link Reprojection}:
+ * for each pixel, the object hit by its primary ray, the point it was hit at,
+ * its color and the number of frames in a row the color was reused for.
+ * <p>
+ * While its frame is rendered, a history also holds the pixels of the
+ * previous frame projected into it. The calculation jobs record their pixels
+ * into it, each into its own pixels, and it is finished once they are done.
+ *
+ * @author 0036502252
+ *
+ */
+class FrameHistory {
+	/**
+	 * The width of the frame, in pixels.
+	 */
+	private final int width;
+	/**
+	 * The height of the frame, in pixels.
+	 */
+	private final int height;
+	/**
+	 * The scene of the frame.
+	 */
+	private final Object scene;
+	/**
+	 * The limits of the secondary rays of the frame.
+	 */
+	private final RayBudget budget;
+	/**
+	 * How the frame was lit.
+	 */
+	private final LightSampling lighting;
+	/**
+	 * When colors are reused.
+	 */
+	private final Reprojection reprojection;
+	/**
+	 * The objects hit by the primary rays, -1 where nothing was hit.
+	 */
+	private final int[] objects;
+	/**
+	 * The points hit by the primary rays.
+	 */
+	private final Vector3Array points;
+	/**
+	 * The number of frames in a row the colors were reused for.
+	 */
+	private final int[] ages;
+	/**
+	 * The intensities of red color of the pixels.
+	 */
+	private short[] red;
+	/**
+	 * The intensities of green color of the pixels.
+	 */
+	private short[] green;
+	/**
+	 * The intensities of blue color of the pixels.
+	 */
+	private short[] blue;
+
+	/**
+	 * The previous frame, while this one is rendered, or null.
+	 */
+	private FrameHistory previous;
+	/**
+	 * For each pixel, the pixel of the previous frame whose point was
+	 * projected onto it, or -1.
+	 */
+	private int[] sources;
+
+	/**
+	 * Constructs a new empty {@link FrameHistory} for a frame about to be
+	 * rendered.
+	 *
+	 * @param width
+	 *            the width of the frame, in pixels
+	 * @param height
+	 *            the height of the frame, in pixels
+	 * @param scene
+	 *            identifies the scene of the frame
+	 * @param budget
+	 *            the limits of the secondary rays of the frame
+	 * @param lighting
+	 *            how the frame is lit
+	 * @param reprojection
+	 *            when colors are reused
+	 */
+	FrameHistory(int width, int height, Object scene, RayBudget budget,
+			LightSampling lighting, Reprojection reprojection) {
+		this.width = width;
+		this.height = height;
+		this.scene = scene;
+		this.budget = budget;
+		this.lighting = lighting;
+		this.reprojection = reprojection;
+		objects = new int[width * height];
+		Arrays.fill(objects, -1);
+		points = new Vector3Array(width * height);
+		ages = new int[width * height];
+	}
+
+	/**
+	 * Projects the points hit in the previous frame into this one. Where
+	 * several points fall onto the same pixel, the one closest to the eye is
+	 * kept. Nothing is projected if the previous frame is not like this one.
+	 *
+	 * @param previous
+	 *            the previous frame, or null
+	 * @param projection
+	 *            the projection of the primary rays of this frame
+	 */
+	void reproject(FrameHistory previous, ScreenProjection projection) {
+		if (previous == null || previous.red == null
+				|| reprojection.getMaxAge() == 0 || !projection.valid
+				|| previous.width != width || previous.height != height
+				|| previous.scene != scene || previous.budget != budget
+				|| previous.lighting != lighting) {
+			return;
+		}
+		this.previous = previous;
+		sources = new int[width * height];
+		Arrays.fill(sources, -1);
+		double[] depths = new double[width * height];
+		double[] pixel = new double[2];
+		for (int p = 0; p < objects.length; p++) {
+			if (previous.objects[p] == -1
+					|| previous.ages[p] >= reprojection.getMaxAge()) {
+				continue;
+			}
+			double px = previous.points.getX(p);
+			double py = previous.points.getY(p);
+			double pz = previous.points.getZ(p);
+			if (!projection.project(px, py, pz, pixel)) {
+				continue;
+			}
+			long x = Math.round(pixel[0]);
+			long y = Math.round(pixel[1]);
+			if (x < 0 || y < 0 || x >= width || y >= height) {
+				continue;
+			}
+			int target = (int) y * width + (int) x;
+			double depth = projection.depth.x * (px - projection.eye.x)
+					+ projection.depth.y * (py - projection.eye.y)
+					+ projection.depth.z * (pz - projection.eye.z);
+			if (sources[target] == -1 || depth < depths[target]) {
+				sources[target] = p;
+				depths[target] = depth;
+			}
+		}
+	}
+
+	/**
+	 * Reuses the color of the previous frame for a pixel, if its primary ray
+	 * hit the same object as the pixel projected onto it, at about the same
+	 * distance from the eye. If so, the pixel is recorded as well.
+	 *
+	 * @param pixel
+	 *            the index of the pixel
+	 * @param object
+	 *            the object hit by its primary ray
+	 * @param point
+	 *            the point hit by its primary ray
+	 * @param eye
+	 *            the point of view
+	 * @param red
+	 *            receives the intensity of red color of the pixel
+	 * @param green
+	 *            receives the intensity of green color of the pixel
+	 * @param blue
+	 *            receives the intensity of blue color of the pixel
+	 * @return true if the color was reused
+	 */
+	boolean reuse(int pixel, int object, MutableVector3 point,
+			MutableVector3 eye, short[] red, short[] green, short[] blue) {
+		if (sources == null || sources[pixel] == -1) {
+			return false;
+		}
+		int source = sources[pixel];
+		if (previous.objects[source] != object) {
+			return false;
+		}
+		double distance = point.distance(eye);
+		double dx = previous.points.getX(source) - eye.getX();
+		double dy = previous.points.getY(source) - eye.getY();
+		double dz = previous.points.getZ(source) - eye.getZ();
+		double previousDistance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+		if (!(Math.abs(distance - previousDistance) <= reprojection
+				.getTolerance() * distance)) {
+			return false;
+		}
+
+		red[pixel] = previous.red[source];
+		green[pixel] = previous.green[source];
+		blue[pixel] = previous.blue[source];
+		record(pixel, object, point);
+		ages[pixel] = previous.ages[source] + 1;
+		return true;
+	}
+
+	/**
+	 * Records what the primary ray of a pixel hit.
+	 *
+	 * @param pixel
+	 *            the index of the pixel
+	 * @param object
+	 *            the object hit, -1 if none
+	 * @param point
+	 *            the point hit, if an object was hit
+	 */
+	void record(int pixel, int object, MutableVector3 point) {
+		objects[pixel] = object;
+		if (object != -1) {
+			points.set(pixel, point);
+		}
+	}
+
+	/**
+	 * Finishes the frame: keeps its colors, and forgets the previous frame.
+	 *
+	 * @param red
+	 *            the intensity of red color for each pixel
+	 * @param green
+	 *            the intensity of green color for each pixel
+	 * @param blue
+	 *            the intensity of blue color for each pixel
+	 */
+	void finish(short[] red, short[] green, short[] blue) {
+		this.red = red.clone();
+		this.green = green.clone();
+		this.blue = blue.clone();
+		previous = null;
+		sources = null;
+	}
+}
@@ -0,0 +1,118 @@
+package hr.fer.zemris.java.raytracer;
+
+/**
+ * How {@link RayTracerProducerImpl} lights the points it shades, for scenes
+ * with many light sources.
+ * <ul>
+ * <li>Light can fall off with distance: at the falloff distance from a light
+ * source, the light is half as intense as at the source, and
+ * <code>1 / (1 + (d / falloff)^2)</code> of it is left at the distance
+ * <code>d</code>. Each component of a color is rounded down to whole
+ * intensities, so beyond a certain radius a light source can not add anything
+ * to a point. Only the light sources within whose radius a point lies are
+ * gathered for it, using a hierarchy over the radii, and no shadow rays are
+ * cast towards the others.</li>
+ * <li>Instead of all the gathered light sources, a fixed number of them can
+ * be sampled for each shaded point, each with a probability proportional to
+ * how much it can add to the point. The light of a sampled source is divided
+ * by the probability of picking it, so the image stays right on average.
+ * The samples are picked from the pixel and the path of the ray, so the
+ * image does not depend on the number of threads.</li>
+ * </ul>
+ *
+ * @author 0036502252
+ *
+ */
+public final class LightSampling {
+	/**
+	 * The default lighting: light does not fall off, and all the light
+	 * sources light every point.
+	 */
+	public static final LightSampling DEFAULT = new LightSampling(
+			Double.POSITIVE_INFINITY, 0);
+
+	/**
+	 * The distance at which light is half as intense as at its source.
+	 */
+	private final double falloff;
+	/**
+	 * The number of light sources sampled per shaded point, or 0 for all.
+	 */
+	private final int samples;
+
+	/**
+	 * Constructs a new {@link LightSampling}.
+	 *
+	 * @param falloff
+	 *            the distance at which light is half as intense as at its
+	 *            source, {@link Double#POSITIVE_INFINITY} if light does not
+	 *            fall off
+	 * @param samples
+	 *            the number of light sources sampled per shaded point, or 0
+	 *            to use all of them
+	 * @throws IllegalArgumentException
+	 *             if the distance is not positive or the number of samples
+	 *             is negative
+	 */
+	public LightSampling(double falloff, int samples) {
+		if (!(falloff > 0) || samples < 0) {
+			throw new IllegalArgumentException(
+					"The falloff distance must be positive and the number of "
+							+ "samples must not be negative!");
+		}
+		this.falloff = falloff;
+		this.samples = samples;
+	}
+
+	/**
+	 * @return the distance at which light is half as intense as at its
+	 *         source, {@link Double#POSITIVE_INFINITY} if light does not fall
+	 *         off
+	 */
+	public double getFalloff() {
+		return falloff;
+	}
+
+	/**
+	 * @return the number of light sources sampled per shaded point, or 0 for
+	 *         all
+	 */
+	public int getSamples() {
+		return samples;
+	}
+
+	/**
+	 * Calculates the part of the intensity of light left at a distance from
+	 * its source.
+	 *
+	 * @param distance
+	 *            the distance from the source
+	 * @return the part of the intensity left, exactly 1 if light does not
+	 *         fall off
+	 */
+	public double attenuation(double distance) {
+		if (falloff == Double.POSITIVE_INFINITY) {
+			return 1;
+		}
+		double d = distance / falloff;
+		return 1 / (1 + d * d);
+	}
+
+	/**
+	 * Calculates the radius of influence of a light source: the distance
+	 * beyond which it adds less than a whole intensity to any component of a
+	 * color.
+	 *
+	 * @param intensity
+	 *            the greatest intensity of the light source, multiplied by
+	 *            the greatest diffuse or reflective coefficient in the scene
+	 * @return the radius of influence, {@link Double#POSITIVE_INFINITY} if
+	 *         light does not fall off
+	 */
+	public double influenceRadius(double intensity) {
+		if (falloff == Double.POSITIVE_INFINITY) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return intensity > 1 ? falloff * Math.sqrt(intensity - 1) : 0;
+	}
+}
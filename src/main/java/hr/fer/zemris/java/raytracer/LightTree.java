@@ -0,0 +1,256 @@
+package hr.fer.zemris.java.raytracer;
+
+import java.util.Arrays;
+
+import hr.fer.zemris.math.MutableVector3;
+import hr.fer.zemris.math.Vector3Array;
+
+/**
+ * A bounding volume hierarchy over the spheres of influence of light sources,
+ * for gathering the light sources which can light a point. It is laid out
+ * like the hierarchy of a {@link MappedScene}: the nodes are kept in
+ * primitive arrays, with the left child of an inner node right after it, and
+ * a leaf holding a range of the light sources, reordered so that the light
+ * sources of a leaf are next to each other.
+ * <p>
+ * Light sources with an unbounded influence are kept apart and gathered for
+ * every point, and the ones with no influence at all are left out.
+ *
+ * @author 0036502252
+ *
+ */
+class LightTree {
+	/**
+	 * The largest number of light sources in a leaf of the hierarchy.
+	 */
+	private static final int LEAF_SIZE = 4;
+
+	/**
+	 * The x-coordinates of the light sources.
+	 */
+	private final double[] x;
+	/**
+	 * The y-coordinates of the light sources.
+	 */
+	private final double[] y;
+	/**
+	 * The z-coordinates of the light sources.
+	 */
+	private final double[] z;
+	/**
+	 * The squared radii of influence of the light sources.
+	 */
+	private final double[] radii2;
+	/**
+	 * The indexes of the light sources with an unbounded influence.
+	 */
+	private final int[] unbounded;
+	/**
+	 * The indexes of the light sources in the hierarchy, in the order of its
+	 * leaves.
+	 */
+	private final int[] order;
+	/**
+	 * The minimum and maximum corners of the bounds of the nodes.
+	 */
+	private double[] bounds = new double[6 * 16];
+	/**
+	 * The links of the nodes: the first light source and their number for a
+	 * leaf, the right child and <code>-1 - axis</code> for an inner node.
+	 */
+	private int[] links = new int[2 * 16];
+	/**
+	 * The number of nodes.
+	 */
+	private int size;
+	/**
+	 * The depth of the hierarchy.
+	 */
+	private int depth;
+
+	/**
+	 * Builds a hierarchy over light sources.
+	 *
+	 * @param positions
+	 *            the positions of the light sources
+	 * @param radii
+	 *            the radii of influence of the light sources, which may be
+	 *            {@link Double#POSITIVE_INFINITY}
+	 */
+	LightTree(Vector3Array positions, double[] radii) {
+		int n = positions.size();
+		x = new double[n];
+		y = new double[n];
+		z = new double[n];
+		radii2 = new double[n];
+		int[] bounded = new int[n];
+		int[] unbounded = new int[n];
+		int boundedCount = 0;
+		int unboundedCount = 0;
+		for (int i = 0; i < n; i++) {
+			x[i] = positions.getX(i);
+			y[i] = positions.getY(i);
+			z[i] = positions.getZ(i);
+			radii2[i] = radii[i] * radii[i];
+			if (radii[i] == Double.POSITIVE_INFINITY) {
+				unbounded[unboundedCount++] = i;
+			} else if (radii[i] > 0) {
+				bounded[boundedCount++] = i;
+			}
+		}
+		this.unbounded = Arrays.copyOf(unbounded, unboundedCount);
+		order = Arrays.copyOf(bounded, boundedCount);
+		if (boundedCount > 0) {
+			build(radii, 0, boundedCount, 1);
+		}
+	}
+
+	/**
+	 * Builds a node, and the nodes below it, over a range of the light
+	 * sources. They are split at the median of their positions along the
+	 * longest axis.
+	 *
+	 * @param radii
+	 *            the radii of influence of the light sources
+	 * @param first
+	 *            the position of the first light source in {@link #order}
+	 * @param count
+	 *            the number of light sources
+	 * @param level
+	 *            the level of the node, 1 for the root
+	 */
+	private void build(double[] radii, int first, int count, int level) {
+		int node = size++;
+		if (size > links.length / 2) {
+			bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+			links = Arrays.copyOf(links, 2 * links.length);
+		}
+		depth = Math.max(depth, level);
+
+		double[] box = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		double[] centers = box.clone();
+		for (int p = first; p < first + count; p++) {
+			int i = order[p];
+			double r = radii[i];
+			include(box, x[i] - r, y[i] - r, z[i] - r);
+			include(box, x[i] + r, y[i] + r, z[i] + r);
+			include(centers, x[i], y[i], z[i]);
+		}
+		System.arraycopy(box, 0, bounds, 6 * node, 6);
+
+		int axis = 0;
+		for (int a = 1; a < 3; a++) {
+			if (centers[a + 3] - centers[a] > centers[axis + 3]
+					- centers[axis]) {
+				axis = a;
+			}
+		}
+		if (count <= LEAF_SIZE || centers[axis + 3] == centers[axis]) {
+			links[2 * node] = first;
+			links[2 * node + 1] = count;
+			return;
+		}
+
+		double[] key = axis == 0 ? x : axis == 1 ? y : z;
+		Integer[] sorted = new Integer[count];
+		for (int p = 0; p < count; p++) {
+			sorted[p] = order[first + p];
+		}
+		Arrays.sort(sorted, (a, b) -> Double.compare(key[a], key[b]));
+		for (int p = 0; p < count; p++) {
+			order[first + p] = sorted[p];
+		}
+
+		int middle = first + count / 2;
+		build(radii, first, middle - first, level + 1);
+		links[2 * node] = size;
+		links[2 * node + 1] = -1 - axis;
+		build(radii, middle, first + count - middle, level + 1);
+	}
+
+	/**
+	 * Enlarges a box so that it includes a point.
+	 *
+	 * @param box
+	 *            the minimum and maximum corner of the box
+	 * @param px
+	 *            x-coordinate of the point
+	 * @param py
+	 *            y-coordinate of the point
+	 * @param pz
+	 *            z-coordinate of the point
+	 */
+	private static void include(double[] box, double px, double py,
+			double pz) {
+		box[0] = Math.min(box[0], px);
+		box[1] = Math.min(box[1], py);
+		box[2] = Math.min(box[2], pz);
+		box[3] = Math.max(box[3], px);
+		box[4] = Math.max(box[4], py);
+		box[5] = Math.max(box[5], pz);
+	}
+
+	/**
+	 * @return the size of the stack needed by
+	 *         {@link #gather(MutableVector3, int[], int[])}
+	 */
+	int getStackSize() {
+		return depth + 1;
+	}
+
+	/**
+	 * Gathers the light sources which can light a point: the ones with an
+	 * unbounded influence, and the ones within whose radius of influence the
+	 * point lies.
+	 *
+	 * @param point
+	 *            the point
+	 * @param result
+	 *            receives the indexes of the light sources, and must have
+	 *            room for all of them
+	 * @param stack
+	 *            the nodes waiting to be visited, of at least
+	 *            {@link #getStackSize()} elements
+	 * @return the number of light sources gathered
+	 */
+	int gather(MutableVector3 point, int[] result, int[] stack) {
+		System.arraycopy(unbounded, 0, result, 0, unbounded.length);
+		int count = unbounded.length;
+		if (size == 0) {
+			return count;
+		}
+		double px = point.getX();
+		double py = point.getY();
+		double pz = point.getZ();
+
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			int b = 6 * node;
+			if (px < bounds[b] || py < bounds[b + 1] || pz < bounds[b + 2]
+					|| px > bounds[b + 3] || py > bounds[b + 4]
+					|| pz > bounds[b + 5]) {
+				continue;
+			}
+			int link = links[2 * node + 1];
+			if (link < 0) {
+				stack[top++] = links[2 * node];
+				stack[top++] = node + 1;
+				continue;
+			}
+			for (int p = links[2 * node], end = p + link; p < end; p++) {
+				int i = order[p];
+				double dx = px - x[i];
+				double dy = py - y[i];
+				double dz = pz - z[i];
+				if (dx * dx + dy * dy + dz * dz < radii2[i]) {
+					result[count++] = i;
+				}
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,725 @@
+package hr.fer.zemris.java.raytracer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import hr.fer.zemris.java.raytracer.model.LightSource;
+import hr.fer.zemris.java.raytracer.model.Point3D;
+import hr.fer.zemris.java.raytracer.model.Scene;
+import hr.fer.zemris.java.raytracer.model.Sphere;
+import hr.fer.zemris.math.MutableVector3;
+
+/**
+ * A scene of spheres and light sources, read straight from a file written by
+ * {@link SceneWriter}. The file is mapped into memory and nothing is parsed or
+ * copied, so even a scene of millions of spheres is ready right away, and
+ * several processes rendering the same file share a single copy of it in the
+ * page cache.
+ * <p>
+ * A file consists of a header followed by sections of primitive values, each
+ * starting at a multiple of 8 bytes and mapped on its own:
+ * <ol>
+ * <li>the header: {@link #FILE_MAGIC}, {@link #FILE_VERSION}, the numbers of
+ * spheres, light sources and hierarchy nodes, and the depth of the hierarchy,
+ * as ints, padded to {@link #FILE_HEADER_SIZE} bytes,</li>
+ * <li>the spheres: center and radius, 4 doubles per sphere,</li>
+ * <li>the materials of the spheres: <code>kdr, kdg, kdb, krr, krg, krb,
+ * krn</code>, reflectivity, transparency and refractive index, 10 doubles per
+ * sphere,</li>
+ * <li>the positions of the light sources, 3 doubles per light source,</li>
+ * <li>the colors of the light sources, 3 ints per light source,</li>
+ * <li>the bounds of the hierarchy nodes, minimum and maximum corner, 6
+ * doubles per node,</li>
+ * <li>the links of the hierarchy nodes, 2 ints per node.</li>
+ * </ol>
+ * The hierarchy is optional. It is a bounding volume hierarchy over the
+ * spheres, stored in depth-first order, so the left child of an inner node
+ * directly follows it. The links of a leaf are the index of its first sphere
+ * and the number of its spheres; the links of an inner node are the index of
+ * its right child and <code>-1 - axis</code>, where <code>axis</code> is the
+ * axis the spheres were split along.
+ * <p>
+ * Instances are immutable and can be used by many threads at once.
+ *
+ * @author 0036502252
+ * @see SceneWriter
+ *
+ */
+public final class MappedScene {
+	/**
+	 * Identifies a scene file; the characters <code>SCNE</code>.
+	 */
+	public static final int FILE_MAGIC = 0x53434E45;
+	/**
+	 * The version of the format of scene files.
+	 */
+	public static final int FILE_VERSION = 2;
+	/**
+	 * The size of the header of a scene file.
+	 */
+	public static final int FILE_HEADER_SIZE = 32;
+	/**
+	 * The byte order of a scene file.
+	 */
+	public static final ByteOrder FILE_BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+	/**
+	 * The number of doubles describing a sphere.
+	 */
+	static final int SPHERE_SIZE = 4;
+	/**
+	 * The number of doubles describing the material of a sphere.
+	 */
+	static final int MATERIAL_SIZE = 10;
+	/**
+	 * The number of doubles describing the bounds of a hierarchy node.
+	 */
+	static final int BOUNDS_SIZE = 6;
+
+	/**
+	 * The number of spheres.
+	 */
+	private final int sphereCount;
+	/**
+	 * The number of light sources.
+	 */
+	private final int lightCount;
+	/**
+	 * The number of hierarchy nodes, 0 if there is no hierarchy.
+	 */
+	private final int nodeCount;
+	/**
+	 * The depth of the hierarchy, counting the root as 1.
+	 */
+	private final int depth;
+	/**
+	 * The centers and radii of the spheres.
+	 */
+	private final DoubleBuffer spheres;
+	/**
+	 * The materials of the spheres.
+	 */
+	private final DoubleBuffer materials;
+	/**
+	 * The positions of the light sources.
+	 */
+	private final DoubleBuffer lights;
+	/**
+	 * The colors of the light sources.
+	 */
+	private final IntBuffer colors;
+	/**
+	 * The bounds of the hierarchy nodes.
+	 */
+	private final DoubleBuffer bounds;
+	/**
+	 * The links of the hierarchy nodes.
+	 */
+	private final IntBuffer links;
+
+	/**
+	 * Maps a scene file into memory.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the scene
+	 * @throws IOException
+	 *             if the file can not be read or is not a valid scene file
+	 */
+	public static MappedScene map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ)) {
+			return new MappedScene(file, channel);
+		}
+	}
+
+	/**
+	 * Constructs a new {@link MappedScene}, mapping the sections of the file.
+	 * The mappings stay valid after the channel is closed.
+	 *
+	 * @param file
+	 *            the file, used in error messages
+	 * @param channel
+	 *            the channel of the file
+	 * @throws IOException
+	 *             if the file can not be read or is not a valid scene file
+	 */
+	private MappedScene(Path file, FileChannel channel) throws IOException {
+		if (channel.size() < FILE_HEADER_SIZE) {
+			throw new IOException("Not a scene file: " + file);
+		}
+		ByteBuffer header = channel.map(MapMode.READ_ONLY, 0,
+				FILE_HEADER_SIZE).order(FILE_BYTE_ORDER);
+		if (header.getInt() != FILE_MAGIC) {
+			throw new IOException("Not a scene file: " + file);
+		}
+		int version = header.getInt();
+		if (version != FILE_VERSION) {
+			throw new IOException("Unsupported scene file version " + version
+					+ ": " + file);
+		}
+		sphereCount = header.getInt();
+		lightCount = header.getInt();
+		nodeCount = header.getInt();
+		depth = header.getInt();
+		if (sphereCount < 0 || lightCount < 0 || nodeCount < 0 || depth < 0
+				|| (nodeCount == 0) != (depth == 0)) {
+			throw new IOException("Corrupt scene file: " + file);
+		}
+
+		long[] offsets = sectionOffsets(sphereCount, lightCount, nodeCount);
+		if (channel.size() < offsets[offsets.length - 1]) {
+			throw new IOException("Truncated scene file: " + file);
+		}
+		spheres = section(channel, offsets, 0).asDoubleBuffer();
+		materials = section(channel, offsets, 1).asDoubleBuffer();
+		lights = section(channel, offsets, 2).asDoubleBuffer();
+		colors = section(channel, offsets, 3).asIntBuffer();
+		bounds = section(channel, offsets, 4).asDoubleBuffer();
+		links = section(channel, offsets, 5).asIntBuffer();
+	}
+
+	/**
+	 * Finds where the sections of a scene file start.
+	 *
+	 * @param sphereCount
+	 *            the number of spheres
+	 * @param lightCount
+	 *            the number of light sources
+	 * @param nodeCount
+	 *            the number of hierarchy nodes
+	 * @return the offsets of the sections, followed by the size of the file
+	 */
+	static long[] sectionOffsets(int sphereCount, int lightCount,
+			int nodeCount) {
+		long[] sizes = { 8L * SPHERE_SIZE * sphereCount,
+				8L * MATERIAL_SIZE * sphereCount, 8L * 3 * lightCount,
+				4L * 3 * lightCount, 8L * BOUNDS_SIZE * nodeCount,
+				4L * 2 * nodeCount };
+		long[] offsets = new long[sizes.length + 1];
+		offsets[0] = FILE_HEADER_SIZE;
+		for (int i = 0; i < sizes.length; i++) {
+			offsets[i + 1] = (offsets[i] + sizes[i] + 7) & ~7L;
+		}
+		return offsets;
+	}
+
+	/**
+	 * Maps a section of a scene file.
+	 *
+	 * @param channel
+	 *            the channel of the file
+	 * @param offsets
+	 *            the offsets of the sections
+	 * @param section
+	 *            the index of the section
+	 * @return the mapped section
+	 * @throws IOException
+	 *             if the section can not be mapped
+	 */
+	private static ByteBuffer section(FileChannel channel, long[] offsets,
+			int section) throws IOException {
+		return channel.map(MapMode.READ_ONLY, offsets[section],
+				offsets[section + 1] - offsets[section])
+				.order(FILE_BYTE_ORDER);
+	}
+
+	/**
+	 * @return the number of spheres
+	 */
+	public int getSphereCount() {
+		return sphereCount;
+	}
+
+	/**
+	 * @return the number of light sources
+	 */
+	public int getLightCount() {
+		return lightCount;
+	}
+
+	/**
+	 * @return true if the file holds a bounding volume hierarchy
+	 */
+	public boolean hasHierarchy() {
+		return nodeCount > 0;
+	}
+
+	/**
+	 * @return the size of the stack needed by
+	 *         {@link #findClosestIntersection(MutableVector3, MutableVector3, MutableVector3, int[])}
+	 */
+	public int getStackSize() {
+		return depth + 1;
+	}
+
+	/**
+	 * Creates a sphere of this scene. The sphere is a copy; meant for
+	 * converting small scenes, not for rendering.
+	 *
+	 * @param i
+	 *            the index of the sphere
+	 * @return the sphere
+	 */
+	public Sphere getSphere(int i) {
+		int s = SPHERE_SIZE * i;
+		int m = MATERIAL_SIZE * i;
+		return new Sphere(
+				new Point3D(spheres.get(s), spheres.get(s + 1),
+						spheres.get(s + 2)),
+				spheres.get(s + 3), materials.get(m), materials.get(m + 1),
+				materials.get(m + 2), materials.get(m + 3),
+				materials.get(m + 4), materials.get(m + 5),
+				materials.get(m + 6), materials.get(m + 7),
+				materials.get(m + 8), materials.get(m + 9));
+	}
+
+	/**
+	 * Creates a light source of this scene.
+	 *
+	 * @param i
+	 *            the index of the light source
+	 * @return the light source
+	 */
+	public LightSource getLight(int i) {
+		return new LightSource(
+				new Point3D(lights.get(3 * i), lights.get(3 * i + 1),
+						lights.get(3 * i + 2)),
+				colors.get(3 * i), colors.get(3 * i + 1),
+				colors.get(3 * i + 2));
+	}
+
+	/**
+	 * Copies this scene into a {@link Scene}, creating an object for each
+	 * sphere and light source.
+	 *
+	 * @return the scene
+	 */
+	public Scene toScene() {
+		Scene scene = new Scene();
+		for (int i = 0; i < sphereCount; i++) {
+			scene.add(getSphere(i));
+		}
+		for (int i = 0; i < lightCount; i++) {
+			scene.add(getLight(i));
+		}
+		return scene;
+	}
+
+	/**
+	 * @param sphere
+	 *            the index of the sphere
+	 * @return the diffuse coefficient of the sphere, for the color red
+	 */
+	public double getKdr(int sphere) {
+		return materials.get(MATERIAL_SIZE * sphere);
+	}
+
+	/**
+	 * @param sphere
+	 *            the index of the sphere
+	 * @return the diffuse coefficient of the sphere, for the color green
+	 */
+	public double getKdg(int sphere) {
+		return materials.get(MATERIAL_SIZE * sphere + 1);
+	}
+
+	/**
+	 * @param sphere
+	 *            the index of the sphere
+	 * @return the diffuse coefficient of the sphere, for the color blue
+	 */
+	public double getKdb(int sphere) {
+		return materials.get(MATERIAL_SIZE * sphere + 2);
+	}
+
+	/**
+	 * @param sphere
+	 *            the index of the sphere
+	 * @return the reflective coefficient of the sphere, for the color red
+	 */
+	public double getKrr(int sphere) {
+		return materials.get(MATERIAL_SIZE * sphere + 3);
+	}
+
+	/**
+	 * @param sphere
+	 *            the index of the sphere
+	 * @return the reflective coefficient of the sphere, for the color green
+	 */
+	public double getKrg(int sphere) {
+		return materials.get(MATERIAL_SIZE * sphere + 4);
+	}
+
+	/**
+	 * @param sphere
+	 *            the index of the sphere
+	 * @return the reflective coefficient of the sphere, for the color blue
+	 */
+	public double getKrb(int sphere) {
+		return materials.get(MATERIAL_SIZE * sphere + 5);
+	}
+
+	/**
+	 * @param sphere
+	 *            the index of the sphere
+	 * @return the roughness index of the sphere
+	 */
+	public double getKrn(int sphere) {
+		return materials.get(MATERIAL_SIZE * sphere + 6);
+	}
+
+	/**
+	 * @param sphere
+	 *            the index of the sphere
+	 * @return the fraction of light the sphere reflects like a mirror
+	 */
+	public double getReflectivity(int sphere) {
+		return materials.get(MATERIAL_SIZE * sphere + 7);
+	}
+
+	/**
+	 * @param sphere
+	 *            the index of the sphere
+	 * @return the fraction of light which passes through the sphere
+	 */
+	public double getTransparency(int sphere) {
+		return materials.get(MATERIAL_SIZE * sphere + 8);
+	}
+
+	/**
+	 * @param sphere
+	 *            the index of the sphere
+	 * @return the refractive index of the sphere
+	 */
+	public double getRefractiveIndex(int sphere) {
+		return materials.get(MATERIAL_SIZE * sphere + 9);
+	}
+
+	/**
+	 * Calculates the normal of a sphere at a point of intersection, like
+	 * {@link Sphere#getNormal(MutableVector3, MutableVector3)}.
+	 *
+	 * @param sphere
+	 *            the index of the sphere
+	 * @param point
+	 *            the point of intersection
+	 * @param normal
+	 *            receives the normal
+	 */
+	public void getNormal(int sphere, MutableVector3 point,
+			MutableVector3 normal) {
+		int s = SPHERE_SIZE * sphere;
+		normal.set(spheres.get(s), spheres.get(s + 1), spheres.get(s + 2))
+				.sub(point).normalize();
+	}
+
+	/**
+	 * Finds the closest intersection of a ray with the spheres, with the same
+	 * result as intersecting each sphere with
+	 * {@link Sphere#findClosestRayIntersection(MutableVector3, MutableVector3, MutableVector3)}
+	 * and keeping the one with the smallest distance. Like there, a sphere
+	 * can be hit behind the start of the ray, since the distance is measured
+	 * along the whole line.
+	 * <p>
+	 * With a hierarchy, only the nodes which the line passes through and which
+	 * can hold a closer sphere than the closest one found so far are visited,
+	 * nearer child first. Without it, all the spheres are intersected.
+	 *
+	 * @param start
+	 *            the start of the ray
+	 * @param direction
+	 *            the normalized direction of the ray
+	 * @param point
+	 *            receives the point of the closest intersection
+	 * @param stack
+	 *            holds the nodes waiting to be visited; at least
+	 *            {@link #getStackSize()} long
+	 * @return the index of the intersected sphere, or -1 if none are found
+	 */
+	public int findClosestIntersection(MutableVector3 start,
+			MutableVector3 direction, MutableVector3 point, int[] stack) {
+		int closest = search(start, direction, Double.NEGATIVE_INFINITY,
+				stack);
+		if (closest != -1) {
+			intersectionPoint(closest, start.getX(), start.getY(),
+					start.getZ(), direction.getX(), direction.getY(),
+					direction.getZ(), point);
+		}
+		return closest;
+	}
+
+	/**
+	 * Finds the sphere a ray hits first, farther than the given distance from
+	 * its start, like
+	 * {@link Sphere#findRayHit(MutableVector3, MutableVector3, double)}. Used
+	 * for rays starting on the surface of a sphere.
+	 *
+	 * @param start
+	 *            the start of the ray
+	 * @param direction
+	 *            the normalized direction of the ray
+	 * @param minDistance
+	 *            hits closer than this are ignored
+	 * @param point
+	 *            receives the point of the hit
+	 * @param stack
+	 *            holds the nodes waiting to be visited; at least
+	 *            {@link #getStackSize()} long
+	 * @return the index of the hit sphere, or -1 if none are hit
+	 */
+	public int findRayHit(MutableVector3 start, MutableVector3 direction,
+			double minDistance, MutableVector3 point, int[] stack) {
+		int closest = search(start, direction, minDistance, stack);
+		if (closest != -1) {
+			double distance = hit(closest, start.getX(), start.getY(),
+					start.getZ(), direction.getX(), direction.getY(),
+					direction.getZ(), minDistance);
+			point.set(start).addScaled(direction, distance);
+		}
+		return closest;
+	}
+
+	/**
+	 * Finds the sphere with the smallest distance along a ray. With a minimum
+	 * distance of {@link Double#NEGATIVE_INFINITY}, the whole line of the ray
+	 * is searched, and distances are the ones of
+	 * {@link #intersect(int, double, double, double, double, double, double)};
+	 * otherwise only the part of the ray beyond the minimum distance is, and
+	 * distances are the ones of
+	 * {@link #hit(int, double, double, double, double, double, double, double)}.
+	 *
+	 * @param start
+	 *            the start of the ray
+	 * @param direction
+	 *            the normalized direction of the ray
+	 * @param minDistance
+	 *            hits closer than this are ignored
+	 * @param stack
+	 *            holds the nodes waiting to be visited
+	 * @return the index of the sphere, or -1 if there is none
+	 */
+	private int search(MutableVector3 start, MutableVector3 direction,
+			double minDistance, int[] stack) {
+		double sx = start.getX();
+		double sy = start.getY();
+		double sz = start.getZ();
+		double dx = direction.getX();
+		double dy = direction.getY();
+		double dz = direction.getZ();
+		boolean line = minDistance == Double.NEGATIVE_INFINITY;
+
+		int closest = -1;
+		double closestDistance = Double.POSITIVE_INFINITY;
+
+		if (nodeCount == 0) {
+			for (int i = 0; i < sphereCount; i++) {
+				double distance = line ? intersect(i, sx, sy, sz, dx, dy, dz)
+						: hit(i, sx, sy, sz, dx, dy, dz, minDistance);
+				if (distance < closestDistance) {
+					closest = i;
+					closestDistance = distance;
+				}
+			}
+			return closest;
+		}
+
+		double ix = 1 / dx;
+		double iy = 1 / dy;
+		double iz = 1 / dz;
+		int size = 0;
+		stack[size++] = 0;
+
+		while (size > 0) {
+			int node = stack[--size];
+			int b = BOUNDS_SIZE * node;
+
+			// the part of the line inside the bounds of the node
+			double t0 = (bounds.get(b) - sx) * ix;
+			double t1 = (bounds.get(b + 3) - sx) * ix;
+			double near = Math.min(t0, t1);
+			double far = Math.max(t0, t1);
+			t0 = (bounds.get(b + 1) - sy) * iy;
+			t1 = (bounds.get(b + 4) - sy) * iy;
+			near = Math.max(near, Math.min(t0, t1));
+			far = Math.min(far, Math.max(t0, t1));
+			t0 = (bounds.get(b + 2) - sz) * iz;
+			t1 = (bounds.get(b + 5) - sz) * iz;
+			near = Math.max(near, Math.min(t0, t1));
+			far = Math.min(far, Math.max(t0, t1));
+
+			if (!(near <= far) || near >= closestDistance
+					|| far <= minDistance) {
+				continue;
+			}
+
+			int first = links.get(2 * node);
+			int count = links.get(2 * node + 1);
+			if (count > 0) {
+				for (int i = first, end = first + count; i < end; i++) {
+					double distance = line
+							? intersect(i, sx, sy, sz, dx, dy, dz)
+							: hit(i, sx, sy, sz, dx, dy, dz, minDistance);
+					if (distance < closestDistance) {
+						closest = i;
+						closestDistance = distance;
+					}
+				}
+			} else {
+				int axis = -1 - count;
+				double d = axis == 0 ? dx : axis == 1 ? dy : dz;
+				// the left child holds the spheres with lower coordinates
+				if (d < 0) {
+					stack[size++] = node + 1;
+					stack[size++] = first;
+				} else {
+					stack[size++] = first;
+					stack[size++] = node + 1;
+				}
+			}
+		}
+		return closest;
+	}
+
+	/**
+	 * Finds where a ray first hits a sphere, like
+	 * {@link Sphere#findRayHit(MutableVector3, MutableVector3, double)}.
+	 *
+	 * @param sphere
+	 *            the index of the sphere
+	 * @param sx
+	 *            x-coordinate of the start of the ray
+	 * @param sy
+	 *            y-coordinate of the start of the ray
+	 * @param sz
+	 *            z-coordinate of the start of the ray
+	 * @param dx
+	 *            x-coordinate of the direction of the ray
+	 * @param dy
+	 *            y-coordinate of the direction of the ray
+	 * @param dz
+	 *            z-coordinate of the direction of the ray
+	 * @param minDistance
+	 *            hits closer than this are ignored
+	 * @return the distance of the hit, or {@link Double#POSITIVE_INFINITY} if
+	 *         there is none
+	 */
+	private double hit(int sphere, double sx, double sy, double sz,
+			double dx, double dy, double dz, double minDistance) {
+		int s = SPHERE_SIZE * sphere;
+		double ox = sx - spheres.get(s);
+		double oy = sy - spheres.get(s + 1);
+		double oz = sz - spheres.get(s + 2);
+		double radius = spheres.get(s + 3);
+
+		double b = 2 * (dx * ox + dy * oy + dz * oz);
+		double c = ox * ox + oy * oy + oz * oz - radius * radius;
+		double discriminant = b * b - 4 * c;
+
+		if (discriminant < 0)
+			return Double.POSITIVE_INFINITY;
+
+		double near = (-b - Math.sqrt(discriminant)) / 2.0;
+		if (near > minDistance)
+			return near;
+		double far = (-b + Math.sqrt(discriminant)) / 2.0;
+		return far > minDistance ? far : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Intersects the line of a ray with a sphere, like
+	 * {@link Sphere#findClosestRayIntersection(MutableVector3, MutableVector3, MutableVector3)}.
+	 *
+	 * @param sphere
+	 *            the index of the sphere
+	 * @param sx
+	 *            x-coordinate of the start of the ray
+	 * @param sy
+	 *            y-coordinate of the start of the ray
+	 * @param sz
+	 *            z-coordinate of the start of the ray
+	 * @param dx
+	 *            x-coordinate of the direction of the ray
+	 * @param dy
+	 *            y-coordinate of the direction of the ray
+	 * @param dz
+	 *            z-coordinate of the direction of the ray
+	 * @return the distance of the intersection, or {@link Double#NaN} if there
+	 *         is none
+	 */
+	private double intersect(int sphere, double sx, double sy, double sz,
+			double dx, double dy, double dz) {
+		int s = SPHERE_SIZE * sphere;
+		double ox = sx - spheres.get(s);
+		double oy = sy - spheres.get(s + 1);
+		double oz = sz - spheres.get(s + 2);
+		double radius = spheres.get(s + 3);
+
+		double b = 2 * (dx * ox + dy * oy + dz * oz);
+		double c = ox * ox + oy * oy + oz * oz - radius * radius;
+		double discriminant = b * b - 4 * c;
+
+		if (discriminant < 0)
+			return Double.NaN;
+		return (-b - Math.sqrt(discriminant)) / 2.0;
+	}
+
+	/**
+	 * Calculates the point of intersection of a ray with a sphere it
+	 * intersects, like
+	 * {@link Sphere#findClosestRayIntersection(MutableVector3, MutableVector3, MutableVector3)}.
+	 *
+	 * @param sphere
+	 *            the index of the sphere
+	 * @param sx
+	 *            x-coordinate of the start of the ray
+	 * @param sy
+	 *            y-coordinate of the start of the ray
+	 * @param sz
+	 *            z-coordinate of the start of the ray
+	 * @param dx
+	 *            x-coordinate of the direction of the ray
+	 * @param dy
+	 *            y-coordinate of the direction of the ray
+	 * @param dz
+	 *            z-coordinate of the direction of the ray
+	 * @param point
+	 *            receives the point of intersection
+	 */
+	private void intersectionPoint(int sphere, double sx, double sy,
+			double sz, double dx, double dy, double dz, MutableVector3 point) {
+		int s = SPHERE_SIZE * sphere;
+		double ox = sx - spheres.get(s);
+		double oy = sy - spheres.get(s + 1);
+		double oz = sz - spheres.get(s + 2);
+		double radius = spheres.get(s + 3);
+
+		double b = 2 * (dx * ox + dy * oy + dz * oz);
+		double c = ox * ox + oy * oy + oz * oz - radius * radius;
+		double discriminant = b * b - 4 * c;
+
+		double d1 = (-b + Math.sqrt(discriminant)) / 2.0;
+		double d2 = (-b - Math.sqrt(discriminant)) / 2.0;
+
+		double nearestDistance;
+
+		if (d1 < 0 && d2 > 0) {
+			nearestDistance = d2;
+		} else if (d1 > 0 && d2 < 0) {
+			nearestDistance = d1;
+		} else if (d1 < 0 && d2 < 0) {
+			nearestDistance = Math.max(d1, d2);
+		} else {
+			nearestDistance = Math.min(d1, d2);
+		}
+
+		point.set(sx + dx * nearestDistance, sy + dy * nearestDistance,
+				sz + dz * nearestDistance);
+	}
+}
@@ -0,0 +1,112 @@
+package hr.fer.zemris.java.raytracer;
+
+/**
+ * Limits the secondary rays traced by {@link RayTracerProducerImpl} for
+ * mirror reflections and refraction. Every secondary ray carries a weight: the
+ * product of the reflectivities and transparencies along its path, which
+ * bounds how much it can add to the color of its pixel.
+ * <ul>
+ * <li>No ray is traced deeper than the maximum depth, the primary ray being at
+ * depth 0.</li>
+ * <li>Rays whose weight is below the minimum weight are not traced at
+ * all.</li>
+ * <li>Rays whose weight is below the roulette weight play Russian roulette:
+ * they survive with a probability proportional to their weight, and the ones
+ * which survive count for more, so the image stays right on average.</li>
+ * <li>A frame traces at most the given number of secondary rays per pixel, on
+ * average. The budget is spread evenly over the rows of the image, and a row
+ * passes what it did not use on to the next rows.</li>
+ * </ul>
+ * The roulette is decided from the pixel and the path of the ray, not by a
+ * shared random generator, so an image rendered with an unlimited budget does
+ * not depend on the number of threads.
+ *
+ * @author 0036502252
+ *
+ */
+public final class RayBudget {
+	/**
+	 * The default budget: up to 5 bounces, rays below 1/256 are dropped,
+	 * rays below 0.1 play roulette, and 4 secondary rays per pixel.
+	 */
+	public static final RayBudget DEFAULT = new RayBudget(5, 1. / 256, 0.1,
+			4);
+	/**
+	 * Traces no secondary rays, only the local Phong shading.
+	 */
+	public static final RayBudget NONE = new RayBudget(0, 1, 0, 0);
+
+	/**
+	 * The maximum depth of a secondary ray.
+	 */
+	private final int maxDepth;
+	/**
+	 * Rays with a weight below this are not traced.
+	 */
+	private final double minWeight;
+	/**
+	 * Rays with a weight below this play Russian roulette.
+	 */
+	private final double rouletteWeight;
+	/**
+	 * The average number of secondary rays per pixel a frame may trace.
+	 */
+	private final double raysPerPixel;
+
+	/**
+	 * Constructs a new {@link RayBudget}.
+	 *
+	 * @param maxDepth
+	 *            the maximum depth of a secondary ray
+	 * @param minWeight
+	 *            rays with a weight below this are not traced
+	 * @param rouletteWeight
+	 *            rays with a weight below this play Russian roulette
+	 * @param raysPerPixel
+	 *            the average number of secondary rays per pixel a frame may
+	 *            trace
+	 * @throws IllegalArgumentException
+	 *             if an argument is negative
+	 */
+	public RayBudget(int maxDepth, double minWeight, double rouletteWeight,
+			double raysPerPixel) {
+		if (maxDepth < 0 || !(minWeight >= 0) || !(rouletteWeight >= 0)
+				|| !(raysPerPixel >= 0)) {
+			throw new IllegalArgumentException(
+					"The limits of secondary rays must not be negative!");
+		}
+		this.maxDepth = maxDepth;
+		this.minWeight = minWeight;
+		this.rouletteWeight = rouletteWeight;
+		this.raysPerPixel = raysPerPixel;
+	}
+
+	/**
+	 * @return the maximum depth of a secondary ray
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * @return rays with a weight below this are not traced
+	 */
+	public double getMinWeight() {
+		return minWeight;
+	}
+
+	/**
+	 * @return rays with a weight below this play Russian roulette
+	 */
+	public double getRouletteWeight() {
+		return rouletteWeight;
+	}
+
+	/**
+	 * @return the average number of secondary rays per pixel a frame may
+	 *         trace
+	 */
+	public double getRaysPerPixel() {
+		return raysPerPixel;
+	}
+}
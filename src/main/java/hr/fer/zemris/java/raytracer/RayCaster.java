@@ -5,7 +5,8 @@ import hr.fer.zemris.java.raytracer.viewer.RayTracerViewer;
 
 /**
  * Starts the ray caster in single-threaded mode with a predefined scene and
- * point of view.
+ * point of view. The colors of the previous frame are reused while the
+ * camera moves, as described by {@link Reprojection}.
  * 
  * @author 0036502252
  *
@@ -20,8 +21,11 @@ public class RayCaster {
 	public static void main(String[] args) {
 		boolean useMultithreading = false;
 
-		RayTracerViewer.show(new RayTracerProducerImpl(useMultithreading),
-				new Point3D(10, 0, 0), new Point3D(0, 0, 0),
-				new Point3D(0, 0, 10), 20, 20);
+		RayTracerProducerImpl producer = new RayTracerProducerImpl(
+				useMultithreading);
+		producer.setReprojection(Reprojection.DEFAULT);
+
+		RayTracerViewer.show(producer, new Point3D(10, 0, 0),
+				new Point3D(0, 0, 0), new Point3D(0, 0, 10), 20, 20);
 	}
 }
@@ -0,0 +1,173 @@
+package hr.fer.zemris.java.raytracer;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the rays traced for a frame by {@link RayTracerProducerImpl}, per
+ * depth: the rays which look for the closest object, and the shadow rays cast
+ * from the points they hit towards the light sources. Also counts the
+ * secondary rays which were not traced, by the reason they were dropped, and
+ * the pixels whose primary rays hit an object, of which the ones whose color
+ * was reused from the previous frame, as described by {@link Reprojection}.
+ * <p>
+ * Calculation jobs count into their own arrays and add them here when they
+ * are done, so the counters cost nothing per ray.
+ *
+ * @author 0036502252
+ *
+ */
+public class RayCounters {
+	/**
+	 * The rays traced at each depth.
+	 */
+	private final AtomicLongArray rays;
+	/**
+	 * The shadow rays cast at each depth.
+	 */
+	private final AtomicLongArray shadowRays;
+	/**
+	 * The secondary rays dropped for their weight, directly or by the
+	 * roulette, and for the budget.
+	 */
+	private final AtomicLongArray dropped = new AtomicLongArray(3);
+	/**
+	 * The pixels which hit an object, and the ones of them whose color was
+	 * reused.
+	 */
+	private final AtomicLongArray pixels = new AtomicLongArray(2);
+
+	/**
+	 * Constructs new zero {@link RayCounters}.
+	 *
+	 * @param maxDepth
+	 *            the maximum depth of a ray
+	 */
+	public RayCounters(int maxDepth) {
+		rays = new AtomicLongArray(maxDepth + 1);
+		shadowRays = new AtomicLongArray(maxDepth + 1);
+	}
+
+	/**
+	 * Adds the counts of a calculation job.
+	 *
+	 * @param rays
+	 *            the rays traced at each depth
+	 * @param shadowRays
+	 *            the shadow rays cast at each depth
+	 * @param weight
+	 *            the secondary rays dropped for their weight
+	 * @param roulette
+	 *            the secondary rays dropped by the roulette
+	 * @param budget
+	 *            the secondary rays dropped for the budget
+	 * @param hit
+	 *            the pixels which hit an object
+	 * @param reused
+	 *            the pixels whose color was reused
+	 */
+	void add(long[] rays, long[] shadowRays, long weight, long roulette,
+			long budget, long hit, long reused) {
+		for (int i = 0; i < rays.length; i++) {
+			this.rays.addAndGet(i, rays[i]);
+			this.shadowRays.addAndGet(i, shadowRays[i]);
+		}
+		dropped.addAndGet(0, weight);
+		dropped.addAndGet(1, roulette);
+		dropped.addAndGet(2, budget);
+		pixels.addAndGet(0, hit);
+		pixels.addAndGet(1, reused);
+	}
+
+	/**
+	 * @return the maximum depth of a ray
+	 */
+	public int getMaxDepth() {
+		return rays.length() - 1;
+	}
+
+	/**
+	 * @param depth
+	 *            the depth, 0 for primary rays
+	 * @return the number of rays traced at the depth
+	 */
+	public long getRays(int depth) {
+		return rays.get(depth);
+	}
+
+	/**
+	 * @param depth
+	 *            the depth, 0 for primary rays
+	 * @return the number of shadow rays cast from the points hit at the depth
+	 */
+	public long getShadowRays(int depth) {
+		return shadowRays.get(depth);
+	}
+
+	/**
+	 * @return the number of secondary rays not traced because their weight
+	 *         was below the minimum
+	 */
+	public long getDroppedForWeight() {
+		return dropped.get(0);
+	}
+
+	/**
+	 * @return the number of secondary rays which lost the Russian roulette
+	 */
+	public long getDroppedByRoulette() {
+		return dropped.get(1);
+	}
+
+	/**
+	 * @return the number of secondary rays not traced because the budget of
+	 *         the frame was used up
+	 */
+	public long getDroppedForBudget() {
+		return dropped.get(2);
+	}
+
+	/**
+	 * @return the number of pixels whose primary ray hit an object
+	 */
+	public long getHitPixels() {
+		return pixels.get(0);
+	}
+
+	/**
+	 * @return the number of pixels whose color was reused from the previous
+	 *         frame
+	 */
+	public long getReusedPixels() {
+		return pixels.get(1);
+	}
+
+	/**
+	 * @return the part of the pixels which hit an object whose color was
+	 *         reused from the previous frame, 0 if none hit an object
+	 */
+	public double getReuseRatio() {
+		long hit = pixels.get(0);
+		return hit == 0 ? 0 : (double) pixels.get(1) / hit;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("Rays per depth:");
+		for (int depth = 0; depth < rays.length(); depth++) {
+			if (depth > 0 && rays.get(depth) == 0) {
+				break;
+			}
+			sb.append(' ').append(depth).append(": ").append(rays.get(depth))
+					.append(" (").append(shadowRays.get(depth))
+					.append(" shadow)");
+		}
+		sb.append(", dropped for weight: ").append(dropped.get(0))
+				.append(", by roulette: ").append(dropped.get(1))
+				.append(", for budget: ").append(dropped.get(2));
+		sb.append(String.format(Locale.ROOT,
+				", reused pixels: %d of %d (%.1f%%)", pixels.get(1),
+				pixels.get(0), 100 * getReuseRatio()));
+		return sb.toString();
+	}
+}
@@ -1,5 +1,6 @@
 package hr.fer.zemris.java.raytracer;
 
+import java.util.Objects;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
 
@@ -11,7 +12,11 @@ import hr.fer.zemris.java.raytracer.model.Point3D;
 import hr.fer.zemris.java.raytracer.model.Ray;
 import hr.fer.zemris.java.raytracer.model.RayIntersection;
 import hr.fer.zemris.java.raytracer.model.Scene;
+import hr.fer.zemris.java.raytracer.model.Sphere;
 import hr.fer.zemris.java.raytracer.viewer.RayTracerViewer;
+import hr.fer.zemris.java.render.RenderRuntime;
+import hr.fer.zemris.math.MutableVector3;
+import hr.fer.zemris.math.Vector3Array;
 
 /**
  * A simple ray casting algorithm implementation. Using a {@link Scene}, it
@@ -34,7 +39,7 @@ public class RayTracerProducerImpl implements IRayTracerProducer {
 	 */
 	private boolean useMultithreading;
 	/**
-	 * The thread pool used for multithreading.
+	 * The thread pool used for multithreading, owned by the render runtime.
 	 */
 	private ForkJoinPool pool;
 	/**
@@ -42,6 +47,51 @@ public class RayTracerProducerImpl implements IRayTracerProducer {
 	 * for.
 	 */
 	private static final int LINES_PER_THREAD = 16;
+	/**
+	 * The scene given to the constructor, prepared for rendering, or null if
+	 * the predefined scene is rendered.
+	 */
+	private PreparedScene scene;
+	/**
+	 * Limits the secondary rays of a frame.
+	 */
+	private volatile RayBudget budget = RayBudget.DEFAULT;
+	/**
+	 * How the shaded points are lit.
+	 */
+	private volatile LightSampling lighting = LightSampling.DEFAULT;
+	/**
+	 * When the colors of the previous frame are reused.
+	 */
+	private volatile Reprojection reprojection = Reprojection.NONE;
+	/**
+	 * What the last frame saw, or null if it was not kept.
+	 */
+	private volatile FrameHistory history;
+	/**
+	 * The rays counted while rendering the last frame, or null before the
+	 * first one.
+	 */
+	private volatile RayCounters lastCounters;
+	/**
+	 * The tiles the objects of the last frame were binned into, or null.
+	 */
+	private volatile ScreenTiles lastTiles;
+	/**
+	 * If true, the progress of each frame is printed to standard output.
+	 */
+	private volatile boolean progressLogEnabled = true;
+	/**
+	 * Secondary rays start on a surface, so hits closer than this to their
+	 * start are the surface itself and are ignored.
+	 */
+	private static final double SECONDARY_RAY_OFFSET = 1E-9;
+	/**
+	 * The radii of influence of the light sources are enlarged by this
+	 * fraction, so that rounding errors can not leave out a light source
+	 * which still adds a whole intensity.
+	 */
+	private static final double LIGHT_RADIUS_PADDING = 1E-9;
 
 	/**
 	 * Constructs a new {@link RayTracerProducerImpl}.
@@ -51,9 +101,299 @@ public class RayTracerProducerImpl implements IRayTracerProducer {
 	 *            threads.
 	 */
 	public RayTracerProducerImpl(boolean useMultithreading) {
+		this(useMultithreading, RenderRuntime.shared());
+	}
+
+	/**
+	 * Constructs a new {@link RayTracerProducerImpl}.
+	 * 
+	 * @param useMultithreading
+	 *            if true, the implementation will be run using multiple
+	 *            threads.
+	 * @param runtime
+	 *            the runtime whose fork/join pool is used for multithreading
+	 */
+	public RayTracerProducerImpl(boolean useMultithreading,
+			RenderRuntime runtime) {
 		this.useMultithreading = useMultithreading;
 		if (useMultithreading) {
-			this.pool = new ForkJoinPool();
+			this.pool = runtime.forkJoinPool();
+		}
+	}
+
+	/**
+	 * Constructs a new {@link RayTracerProducerImpl} which renders the given
+	 * scene instead of the predefined one. The scene is prepared for rendering
+	 * once, here, so it must not be changed afterwards.
+	 * 
+	 * @param useMultithreading
+	 *            if true, the implementation will be run using multiple
+	 *            threads.
+	 * @param runtime
+	 *            the runtime whose fork/join pool is used for multithreading
+	 * @param scene
+	 *            the scene to be rendered
+	 */
+	public RayTracerProducerImpl(boolean useMultithreading,
+			RenderRuntime runtime, Scene scene) {
+		this(useMultithreading, runtime);
+		this.scene = new PreparedScene(Objects.requireNonNull(scene));
+	}
+
+	/**
+	 * Constructs a new {@link RayTracerProducerImpl} which renders a scene
+	 * mapped from a scene file. The spheres are intersected straight from the
+	 * mapped file, using its hierarchy if it has one.
+	 * 
+	 * @param useMultithreading
+	 *            if true, the implementation will be run using multiple
+	 *            threads.
+	 * @param runtime
+	 *            the runtime whose fork/join pool is used for multithreading
+	 * @param scene
+	 *            the scene to be rendered
+	 */
+	public RayTracerProducerImpl(boolean useMultithreading,
+			RenderRuntime runtime, MappedScene scene) {
+		this(useMultithreading, runtime);
+		this.scene = new PreparedScene(Objects.requireNonNull(scene));
+	}
+
+	/**
+	 * Sets the limits of the secondary rays traced for mirror reflections and
+	 * refraction, used from the next frame on.
+	 * 
+	 * @param budget
+	 *            the limits, {@link RayBudget#NONE} for local shading only
+	 */
+	public void setRayBudget(RayBudget budget) {
+		this.budget = Objects.requireNonNull(budget);
+	}
+
+	/**
+	 * @return the limits of the secondary rays
+	 */
+	public RayBudget getRayBudget() {
+		return budget;
+	}
+
+	/**
+	 * Sets how the shaded points are lit, used from the next frame on.
+	 * 
+	 * @param lighting
+	 *            the falloff of light and the number of light sources sampled
+	 *            per point, {@link LightSampling#DEFAULT} for all light sources
+	 *            without falloff
+	 */
+	public void setLightSampling(LightSampling lighting) {
+		this.lighting = Objects.requireNonNull(lighting);
+	}
+
+	/**
+	 * @return how the shaded points are lit
+	 */
+	public LightSampling getLightSampling() {
+		return lighting;
+	}
+
+	/**
+	 * Sets when the colors of the previous frame are reused, used from the
+	 * next frame on.
+	 * 
+	 * @param reprojection
+	 *            when colors are reused, {@link Reprojection#NONE} to trace
+	 *            every pixel
+	 */
+	public void setReprojection(Reprojection reprojection) {
+		this.reprojection = Objects.requireNonNull(reprojection);
+	}
+
+	/**
+	 * @return when the colors of the previous frame are reused
+	 */
+	public Reprojection getReprojection() {
+		return reprojection;
+	}
+
+	/**
+	 * Turns the progress lines printed to standard output during each frame
+	 * on or off. They are on by default.
+	 * 
+	 * @param enabled
+	 *            true to print the progress of each frame
+	 */
+	public void setProgressLogEnabled(boolean enabled) {
+		this.progressLogEnabled = enabled;
+	}
+
+	/**
+	 * @return true if the progress of each frame is printed to standard
+	 *         output
+	 */
+	public boolean isProgressLogEnabled() {
+		return progressLogEnabled;
+	}
+
+	/**
+	 * @return the rays counted while rendering the last frame, or null before
+	 *         the first one
+	 */
+	public RayCounters getLastCounters() {
+		return lastCounters;
+	}
+
+	/**
+	 * @return the tiles the objects of the last frame were binned into, or
+	 *         null before the first frame and for mapped scenes
+	 */
+	ScreenTiles getLastTiles() {
+		return lastTiles;
+	}
+
+	/**
+	 * A scene prepared for rendering. The objects are kept in an array, with
+	 * the spheres picked out so they can be intersected without creating any
+	 * objects, and the light sources are kept in primitive arrays. A mapped
+	 * scene keeps its spheres in the mapped file instead.
+	 */
+	private static class PreparedScene {
+		/**
+		 * The mapped scene holding the spheres, or null if they are objects.
+		 */
+		final MappedScene mapped;
+		/**
+		 * The objects of the scene.
+		 */
+		final GraphicalObject[] objects;
+		/**
+		 * The objects which are spheres, and null for the others.
+		 */
+		final Sphere[] spheres;
+		/**
+		 * The positions of the light sources.
+		 */
+		final Vector3Array lights;
+		/**
+		 * The intensities of red color of the light sources.
+		 */
+		final int[] red;
+		/**
+		 * The intensities of green color of the light sources.
+		 */
+		final int[] green;
+		/**
+		 * The intensities of blue color of the light sources.
+		 */
+		final int[] blue;
+		/**
+		 * The greatest diffuse or reflective coefficient of the objects, at
+		 * least 1 if some objects are not spheres.
+		 */
+		final double maxCoefficient;
+
+		/**
+		 * Prepares a scene for rendering.
+		 * 
+		 * @param scene
+		 *            the scene
+		 */
+		PreparedScene(Scene scene) {
+			mapped = null;
+			objects = scene.getObjects().toArray(new GraphicalObject[0]);
+			spheres = new Sphere[objects.length];
+			double max = 0;
+			for (int i = 0; i < objects.length; i++) {
+				if (objects[i] instanceof Sphere) {
+					spheres[i] = (Sphere) objects[i];
+					Sphere s = spheres[i];
+					max = max(max, s.getKdr(), s.getKdg(), s.getKdb(),
+							s.getKrr(), s.getKrg(), s.getKrb());
+				} else {
+					// the coefficients are only known at the intersections
+					max = Math.max(max, 1);
+				}
+			}
+			maxCoefficient = max;
+
+			int n = scene.getLights().size();
+			lights = new Vector3Array(n);
+			red = new int[n];
+			green = new int[n];
+			blue = new int[n];
+			for (int i = 0; i < n; i++) {
+				LightSource source = scene.getLights().get(i);
+				Point3D position = source.getPoint();
+				lights.set(i, position.x, position.y, position.z);
+				red[i] = source.getR();
+				green[i] = source.getG();
+				blue[i] = source.getB();
+			}
+		}
+
+		/**
+		 * Prepares a mapped scene for rendering.
+		 * 
+		 * @param scene
+		 *            the scene
+		 */
+		PreparedScene(MappedScene scene) {
+			mapped = scene;
+			objects = new GraphicalObject[0];
+			spheres = new Sphere[0];
+			double max = 0;
+			for (int i = 0, n = scene.getSphereCount(); i < n; i++) {
+				max = max(max, scene.getKdr(i), scene.getKdg(i),
+						scene.getKdb(i), scene.getKrr(i), scene.getKrg(i),
+						scene.getKrb(i));
+			}
+			maxCoefficient = max;
+
+			int n = scene.getLightCount();
+			lights = new Vector3Array(n);
+			red = new int[n];
+			green = new int[n];
+			blue = new int[n];
+			for (int i = 0; i < n; i++) {
+				LightSource source = scene.getLight(i);
+				Point3D position = source.getPoint();
+				lights.set(i, position.x, position.y, position.z);
+				red[i] = source.getR();
+				green[i] = source.getG();
+				blue[i] = source.getB();
+			}
+		}
+
+		/**
+		 * Finds the greatest of a number and some more.
+		 * 
+		 * @param max
+		 *            the number
+		 * @param values
+		 *            the other numbers
+		 * @return the greatest of them
+		 */
+		private static double max(double max, double... values) {
+			for (double value : values) {
+				max = Math.max(max, value);
+			}
+			return max;
+		}
+
+		/**
+		 * Calculates the radii of influence of the light sources.
+		 * 
+		 * @param lighting
+		 *            the falloff of light
+		 * @return the radii of influence
+		 */
+		double[] influenceRadii(LightSampling lighting) {
+			double[] radii = new double[red.length];
+			for (int i = 0; i < radii.length; i++) {
+				int intensity = Math.max(red[i], Math.max(green[i], blue[i]));
+				radii[i] = lighting.influenceRadius(intensity * maxCoefficient)
+						* (1 + LIGHT_RADIUS_PADDING);
+			}
+			return radii;
 		}
 	}
 
@@ -122,7 +462,12 @@ public class RayTracerProducerImpl implements IRayTracerProducer {
 		/**
 		 * The scene to be rendered.
 		 */
-		private Scene scene;
+		private PreparedScene scene;
+		/**
+		 * The objects of the scene binned into tiles of the screen, or null
+		 * if the primary rays are tested against the whole scene.
+		 */
+		private ScreenTiles tiles;
 
 		/**
 		 * The intensity of red color for each pixel in the image.
@@ -137,6 +482,177 @@ public class RayTracerProducerImpl implements IRayTracerProducer {
 		 */
 		private short[] blue;
 
+		/**
+		 * The point of view.
+		 */
+		private MutableVector3 eyePoint;
+		/**
+		 * The direction of the current ray from the eye.
+		 */
+		private MutableVector3 rayDirection;
+		/**
+		 * The point of the current intersection.
+		 */
+		private MutableVector3 point;
+		/**
+		 * The normal at the current intersection.
+		 */
+		private MutableVector3 normal;
+		/**
+		 * The position of the current light source.
+		 */
+		private MutableVector3 light;
+		/**
+		 * The normalized direction from the current light source to the
+		 * intersection.
+		 */
+		private MutableVector3 toLight;
+		/**
+		 * The normalized direction from the intersection to the eye.
+		 */
+		private MutableVector3 toEye;
+		/**
+		 * The normalized reflected light direction.
+		 */
+		private MutableVector3 reflected;
+		/**
+		 * The point of the closest intersection of a shadow ray.
+		 */
+		private MutableVector3 candidate;
+		/**
+		 * Receives the intersection points of single spheres.
+		 */
+		private MutableVector3 scratch;
+		/**
+		 * The nodes waiting to be visited while intersecting a mapped scene.
+		 */
+		private int[] stack;
+		/**
+		 * The last closest intersection with an object which is not a sphere.
+		 */
+		private RayIntersection intersection;
+		/**
+		 * The intensity of red color of the current pixel.
+		 */
+		private short r;
+		/**
+		 * The intensity of green color of the current pixel.
+		 */
+		private short g;
+		/**
+		 * The intensity of blue color of the current pixel.
+		 */
+		private short b;
+		/**
+		 * The reflectivity of the object whose color was determined last.
+		 */
+		private double reflectivity;
+		/**
+		 * The transparency of the object whose color was determined last.
+		 */
+		private double transparency;
+		/**
+		 * The refractive index of the object whose color was determined last.
+		 */
+		private double refractiveIndex;
+
+		/**
+		 * Limits the secondary rays.
+		 */
+		private RayBudget budget;
+		/**
+		 * Receives the counts of rays of this job.
+		 */
+		private RayCounters counters;
+		/**
+		 * How the shaded points are lit.
+		 */
+		private LightSampling lighting;
+		/**
+		 * The hierarchy over the radii of influence of the light sources, or
+		 * null if light does not fall off.
+		 */
+		private LightTree lightTree;
+		/**
+		 * Receives the indexes of the light sources gathered for a point.
+		 */
+		private int[] lightIndexes;
+		/**
+		 * The running sums of the estimated light of the gathered light
+		 * sources, for sampling them.
+		 */
+		private double[] lightWeights;
+		/**
+		 * The nodes waiting to be visited while gathering light sources.
+		 */
+		private int[] lightStack;
+		/**
+		 * Receives what the primary rays hit and reuses the colors of the
+		 * previous frame, or null if the frame is not kept.
+		 */
+		private FrameHistory frame;
+		/**
+		 * The pixels of this job which hit an object.
+		 */
+		private long hitPixels;
+		/**
+		 * The pixels of this job whose color was reused.
+		 */
+		private long reusedPixels;
+		/**
+		 * The rays traced at each depth by this job.
+		 */
+		private long[] rays;
+		/**
+		 * The shadow rays cast at each depth by this job.
+		 */
+		private long[] shadowRays;
+		/**
+		 * The secondary rays dropped for their weight by this job.
+		 */
+		private long droppedForWeight;
+		/**
+		 * The secondary rays dropped by the roulette in this job.
+		 */
+		private long droppedByRoulette;
+		/**
+		 * The secondary rays dropped for the budget by this job.
+		 */
+		private long droppedForBudget;
+		/**
+		 * The number of secondary rays this job may still trace.
+		 */
+		private double available;
+		/**
+		 * The index of the current pixel in the image.
+		 */
+		private long pixel;
+		/**
+		 * The points hit at each depth.
+		 */
+		private MutableVector3[] hitPoints;
+		/**
+		 * The normals at the points hit at each depth.
+		 */
+		private MutableVector3[] hitNormals;
+		/**
+		 * The directions of the secondary rays leaving the points hit at each
+		 * depth.
+		 */
+		private MutableVector3[] bounces;
+		/**
+		 * The intensity of red color seen along the last traced ray.
+		 */
+		private double seenRed;
+		/**
+		 * The intensity of green color seen along the last traced ray.
+		 */
+		private double seenGreen;
+		/**
+		 * The intensity of blue color seen along the last traced ray.
+		 */
+		private double seenBlue;
+
 		/**
 		 * Constructs a new {@link Calculation} job.
 		 * 
@@ -164,18 +680,35 @@ public class RayTracerProducerImpl implements IRayTracerProducer {
 		 *            normalized y-axis vector
 		 * @param scene
 		 *            the scene to be rendered
+		 * @param tiles
+		 *            the objects of the scene binned into tiles of the screen,
+		 *            or null to test the primary rays against the whole scene
 		 * @param red
 		 *            the intensity of red color for each pixel in the image
 		 * @param green
 		 *            the intensity of green color for each pixel in the image
 		 * @param blue
 		 *            the intensity of blue color for each pixel in the image
+		 * @param budget
+		 *            limits the secondary rays
+		 * @param counters
+		 *            receives the counts of rays
+		 * @param lighting
+		 *            how the shaded points are lit
+		 * @param lightTree
+		 *            the hierarchy over the radii of influence of the light
+		 *            sources, or null if light does not fall off
+		 * @param frame
+		 *            receives what the primary rays hit and reuses the colors
+		 *            of the previous frame, or null if the frame is not kept
 		 */
 		public Calculation(ForkJoinPool pool, int height, int width, int yMin,
 				int yMax, double horizontal, double vertical,
 				Point3D screenCorner, Point3D eye, Point3D xAxisNormalized,
-				Point3D yAxisNormalized, Scene scene, short[] red,
-				short[] green, short[] blue) {
+				Point3D yAxisNormalized, PreparedScene scene,
+				ScreenTiles tiles, short[] red, short[] green, short[] blue,
+				RayBudget budget, RayCounters counters, LightSampling lighting,
+				LightTree lightTree, FrameHistory frame) {
 			this.pool = pool;
 			this.height = height;
 			this.width = width;
@@ -188,9 +721,15 @@ public class RayTracerProducerImpl implements IRayTracerProducer {
 			this.xAxisNormalized = xAxisNormalized;
 			this.yAxisNormalized = yAxisNormalized;
 			this.scene = scene;
+			this.tiles = tiles;
 			this.red = red;
 			this.green = green;
 			this.blue = blue;
+			this.budget = budget;
+			this.counters = counters;
+			this.lighting = lighting;
+			this.lightTree = lightTree;
+			this.frame = frame;
 		}
 
 		/**
@@ -206,11 +745,12 @@ public class RayTracerProducerImpl implements IRayTracerProducer {
 
 			Calculation calc1 = new Calculation(pool, height, width, yMin,
 					(yMin + yMax) / 2, horizontal, vertical, screenCorner, eye,
-					xAxisNormalized, yAxisNormalized, scene, red, green, blue);
+					xAxisNormalized, yAxisNormalized, scene, tiles, red, green,
+					blue, budget, counters, lighting, lightTree, frame);
 			Calculation calc2 = new Calculation(pool, height, width,
 					(yMin + yMax) / 2, yMax, horizontal, vertical, screenCorner,
-					eye, xAxisNormalized, yAxisNormalized, scene, red, green,
-					blue);
+					eye, xAxisNormalized, yAxisNormalized, scene, tiles, red,
+					green, blue, budget, counters, lighting, lightTree, frame);
 
 			invokeAll(calc1, calc2);
 		}
@@ -218,184 +758,613 @@ public class RayTracerProducerImpl implements IRayTracerProducer {
 		/**
 		 * Calculates the color intensity (Phong model) for each pixel of the
 		 * image, depending on whether the ray finds an object in the scene.
+		 * The directions of the rays are calculated for a whole row at once,
+		 * and all the vectors are reused from pixel to pixel, so no objects
+		 * are created for scenes made of spheres. With {@link #tiles}, the
+		 * primary ray of a pixel is only tested against the objects of its
+		 * tile.
+		 * <p>
+		 * Each row adds its share of the budget of secondary rays to the rays
+		 * this job may trace, so rows which need few of them leave more for
+		 * the following ones.
 		 */
 		protected void calculate() {
+			eyePoint = new MutableVector3(eye.x, eye.y, eye.z);
+			point = new MutableVector3();
+			normal = new MutableVector3();
+			rayDirection = new MutableVector3();
+			light = new MutableVector3();
+			toLight = new MutableVector3();
+			toEye = new MutableVector3();
+			reflected = new MutableVector3();
+			candidate = new MutableVector3();
+			scratch = new MutableVector3();
+			if (scene.mapped != null) {
+				stack = new int[scene.mapped.getStackSize()];
+			}
+			lightIndexes = new int[scene.lights.size()];
+			lightWeights = new double[scene.lights.size()];
+			if (lightTree != null) {
+				lightStack = new int[lightTree.getStackSize()];
+			}
+			int maxDepth = budget.getMaxDepth();
+			rays = new long[maxDepth + 1];
+			shadowRays = new long[maxDepth + 1];
+			hitPoints = new MutableVector3[maxDepth];
+			hitNormals = new MutableVector3[maxDepth];
+			bounces = new MutableVector3[maxDepth];
+			for (int depth = 0; depth < maxDepth; depth++) {
+				hitPoints[depth] = new MutableVector3();
+				hitNormals[depth] = new MutableVector3();
+				bounces[depth] = new MutableVector3();
+			}
+			Vector3Array directions = new Vector3Array(width);
 
-			short[] rgb = new short[3];
 			int offset = yMin * width;
 			for (int y = yMin; y < yMax; y++) {
+				double yOffset = y * vertical / (height - 1);
+				for (int x = 0; x < width; x++) {
+					double xOffset = x * horizontal / (width - 1);
+					directions.set(x,
+							screenCorner.x + xAxisNormalized.x * xOffset
+									- yAxisNormalized.x * yOffset,
+							screenCorner.y + xAxisNormalized.y * xOffset
+									- yAxisNormalized.y * yOffset,
+							screenCorner.z + xAxisNormalized.z * xOffset
+									- yAxisNormalized.z * yOffset);
+				}
+				directions.sub(0, width, eyePoint);
+				directions.normalize(0, width);
+				available += budget.getRaysPerPixel() * width;
+
 				for (int x = 0; x < width; x++) {
+					directions.get(x, rayDirection);
+					pixel = offset;
 
-					Point3D screenPoint = screenCorner
-							.add(xAxisNormalized.scalarMultiply(
-									x * horizontal / (width - 1)))
-							.sub(yAxisNormalized.scalarMultiply(
-									y * vertical / (height - 1)));
+					rays[0]++;
+					int closest;
+					if (tiles == null) {
+						closest = findClosestIntersection(eyePoint,
+								rayDirection, point);
+					} else {
+						int tile = tiles.tile(x, y);
+						closest = findClosestIntersection(eyePoint,
+								rayDirection, point, tiles.getObjects(),
+								tiles.getStart(tile), tiles.getEnd(tile));
+					}
 
-					Ray ray = Ray.fromPoints(eye, screenPoint);
+					if (closest == -1) {
+						red[offset] = green[offset] = blue[offset] = 0;
+						if (frame != null) {
+							frame.record(offset, -1, point);
+						}
+					} else if (frame != null && frame.reuse(offset, closest,
+							point, eyePoint, red, green, blue)) {
+						hitPixels++;
+						reusedPixels++;
+					} else {
+						hitPixels++;
+						if (frame != null) {
+							frame.record(offset, closest, point);
+						}
+						shade(closest, eyePoint, rayDirection, 0, 1, 1);
+						red[offset] = seenRed > 255 ? 255 : (short) seenRed;
+						green[offset] = seenGreen > 255 ? 255
+								: (short) seenGreen;
+						blue[offset] = seenBlue > 255 ? 255 : (short) seenBlue;
+					}
 
-					RayIntersection closest = findClosestIntersection(scene,
-							ray);
+					offset++;
+				}
+			}
 
-					if (closest == null) {
-						rgb[0] = rgb[1] = rgb[2] = 0;
+			counters.add(rays, shadowRays, droppedForWeight,
+					droppedByRoulette, droppedForBudget, hitPixels,
+					reusedPixels);
+		}
+
+		/**
+		 * Determines the color seen along a ray which hit an object: the
+		 * local Phong color of the hit point, plus the colors seen along the
+		 * reflected and the refracted ray, as far as the object is a mirror
+		 * and transparent. Light which can not leave a sphere because of total
+		 * internal reflection is reflected instead. The color is stored into
+		 * {@link #seenRed}, {@link #seenGreen} and {@link #seenBlue}.
+		 * 
+		 * @param object
+		 *            the index of the hit object, whose point is in
+		 *            {@link #point}
+		 * @param origin
+		 *            the start of the ray
+		 * @param direction
+		 *            the normalized direction of the ray
+		 * @param depth
+		 *            the depth of the ray, 0 for primary rays
+		 * @param weight
+		 *            the weight of the ray
+		 * @param path
+		 *            identifies the path of the ray from the eye, used for
+		 *            the roulette
+		 */
+		private void shade(int object, MutableVector3 origin,
+				MutableVector3 direction, int depth, double weight,
+				long path) {
+			determineColor(object, origin, depth, path);
+			double seenR = r;
+			double seenG = g;
+			double seenB = b;
+			double reflection = reflectivity;
+			double transmission = transparency;
+
+			if (depth < budget.getMaxDepth()
+					&& (reflection > 0 || transmission > 0)) {
+				// the children overwrite the point and the normal
+				MutableVector3 hit = hitPoints[depth].set(point);
+				MutableVector3 inward = hitNormals[depth].set(normal);
+				MutableVector3 bounce = bounces[depth];
+				// sphere normals point inwards, so a positive cosine means
+				// the ray enters the object
+				double cosine = direction.dot(inward);
+
+				if (transmission > 0) {
+					double eta = cosine > 0 ? 1 / refractiveIndex
+							: refractiveIndex;
+					double k = 1 - eta * eta * (1 - cosine * cosine);
+					if (k < 0) {
+						reflection += transmission;
 					} else {
-						rgb = determineColor(scene, closest, eye);
+						double factor = eta * Math.abs(cosine) - Math.sqrt(k);
+						bounce.set(direction).scale(eta)
+								.addScaled(inward,
+										cosine > 0 ? -factor : factor)
+								.normalize();
+						double f = transmission * secondary(hit, bounce,
+								depth + 1, weight * transmission, 2 * path + 1);
+						seenR += f * seenRed;
+						seenG += f * seenGreen;
+						seenB += f * seenBlue;
 					}
+				}
 
-					red[offset] = rgb[0] > 255 ? 255 : rgb[0];
-					green[offset] = rgb[1] > 255 ? 255 : rgb[1];
-					blue[offset] = rgb[2] > 255 ? 255 : rgb[2];
+				if (reflection > 0) {
+					bounce.set(direction).addScaled(inward, -2 * cosine);
+					double f = reflection * secondary(hit, bounce, depth + 1,
+							weight * reflection, 2 * path);
+					seenR += f * seenRed;
+					seenG += f * seenGreen;
+					seenB += f * seenBlue;
+				}
+			}
 
-					offset++;
+			seenRed = seenR;
+			seenGreen = seenG;
+			seenBlue = seenB;
+		}
+
+		/**
+		 * Traces a secondary ray, unless it is dropped for its weight, by the
+		 * roulette or for the budget. The color seen along it is stored into
+		 * {@link #seenRed}, {@link #seenGreen} and {@link #seenBlue}.
+		 * 
+		 * @param origin
+		 *            the start of the ray, on a surface
+		 * @param direction
+		 *            the normalized direction of the ray
+		 * @param depth
+		 *            the depth of the ray
+		 * @param weight
+		 *            the weight of the ray
+		 * @param path
+		 *            identifies the path of the ray from the eye
+		 * @return the factor the color seen along the ray is scaled with: 0 if
+		 *         the ray was dropped or hit nothing, more than 1 if it
+		 *         survived the roulette, and 1 otherwise
+		 */
+		private double secondary(MutableVector3 origin,
+				MutableVector3 direction, int depth, double weight,
+				long path) {
+			if (weight < budget.getMinWeight()) {
+				droppedForWeight++;
+				return 0;
+			}
+			double factor = 1;
+			if (weight < budget.getRouletteWeight()) {
+				double survival = weight / budget.getRouletteWeight();
+				if (random(pixel, path) >= survival) {
+					droppedByRoulette++;
+					return 0;
 				}
+				factor = 1 / survival;
+			}
+			if (available < 1) {
+				droppedForBudget++;
+				return 0;
 			}
+			available--;
+
+			rays[depth]++;
+			int hit = findRayHit(origin, direction, point);
+			if (hit == -1) {
+				return 0;
+			}
+			shade(hit, origin, direction, depth, weight * factor, path);
+			return factor;
+		}
+
+		/**
+		 * Picks a random number for the roulette or the sampling of light
+		 * sources, from the pixel and the path of a ray. The same ray always
+		 * gets the same number.
+		 * 
+		 * @param pixel
+		 *            the index of the pixel
+		 * @param path
+		 *            identifies the path of the ray from the eye
+		 * @return a number between 0, inclusive, and 1, exclusive
+		 */
+		private static double random(long pixel, long path) {
+			long h = pixel * 0x9E3779B97F4A7C15L + path;
+			h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+			h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+			h ^= h >>> 31;
+			return (h >>> 11) * 0x1.0p-53;
 		}
 
 		/**
 		 * When an intersection occurs, determine the color of the pixel
 		 * depending on the intersected object and position relative to each of
-		 * the light sources.
+		 * the light sources. The intersection is the one last found by
+		 * {@link #findClosestIntersection(MutableVector3, MutableVector3, MutableVector3)},
+		 * or {@link #findRayHit(MutableVector3, MutableVector3, MutableVector3)},
+		 * whose point is in {@link #point}. The color is stored into
+		 * {@link #r}, {@link #g} and {@link #b}, and the mirror and refraction
+		 * properties of the object into {@link #reflectivity},
+		 * {@link #transparency} and {@link #refractiveIndex}.
+		 * <p>
+		 * If light falls off, only the light sources within whose radius of
+		 * influence the point lies are used, and if light sources are
+		 * sampled, only the sampled ones, as described by
+		 * {@link LightSampling}.
 		 * 
-		 * @param scene
-		 *            the scene to be rendered
-		 * @param intersection
-		 *            the point at which the intersection occured
-		 * @param eye
-		 *            the point of view
-		 * @return array where each value determines the intensity of the given
-		 *         color, where arr[0] is red, arr[1] is green, and arr[2] is
-		 *         blue.
+		 * @param object
+		 *            the index of the intersected object
+		 * @param origin
+		 *            the start of the ray which hit the object
+		 * @param depth
+		 *            the depth of the ray, 0 for primary rays
+		 * @param path
+		 *            identifies the path of the ray from the eye, used for
+		 *            sampling light sources
 		 */
-		private short[] determineColor(Scene scene,
-				RayIntersection intersection, Point3D eye) {
-			short[] rgb = new short[3];
-			rgb[0] = 15;
-			rgb[1] = 15;
-			rgb[2] = 15;
+		private void determineColor(int object, MutableVector3 origin,
+				int depth, long path) {
+			MappedScene mapped = scene.mapped;
+			Sphere sphere = mapped == null ? scene.spheres[object] : null;
+			double kdr, kdg, kdb, krr, krg, krb, krn;
+			if (mapped != null) {
+				mapped.getNormal(object, point, normal);
+				kdr = mapped.getKdr(object);
+				kdg = mapped.getKdg(object);
+				kdb = mapped.getKdb(object);
+				krr = mapped.getKrr(object);
+				krg = mapped.getKrg(object);
+				krb = mapped.getKrb(object);
+				krn = mapped.getKrn(object);
+				reflectivity = mapped.getReflectivity(object);
+				transparency = mapped.getTransparency(object);
+				refractiveIndex = mapped.getRefractiveIndex(object);
+			} else if (sphere != null) {
+				sphere.getNormal(point, normal);
+				kdr = sphere.getKdr();
+				kdg = sphere.getKdg();
+				kdb = sphere.getKdb();
+				krr = sphere.getKrr();
+				krg = sphere.getKrg();
+				krb = sphere.getKrb();
+				krn = sphere.getKrn();
+				reflectivity = sphere.getReflectivity();
+				transparency = sphere.getTransparency();
+				refractiveIndex = sphere.getRefractiveIndex();
+			} else {
+				Point3D n = intersection.getNormal();
+				normal.set(n.x, n.y, n.z);
+				kdr = intersection.getKdr();
+				kdg = intersection.getKdg();
+				kdb = intersection.getKdb();
+				krr = intersection.getKrr();
+				krg = intersection.getKrg();
+				krb = intersection.getKrb();
+				krn = intersection.getKrn();
+				reflectivity = 0;
+				transparency = 0;
+				refractiveIndex = 1;
+			}
+			toEye.set(point).sub(origin).normalize().negate();
+
+			r = 15;
+			g = 15;
+			b = 15;
 
-			for (LightSource source : scene.getLights()) {
+			int count = lightTree == null ? scene.lights.size()
+					: lightTree.gather(point, lightIndexes, lightStack);
+			int samples = lighting.getSamples();
+			boolean sampled = samples > 0 && count > samples;
+			double total = 0;
+			if (sampled) {
+				for (int k = 0; k < count; k++) {
+					int i = lightTree == null ? k : lightIndexes[k];
+					scene.lights.get(i, light);
+					total += estimate(i, lighting
+							.attenuation(point.distance(light)));
+					lightWeights[k] = total;
+				}
+			}
 
-				Ray position = Ray.fromPoints(source.getPoint(),
-						intersection.getPoint());
+			for (int s = 0, n = sampled ? samples : count; s < n; s++) {
+				int k = s;
+				double scale = 1;
+				if (sampled) {
+					// the roulette uses the non-negative paths
+					k = pick(lightWeights, count,
+							random(pixel, -1 - path * samples - s) * total);
+					double weight = lightWeights[k]
+							- (k == 0 ? 0 : lightWeights[k - 1]);
+					scale = total / (samples * weight);
+				}
+				int i = lightTree == null ? k : lightIndexes[k];
+				scene.lights.get(i, light);
+				double intensity = scale
+						* lighting.attenuation(point.distance(light));
+				toLight.set(point).sub(light).normalize();
+				shadowRays[depth]++;
 
-				RayIntersection closestIntersection = findClosestIntersection(
-						scene, position);
+				int blocker = findClosestIntersection(light, toLight,
+						candidate);
 
 				// check if the light source is obscured at this meeting point
-				if (closestIntersection == null
-						|| intersection.getPoint().sub(source.getPoint())
-								.norm() > THRESHOLD + closestIntersection
-										.getPoint().sub(source.getPoint())
-										.norm()) {
+				if (blocker == -1 || point.distance(light) > THRESHOLD
+						+ candidate.distance(light)) {
 
 					continue;
 				}
 
-				// calculate the diffuse and reflective component for each color
-				for (int i = 0; i < 3; i++) {
-					rgb[i] += calculateDiffuseComponent(i, source, intersection)
-							+ calculateReflectiveComponent(i, source,
-									intersection, eye);
-				}
+				// the diffuse component uses the direction from the light,
+				// the reflective one the direction towards it
+				double diffuse = toLight.dot(normal);
+				toLight.negate();
+				reflected.set(normal).scale(2. * toLight.dot(normal))
+						.sub(toLight).normalize();
+				double cosine = Math.pow(reflected.dot(toEye), krn);
 
+				r += calculateComponent(scene.red[i] * intensity, diffuse, kdr,
+						cosine, krr);
+				g += calculateComponent(scene.green[i] * intensity, diffuse,
+						kdg, cosine, krg);
+				b += calculateComponent(scene.blue[i] * intensity, diffuse,
+						kdb, cosine, krb);
 			}
-
-			return rgb;
 		}
 
 		/**
-		 * Finds the closest intersection for the given ray in the scene.
+		 * Estimates how much a light source can add to a point: its greatest
+		 * intensity left at the point.
 		 * 
-		 * @param scene
-		 *            the scene to be rendered
-		 * @param ray
-		 *            the ray to be checked
-		 * @return the closest possible intersection, or null if none are found
+		 * @param light
+		 *            the index of the light source
+		 * @param attenuation
+		 *            the part of its intensity left at the point
+		 * @return the estimate, never 0
 		 */
-		private RayIntersection findClosestIntersection(Scene scene, Ray ray) {
-			RayIntersection minIntersection = null;
-
-			for (GraphicalObject object : scene.getObjects()) {
-
-				RayIntersection i = object.findClosestRayIntersection(ray);
-				if (i == null)
-					continue;
+		private double estimate(int light, double attenuation) {
+			int intensity = Math.max(scene.red[light],
+					Math.max(scene.green[light], scene.blue[light]));
+			return Math.max(intensity, 1) * attenuation + Double.MIN_NORMAL;
+		}
 
-				if (minIntersection == null
-						|| i.getDistance() < minIntersection.getDistance()) {
-					minIntersection = i;
+		/**
+		 * Picks the element of running sums in whose range a value falls.
+		 * 
+		 * @param sums
+		 *            the running sums
+		 * @param count
+		 *            the number of sums
+		 * @param value
+		 *            the value, at least 0 and less than the last sum
+		 * @return the index of the first sum greater than the value
+		 */
+		private static int pick(double[] sums, int count, double value) {
+			int lo = 0;
+			int hi = count - 1;
+			while (lo < hi) {
+				int middle = (lo + hi) >>> 1;
+				if (sums[middle] > value) {
+					hi = middle;
+				} else {
+					lo = middle + 1;
 				}
 			}
-			return minIntersection;
+			return lo;
 		}
 
 		/**
-		 * Caclulates the diffuse component for the given color intensity, light
-		 * source and intersection.
-		 * 
-		 * @param rgb
-		 *            the color intensity: 0 for red, 1 for green, 2 for blue.
-		 * @param source
-		 *            the light source
-		 * @param intersection
-		 *            the intersection of ray and object from the scene
-		 * @return the diffuse component for the given color intensity
+		 * Finds the closest intersection for the given ray in the scene.
+		 * Spheres are intersected without creating any objects; for other
+		 * objects, the intersection they return is kept in
+		 * {@link #intersection}. The spheres of a mapped scene are left to
+		 * {@link MappedScene}.
 		 * 
+		 * @param start
+		 *            the start of the ray
+		 * @param direction
+		 *            the normalized direction of the ray
+		 * @param closestPoint
+		 *            receives the point of the closest intersection
+		 * @return the index of the intersected object, or -1 if none are
+		 *         found
 		 */
-		private short calculateDiffuseComponent(int rgb, LightSource source,
-				RayIntersection intersection) {
-
-			Point3D l = intersection.getPoint().sub(source.getPoint())
-					.normalize();
-			Point3D n = intersection.getNormal();
+		private int findClosestIntersection(MutableVector3 start,
+				MutableVector3 direction, MutableVector3 closestPoint) {
+			if (scene.mapped != null) {
+				return scene.mapped.findClosestIntersection(start, direction,
+						closestPoint, stack);
+			}
+			return findClosestIntersection(start, direction, closestPoint,
+					null, 0, scene.objects.length);
+		}
 
-			double scalar = l.scalarProduct(n);
+		/**
+		 * Finds the closest intersection for the given ray among some of the
+		 * objects of the scene, which must not be mapped.
+		 * 
+		 * @param start
+		 *            the start of the ray
+		 * @param direction
+		 *            the normalized direction of the ray
+		 * @param closestPoint
+		 *            receives the point of the closest intersection
+		 * @param indexes
+		 *            the indexes of the objects, in the order of the scene, or
+		 *            null for all the objects
+		 * @param from
+		 *            the position of the first object in the indexes,
+		 *            inclusive
+		 * @param to
+		 *            the position of the last object in the indexes,
+		 *            exclusive
+		 * @return the index of the intersected object, or -1 if none are
+		 *         found
+		 */
+		private int findClosestIntersection(MutableVector3 start,
+				MutableVector3 direction, MutableVector3 closestPoint,
+				int[] indexes, int from, int to) {
+			int closest = -1;
+			double minDistance = 0;
 
-			int colorIntensity = rgb == 0 ? source.getR()
-					: rgb == 1 ? source.getG() : source.getB();
+			for (int k = from; k < to; k++) {
+				int i = indexes == null ? k : indexes[k];
+				Sphere sphere = scene.spheres[i];
+				double distance;
+				RayIntersection found = null;
 
-			double coefficient = rgb == 0 ? intersection.getKdr()
-					: rgb == 1 ? intersection.getKdg() : intersection.getKdb();
+				if (sphere != null) {
+					distance = sphere.findClosestRayIntersection(start,
+							direction, scratch);
+					if (Double.isNaN(distance))
+						continue;
+				} else {
+					found = scene.objects[i].findClosestRayIntersection(
+							new Ray(new Point3D(start.getX(), start.getY(),
+									start.getZ()),
+									new Point3D(direction.getX(),
+											direction.getY(),
+											direction.getZ())));
+					if (found == null)
+						continue;
+					distance = found.getDistance();
+				}
 
-			return scalar > 0 ? (short) (scalar * colorIntensity * coefficient)
-					: 0;
+				if (closest == -1 || distance < minDistance) {
+					closest = i;
+					minDistance = distance;
+					if (found == null) {
+						closestPoint.set(scratch);
+					} else {
+						Point3D p = found.getPoint();
+						closestPoint.set(p.x, p.y, p.z);
+						intersection = found;
+					}
+				}
+			}
+			return closest;
 		}
 
 		/**
-		 * Caclulates the reflective component for the given color intensity,
-		 * light source and intersection, depending on the point of view.
-		 * 
-		 * @param rgb
-		 *            the color intensity: 0 for red, 1 for green, 2 for blue.
-		 * @param source
-		 *            the light source
-		 * @param intersection
-		 *            the intersection of ray and object from the scene
-		 * @param eye
-		 *            the point of view vector
-		 * @return the diffuse component for the given color intensity
+		 * Finds the object a secondary ray hits first. Unlike
+		 * {@link #findClosestIntersection(MutableVector3, MutableVector3, MutableVector3)},
+		 * only hits in front of the start of the ray count, and hits closer
+		 * than {@link #SECONDARY_RAY_OFFSET}, which are the surface the ray
+		 * starts on, are ignored.
 		 * 
+		 * @param start
+		 *            the start of the ray
+		 * @param direction
+		 *            the normalized direction of the ray
+		 * @param closestPoint
+		 *            receives the point of the hit
+		 * @return the index of the hit object, or -1 if none are hit
 		 */
-		private short calculateReflectiveComponent(int rgb, LightSource source,
-				RayIntersection intersection, Point3D eye) {
+		private int findRayHit(MutableVector3 start, MutableVector3 direction,
+				MutableVector3 closestPoint) {
+			if (scene.mapped != null) {
+				return scene.mapped.findRayHit(start, direction,
+						SECONDARY_RAY_OFFSET, closestPoint, stack);
+			}
+			int closest = -1;
+			double minDistance = Double.POSITIVE_INFINITY;
+			RayIntersection closestFound = null;
 
-			Point3D l = intersection.getPoint().sub(source.getPoint())
-					.normalize().negate();
-			Point3D v = intersection.getPoint().sub(eye).normalize().negate();
-			Point3D n = intersection.getNormal();
+			for (int i = 0; i < scene.objects.length; i++) {
+				Sphere sphere = scene.spheres[i];
+				if (sphere != null) {
+					double distance = sphere.findRayHit(start, direction,
+							SECONDARY_RAY_OFFSET);
+					if (distance < minDistance) {
+						closest = i;
+						minDistance = distance;
+						closestFound = null;
+					}
+					continue;
+				}
 
-			Point3D r = n.scalarMultiply(2. * l.scalarProduct(n)).sub(l)
-					.normalize();
-			int colorIntensity = rgb == 0 ? source.getR()
-					: rgb == 1 ? source.getG() : source.getB();
-			double coefficient = rgb == 0 ? intersection.getKrr()
-					: rgb == 1 ? intersection.getKrg() : intersection.getKrb();
+				RayIntersection found = scene.objects[i]
+						.findClosestRayIntersection(new Ray(
+								new Point3D(start.getX(), start.getY(),
+										start.getZ()),
+								new Point3D(direction.getX(), direction.getY(),
+										direction.getZ())));
+				if (found != null && found.getDistance() > SECONDARY_RAY_OFFSET
+						&& found.getDistance() < minDistance) {
+					closest = i;
+					minDistance = found.getDistance();
+					closestFound = found;
+				}
+			}
 
-			double cosine = Math.pow(r.scalarProduct(v), intersection.getKrn());
+			if (closestFound != null) {
+				Point3D p = closestFound.getPoint();
+				closestPoint.set(p.x, p.y, p.z);
+				intersection = closestFound;
+			} else if (closest != -1) {
+				closestPoint.set(start).addScaled(direction, minDistance);
+			}
+			return closest;
+		}
 
-			return cosine > 0 ? (short) (colorIntensity * coefficient * cosine)
-					: 0;
+		/**
+		 * Calculates the sum of the diffuse and the reflective component of a
+		 * color, for a single light source.
+		 * 
+		 * @param intensity
+		 *            the intensity of the color of the light source, left at
+		 *            the point
+		 * @param diffuse
+		 *            the cosine of the angle between the light and the normal
+		 * @param kd
+		 *            the diffuse coefficient of the object for the color
+		 * @param cosine
+		 *            the cosine of the angle between the reflected light and
+		 *            the view, raised to the roughness index
+		 * @param kr
+		 *            the reflective coefficient of the object for the color
+		 * @return the sum of the components
+		 */
+		private static int calculateComponent(double intensity,
+				double diffuse, double kd, double cosine, double kr) {
+			short diffuseComponent = diffuse > 0
+					? (short) (diffuse * intensity * kd) : 0;
+			short reflectiveComponent = cosine > 0
+					? (short) (intensity * kr * cosine) : 0;
+			return diffuseComponent + reflectiveComponent;
 		}
 	}
 
@@ -407,7 +1376,10 @@ public class RayTracerProducerImpl implements IRayTracerProducer {
 	public void produce(Point3D eye, Point3D view, Point3D viewUp,
 			double horizontal, double vertical, int width, int height,
 			long requestNo, IRayTracerResultObserver observer) {
-		System.out.println("Starting calculations.");
+		boolean log = progressLogEnabled;
+		if (log) {
+			System.out.println("Starting calculations.");
+		}
 
 		long startTime = System.currentTimeMillis();
 
@@ -426,27 +1398,62 @@ public class RayTracerProducerImpl implements IRayTracerProducer {
 				.sub(xAxisNormalized.scalarMultiply(horizontal / 2))
 				.add(yAxisNormalized.scalarMultiply(horizontal / 2));
 
-		Scene scene = RayTracerViewer.createPredefinedScene();
+		PreparedScene scene = this.scene != null ? this.scene
+				: new PreparedScene(RayTracerViewer.createPredefinedScene());
+
+		RayBudget budget = this.budget;
+		RayCounters counters = new RayCounters(budget.getMaxDepth());
+		LightSampling lighting = this.lighting;
+		LightTree lightTree = lighting.getFalloff() == Double.POSITIVE_INFINITY
+				? null
+				: new LightTree(scene.lights, scene.influenceRadii(lighting));
+
+		ScreenProjection projection = new ScreenProjection(eye, screenCorner,
+				xAxisNormalized, yAxisNormalized, horizontal, vertical, width,
+				height);
+		// mapped scenes cull through their own hierarchy
+		ScreenTiles tiles = scene.mapped != null ? null
+				: new ScreenTiles(scene.spheres, projection);
+
+		Reprojection reprojection = this.reprojection;
+		FrameHistory frame = null;
+		if (reprojection.getMaxAge() > 0) {
+			frame = new FrameHistory(width, height, this.scene, budget,
+					lighting, reprojection);
+			frame.reproject(history, projection);
+		}
 
 		if (useMultithreading) {
 			pool.invoke(new Calculation(pool, height, width, 0, height - 1,
 					horizontal, vertical, screenCorner, eye, xAxisNormalized,
-					yAxisNormalized, scene, red, green, blue));
+					yAxisNormalized, scene, tiles, red, green, blue, budget,
+					counters, lighting, lightTree, frame));
 		} else {
 			new Calculation(pool, height, width, 0, height - 1, horizontal,
 					vertical, screenCorner, eye, xAxisNormalized,
-					yAxisNormalized, scene, red, green, blue).calculate();
+					yAxisNormalized, scene, tiles, red, green, blue, budget,
+					counters, lighting, lightTree, frame).calculate();
+		}
+		lastCounters = counters;
+		lastTiles = tiles;
+		if (frame != null) {
+			frame.finish(red, green, blue);
 		}
+		history = frame;
 
-		System.out.println("Calculations done.");
+		if (log) {
+			System.out.println("Calculations done.");
+		}
 		observer.acceptResult(red, green, blue, requestNo);
-		System.out.println("The observer has been notified.");
+		if (log) {
+			System.out.println("The observer has been notified.");
 
-		long endTime = System.currentTimeMillis();
+			long endTime = System.currentTimeMillis();
 
-		String a = useMultithreading ? "multithreaded" : "singlethreaded";
+			String a = useMultithreading ? "multithreaded" : "singlethreaded";
 
-		System.out.println("Ran as " + a + " program, and it took "
-				+ (endTime - startTime) + " miliseconds.");
+			System.out.println("Ran as " + a + " program, and it took "
+					+ (endTime - startTime) + " miliseconds.");
+		}
 	}
 }
\ No newline at end of file
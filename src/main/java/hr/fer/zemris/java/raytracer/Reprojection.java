@@ -0,0 +1,80 @@
+package hr.fer.zemris.java.raytracer;
+
+/**
+ * When {@link RayTracerProducerImpl} may reuse the colors of the previous
+ * frame, for small moves of the camera.
+ * <p>
+ * The points hit by the primary rays of the previous frame are projected
+ * into the new view. A pixel of the new frame still casts its primary ray,
+ * but if it hits the same object as the previous pixel whose point was
+ * projected onto it, at a distance from the eye within the tolerance of the
+ * distance of that point, the color of that pixel is reused, and no shadow
+ * rays or secondary rays are traced for it. Pixels which were hidden before,
+ * or are seen differently, are traced as usual.
+ * <p>
+ * Parts of the color, such as the highlights, depend on where they are seen
+ * from, so a color is only reused for a limited number of frames in a row.
+ * The previous frame is only used if it had the same size, scene, ray budget
+ * and lighting.
+ *
+ * @author 0036502252
+ *
+ */
+public final class Reprojection {
+	/**
+	 * Never reuses colors.
+	 */
+	public static final Reprojection NONE = new Reprojection(0, 0);
+	/**
+	 * Reuses colors of points within 1% of their distance, for up to 8
+	 * frames in a row.
+	 */
+	public static final Reprojection DEFAULT = new Reprojection(0.01, 8);
+
+	/**
+	 * The largest difference of the distances from the eye, relative to the
+	 * new distance.
+	 */
+	private final double tolerance;
+	/**
+	 * The largest number of frames in a row a color is reused for.
+	 */
+	private final int maxAge;
+
+	/**
+	 * Constructs a new {@link Reprojection}.
+	 *
+	 * @param tolerance
+	 *            the largest difference of the distances of the new and the
+	 *            previous point from the eye, relative to the new distance
+	 * @param maxAge
+	 *            the largest number of frames in a row a color is reused
+	 *            for, 0 to never reuse colors
+	 * @throws IllegalArgumentException
+	 *             if an argument is negative
+	 */
+	public Reprojection(double tolerance, int maxAge) {
+		if (!(tolerance >= 0) || maxAge < 0) {
+			throw new IllegalArgumentException(
+					"The tolerance and the age must not be negative!");
+		}
+		this.tolerance = tolerance;
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * @return the largest difference of the distances of the new and the
+	 *         previous point from the eye, relative to the new distance
+	 */
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * @return the largest number of frames in a row a color is reused for, 0
+	 *         if colors are never reused
+	 */
+	public int getMaxAge() {
+		return maxAge;
+	}
+}
@@ -0,0 +1,562 @@
+package hr.fer.zemris.java.raytracer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveAction;
+
+import hr.fer.zemris.java.raytracer.model.LightSource;
+import hr.fer.zemris.java.raytracer.model.Point3D;
+import hr.fer.zemris.java.raytracer.model.Scene;
+import hr.fer.zemris.java.raytracer.model.Sphere;
+import hr.fer.zemris.java.render.RenderRuntime;
+
+/**
+ * Generates large scenes of spheres, for measuring how the ray caster scales
+ * with the number of objects and light sources. The spheres fill a cube
+ * around the origin, seen by the same eye as in {@link RayCaster}, and get
+ * smaller as their number grows, so the scene looks about equally full at any
+ * size. The light sources are spread over the half of a sphere around the
+ * cube which faces the eye.
+ * <p>
+ * Generation is deterministic: the same seed always gives the same scene. The
+ * spheres are generated in parallel, in chunks of a fixed size, each with its
+ * own random generator seeded from the seed and the index of the chunk, so
+ * the scene does not depend on the number of threads either.
+ * <p>
+ * The main method generates a scene and renders it without a display, and
+ * prints the times it took to standard output, a header and one comma
+ * separated line per render, with any other messages going to standard
+ * error:
+ *
+ * <pre>
+ * SceneGenerator [--distribution uniform|clustered|layered] [--spheres N]
+ *                [--lights N] [--seed S] [--size WIDTH HEIGHT] [--repeat N]
+ *                [--write FILE] [--mirrors FRACTION] [--depth N]
+ *                [--rays-per-pixel R] [--falloff D] [--light-samples N]
+ *                [--reproject] [--orbit DEGREES]
+ * </pre>
+ *
+ * With <code>--write</code>, the scene is written into a scene file with a
+ * hierarchy by {@link SceneWriter}, and the scene mapped back from the file
+ * is rendered instead. With <code>--mirrors</code>, the given fraction of the
+ * spheres reflect or refract light, and <code>--depth</code> and
+ * <code>--rays-per-pixel</code> set the {@link RayBudget} of the secondary
+ * rays. <code>--falloff</code> and <code>--light-samples</code> set the
+ * {@link LightSampling} of the light sources. With <code>--reproject</code>,
+ * the colors of the previous render are reused as described by
+ * {@link Reprojection}, and <code>--orbit</code> turns the eye around the
+ * scene by the given angle before each render after the first, to measure
+ * how many of them are reused.
+ *
+ * @author 0036502252
+ *
+ */
+public class SceneGenerator {
+	/**
+	 * How the spheres are placed in the scene.
+	 */
+	public enum Distribution {
+		/**
+		 * Spread uniformly over the whole cube.
+		 */
+		UNIFORM,
+		/**
+		 * Gathered into clusters, spread normally around centers placed
+		 * uniformly in the cube.
+		 */
+		CLUSTERED,
+		/**
+		 * Placed on horizontal layers, stacked evenly through the cube.
+		 */
+		LAYERED
+	}
+
+	/**
+	 * Half of the length of an edge of the cube filled with spheres.
+	 */
+	private static final double EXTENT = 5;
+	/**
+	 * The distance of the light sources from the origin.
+	 */
+	private static final double LIGHT_DISTANCE = 12;
+	/**
+	 * The average radius of a sphere, relative to the average distance
+	 * between two neighboring spheres.
+	 */
+	private static final double FILL = 0.3;
+	/**
+	 * The number of spheres generated from a single random generator.
+	 */
+	private static final int CHUNK = 4096;
+	/**
+	 * Spreads the seeds of the random generators of the chunks.
+	 */
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	/**
+	 * The refractive index of the transparent spheres.
+	 */
+	private static final double GLASS = 1.5;
+
+	/**
+	 * How the spheres are placed in the scene.
+	 */
+	private final Distribution distribution;
+	/**
+	 * The number of spheres.
+	 */
+	private final int spheres;
+	/**
+	 * The number of light sources.
+	 */
+	private final int lights;
+	/**
+	 * The seed of the scene.
+	 */
+	private final long seed;
+	/**
+	 * The fraction of the spheres which reflect or refract light.
+	 */
+	private final double mirrors;
+	/**
+	 * The average distance between two neighboring spheres.
+	 */
+	private final double spacing;
+
+	/**
+	 * Constructs a new {@link SceneGenerator}.
+	 *
+	 * @param distribution
+	 *            how the spheres are placed in the scene
+	 * @param spheres
+	 *            the number of spheres
+	 * @param lights
+	 *            the number of light sources
+	 * @param seed
+	 *            the seed of the scene
+	 * @throws IllegalArgumentException
+	 *             if a number is negative
+	 */
+	public SceneGenerator(Distribution distribution, int spheres, int lights,
+			long seed) {
+		this(distribution, spheres, lights, seed, 0);
+	}
+
+	/**
+	 * Constructs a new {@link SceneGenerator} whose scenes have mirrors and
+	 * glass. Half of the chosen spheres are mirrors, and half are glass, which
+	 * also reflects a little. With no mirrors, the scene is the same as the one
+	 * generated by {@link #SceneGenerator(Distribution, int, int, long)}.
+	 *
+	 * @param distribution
+	 *            how the spheres are placed in the scene
+	 * @param spheres
+	 *            the number of spheres
+	 * @param lights
+	 *            the number of light sources
+	 * @param seed
+	 *            the seed of the scene
+	 * @param mirrors
+	 *            the fraction of the spheres which reflect or refract light
+	 * @throws IllegalArgumentException
+	 *             if a number is negative, or the fraction is greater than 1
+	 */
+	public SceneGenerator(Distribution distribution, int spheres, int lights,
+			long seed, double mirrors) {
+		if (spheres < 0 || lights < 0) {
+			throw new IllegalArgumentException(
+					"The number of spheres and lights must not be negative!");
+		}
+		if (!(mirrors >= 0 && mirrors <= 1)) {
+			throw new IllegalArgumentException(
+					"The fraction of mirrors must be between 0 and 1!");
+		}
+		this.distribution = Objects.requireNonNull(distribution);
+		this.spheres = spheres;
+		this.lights = lights;
+		this.seed = seed;
+		this.mirrors = mirrors;
+		this.spacing = 2 * EXTENT / Math.cbrt(Math.max(spheres, 1));
+	}
+
+	/**
+	 * Generates the scene, using the shared render runtime.
+	 *
+	 * @return the generated scene
+	 */
+	public Scene generate() {
+		return generate(RenderRuntime.shared());
+	}
+
+	/**
+	 * Generates the scene.
+	 *
+	 * @param runtime
+	 *            the runtime whose fork/join pool generates the spheres
+	 * @return the generated scene
+	 */
+	public Scene generate(RenderRuntime runtime) {
+		SplittableRandom random = new SplittableRandom(seed);
+
+		double[] clusters = new double[0];
+		if (distribution == Distribution.CLUSTERED) {
+			int count = Math.max(1, (int) Math.cbrt(spheres));
+			clusters = new double[3 * count];
+			for (int i = 0; i < clusters.length; i++) {
+				clusters[i] = random.nextDouble(-0.75 * EXTENT, 0.75 * EXTENT);
+			}
+		}
+
+		Sphere[] generated = new Sphere[spheres];
+		runtime.forkJoinPool().invoke(new Generation(generated, clusters, 0,
+				(spheres + CHUNK - 1) / CHUNK));
+
+		Scene scene = new Scene();
+		for (Sphere sphere : generated) {
+			scene.add(sphere);
+		}
+
+		// scaled so that the scene is about equally bright for any number of
+		// lights, as long as they are not all hidden
+		double scale = Math.min(1, 2. / Math.max(lights, 1));
+		for (int i = 0; i < lights; i++) {
+			double z = random.nextDouble(-1, 1);
+			double phi = random.nextDouble(-Math.PI / 2, Math.PI / 2);
+			double r = Math.sqrt(1 - z * z) * LIGHT_DISTANCE;
+			scene.add(new LightSource(
+					new Point3D(r * Math.cos(phi), r * Math.sin(phi),
+							z * LIGHT_DISTANCE),
+					intensity(random, scale), intensity(random, scale),
+					intensity(random, scale)));
+		}
+		return scene;
+	}
+
+	/**
+	 * Picks a random intensity of a color of a light source.
+	 *
+	 * @param random
+	 *            the random generator
+	 * @param scale
+	 *            scales the intensity
+	 * @return the intensity, at least 1
+	 */
+	private static int intensity(SplittableRandom random, double scale) {
+		return Math.max(1, (int) (random.nextInt(100, 201) * scale));
+	}
+
+	/**
+	 * Generates the spheres of a range of chunks, splitting the range until it
+	 * is a single chunk.
+	 *
+	 * @author 0036502252
+	 *
+	 */
+	private class Generation extends RecursiveAction {
+		/**
+		 * Auto-generated serial version ID.
+		 */
+		private static final long serialVersionUID = 4023379405734937212L;
+
+		/**
+		 * Receives the generated spheres.
+		 */
+		private Sphere[] generated;
+		/**
+		 * The coordinates of the centers of the clusters, three per cluster.
+		 */
+		private double[] clusters;
+		/**
+		 * The index of the first chunk, inclusive.
+		 */
+		private int from;
+		/**
+		 * The index of the last chunk, exclusive.
+		 */
+		private int to;
+
+		/**
+		 * Constructs a new {@link Generation} job.
+		 *
+		 * @param generated
+		 *            receives the generated spheres
+		 * @param clusters
+		 *            the coordinates of the centers of the clusters, three per
+		 *            cluster
+		 * @param from
+		 *            the index of the first chunk, inclusive
+		 * @param to
+		 *            the index of the last chunk, exclusive
+		 */
+		Generation(Sphere[] generated, double[] clusters, int from, int to) {
+			this.generated = generated;
+			this.clusters = clusters;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Generation(generated, clusters, from, middle),
+						new Generation(generated, clusters, middle, to));
+				return;
+			}
+
+			for (int chunk = from; chunk < to; chunk++) {
+				SplittableRandom random = new SplittableRandom(
+						seed + GOLDEN_GAMMA * (chunk + 1));
+				int end = Math.min(generated.length, (chunk + 1) * CHUNK);
+				for (int i = chunk * CHUNK; i < end; i++) {
+					generated[i] = sphere(i, random);
+				}
+			}
+		}
+
+		/**
+		 * Generates a single sphere.
+		 *
+		 * @param i
+		 *            the index of the sphere
+		 * @param random
+		 *            the random generator of its chunk
+		 * @return the sphere
+		 */
+		private Sphere sphere(int i, SplittableRandom random) {
+			double x;
+			double y;
+			double z;
+			switch (distribution) {
+			case CLUSTERED:
+				int cluster = 3 * random.nextInt(clusters.length / 3);
+				double sigma = 0.5 * EXTENT / Math.cbrt(clusters.length / 3);
+				x = clusters[cluster] + sigma * gaussian(random);
+				y = clusters[cluster + 1] + sigma * gaussian(random);
+				z = clusters[cluster + 2] + sigma * gaussian(random);
+				break;
+			case LAYERED:
+				int layers = Math.max(1, (int) Math.round(Math.cbrt(spheres)));
+				x = random.nextDouble(-EXTENT, EXTENT);
+				y = random.nextDouble(-EXTENT, EXTENT);
+				z = -EXTENT + (i % layers + 0.5) * 2 * EXTENT / layers
+						+ random.nextDouble(-0.1, 0.1) * spacing;
+				break;
+			default:
+				x = random.nextDouble(-EXTENT, EXTENT);
+				y = random.nextDouble(-EXTENT, EXTENT);
+				z = random.nextDouble(-EXTENT, EXTENT);
+				break;
+			}
+
+			Point3D center = new Point3D(x, y, z);
+			double radius = FILL * spacing * random.nextDouble(0.5, 1.5);
+			double kdr = random.nextDouble(0.2, 1);
+			double kdg = random.nextDouble(0.2, 1);
+			double kdb = random.nextDouble(0.2, 1);
+			double krr = random.nextDouble(0.1, 0.6);
+			double krg = random.nextDouble(0.1, 0.6);
+			double krb = random.nextDouble(0.1, 0.6);
+			double krn = random.nextDouble(5, 50);
+			// the material is only drawn with mirrors, so that scenes without
+			// them stay the same as before
+			if (mirrors == 0 || random.nextDouble() >= mirrors) {
+				return new Sphere(center, radius, kdr, kdg, kdb, krr, krg, krb,
+						krn);
+			}
+			if (random.nextBoolean()) {
+				return new Sphere(center, radius, kdr, kdg, kdb, krr, krg, krb,
+						krn, random.nextDouble(0.5, 0.9), 0, 1);
+			}
+			return new Sphere(center, radius, kdr, kdg, kdb, krr, krg, krb, krn,
+					0.1, random.nextDouble(0.6, 0.9), GLASS);
+		}
+	}
+
+	/**
+	 * Picks a normally distributed random number, using the Box-Muller
+	 * transform.
+	 *
+	 * @param random
+	 *            the random generator
+	 * @return a random number with mean 0 and standard deviation 1
+	 */
+	private static double gaussian(SplittableRandom random) {
+		double u = 1 - random.nextDouble();
+		return Math.sqrt(-2 * Math.log(u))
+				* Math.cos(2 * Math.PI * random.nextDouble());
+	}
+
+	/**
+	 * Main method.
+	 *
+	 * @param args
+	 *            command line arguments, see the class documentation
+	 */
+	public static void main(String[] args) {
+		Distribution distribution = Distribution.UNIFORM;
+		int spheres = 1000;
+		int lights = 2;
+		long seed = 42;
+		int width = 500;
+		int height = 500;
+		int repeat = 1;
+		Path file = null;
+		double mirrors = 0;
+		int depth = RayBudget.DEFAULT.getMaxDepth();
+		double raysPerPixel = RayBudget.DEFAULT.getRaysPerPixel();
+		double falloff = LightSampling.DEFAULT.getFalloff();
+		int lightSamples = LightSampling.DEFAULT.getSamples();
+		boolean reproject = false;
+		double orbit = 0;
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+				case "--distribution":
+					distribution = Distribution
+							.valueOf(args[++i].toUpperCase(Locale.ROOT));
+					break;
+				case "--spheres":
+					spheres = Integer.parseInt(args[++i]);
+					break;
+				case "--lights":
+					lights = Integer.parseInt(args[++i]);
+					break;
+				case "--seed":
+					seed = Long.parseLong(args[++i]);
+					break;
+				case "--size":
+					width = Integer.parseInt(args[++i]);
+					height = Integer.parseInt(args[++i]);
+					break;
+				case "--repeat":
+					repeat = Integer.parseInt(args[++i]);
+					break;
+				case "--write":
+					file = Paths.get(args[++i]);
+					break;
+				case "--mirrors":
+					mirrors = Double.parseDouble(args[++i]);
+					break;
+				case "--depth":
+					depth = Integer.parseInt(args[++i]);
+					break;
+				case "--rays-per-pixel":
+					raysPerPixel = Double.parseDouble(args[++i]);
+					break;
+				case "--falloff":
+					falloff = Double.parseDouble(args[++i]);
+					break;
+				case "--light-samples":
+					lightSamples = Integer.parseInt(args[++i]);
+					break;
+				case "--reproject":
+					reproject = true;
+					break;
+				case "--orbit":
+					orbit = Math.toRadians(Double.parseDouble(args[++i]));
+					break;
+				default:
+					throw new IllegalArgumentException(
+							"Unknown argument: " + args[i]);
+				}
+			}
+			if (width < 2 || height < 2 || repeat < 1) {
+				throw new IllegalArgumentException(
+						"Size must be at least 2x2 and there must be at least "
+								+ "one render.");
+			}
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+			System.err.println(ex.getMessage() == null ? "Missing argument."
+					: ex.getMessage());
+			printUsage();
+			System.exit(1);
+			return;
+		}
+
+		SceneGenerator generator;
+		RayBudget budget;
+		LightSampling lighting;
+		try {
+			generator = new SceneGenerator(distribution, spheres, lights, seed,
+					mirrors);
+			budget = new RayBudget(depth,
+					RayBudget.DEFAULT.getMinWeight(),
+					RayBudget.DEFAULT.getRouletteWeight(), raysPerPixel);
+			lighting = new LightSampling(falloff, lightSamples);
+		} catch (IllegalArgumentException ex) {
+			System.err.println(ex.getMessage());
+			printUsage();
+			System.exit(1);
+			return;
+		}
+
+		RenderRuntime runtime = RenderRuntime.shared();
+
+		long start = System.nanoTime();
+		Scene scene = generator.generate(runtime);
+		long generateMillis = (System.nanoTime() - start) / 1_000_000;
+
+		RayTracerProducerImpl producer;
+		if (file == null) {
+			producer = new RayTracerProducerImpl(true, runtime, scene);
+		} else {
+			try {
+				start = System.nanoTime();
+				SceneWriter.write(scene, file, true);
+				long writeMillis = (System.nanoTime() - start) / 1_000_000;
+				start = System.nanoTime();
+				MappedScene mapped = MappedScene.map(file);
+				long mapMillis = (System.nanoTime() - start) / 1_000_000;
+				System.err.println("Wrote " + file + " in " + writeMillis
+						+ " ms, mapped it in " + mapMillis + " ms.");
+				producer = new RayTracerProducerImpl(true, runtime, mapped);
+			} catch (IOException ex) {
+				System.err.println("Could not write the scene: "
+						+ ex.getMessage());
+				System.exit(1);
+				return;
+			}
+		}
+		producer.setRayBudget(budget);
+		producer.setLightSampling(lighting);
+		producer.setProgressLogEnabled(false);
+		if (reproject) {
+			producer.setReprojection(Reprojection.DEFAULT);
+		}
+		System.out.println("distribution,spheres,lights,seed,width,height,"
+				+ "generateMillis,renderMillis,reuseRatio");
+		for (int i = 0; i < repeat; i++) {
+			double angle = i * orbit;
+			start = System.nanoTime();
+			producer.produce(
+					new Point3D(10 * Math.cos(angle), 10 * Math.sin(angle), 0),
+					new Point3D(0, 0, 0), new Point3D(0, 0, 10), 20, 20, width,
+					height, i, (red, green, blue, requestNo) -> {
+					});
+			long renderMillis = (System.nanoTime() - start) / 1_000_000;
+			System.out.println(String.format(Locale.ROOT,
+					"%s,%d,%d,%d,%d,%d,%d,%d,%.3f",
+					distribution.name().toLowerCase(Locale.ROOT), spheres,
+					lights, seed, width, height, generateMillis, renderMillis,
+					producer.getLastCounters().getReuseRatio()));
+		}
+		runtime.close();
+	}
+
+	/**
+	 * Prints the usage of the program.
+	 */
+	private static void printUsage() {
+		System.err.println("Usage: SceneGenerator "
+				+ "[--distribution uniform|clustered|layered] [--spheres N] "
+				+ "[--lights N] [--seed S] [--size WIDTH HEIGHT] [--repeat N] "
+				+ "[--write FILE] [--mirrors FRACTION] [--depth N] "
+				+ "[--rays-per-pixel R] [--falloff D] [--light-samples N] "
+				+ "[--reproject] [--orbit DEGREES]");
+	}
+}
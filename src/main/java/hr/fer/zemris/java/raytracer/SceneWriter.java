@@ -0,0 +1,353 @@
+package hr.fer.zemris.java.raytracer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import hr.fer.zemris.java.raytracer.model.GraphicalObject;
+import hr.fer.zemris.java.raytracer.model.LightSource;
+import hr.fer.zemris.java.raytracer.model.Point3D;
+import hr.fer.zemris.java.raytracer.model.Scene;
+import hr.fer.zemris.java.raytracer.model.Sphere;
+
+/**
+ * Writes a {@link Scene} into a scene file, which can be mapped into memory by
+ * {@link MappedScene}. The format of the file is described there.
+ * <p>
+ * Optionally, a bounding volume hierarchy over the spheres is built and
+ * written along with them. The spheres are split at the median of their
+ * centers along the longest axis, until at most {@link #LEAF_SIZE} spheres are
+ * left in a node. Since the spheres of a leaf are stored next to each other,
+ * they are written in the order of the hierarchy, not of the scene.
+ *
+ * @author 0036502252
+ * @see MappedScene
+ *
+ */
+public class SceneWriter {
+	/**
+	 * The largest number of spheres in a leaf of the hierarchy.
+	 */
+	private static final int LEAF_SIZE = 4;
+	/**
+	 * The bounds of the spheres are enlarged by this fraction of their
+	 * radius, so that rounding errors can not put an intersection outside of
+	 * the bounds of its node.
+	 */
+	private static final double BOUNDS_PADDING = 1E-9;
+
+	/**
+	 * Writes a scene into a file, replacing the file if it exists.
+	 *
+	 * @param scene
+	 *            the scene
+	 * @param file
+	 *            the file
+	 * @param hierarchy
+	 *            if true, a bounding volume hierarchy is written as well
+	 * @throws IOException
+	 *             if the file can not be written
+	 * @throws IllegalArgumentException
+	 *             if the scene holds an object which is not a {@link Sphere}
+	 */
+	public static void write(Scene scene, Path file, boolean hierarchy)
+			throws IOException {
+		List<GraphicalObject> objects = scene.getObjects();
+		int n = objects.size();
+		double[] x = new double[n];
+		double[] y = new double[n];
+		double[] z = new double[n];
+		double[] r = new double[n];
+		Sphere[] spheres = new Sphere[n];
+		for (int i = 0; i < n; i++) {
+			GraphicalObject object = objects.get(i);
+			if (!(object instanceof Sphere)) {
+				throw new IllegalArgumentException(
+						"Only spheres can be written, not "
+								+ object.getClass().getName() + "!");
+			}
+			spheres[i] = (Sphere) object;
+			Point3D center = spheres[i].getCenter();
+			x[i] = center.x;
+			y[i] = center.y;
+			z[i] = center.z;
+			r[i] = spheres[i].getRadius();
+		}
+
+		Hierarchy nodes = new Hierarchy(x, y, z, r);
+		if (hierarchy && n > 0) {
+			nodes.build(0, n, 1);
+		}
+		int[] order = nodes.order;
+		List<LightSource> lights = scene.getLights();
+
+		long[] offsets = MappedScene.sectionOffsets(n, lights.size(),
+				nodes.size);
+
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer header = ByteBuffer
+					.allocate(MappedScene.FILE_HEADER_SIZE)
+					.order(MappedScene.FILE_BYTE_ORDER);
+			header.putInt(MappedScene.FILE_MAGIC)
+					.putInt(MappedScene.FILE_VERSION).putInt(n)
+					.putInt(lights.size()).putInt(nodes.size)
+					.putInt(nodes.depth);
+			header.clear();
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+
+			DoubleBuffer sphereSection = section(channel, offsets, 0)
+					.asDoubleBuffer();
+			DoubleBuffer materialSection = section(channel, offsets, 1)
+					.asDoubleBuffer();
+			for (int i : order) {
+				sphereSection.put(x[i]).put(y[i]).put(z[i]).put(r[i]);
+				Sphere sphere = spheres[i];
+				materialSection.put(sphere.getKdr()).put(sphere.getKdg())
+						.put(sphere.getKdb()).put(sphere.getKrr())
+						.put(sphere.getKrg()).put(sphere.getKrb())
+						.put(sphere.getKrn()).put(sphere.getReflectivity())
+						.put(sphere.getTransparency())
+						.put(sphere.getRefractiveIndex());
+			}
+
+			DoubleBuffer lightSection = section(channel, offsets, 2)
+					.asDoubleBuffer();
+			IntBuffer colorSection = section(channel, offsets, 3)
+					.asIntBuffer();
+			for (LightSource light : lights) {
+				Point3D position = light.getPoint();
+				lightSection.put(position.x).put(position.y).put(position.z);
+				colorSection.put(light.getR()).put(light.getG())
+						.put(light.getB());
+			}
+
+			section(channel, offsets, 4).asDoubleBuffer().put(nodes.bounds,
+					0, MappedScene.BOUNDS_SIZE * nodes.size);
+			section(channel, offsets, 5).asIntBuffer().put(nodes.links, 0,
+					2 * nodes.size);
+		}
+	}
+
+	/**
+	 * Maps a section of a scene file for writing.
+	 *
+	 * @param channel
+	 *            the channel of the file
+	 * @param offsets
+	 *            the offsets of the sections
+	 * @param section
+	 *            the index of the section
+	 * @return the mapped section
+	 * @throws IOException
+	 *             if the section can not be mapped
+	 */
+	private static ByteBuffer section(FileChannel channel, long[] offsets,
+			int section) throws IOException {
+		return channel.map(MapMode.READ_WRITE, offsets[section],
+				offsets[section + 1] - offsets[section])
+				.order(MappedScene.FILE_BYTE_ORDER);
+	}
+
+	/**
+	 * A bounding volume hierarchy over spheres, built into primitive arrays in
+	 * the layout of a scene file.
+	 *
+	 * @author 0036502252
+	 *
+	 */
+	private static class Hierarchy {
+		/**
+		 * The x-coordinates of the centers of the spheres.
+		 */
+		final double[] x;
+		/**
+		 * The y-coordinates of the centers of the spheres.
+		 */
+		final double[] y;
+		/**
+		 * The z-coordinates of the centers of the spheres.
+		 */
+		final double[] z;
+		/**
+		 * The radii of the spheres.
+		 */
+		final double[] r;
+		/**
+		 * The indexes of the spheres, in the order they are written.
+		 */
+		final int[] order;
+		/**
+		 * The bounds of the nodes.
+		 */
+		double[] bounds = new double[MappedScene.BOUNDS_SIZE * 16];
+		/**
+		 * The links of the nodes.
+		 */
+		int[] links = new int[2 * 16];
+		/**
+		 * The number of nodes.
+		 */
+		int size;
+		/**
+		 * The depth of the hierarchy.
+		 */
+		int depth;
+
+		/**
+		 * Constructs a new empty {@link Hierarchy}.
+		 *
+		 * @param x
+		 *            the x-coordinates of the centers of the spheres
+		 * @param y
+		 *            the y-coordinates of the centers of the spheres
+		 * @param z
+		 *            the z-coordinates of the centers of the spheres
+		 * @param r
+		 *            the radii of the spheres
+		 */
+		Hierarchy(double[] x, double[] y, double[] z, double[] r) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.r = r;
+			order = new int[x.length];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+		}
+
+		/**
+		 * Builds a node, and the nodes below it, over a range of the spheres.
+		 *
+		 * @param first
+		 *            the position of the first sphere in {@link #order}
+		 * @param count
+		 *            the number of spheres
+		 * @param level
+		 *            the level of the node, 1 for the root
+		 */
+		void build(int first, int count, int level) {
+			int node = size++;
+			if (size > links.length / 2) {
+				bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+				links = Arrays.copyOf(links, 2 * links.length);
+			}
+			depth = Math.max(depth, level);
+
+			double[] box = { Double.POSITIVE_INFINITY,
+					Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+					Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+					Double.NEGATIVE_INFINITY };
+			double[] centers = box.clone();
+			for (int p = first; p < first + count; p++) {
+				int i = order[p];
+				double radius = r[i] * (1 + BOUNDS_PADDING);
+				include(box, x[i] - radius, y[i] - radius, z[i] - radius);
+				include(box, x[i] + radius, y[i] + radius, z[i] + radius);
+				include(centers, x[i], y[i], z[i]);
+			}
+			System.arraycopy(box, 0, bounds, MappedScene.BOUNDS_SIZE * node,
+					MappedScene.BOUNDS_SIZE);
+
+			int axis = 0;
+			for (int a = 1; a < 3; a++) {
+				if (centers[a + 3] - centers[a] > centers[axis + 3]
+						- centers[axis]) {
+					axis = a;
+				}
+			}
+			if (count <= LEAF_SIZE || centers[axis + 3] == centers[axis]) {
+				links[2 * node] = first;
+				links[2 * node + 1] = count;
+				return;
+			}
+
+			int middle = first + count / 2;
+			select(axis == 0 ? x : axis == 1 ? y : z, first, first + count,
+					middle);
+			build(first, middle - first, level + 1);
+			links[2 * node] = size;
+			links[2 * node + 1] = -1 - axis;
+			build(middle, first + count - middle, level + 1);
+		}
+
+		/**
+		 * Enlarges a box so that it includes a point.
+		 *
+		 * @param box
+		 *            the minimum and maximum corner of the box
+		 * @param px
+		 *            x-coordinate of the point
+		 * @param py
+		 *            y-coordinate of the point
+		 * @param pz
+		 *            z-coordinate of the point
+		 */
+		private static void include(double[] box, double px, double py,
+				double pz) {
+			box[0] = Math.min(box[0], px);
+			box[1] = Math.min(box[1], py);
+			box[2] = Math.min(box[2], pz);
+			box[3] = Math.max(box[3], px);
+			box[4] = Math.max(box[4], py);
+			box[5] = Math.max(box[5], pz);
+		}
+
+		/**
+		 * Reorders a range of {@link #order} so that the sphere at position
+		 * <code>k</code> is the one which would be there if the range were
+		 * sorted by the given coordinate, with no greater coordinates before
+		 * it and no smaller ones after it.
+		 *
+		 * @param key
+		 *            the coordinates of the spheres
+		 * @param from
+		 *            the start of the range, inclusive
+		 * @param to
+		 *            the end of the range, exclusive
+		 * @param k
+		 *            the position of the selected sphere
+		 */
+		private void select(double[] key, int from, int to, int k) {
+			int lo = from;
+			int hi = to - 1;
+			while (hi > lo) {
+				double pivot = key[order[(lo + hi) >>> 1]];
+				int i = lo;
+				int j = hi;
+				while (i <= j) {
+					while (key[order[i]] < pivot) {
+						i++;
+					}
+					while (key[order[j]] > pivot) {
+						j--;
+					}
+					if (i <= j) {
+						int swap = order[i];
+						order[i++] = order[j];
+						order[j--] = swap;
+					}
+				}
+				if (k <= j) {
+					hi = j;
+				} else if (k >= i) {
+					lo = i;
+				} else {
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package hr.fer.zemris.java.raytracer;
+
+import hr.fer.zemris.java.raytracer.model.Point3D;
+
+/**
+ * Projects points onto the pixels of the screen, as seen by the primary rays
+ * of {@link RayTracerProducerImpl}. The ray of the pixel <code>(x, y)</code>
+ * starts at the eye and goes through
+ * <code>screenCorner + x * xAxis * horizontal / (width - 1) - y * yAxis * vertical / (height - 1)</code>.
+ * <p>
+ * The rays are <code>corner + x * dx + y * dy</code>, relative to the eye. The
+ * rows of the inverse of the matrix with these three columns give, for a
+ * point relative to the eye, its depth along the rays, and the column and the
+ * row of the pixel it is seen at, both multiplied by the depth.
+ *
+ * @author 0036502252
+ *
+ */
+class ScreenProjection {
+	/**
+	 * The point of view.
+	 */
+	final Point3D eye;
+	/**
+	 * The width of the image, in pixels.
+	 */
+	final int width;
+	/**
+	 * The height of the image, in pixels.
+	 */
+	final int height;
+	/**
+	 * Gives the depth of a point along the rays.
+	 */
+	final Point3D depth;
+	/**
+	 * Gives the column a point is seen at, multiplied by its depth.
+	 */
+	final Point3D across;
+	/**
+	 * Gives the row a point is seen at, multiplied by its depth.
+	 */
+	final Point3D down;
+	/**
+	 * False if the rays do not span the space, so no point can be projected.
+	 */
+	final boolean valid;
+
+	/**
+	 * Constructs a new {@link ScreenProjection}.
+	 *
+	 * @param eye
+	 *            the point of view
+	 * @param screenCorner
+	 *            the upper left corner of the screen
+	 * @param xAxis
+	 *            the direction of the rows of the screen
+	 * @param yAxis
+	 *            the upward direction of the columns of the screen
+	 * @param horizontal
+	 *            the width of the screen
+	 * @param vertical
+	 *            the height of the screen
+	 * @param width
+	 *            the width of the image, in pixels
+	 * @param height
+	 *            the height of the image, in pixels
+	 */
+	ScreenProjection(Point3D eye, Point3D screenCorner, Point3D xAxis,
+			Point3D yAxis, double horizontal, double vertical, int width,
+			int height) {
+		this.eye = eye;
+		this.width = width;
+		this.height = height;
+		Point3D corner = screenCorner.sub(eye);
+		Point3D dx = xAxis.scalarMultiply(horizontal / (width - 1));
+		Point3D dy = yAxis.scalarMultiply(-vertical / (height - 1));
+		double det = corner.scalarProduct(dx.vectorProduct(dy));
+		valid = det != 0 && Double.isFinite(det);
+		depth = dx.vectorProduct(dy).scalarMultiply(1 / det);
+		across = dy.vectorProduct(corner).scalarMultiply(1 / det);
+		down = corner.vectorProduct(dx).scalarMultiply(1 / det);
+	}
+
+	/**
+	 * Finds the pixel a point is seen at.
+	 *
+	 * @param x
+	 *            x-coordinate of the point
+	 * @param y
+	 *            y-coordinate of the point
+	 * @param z
+	 *            z-coordinate of the point
+	 * @param pixel
+	 *            receives the column and the row of the pixel, which need not
+	 *            be whole or on the screen
+	 * @return false if the point is not in front of the eye
+	 */
+	boolean project(double x, double y, double z, double[] pixel) {
+		double qx = x - eye.x;
+		double qy = y - eye.y;
+		double qz = z - eye.z;
+		double t = depth.x * qx + depth.y * qy + depth.z * qz;
+		if (!(t > 0)) {
+			return false;
+		}
+		pixel[0] = (across.x * qx + across.y * qy + across.z * qz) / t;
+		pixel[1] = (down.x * qx + down.y * qy + down.z * qz) / t;
+		return true;
+	}
+}
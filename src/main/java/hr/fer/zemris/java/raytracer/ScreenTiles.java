@@ -0,0 +1,299 @@
+package hr.fer.zemris.java.raytracer;
+
+import hr.fer.zemris.java.raytracer.model.Point3D;
+import hr.fer.zemris.java.raytracer.model.Sphere;
+
+/**
+ * The objects of a scene which can be seen in a frame, binned into square
+ * tiles of the screen, so that the primary rays of a pixel only need to be
+ * tested against the objects of its tile.
+ * <p>
+ * The view is given by the {@link ScreenProjection} of the primary rays.
+ * Spheres are first culled against the frustum of these rays: the plane of
+ * the eye, parallel to the screen, and the four planes through the eye and
+ * the edges of the screen. The spheres entirely in front of the eye are then
+ * projected onto the screen, and put into every tile their projection
+ * overlaps. Spheres which reach behind the eye are put into every tile, as
+ * are the objects which are not spheres, since their bounds are not known.
+ * <p>
+ * The objects of each tile are kept in the order of the scene, so the primary
+ * rays find the same intersections as they would in the whole scene, except
+ * that objects entirely behind the eye can no longer be seen.
+ *
+ * @author 0036502252
+ *
+ */
+class ScreenTiles {
+	/**
+	 * The width and height of a tile, in pixels.
+	 */
+	static final int TILE_SIZE = 16;
+	/**
+	 * The projections of the spheres are enlarged by this many pixels, so
+	 * that rounding errors can not leave a sphere out of a tile whose rays
+	 * hit it.
+	 */
+	private static final double PIXEL_MARGIN = 0.5;
+	/**
+	 * The radii of the spheres are enlarged by this fraction while culling,
+	 * for the same reason.
+	 */
+	private static final double CULLING_PADDING = 1E-9;
+
+	/**
+	 * The number of tiles in a row of the screen.
+	 */
+	private final int columns;
+	/**
+	 * The number of tiles in a column of the screen.
+	 */
+	private final int rows;
+	/**
+	 * The objects of the tile <code>t</code> are at the positions from
+	 * <code>starts[t]</code>, inclusive, to <code>starts[t + 1]</code>,
+	 * exclusive, in {@link #objects}.
+	 */
+	private final int[] starts;
+	/**
+	 * The indexes of the objects of all the tiles, tile after tile.
+	 */
+	private final int[] objects;
+	/**
+	 * The number of objects which were not culled.
+	 */
+	private final int visible;
+	/**
+	 * The number of objects in the scene.
+	 */
+	private final int total;
+
+	/**
+	 * Culls the objects of a scene against a view and bins them into tiles.
+	 *
+	 * @param spheres
+	 *            the objects of the scene, as spheres, with null for the
+	 *            objects which are not spheres
+	 * @param projection
+	 *            the projection of the primary rays
+	 */
+	ScreenTiles(Sphere[] spheres, ScreenProjection projection) {
+		int width = projection.width;
+		int height = projection.height;
+		columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+		rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+		total = spheres.length;
+
+		Point3D eye = projection.eye;
+		boolean bounded = projection.valid;
+		Point3D depth = projection.depth;
+		Point3D across = projection.across;
+		Point3D down = projection.down;
+		// the planes of the frustum, as normals pointing inside
+		Point3D[] planes = { depth, across,
+				depth.scalarMultiply(width - 1).sub(across), down,
+				depth.scalarMultiply(height - 1).sub(down) };
+
+		// the tiles of each object: first and last column, first and last
+		// row, or an empty range if it was culled
+		int[] ranges = new int[4 * spheres.length];
+		int[] counts = new int[columns * rows + 1];
+		int[] range = new int[4];
+		double[] extent = new double[2];
+		int visible = 0;
+		for (int i = 0; i < spheres.length; i++) {
+			range[0] = 0;
+			range[1] = columns - 1;
+			range[2] = 0;
+			range[3] = rows - 1;
+			Sphere sphere = spheres[i];
+			if (sphere != null && bounded) {
+				Point3D center = sphere.getCenter().sub(eye);
+				double radius = sphere.getRadius() * (1 + CULLING_PADDING);
+				if (!project(center, radius, depth, across, down, planes,
+						width, height, range, extent)) {
+					range[1] = -1;
+				}
+			}
+			System.arraycopy(range, 0, ranges, 4 * i, 4);
+			if (range[1] >= range[0] && range[3] >= range[2]) {
+				visible++;
+				for (int y = range[2]; y <= range[3]; y++) {
+					for (int x = range[0]; x <= range[1]; x++) {
+						counts[y * columns + x + 1]++;
+					}
+				}
+			}
+		}
+		this.visible = visible;
+
+		for (int t = 0; t < columns * rows; t++) {
+			counts[t + 1] += counts[t];
+		}
+		starts = counts.clone();
+		objects = new int[counts[columns * rows]];
+		for (int i = 0; i < spheres.length; i++) {
+			for (int y = ranges[4 * i + 2]; y <= ranges[4 * i + 3]; y++) {
+				for (int x = ranges[4 * i]; x <= ranges[4 * i + 1]; x++) {
+					objects[counts[y * columns + x]++] = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Culls a sphere and finds the tiles its projection overlaps.
+	 *
+	 * @param center
+	 *            the center of the sphere, relative to the eye
+	 * @param radius
+	 *            the radius of the sphere
+	 * @param depth
+	 *            gives the depth of a point along the rays
+	 * @param across
+	 *            gives the column a point is seen at, scaled by its depth
+	 * @param down
+	 *            gives the row a point is seen at, scaled by its depth
+	 * @param planes
+	 *            the planes of the frustum, as normals pointing inside
+	 * @param width
+	 *            the width of the image, in pixels
+	 * @param height
+	 *            the height of the image, in pixels
+	 * @param range
+	 *            holds the first and last column and the first and last row
+	 *            of all the tiles, and receives the ones of the tiles the
+	 *            sphere overlaps, which may be empty
+	 * @param extent
+	 *            used to find the pixels the sphere is seen at
+	 * @return false if the sphere is outside of the frustum
+	 */
+	private static boolean project(Point3D center, double radius,
+			Point3D depth, Point3D across, Point3D down, Point3D[] planes,
+			int width, int height, int[] range, double[] extent) {
+		for (Point3D plane : planes) {
+			if (plane.scalarProduct(center) < -radius * plane.norm()) {
+				return false;
+			}
+		}
+		if (depth.scalarProduct(center) <= radius * depth.norm()) {
+			// reaches behind the eye, so its projection is unbounded
+			return true;
+		}
+
+		if (!extent(center, radius, depth, across, extent)) {
+			return true;
+		}
+		range[0] = Math.max(0, (int) Math.floor(extent[0]) / TILE_SIZE);
+		range[1] = Math.min(range[1],
+				(int) Math.min(width - 1, Math.floor(extent[1])) / TILE_SIZE);
+		if (!extent(center, radius, depth, down, extent)) {
+			return true;
+		}
+		range[2] = Math.max(0, (int) Math.floor(extent[0]) / TILE_SIZE);
+		range[3] = Math.min(range[3],
+				(int) Math.min(height - 1, Math.floor(extent[1])) / TILE_SIZE);
+		return true;
+	}
+
+	/**
+	 * Finds the pixels, along one axis of the screen, at which a sphere
+	 * entirely in front of the eye is seen. These are where the planes
+	 * through the eye which touch the sphere meet the screen.
+	 *
+	 * @param center
+	 *            the center of the sphere, relative to the eye
+	 * @param radius
+	 *            the radius of the sphere
+	 * @param depth
+	 *            gives the depth of a point along the rays
+	 * @param axis
+	 *            gives the pixel along the axis a point is seen at, scaled by
+	 *            its depth
+	 * @param extent
+	 *            receives the first and the last pixel, enlarged by
+	 *            {@link #PIXEL_MARGIN}
+	 * @return false if the extent could not be found
+	 */
+	private static boolean extent(Point3D center, double radius, Point3D depth,
+			Point3D axis, double[] extent) {
+		// the plane through the eye seen at pixel p has the normal
+		// axis - p * depth; it touches the sphere when the distance of the
+		// center from it is the radius, a quadratic equation in p
+		double ac = depth.scalarProduct(center);
+		double bc = axis.scalarProduct(center);
+		double r2 = radius * radius;
+		double a = ac * ac - r2 * depth.scalarProduct(depth);
+		double b = ac * bc - r2 * depth.scalarProduct(axis);
+		double c = bc * bc - r2 * axis.scalarProduct(axis);
+		double discriminant = b * b - a * c;
+		if (!(a > 0 && discriminant >= 0)) {
+			return false;
+		}
+		double root = Math.sqrt(discriminant);
+		extent[0] = (b - root) / a - PIXEL_MARGIN;
+		extent[1] = (b + root) / a + PIXEL_MARGIN;
+		return !Double.isNaN(extent[0]) && !Double.isNaN(extent[1]);
+	}
+
+	/**
+	 * @param x
+	 *            the column of a pixel
+	 * @param y
+	 *            the row of a pixel
+	 * @return the index of the tile holding the pixel
+	 */
+	int tile(int x, int y) {
+		return y / TILE_SIZE * columns + x / TILE_SIZE;
+	}
+
+	/**
+	 * @param tile
+	 *            the index of a tile
+	 * @return the position of the first object of the tile in
+	 *         {@link #getObjects()}
+	 */
+	int getStart(int tile) {
+		return starts[tile];
+	}
+
+	/**
+	 * @param tile
+	 *            the index of a tile
+	 * @return the position after the last object of the tile in
+	 *         {@link #getObjects()}
+	 */
+	int getEnd(int tile) {
+		return starts[tile + 1];
+	}
+
+	/**
+	 * Returns the indexes of the objects of all the tiles, tile after tile,
+	 * each in the order of the scene. The array must not be changed.
+	 *
+	 * @return the indexes of the objects of the tiles
+	 */
+	int[] getObjects() {
+		return objects;
+	}
+
+	/**
+	 * @return the number of tiles
+	 */
+	int getTileCount() {
+		return columns * rows;
+	}
+
+	/**
+	 * @return the number of objects which were not culled
+	 */
+	int getVisibleCount() {
+		return visible;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Tiles: %d, objects in view: %d of %d, "
+				+ "per tile: %.1f", getTileCount(), visible, total,
+				(double) objects.length / getTileCount());
+	}
+}
@@ -1,5 +1,7 @@
 package hr.fer.zemris.java.raytracer.model;
 
+import hr.fer.zemris.math.MutableVector3;
+
 /**
  * A sphere graphical object implementation. Can be rendered in a {@link Scene}
  * when implementing a ray-caster.
@@ -45,6 +47,18 @@ public class Sphere extends GraphicalObject {
 	 * color component.
 	 */
 	double krn;
+	/**
+	 * The fraction of light the sphere reflects like a mirror.
+	 */
+	double reflectivity;
+	/**
+	 * The fraction of light which passes through the sphere.
+	 */
+	double transparency;
+	/**
+	 * The refractive index of the sphere.
+	 */
+	double refractiveIndex = 1;
 
 	/**
 	 * Constructs a new {@link Sphere}.
@@ -82,6 +96,47 @@ public class Sphere extends GraphicalObject {
 		this.krn = krn;
 	}
 
+	/**
+	 * Constructs a new {@link Sphere} which can also reflect light like a
+	 * mirror and let it through. Reflected and refracted light is only traced
+	 * by renderers which follow secondary rays.
+	 * 
+	 * @param center
+	 *            center of the sphere
+	 * @param radius
+	 *            radius of the sphere
+	 * @param kdr
+	 *            diffuse coefficient of the sphere, for the color red
+	 * @param kdg
+	 *            diffuse coefficient of the sphere, for the color green
+	 * @param kdb
+	 *            diffuse coefficient of the sphere, for the color blue
+	 * @param krr
+	 *            reflective coefficient of the sphere, for the color red
+	 * @param krg
+	 *            reflective coefficient of the sphere, for the color green
+	 * @param krb
+	 *            reflective coefficient of the sphere, for the color blue
+	 * @param krn
+	 *            roughness index of the sphere, used for calculating the
+	 *            reflective color component
+	 * @param reflectivity
+	 *            the fraction of light the sphere reflects like a mirror
+	 * @param transparency
+	 *            the fraction of light which passes through the sphere
+	 * @param refractiveIndex
+	 *            the refractive index of the sphere
+	 */
+	public Sphere(Point3D center, double radius, double kdr, double kdg,
+			double kdb, double krr, double krg, double krb, double krn,
+			double reflectivity, double transparency,
+			double refractiveIndex) {
+		this(center, radius, kdr, kdg, kdb, krr, krg, krb, krn);
+		this.reflectivity = reflectivity;
+		this.transparency = transparency;
+		this.refractiveIndex = refractiveIndex;
+	}
+
 	/**
 	 * Calculates the nearest intersection of the ray and this sphere. Returns
 	 * null if no intersection is found.
@@ -160,4 +215,187 @@ public class Sphere extends GraphicalObject {
 			}
 		};
 	}
+
+	/**
+	 * Calculates the nearest intersection of the ray and this sphere, like
+	 * {@link #findClosestRayIntersection(Ray)}, but without creating any
+	 * objects.
+	 * 
+	 * @param start
+	 *            the start of the ray
+	 * @param direction
+	 *            the normalized direction of the ray
+	 * @param point
+	 *            receives the point of intersection
+	 * @return the distance of the intersection, the same one the intersection
+	 *         found by {@link #findClosestRayIntersection(Ray)} has, or
+	 *         {@link Double#NaN} if no intersection is found
+	 */
+	public double findClosestRayIntersection(MutableVector3 start,
+			MutableVector3 direction, MutableVector3 point) {
+		double ox = start.getX() - center.x;
+		double oy = start.getY() - center.y;
+		double oz = start.getZ() - center.z;
+
+		double b = 2 * (direction.getX() * ox + direction.getY() * oy
+				+ direction.getZ() * oz);
+		double c = ox * ox + oy * oy + oz * oz - radius * radius;
+		double discriminant = b * b - 4 * c;
+
+		if (discriminant < 0)
+			return Double.NaN; // no intersections found
+
+		double d1 = (-b + Math.sqrt(discriminant)) / 2.0;
+		double d2 = (-b - Math.sqrt(discriminant)) / 2.0;
+
+		double nearestDistance;
+
+		if (d1 < 0 && d2 > 0) {
+			nearestDistance = d2;
+		} else if (d1 > 0 && d2 < 0) {
+			nearestDistance = d1;
+		} else if (d1 < 0 && d2 < 0) {
+			nearestDistance = Math.max(d1, d2);
+		} else {
+			nearestDistance = Math.min(d1, d2);
+		}
+
+		point.set(start).addScaled(direction, nearestDistance);
+		return d2;
+	}
+
+	/**
+	 * Finds where a ray first hits this sphere, farther than the given
+	 * distance from its start. Unlike
+	 * {@link #findClosestRayIntersection(MutableVector3, MutableVector3, MutableVector3)},
+	 * intersections behind the start of the ray are ignored, so this can be
+	 * used for rays starting on the surface of a sphere.
+	 * 
+	 * @param start
+	 *            the start of the ray
+	 * @param direction
+	 *            the normalized direction of the ray
+	 * @param minDistance
+	 *            hits closer than this are ignored
+	 * @return the distance of the hit, or {@link Double#POSITIVE_INFINITY} if
+	 *         the ray does not hit the sphere
+	 */
+	public double findRayHit(MutableVector3 start, MutableVector3 direction,
+			double minDistance) {
+		double ox = start.getX() - center.x;
+		double oy = start.getY() - center.y;
+		double oz = start.getZ() - center.z;
+
+		double b = 2 * (direction.getX() * ox + direction.getY() * oy
+				+ direction.getZ() * oz);
+		double c = ox * ox + oy * oy + oz * oz - radius * radius;
+		double discriminant = b * b - 4 * c;
+
+		if (discriminant < 0)
+			return Double.POSITIVE_INFINITY;
+
+		double near = (-b - Math.sqrt(discriminant)) / 2.0;
+		if (near > minDistance)
+			return near;
+		double far = (-b + Math.sqrt(discriminant)) / 2.0;
+		return far > minDistance ? far : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Calculates the normal of this sphere at a point of intersection, like
+	 * {@link RayIntersection#getNormal()} of the intersections found by
+	 * {@link #findClosestRayIntersection(Ray)}.
+	 * 
+	 * @param point
+	 *            the point of intersection
+	 * @param normal
+	 *            receives the normal
+	 */
+	public void getNormal(MutableVector3 point, MutableVector3 normal) {
+		normal.set(center.x, center.y, center.z).sub(point).normalize();
+	}
+
+	/**
+	 * @return the center of the sphere
+	 */
+	public Point3D getCenter() {
+		return center;
+	}
+
+	/**
+	 * @return the radius of the sphere
+	 */
+	public double getRadius() {
+		return radius;
+	}
+
+	/**
+	 * @return the diffuse coefficient of the sphere, for the color red
+	 */
+	public double getKdr() {
+		return kdr;
+	}
+
+	/**
+	 * @return the diffuse coefficient of the sphere, for the color green
+	 */
+	public double getKdg() {
+		return kdg;
+	}
+
+	/**
+	 * @return the diffuse coefficient of the sphere, for the color blue
+	 */
+	public double getKdb() {
+		return kdb;
+	}
+
+	/**
+	 * @return the reflective coefficient of the sphere, for the color red
+	 */
+	public double getKrr() {
+		return krr;
+	}
+
+	/**
+	 * @return the reflective coefficient of the sphere, for the color green
+	 */
+	public double getKrg() {
+		return krg;
+	}
+
+	/**
+	 * @return the reflective coefficient of the sphere, for the color blue
+	 */
+	public double getKrb() {
+		return krb;
+	}
+
+	/**
+	 * @return the roughness index of the sphere
+	 */
+	public double getKrn() {
+		return krn;
+	}
+
+	/**
+	 * @return the fraction of light the sphere reflects like a mirror
+	 */
+	public double getReflectivity() {
+		return reflectivity;
+	}
+
+	/**
+	 * @return the fraction of light which passes through the sphere
+	 */
+	public double getTransparency() {
+		return transparency;
+	}
+
+	/**
+	 * @return the refractive index of the sphere
+	 */
+	public double getRefractiveIndex() {
+		return refractiveIndex;
+	}
 }
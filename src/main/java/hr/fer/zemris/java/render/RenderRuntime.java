@@ -0,0 +1,402 @@
+package hr.fer.zemris.java.render;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread pools shared by all renderers in the JVM. Provides:
+ * <ul>
+ * <li>a fixed number of named worker threads fed from a bounded queue, where
+ * each request gets its own lane and the workers take tasks from the lanes in
+ * turn, so a large frame can not starve a small one;</li>
+ * <li>a {@link ForkJoinPool} with the same parallelism, for renderers which
+ * split their work recursively;</li>
+ * <li>an executor for blocking I/O such as image encoding, which uses virtual
+ * threads when running on JDK 21 or later.</li>
+ * </ul>
+ * {@link #close()} stops all of them. Renderers normally use the
+ * {@link #shared()} instance, whose parallelism and queue capacity can be set
+ * with the <code>render.parallelism</code> and
+ * <code>render.queueCapacity</code> system properties.
+ *
+ * @author 0036502252
+ *
+ */
+public class RenderRuntime implements AutoCloseable {
+	/**
+	 * The default maximum number of queued tasks.
+	 */
+	private static final int DEFAULT_QUEUE_CAPACITY = 4096;
+	/**
+	 * How long {@link #close()} waits for running tasks to finish, in
+	 * milliseconds.
+	 */
+	private static final long SHUTDOWN_TIMEOUT = 5000;
+	/**
+	 * Used for numbering runtimes in thread names.
+	 */
+	private static final AtomicInteger INSTANCES = new AtomicInteger();
+	/**
+	 * The shared runtime, created on first use.
+	 */
+	private static RenderRuntime shared;
+
+	/**
+	 * The number of worker threads.
+	 */
+	private final int parallelism;
+	/**
+	 * The maximum number of queued tasks.
+	 */
+	private final int queueCapacity;
+	/**
+	 * The worker threads.
+	 */
+	private final Thread[] workers;
+	/**
+	 * Pool for recursively split work.
+	 */
+	private final ForkJoinPool forkJoinPool;
+	/**
+	 * Executor for blocking I/O.
+	 */
+	private final ExecutorService ioExecutor;
+
+	/**
+	 * Guards the task queue.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+	/**
+	 * Signalled when a task is queued or the runtime is closed.
+	 */
+	private final Condition notEmpty = lock.newCondition();
+	/**
+	 * Signalled when a task is taken from the queue.
+	 */
+	private final Condition notFull = lock.newCondition();
+	/**
+	 * Queued tasks of each request.
+	 */
+	private final Map<Object, ArrayDeque<Runnable>> lanes = new HashMap<>();
+	/**
+	 * Requests with queued tasks, in the order they are served.
+	 */
+	private final ArrayDeque<Object> ready = new ArrayDeque<>();
+	/**
+	 * The number of queued tasks.
+	 */
+	private int queued;
+	/**
+	 * Set once the runtime is closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Constructs a new {@link RenderRuntime} and starts its worker threads.
+	 *
+	 * @param parallelism
+	 *            the number of worker threads
+	 * @param queueCapacity
+	 *            the maximum number of queued tasks; submitting to a full
+	 *            queue waits until a task is taken
+	 * @throws IllegalArgumentException
+	 *             if an argument is not positive
+	 */
+	public RenderRuntime(int parallelism, int queueCapacity) {
+		if (parallelism < 1 || queueCapacity < 1) {
+			throw new IllegalArgumentException(
+					"Parallelism and queue capacity must be positive!");
+		}
+		this.parallelism = parallelism;
+		this.queueCapacity = queueCapacity;
+
+		String prefix = "render-" + INSTANCES.incrementAndGet() + "-";
+
+		workers = new Thread[parallelism];
+		for (int i = 0; i < parallelism; i++) {
+			workers[i] = new Thread(this::work, prefix + "worker-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+
+		AtomicInteger forkJoinThreads = new AtomicInteger();
+		forkJoinPool = new ForkJoinPool(parallelism, pool -> {
+			ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+					.newThread(pool);
+			t.setName(prefix + "fj-" + forkJoinThreads.getAndIncrement());
+			t.setDaemon(true);
+			return t;
+		}, null, false);
+
+		ioExecutor = newIoExecutor(prefix + "io-");
+	}
+
+	/**
+	 * Returns the runtime shared by all renderers, creating it if needed. A
+	 * closed shared runtime is replaced by a new one.
+	 *
+	 * @return the shared runtime
+	 */
+	public static synchronized RenderRuntime shared() {
+		if (shared == null || shared.isClosed()) {
+			shared = new RenderRuntime(
+					Integer.getInteger("render.parallelism",
+							Runtime.getRuntime().availableProcessors()),
+					Integer.getInteger("render.queueCapacity",
+							DEFAULT_QUEUE_CAPACITY));
+		}
+		return shared;
+	}
+
+	/**
+	 * Submits a task which belongs to the given request. Tasks of one request
+	 * run in the order they were submitted, while different requests take
+	 * turns. If the queue is full, waits until there is room, unless called
+	 * from a worker thread, in which case the task runs right away.
+	 *
+	 * @param request
+	 *            identifies the request; any object with identity semantics
+	 * @param task
+	 *            the task
+	 * @param <T>
+	 *            the type of the result of the task
+	 * @return the future result of the task
+	 * @throws RejectedExecutionException
+	 *             if the runtime is closed, or interrupted while waiting
+	 */
+	public <T> Future<T> submit(Object request, Callable<T> task) {
+		Objects.requireNonNull(request);
+		FutureTask<T> future = new FutureTask<>(task);
+
+		lock.lock();
+		try {
+			while (queued >= queueCapacity && !closed) {
+				if (isWorker(Thread.currentThread())) {
+					lock.unlock();
+					try {
+						future.run();
+					} finally {
+						lock.lock();
+					}
+					return future;
+				}
+				notFull.await();
+			}
+			if (closed) {
+				throw new RejectedExecutionException(
+						"The render runtime is closed!");
+			}
+
+			ArrayDeque<Runnable> lane = lanes.get(request);
+			if (lane == null) {
+				lane = new ArrayDeque<>();
+				lanes.put(request, lane);
+				ready.add(request);
+			}
+			lane.add(future);
+			queued++;
+			notEmpty.signal();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException(ex);
+		} finally {
+			lock.unlock();
+		}
+
+		return future;
+	}
+
+	/**
+	 * Main loop of a worker thread.
+	 */
+	private void work() {
+		while (true) {
+			Runnable task;
+
+			lock.lock();
+			try {
+				while (queued == 0 && !closed) {
+					notEmpty.await();
+				}
+				if (closed) {
+					return;
+				}
+
+				// serve the next request in turn, then move it to the back
+				Object request = ready.poll();
+				ArrayDeque<Runnable> lane = lanes.get(request);
+				task = lane.poll();
+				if (lane.isEmpty()) {
+					lanes.remove(request);
+				} else {
+					ready.add(request);
+				}
+				queued--;
+				notFull.signal();
+			} catch (InterruptedException ex) {
+				return;
+			} finally {
+				lock.unlock();
+			}
+
+			task.run();
+		}
+	}
+
+	/**
+	 * Checks whether the given thread is a worker of this runtime.
+	 *
+	 * @param thread
+	 *            the thread
+	 * @return true if the thread is a worker of this runtime
+	 */
+	private boolean isWorker(Thread thread) {
+		for (Thread worker : workers) {
+			if (worker == thread) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of tasks waiting in the queue
+	 */
+	public int getQueuedTasks() {
+		lock.lock();
+		try {
+			return queued;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of worker threads
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @return the pool for recursively split work
+	 */
+	public ForkJoinPool forkJoinPool() {
+		return forkJoinPool;
+	}
+
+	/**
+	 * @return the executor for blocking I/O work
+	 */
+	public ExecutorService ioExecutor() {
+		return ioExecutor;
+	}
+
+	/**
+	 * @return true if this runtime is closed
+	 */
+	public boolean isClosed() {
+		lock.lock();
+		try {
+			return closed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Closes this runtime. Queued tasks are cancelled, running tasks are given
+	 * a few seconds to finish, and all threads are stopped. Further
+	 * submissions are rejected.
+	 */
+	@Override
+	public void close() {
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+
+			for (ArrayDeque<Runnable> lane : lanes.values()) {
+				for (Runnable task : lane) {
+					((Future<?>) task).cancel(false);
+				}
+			}
+			lanes.clear();
+			ready.clear();
+			queued = 0;
+
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+
+		forkJoinPool.shutdown();
+		ioExecutor.shutdown();
+
+		long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT;
+		try {
+			for (Thread worker : workers) {
+				if (worker != Thread.currentThread()) {
+					worker.join(Math.max(1,
+							deadline - System.currentTimeMillis()));
+				}
+			}
+			forkJoinPool.awaitTermination(
+					Math.max(1, deadline - System.currentTimeMillis()),
+					TimeUnit.MILLISECONDS);
+			ioExecutor.awaitTermination(
+					Math.max(1, deadline - System.currentTimeMillis()),
+					TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		forkJoinPool.shutdownNow();
+		ioExecutor.shutdownNow();
+	}
+
+	/**
+	 * Creates the executor for blocking I/O. Uses a virtual thread per task
+	 * if the runtime supports it (JDK 21 or later), and a cached pool of named
+	 * daemon threads otherwise.
+	 *
+	 * @param prefix
+	 *            prefix of the thread names
+	 * @return the executor
+	 */
+	private static ExecutorService newIoExecutor(String prefix) {
+		try {
+			Method factory = Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException ex) {
+			// not available before JDK 21
+		}
+
+		AtomicInteger threads = new AtomicInteger();
+		ThreadFactory factory = target -> {
+			Thread t = new Thread(target, prefix + threads.getAndIncrement());
+			t.setDaemon(true);
+			return t;
+		};
+		return Executors.newCachedThreadPool(factory);
+	}
+}
@@ -44,6 +44,52 @@ public class Complex {
 	 * Threshold for comparing two complex numbers.
 	 */
 	private static final double DELTA = 1E-4;
+	/**
+	 * The polar form of this complex number, calculated on first use.
+	 */
+	private Polar polar;
+
+	/**
+	 * The polar form of a complex number: its module and its angle.
+	 */
+	public static final class Polar {
+		/**
+		 * The module of the complex number.
+		 */
+		private final double module;
+		/**
+		 * The angle of the complex number, in radians, between 0 and 2PI.
+		 */
+		private final double angle;
+
+		/**
+		 * Constructs a new {@link Polar}.
+		 * 
+		 * @param module
+		 *            the module of the complex number
+		 * @param angle
+		 *            the angle of the complex number
+		 */
+		private Polar(double module, double angle) {
+			this.module = module;
+			this.angle = angle;
+		}
+
+		/**
+		 * @return the module of the complex number
+		 */
+		public double getModule() {
+			return module;
+		}
+
+		/**
+		 * @return the angle of the complex number, in radians, between 0 and
+		 *         2PI
+		 */
+		public double getAngle() {
+			return angle;
+		}
+	}
 
 	/**
 	 * Constructs a new {@link Complex}.
@@ -110,6 +156,31 @@ public class Complex {
 		return Math.sqrt(real * real + imaginary * imaginary);
 	}
 
+	/**
+	 * Calculates the squared module of this complex number. Comparing squared
+	 * modules gives the same order as comparing modules, without taking a
+	 * square root.
+	 * 
+	 * @return the squared module of this complex number
+	 */
+	public double moduleSquared() {
+		return real * real + imaginary * imaginary;
+	}
+
+	/**
+	 * Calculates the squared distance between this and another complex
+	 * number, without creating their difference.
+	 * 
+	 * @param c
+	 *            the other complex number
+	 * @return the squared module of the difference of the complex numbers
+	 */
+	public double distanceSquared(Complex c) {
+		double re = real - c.real;
+		double im = imaginary - c.imaginary;
+		return re * re + im * im;
+	}
+
 	/**
 	 * Performs the division operation between this and another complex number.
 	 * 
@@ -126,7 +197,10 @@ public class Complex {
 	}
 
 	/**
-	 * Performs the power operation on this complex number.
+	 * Performs the power operation on this complex number. The power is
+	 * calculated by repeated squaring, which takes about <code>log2(n)</code>
+	 * multiplications and, unlike going through the polar form, is exact for
+	 * numbers with small integer parts.
 	 * 
 	 * @param n
 	 *            the desired power
@@ -135,8 +209,24 @@ public class Complex {
 	public Complex power(int n) {
 		if (n < 0)
 			throw new IllegalArgumentException("Argument must be >=0!");
-		double re = Math.pow(module(), n) * Math.cos(n * angle());
-		double im = Math.pow(module(), n) * Math.sin(n * angle());
+
+		double re = 1;
+		double im = 0;
+		double baseRe = real;
+		double baseIm = imaginary;
+		while (n > 0) {
+			if ((n & 1) != 0) {
+				double t = re * baseRe - im * baseIm;
+				im = re * baseIm + im * baseRe;
+				re = t;
+			}
+			n >>= 1;
+			if (n > 0) {
+				double t = baseRe * baseRe - baseIm * baseIm;
+				baseIm = 2 * baseRe * baseIm;
+				baseRe = t;
+			}
+		}
 		return new Complex(re, im);
 	}
 
@@ -144,8 +234,39 @@ public class Complex {
 	 * @return the angle of this complex number, in radians, between 0 and 2PI.
 	 */
 	public double angle() {
-		double angle = Math.atan2(imaginary, real);
-		return angle < 0 ? angle + Math.PI * 2 : angle;
+		return toPolar().getAngle();
+	}
+
+	/**
+	 * Returns the polar form of this complex number. It is calculated on the
+	 * first call and kept, so numbers whose angle is needed many times, such
+	 * as the roots of a polynomial, pay for it only once.
+	 * 
+	 * @return the polar form of this complex number
+	 */
+	public Polar toPolar() {
+		Polar p = polar;
+		if (p == null) {
+			double angle = Math.atan2(imaginary, real);
+			p = new Polar(module(), angle < 0 ? angle + Math.PI * 2 : angle);
+			// the fields of a polar form are final, so racing threads at
+			// worst calculate it twice
+			polar = p;
+		}
+		return p;
+	}
+
+	/**
+	 * Creates a complex number from its polar form.
+	 * 
+	 * @param module
+	 *            the module of the complex number
+	 * @param angle
+	 *            the angle of the complex number, in radians
+	 * @return the complex number
+	 */
+	public static Complex fromPolar(double module, double angle) {
+		return new Complex(module * Math.cos(angle), module * Math.sin(angle));
 	}
 
 	/**
@@ -161,8 +282,9 @@ public class Complex {
 		if (n <= 0)
 			throw new IllegalArgumentException("Argument must be >0!");
 
-		double nthRoot = rootN(module(), n);
-		double angle = angle();
+		Polar p = toPolar();
+		double nthRoot = rootN(p.getModule(), n);
+		double angle = p.getAngle();
 
 		List<Complex> roots = new ArrayList<>();
 
@@ -82,16 +82,16 @@ public class ComplexPolynomial {
 	}
 
 	/**
-	 * Computes polynomial value at given point z.
+	 * Computes polynomial value at given point z, using Horner's method.
 	 * 
 	 * @param z
 	 *            the point used for calculation
 	 * @return the complex number resulting from applying <code>z</code>
 	 */
 	public Complex apply(Complex z) {
-		Complex result = Complex.ZERO;
-		for (int i = 0, n = factors.length; i < n; i++) {
-			result = result.add(z.power(n - i - 1).mul(factors[i]));
+		Complex result = factors[0];
+		for (int i = 1, n = factors.length; i < n; i++) {
+			result = result.mul(z).add(factors[i]);
 		}
 
 		return result;
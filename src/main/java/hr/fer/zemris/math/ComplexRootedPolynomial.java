@@ -23,6 +23,11 @@ public class ComplexRootedPolynomial {
 	 * The roots of this polynomial.
 	 */
 	private final Complex[] roots;
+	/**
+	 * Radii of the immediate convergence discs around the roots, calculated
+	 * on first use.
+	 */
+	private volatile double[] convergenceRadii;
 
 	/**
 	 * Constructs a new {@link ComplexRootedPolynomial}.
@@ -40,6 +45,72 @@ public class ComplexRootedPolynomial {
 		this.roots = Arrays.copyOf(roots, roots.length);
 	}
 
+	/**
+	 * @return a copy of the roots of this polynomial
+	 */
+	public Complex[] getRoots() {
+		return Arrays.copyOf(roots, roots.length);
+	}
+
+	/**
+	 * Returns, for each root, the radius of a disc around it in which Newton's
+	 * method is guaranteed to converge to that root. If <code>d</code> is the
+	 * distance from the root to its nearest neighbour and <code>n</code> the
+	 * number of roots, the radius is <code>d/(2n-1)</code>: within it, the
+	 * error of a Newton step is at most <code>q/(1-q)</code> times the
+	 * previous error, where <code>q = (n-1)|e|/(d-|e|) &lt; 1/2</code>, so
+	 * every step moves strictly closer to the root. Multiple roots get a
+	 * radius of 0.
+	 * 
+	 * @return a copy of the convergence radii, in the order of the roots
+	 */
+	public double[] getConvergenceRadii() {
+		double[] radii = convergenceRadii;
+		if (radii == null) {
+			radii = calculateConvergenceRadii();
+			convergenceRadii = radii;
+		}
+		return Arrays.copyOf(radii, radii.length);
+	}
+
+	/**
+	 * Calculates the convergence radii. Nearest neighbours are found by
+	 * sweeping over the roots sorted by their real parts, so only roots whose
+	 * real parts are close are compared.
+	 * 
+	 * @return the convergence radii
+	 */
+	private double[] calculateConvergenceRadii() {
+		int n = roots.length;
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(roots[a].getReal(),
+				roots[b].getReal()));
+
+		double[] radii = new double[n];
+		for (int p = 0; p < n; p++) {
+			Complex root = roots[order[p]];
+			double nearest = Double.POSITIVE_INFINITY;
+
+			for (int direction = -1; direction <= 1; direction += 2) {
+				for (int q = p + direction; q >= 0 && q < n; q += direction) {
+					Complex other = roots[order[q]];
+					double dRe = other.getReal() - root.getReal();
+					if (dRe * dRe >= nearest) {
+						break;
+					}
+					double dIm = other.getImaginary() - root.getImaginary();
+					nearest = Math.min(nearest, dRe * dRe + dIm * dIm);
+				}
+			}
+
+			radii[order[p]] = Math.sqrt(nearest) / (2 * n - 1);
+		}
+		return radii;
+	}
+
 	/**
 	 * Computes polynomial value at given point z.
 	 * 
@@ -58,24 +129,27 @@ public class ComplexRootedPolynomial {
 	}
 
 	/**
-	 * Converts this representation to {@link ComplexPolynomial} type.
+	 * Converts this representation to {@link ComplexPolynomial} type. The
+	 * linear factors are multiplied out in a product tree, see
+	 * {@link PolynomialExpansion}.
 	 * 
-	 * @return
+	 * @return the polynomial with the same roots
 	 */
 	public ComplexPolynomial toComplexPolynom() {
-		if (roots.length == 0)
-			return new ComplexPolynomial();
-
-		ComplexPolynomial result = new ComplexPolynomial(Complex.ONE,
-				roots[0].negate());
+		double[] rootsRe = new double[roots.length];
+		double[] rootsIm = new double[roots.length];
+		for (int i = 0; i < roots.length; i++) {
+			rootsRe[i] = roots[i].getReal();
+			rootsIm[i] = roots[i].getImaginary();
+		}
 
-		for (int i = 1, n = roots.length; i < n; i++) {
-			ComplexPolynomial nextPolynomial = new ComplexPolynomial(
-					Complex.ONE, roots[i].negate());
-			result = result.multiply(nextPolynomial);
+		double[] expanded = PolynomialExpansion.expand(rootsRe, rootsIm);
+		Complex[] factors = new Complex[expanded.length / 2];
+		for (int i = 0; i < factors.length; i++) {
+			factors[i] = new Complex(expanded[2 * i], expanded[2 * i + 1]);
 		}
 
-		return result;
+		return new ComplexPolynomial(factors);
 	}
 
 	@Override
@@ -102,14 +176,17 @@ public class ComplexRootedPolynomial {
 	public int indexOfClosestRootFor(Complex z, double threshold) {
 		int minIndex = INVALID_INDEX;
 
+		double minDistance = 0;
+
 		for (int i = 0, n = roots.length; i < n; i++) {
-			if (minIndex == INVALID_INDEX || (z.sub(roots[i])
-					.module() < (z.sub(roots[minIndex]).module()))) {
+			double distance = z.distanceSquared(roots[i]);
+			if (minIndex == INVALID_INDEX || distance < minDistance) {
 				minIndex = i;
+				minDistance = distance;
 			}
 		}
 
-		return (z.sub(roots[minIndex]).module()) < threshold ? minIndex + 1
+		return minDistance < threshold * threshold ? minIndex + 1
 				: INVALID_INDEX;
 
 	}
@@ -0,0 +1,273 @@
+package hr.fer.zemris.math;
+
+/**
+ * A mutable double-double number. The value is represented as the unevaluated
+ * sum <code>hi + lo</code> of two doubles, where <code>|lo|</code> is at most
+ * half an ulp of <code>hi</code>, which gives about 106 bits of mantissa
+ * using only hardware double arithmetic.
+ * <p>
+ * All arithmetic operations modify this instance and return it, so a
+ * calculation can reuse a fixed set of instances instead of allocating a new
+ * object for every intermediate result.
+ *
+ * @author 0036502252
+ *
+ */
+public class DoubleDouble {
+	/**
+	 * Used for splitting a double into two non-overlapping halves, equal to
+	 * 2^27 + 1.
+	 */
+	private static final double SPLITTER = 134217729.0;
+	/**
+	 * The leading component of the number.
+	 */
+	private double hi;
+	/**
+	 * The trailing component of the number.
+	 */
+	private double lo;
+
+	/**
+	 * Constructs a new {@link DoubleDouble} equal to zero.
+	 */
+	public DoubleDouble() {
+	}
+
+	/**
+	 * Constructs a new {@link DoubleDouble} equal to the given double.
+	 *
+	 * @param value
+	 *            the initial value
+	 */
+	public DoubleDouble(double value) {
+		this.hi = value;
+	}
+
+	/**
+	 * @return the leading component of this number
+	 */
+	public double getHi() {
+		return hi;
+	}
+
+	/**
+	 * @return the trailing component of this number
+	 */
+	public double getLo() {
+		return lo;
+	}
+
+	/**
+	 * @return this number, rounded to the nearest double
+	 */
+	public double doubleValue() {
+		return hi + lo;
+	}
+
+	/**
+	 * Sets this number to the given double.
+	 *
+	 * @param value
+	 *            the new value
+	 * @return this number
+	 */
+	public DoubleDouble set(double value) {
+		hi = value;
+		lo = 0;
+		return this;
+	}
+
+	/**
+	 * Sets this number to the value of another.
+	 *
+	 * @param other
+	 *            the number whose value is copied
+	 * @return this number
+	 */
+	public DoubleDouble set(DoubleDouble other) {
+		hi = other.hi;
+		lo = other.lo;
+		return this;
+	}
+
+	/**
+	 * Adds a double to this number.
+	 *
+	 * @param b
+	 *            the double to be added
+	 * @return this number
+	 */
+	public DoubleDouble add(double b) {
+		double s = hi + b;
+		double e = twoSumError(hi, b, s) + lo;
+		return normalize(s, e);
+	}
+
+	/**
+	 * Adds another number to this number.
+	 *
+	 * @param b
+	 *            the number to be added
+	 * @return this number
+	 */
+	public DoubleDouble add(DoubleDouble b) {
+		double s = hi + b.hi;
+		double e = twoSumError(hi, b.hi, s) + lo + b.lo;
+		return normalize(s, e);
+	}
+
+	/**
+	 * Subtracts a double from this number.
+	 *
+	 * @param b
+	 *            the double to be subtracted
+	 * @return this number
+	 */
+	public DoubleDouble sub(double b) {
+		return add(-b);
+	}
+
+	/**
+	 * Subtracts another number from this number.
+	 *
+	 * @param b
+	 *            the number to be subtracted
+	 * @return this number
+	 */
+	public DoubleDouble sub(DoubleDouble b) {
+		double s = hi - b.hi;
+		double e = twoSumError(hi, -b.hi, s) + lo - b.lo;
+		return normalize(s, e);
+	}
+
+	/**
+	 * Multiplies this number with a double.
+	 *
+	 * @param b
+	 *            the double factor
+	 * @return this number
+	 */
+	public DoubleDouble mul(double b) {
+		double p = hi * b;
+		double e = twoProductError(hi, b, p) + lo * b;
+		return normalize(p, e);
+	}
+
+	/**
+	 * Multiplies this number with another.
+	 *
+	 * @param b
+	 *            the other factor
+	 * @return this number
+	 */
+	public DoubleDouble mul(DoubleDouble b) {
+		double p = hi * b.hi;
+		double e = twoProductError(hi, b.hi, p) + (hi * b.lo + lo * b.hi);
+		return normalize(p, e);
+	}
+
+	/**
+	 * Divides this number by a double.
+	 *
+	 * @param b
+	 *            the divisor
+	 * @return this number
+	 */
+	public DoubleDouble div(double b) {
+		double q1 = hi / b;
+		// remainder of the first quotient, computed exactly
+		double p = q1 * b;
+		double pe = twoProductError(q1, b, p);
+		double r = (hi - p - pe + lo) / b;
+		return normalize(q1, r);
+	}
+
+	/**
+	 * Divides this number by another.
+	 *
+	 * @param b
+	 *            the divisor
+	 * @return this number
+	 */
+	public DoubleDouble div(DoubleDouble b) {
+		double q1 = hi / b.hi;
+		// this - q1 * b, with the leading product computed exactly
+		double p = q1 * b.hi;
+		double pe = twoProductError(q1, b.hi, p);
+		double r = ((hi - p) - pe + lo - q1 * b.lo) / b.hi;
+		return normalize(q1, r);
+	}
+
+	/**
+	 * Negates this number.
+	 *
+	 * @return this number
+	 */
+	public DoubleDouble negate() {
+		hi = -hi;
+		lo = -lo;
+		return this;
+	}
+
+	/**
+	 * Stores <code>s + e</code> into this number so that the trailing
+	 * component does not overlap the leading one.
+	 *
+	 * @param s
+	 *            the leading sum
+	 * @param e
+	 *            the accumulated error
+	 * @return this number
+	 */
+	private DoubleDouble normalize(double s, double e) {
+		hi = s + e;
+		lo = e - (hi - s);
+		return this;
+	}
+
+	/**
+	 * Computes the rounding error of a floating point addition, so that
+	 * <code>a + b == s + error</code> holds exactly.
+	 *
+	 * @param a
+	 *            the first addend
+	 * @param b
+	 *            the second addend
+	 * @param s
+	 *            the rounded sum <code>a + b</code>
+	 * @return the rounding error of the sum
+	 */
+	public static double twoSumError(double a, double b, double s) {
+		double bb = s - a;
+		return (a - (s - bb)) + (b - bb);
+	}
+
+	/**
+	 * Computes the rounding error of a floating point multiplication, so that
+	 * <code>a * b == p + error</code> holds exactly. Uses Dekker's splitting
+	 * since fused multiply-add is not available on every supported runtime.
+	 *
+	 * @param a
+	 *            the first factor
+	 * @param b
+	 *            the second factor
+	 * @param p
+	 *            the rounded product <code>a * b</code>
+	 * @return the rounding error of the product
+	 */
+	public static double twoProductError(double a, double b, double p) {
+		double t = SPLITTER * a;
+		double aHi = t - (t - a);
+		double aLo = a - aHi;
+		t = SPLITTER * b;
+		double bHi = t - (t - b);
+		double bLo = b - bHi;
+		return ((aHi * bHi - p) + aHi * bLo + aLo * bHi) + aLo * bLo;
+	}
+
+	@Override
+	public String toString() {
+		return hi + " + " + lo;
+	}
+}
@@ -0,0 +1,250 @@
+package hr.fer.zemris.math;
+
+import java.util.Locale;
+
+/**
+ * A 3D vector which is changed in place. Unlike {@link Vector3}, operations do
+ * not create new vectors but store their result into this one and return it,
+ * so they can be chained. Meant for hot loops, where a few vectors are
+ * allocated up front and reused for every calculation.
+ * <p>
+ * Each operation computes its result exactly like the corresponding operation
+ * on immutable vectors, in the same order, so results are the same to the
+ * last bit.
+ *
+ * @author 0036502252
+ *
+ */
+public class MutableVector3 {
+	/**
+	 * The x-coordinate of the vector.
+	 */
+	private double x;
+	/**
+	 * The y-coordinate of the vector.
+	 */
+	private double y;
+	/**
+	 * The z-coordinate of the vector.
+	 */
+	private double z;
+
+	/**
+	 * Constructs a new zero {@link MutableVector3}.
+	 */
+	public MutableVector3() {
+	}
+
+	/**
+	 * Constructs a new {@link MutableVector3}.
+	 *
+	 * @param x
+	 *            x-coordinate of the vector
+	 * @param y
+	 *            y-coordinate of the vector
+	 * @param z
+	 *            z-coordinate of the vector
+	 */
+	public MutableVector3(double x, double y, double z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	/**
+	 * @return the x-coordinate of the vector
+	 */
+	public double getX() {
+		return x;
+	}
+
+	/**
+	 * @return the y-coordinate of the vector
+	 */
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * @return the z-coordinate of the vector
+	 */
+	public double getZ() {
+		return z;
+	}
+
+	/**
+	 * Sets the coordinates of this vector.
+	 *
+	 * @param x
+	 *            x-coordinate of the vector
+	 * @param y
+	 *            y-coordinate of the vector
+	 * @param z
+	 *            z-coordinate of the vector
+	 * @return this vector
+	 */
+	public MutableVector3 set(double x, double y, double z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		return this;
+	}
+
+	/**
+	 * Copies the coordinates of another vector into this one.
+	 *
+	 * @param other
+	 *            the vector to be copied
+	 * @return this vector
+	 */
+	public MutableVector3 set(MutableVector3 other) {
+		x = other.x;
+		y = other.y;
+		z = other.z;
+		return this;
+	}
+
+	/**
+	 * Adds another vector to this one.
+	 *
+	 * @param other
+	 *            the vector to be added
+	 * @return this vector
+	 */
+	public MutableVector3 add(MutableVector3 other) {
+		x += other.x;
+		y += other.y;
+		z += other.z;
+		return this;
+	}
+
+	/**
+	 * Adds a scaled vector to this one.
+	 *
+	 * @param other
+	 *            the vector to be scaled and added
+	 * @param s
+	 *            the value used for scaling
+	 * @return this vector
+	 */
+	public MutableVector3 addScaled(MutableVector3 other, double s) {
+		x += other.x * s;
+		y += other.y * s;
+		z += other.z * s;
+		return this;
+	}
+
+	/**
+	 * Subtracts another vector from this one.
+	 *
+	 * @param other
+	 *            the vector to be subtracted
+	 * @return this vector
+	 */
+	public MutableVector3 sub(MutableVector3 other) {
+		x -= other.x;
+		y -= other.y;
+		z -= other.z;
+		return this;
+	}
+
+	/**
+	 * Scales this vector using a scalar value.
+	 *
+	 * @param s
+	 *            the value used for scaling
+	 * @return this vector
+	 */
+	public MutableVector3 scale(double s) {
+		x *= s;
+		y *= s;
+		z *= s;
+		return this;
+	}
+
+	/**
+	 * Negates this vector.
+	 *
+	 * @return this vector
+	 */
+	public MutableVector3 negate() {
+		x = -x;
+		y = -y;
+		z = -z;
+		return this;
+	}
+
+	/**
+	 * Normalizes this vector.
+	 *
+	 * @return this vector
+	 */
+	public MutableVector3 normalize() {
+		double norm = norm();
+		x /= norm;
+		y /= norm;
+		z /= norm;
+		return this;
+	}
+
+	/**
+	 * Sets this vector to the cross product of two vectors. Either of them may
+	 * be this vector.
+	 *
+	 * @param a
+	 *            the first vector
+	 * @param b
+	 *            the second vector
+	 * @return this vector
+	 */
+	public MutableVector3 cross(MutableVector3 a, MutableVector3 b) {
+		double crossX = a.y * b.z - a.z * b.y;
+		double crossY = a.z * b.x - a.x * b.z;
+		double crossZ = a.x * b.y - a.y * b.x;
+		return set(crossX, crossY, crossZ);
+	}
+
+	/**
+	 * @return the norm of this vector
+	 */
+	public double norm() {
+		return Math.sqrt(x * x + y * y + z * z);
+	}
+
+	/**
+	 * Calculates the dot product of this and another vector.
+	 *
+	 * @param other
+	 *            the vector used for calculating the dot product
+	 * @return the resulting scalar
+	 */
+	public double dot(MutableVector3 other) {
+		return x * other.x + y * other.y + z * other.z;
+	}
+
+	/**
+	 * Calculates the distance between this and another point.
+	 *
+	 * @param other
+	 *            the other point
+	 * @return the distance between the points
+	 */
+	public double distance(MutableVector3 other) {
+		double dx = x - other.x;
+		double dy = y - other.y;
+		double dz = z - other.z;
+		return Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	/**
+	 * @return an immutable copy of this vector
+	 */
+	public Vector3 toVector3() {
+		return new Vector3(x, y, z);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "(%.6f, %.6f, %.6f)", x, y, z);
+	}
+}
@@ -0,0 +1,408 @@
+package hr.fer.zemris.math;
+
+/**
+ * Runs Newton-Raphson iteration for a batch of starting points at once,
+ * straight from the roots of the polynomial. Since
+ * <code>p'(z)/p(z) = 1/(z-z1) + ... + 1/(z-zn)</code>, the Newton step is the
+ * reciprocal of that sum.
+ * <p>
+ * The points are iterated in a fixed number of lanes, whose state is kept in
+ * primitive arrays, one per component. Every iteration runs over all the
+ * active lanes in simple counted loops without branches, which the JIT
+ * compiler can turn into SIMD instructions. Once a lane is finished it stops
+ * taking part in the loops: it is retired, the last active lane is moved into
+ * its place, and the next waiting point is taken into the freed lane. Points
+ * are therefore finished in no particular order, and the lanes stay full
+ * until the batch runs out of points.
+ * <p>
+ * A point is finished when it enters the immediate convergence disc of a
+ * root, when its Newton step gets shorter than the convergence threshold,
+ * when its orbit is caught in a cycle, or when it runs out of iterations.
+ * Cycles are detected using Brent's method, like in the single point kernels.
+ * Each point is iterated with exactly the same arithmetic as a single point
+ * would be, so the results do not depend on the batch.
+ * <p>
+ * Instances keep their lanes between calls and are not thread safe.
+ *
+ * @author 0036502252
+ *
+ */
+public class NewtonBatch {
+	/**
+	 * Real parts of the roots.
+	 */
+	private final double[] rootsRe;
+	/**
+	 * Imaginary parts of the roots.
+	 */
+	private final double[] rootsIm;
+	/**
+	 * Squared radii of the immediate convergence discs around the roots.
+	 */
+	private final double[] discRadiiSquared;
+	/**
+	 * The largest squared disc radius. Lanes whose nearest root is farther
+	 * away than this can not be inside a disc.
+	 */
+	private final double maxDiscRadiusSquared;
+	/**
+	 * Steps shorter than this mean the point has converged.
+	 */
+	private final double convergenceThreshold;
+	/**
+	 * Converged points farther than this from every root do not belong to
+	 * any root.
+	 */
+	private final double rootThreshold;
+	/**
+	 * Points coming back this close to a saved iterate are caught in a cycle.
+	 */
+	private final double cycleThreshold;
+	/**
+	 * The maximum number of iterations for a point.
+	 */
+	private final int maxIterations;
+
+	/**
+	 * Real parts of the iterates.
+	 */
+	private final double[] zRe;
+	/**
+	 * Imaginary parts of the iterates.
+	 */
+	private final double[] zIm;
+	/**
+	 * Real parts of the sums of the reciprocal distances.
+	 */
+	private final double[] sumRe;
+	/**
+	 * Imaginary parts of the sums of the reciprocal distances.
+	 */
+	private final double[] sumIm;
+	/**
+	 * Real parts of the Newton steps.
+	 */
+	private final double[] stepRe;
+	/**
+	 * Imaginary parts of the Newton steps.
+	 */
+	private final double[] stepIm;
+	/**
+	 * Squared distances from the nearest root.
+	 */
+	private final double[] nearest;
+	/**
+	 * Lengths of the last Newton steps.
+	 */
+	private final double[] module;
+	/**
+	 * Real parts of the iterates saved for cycle detection.
+	 */
+	private final double[] savedRe;
+	/**
+	 * Imaginary parts of the iterates saved for cycle detection.
+	 */
+	private final double[] savedIm;
+	/**
+	 * The number of iterations run in each lane.
+	 */
+	private final int[] iterations;
+	/**
+	 * The iteration at which each lane saves its next iterate.
+	 */
+	private final int[] checkpoint;
+	/**
+	 * The index of the point iterated in each lane.
+	 */
+	private final int[] point;
+
+	/**
+	 * Constructs a new {@link NewtonBatch}.
+	 *
+	 * @param rootsRe
+	 *            real parts of the roots
+	 * @param rootsIm
+	 *            imaginary parts of the roots
+	 * @param discRadiiSquared
+	 *            squared radii of the immediate convergence discs around the
+	 *            roots
+	 * @param lanes
+	 *            the number of points iterated at once
+	 * @param convergenceThreshold
+	 *            steps shorter than this mean the point has converged
+	 * @param rootThreshold
+	 *            converged points farther than this from every root do not
+	 *            belong to any root
+	 * @param cycleThreshold
+	 *            points coming back this close to a saved iterate are caught
+	 *            in a cycle
+	 * @param maxIterations
+	 *            the maximum number of iterations for a point
+	 * @throws IllegalArgumentException
+	 *             if there are no roots, the arrays differ in length, or there
+	 *             are no lanes
+	 * @see ComplexRootedPolynomial#getConvergenceRadii()
+	 */
+	public NewtonBatch(double[] rootsRe, double[] rootsIm,
+			double[] discRadiiSquared, int lanes, double convergenceThreshold,
+			double rootThreshold, double cycleThreshold, int maxIterations) {
+		if (rootsRe.length == 0 || rootsRe.length != rootsIm.length
+				|| rootsRe.length != discRadiiSquared.length) {
+			throw new IllegalArgumentException(
+					"There must be at least one root, with both parts and the disc given!");
+		}
+		if (lanes < 1) {
+			throw new IllegalArgumentException(
+					"There must be at least one lane!");
+		}
+		this.rootsRe = rootsRe.clone();
+		this.rootsIm = rootsIm.clone();
+		this.discRadiiSquared = discRadiiSquared.clone();
+		double max = 0;
+		for (double radius : discRadiiSquared) {
+			max = Math.max(max, radius);
+		}
+		this.maxDiscRadiusSquared = max;
+		this.convergenceThreshold = convergenceThreshold;
+		this.rootThreshold = rootThreshold;
+		this.cycleThreshold = cycleThreshold;
+		this.maxIterations = maxIterations;
+
+		zRe = new double[lanes];
+		zIm = new double[lanes];
+		sumRe = new double[lanes];
+		sumIm = new double[lanes];
+		stepRe = new double[lanes];
+		stepIm = new double[lanes];
+		nearest = new double[lanes];
+		module = new double[lanes];
+		savedRe = new double[lanes];
+		savedIm = new double[lanes];
+		iterations = new int[lanes];
+		checkpoint = new int[lanes];
+		point = new int[lanes];
+	}
+
+	/**
+	 * Iterates the given starting points.
+	 *
+	 * @param re
+	 *            real parts of the starting points
+	 * @param im
+	 *            imaginary parts of the starting points
+	 * @param count
+	 *            the number of starting points
+	 * @param roots
+	 *            receives the index of the root each point converges to,
+	 *            starting from 1, or 0 if it does not converge
+	 * @param iterationCounts
+	 *            receives the number of iterations run for each point
+	 * @return the number of points whose orbit was caught in a cycle
+	 */
+	public int iterate(double[] re, double[] im, int count, short[] roots,
+			int[] iterationCounts) {
+		int lanes = zRe.length;
+		int next = 0;
+		int active = 0;
+		int cycles = 0;
+
+		while (active < lanes && next < count) {
+			load(active++, next++, re, im);
+		}
+
+		while (active > 0) {
+			step(active);
+
+			// classify the lanes, retiring the finished ones; the last active
+			// lane takes the place of a retired one, and has been classified
+			// already since the lanes are walked backwards
+			for (int l = active - 1; l >= 0; l--) {
+				int iter = ++iterations[l];
+				int p = point[l];
+				int root = 0;
+				boolean finished = true;
+
+				if (nearest[l] < maxDiscRadiusSquared || nearest[l] == 0) {
+					root = rootInDisc(zRe[l], zIm[l]);
+				}
+				if (root == 0) {
+					zRe[l] -= stepRe[l];
+					zIm[l] -= stepIm[l];
+					if (!(module[l] > convergenceThreshold)) {
+						root = closestRoot(zRe[l], zIm[l]);
+					} else if (isCycle(zRe[l] - savedRe[l],
+							zIm[l] - savedIm[l])) {
+						cycles++;
+					} else {
+						if (iter == checkpoint[l]) {
+							savedRe[l] = zRe[l];
+							savedIm[l] = zIm[l];
+							checkpoint[l] <<= 1;
+						}
+						if (iter < maxIterations) {
+							finished = false;
+						} else {
+							root = closestRoot(zRe[l], zIm[l]);
+						}
+					}
+				}
+				if (!finished) {
+					continue;
+				}
+
+				roots[p] = (short) root;
+				iterationCounts[p] = iter;
+				if (next < count) {
+					load(l, next++, re, im);
+				} else {
+					move(--active, l);
+				}
+			}
+		}
+		return cycles;
+	}
+
+	/**
+	 * Calculates the Newton-Raphson step for the active lanes, without
+	 * taking it yet. Besides the step, the squared distance from the nearest
+	 * root is found for each lane.
+	 *
+	 * @param active
+	 *            the number of active lanes
+	 */
+	private void step(int active) {
+		for (int l = 0; l < active; l++) {
+			sumRe[l] = 0;
+			sumIm[l] = 0;
+			nearest[l] = Double.POSITIVE_INFINITY;
+		}
+
+		for (int i = 0, n = rootsRe.length; i < n; i++) {
+			double rRe = rootsRe[i];
+			double rIm = rootsIm[i];
+			for (int l = 0; l < active; l++) {
+				double dRe = zRe[l] - rRe;
+				double dIm = zIm[l] - rIm;
+				double distance = dRe * dRe + dIm * dIm;
+				sumRe[l] += dRe / distance;
+				sumIm[l] -= dIm / distance;
+				nearest[l] = Math.min(nearest[l], distance);
+			}
+		}
+
+		// the step is 1/sum = conj(sum)/|sum|^2
+		for (int l = 0; l < active; l++) {
+			double sumModule = sumRe[l] * sumRe[l] + sumIm[l] * sumIm[l];
+			double re = sumRe[l] / sumModule;
+			double im = -sumIm[l] / sumModule;
+			stepRe[l] = re;
+			stepIm[l] = im;
+			module[l] = Math.sqrt(re * re + im * im);
+		}
+	}
+
+	/**
+	 * Takes a starting point into a lane.
+	 *
+	 * @param l
+	 *            the lane
+	 * @param p
+	 *            the index of the point
+	 * @param re
+	 *            real parts of the starting points
+	 * @param im
+	 *            imaginary parts of the starting points
+	 */
+	private void load(int l, int p, double[] re, double[] im) {
+		zRe[l] = re[p];
+		zIm[l] = im[p];
+		savedRe[l] = re[p];
+		savedIm[l] = im[p];
+		iterations[l] = 0;
+		checkpoint[l] = 1;
+		point[l] = p;
+	}
+
+	/**
+	 * Moves the state of one lane into another.
+	 *
+	 * @param from
+	 *            the lane which is moved
+	 * @param to
+	 *            the lane it is moved into
+	 */
+	private void move(int from, int to) {
+		zRe[to] = zRe[from];
+		zIm[to] = zIm[from];
+		savedRe[to] = savedRe[from];
+		savedIm[to] = savedIm[from];
+		iterations[to] = iterations[from];
+		checkpoint[to] = checkpoint[from];
+		point[to] = point[from];
+	}
+
+	/**
+	 * Finds the root whose immediate convergence disc contains the point.
+	 * The discs do not overlap, so this is the root nearest to the point.
+	 *
+	 * @param re
+	 *            real part of the point
+	 * @param im
+	 *            imaginary part of the point
+	 * @return the index of the root, starting from 1, or 0 if the point is
+	 *         not inside any disc
+	 */
+	private int rootInDisc(double re, double im) {
+		int index = 0;
+		double distance = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < rootsRe.length; i++) {
+			double dRe = re - rootsRe[i];
+			double dIm = im - rootsIm[i];
+			double d = dRe * dRe + dIm * dIm;
+			if (d < distance) {
+				distance = d;
+				index = i;
+			}
+		}
+		return distance < discRadiiSquared[index] || distance == 0
+				? index + 1 : 0;
+	}
+
+	/**
+	 * Finds the root closest to a converged point.
+	 *
+	 * @param re
+	 *            real part of the point
+	 * @param im
+	 *            imaginary part of the point
+	 * @return the index of the closest root, starting from 1, or 0 if it is
+	 *         farther than the root threshold
+	 */
+	private int closestRoot(double re, double im) {
+		int index = 0;
+		double distance = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < rootsRe.length; i++) {
+			double dRe = re - rootsRe[i];
+			double dIm = im - rootsIm[i];
+			double d = dRe * dRe + dIm * dIm;
+			if (d < distance) {
+				distance = d;
+				index = i;
+			}
+		}
+		return distance < rootThreshold * rootThreshold ? index + 1 : 0;
+	}
+
+	/**
+	 * Checks whether an iterate has returned to the saved iterate.
+	 *
+	 * @param dRe
+	 *            real part of the distance from the saved iterate
+	 * @param dIm
+	 *            imaginary part of the distance from the saved iterate
+	 * @return true if the orbit is caught in a cycle
+	 */
+	private boolean isCycle(double dRe, double dIm) {
+		return dRe * dRe + dIm * dIm < cycleThreshold * cycleThreshold;
+	}
+}
@@ -0,0 +1,336 @@
+package hr.fer.zemris.math;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Expands a polynomial given by its roots, (z-z1)*(z-z2)*...*(z-zn), into its
+ * factors. The roots are split into a product tree: small groups of roots are
+ * multiplied out one linear factor at a time, and the partial products are
+ * then multiplied pairwise, using the fast Fourier transform once they are
+ * long enough. Independent branches of the tree are calculated in parallel
+ * on the fork/join pool of the calling thread, or the common pool.
+ * <p>
+ * The roots are sorted by their argument and each branch of the tree takes
+ * every other root of its parent, so the roots of every partial product are
+ * spread around the origin. The factors of such a product stay small; a
+ * product of roots lying next to each other has huge factors which cancel
+ * out later, and loses all precision. For the n-th roots of unity, for
+ * example, every partial product is of the form z^k - c.
+ * <p>
+ * Complex numbers are kept in primitive arrays, with the real and imaginary
+ * parts of each number next to each other. Factors are ordered from the
+ * highest power down, as in {@link ComplexPolynomial}.
+ * <p>
+ * The result of a Fourier multiplication is accurate relative to the largest
+ * factor of the product, so factors which are many orders of magnitude
+ * smaller than the largest one lose relative precision.
+ *
+ * @author 0036502252
+ *
+ */
+public class PolynomialExpansion {
+	/**
+	 * Polynomials with up to this many roots are multiplied out one linear
+	 * factor at a time, exactly like
+	 * {@link ComplexPolynomial#multiply(ComplexPolynomial)} would.
+	 */
+	private static final int SEQUENTIAL_ROOTS = 32;
+	/**
+	 * The number of roots at the leaves of the product tree.
+	 */
+	private static final int LEAF_ROOTS = 8;
+	/**
+	 * Partial products are multiplied using the Fourier transform once both
+	 * have more factors than this.
+	 */
+	private static final int FFT_THRESHOLD = 64;
+	/**
+	 * Branches of the product tree with more roots than this are calculated
+	 * in parallel.
+	 */
+	private static final int PARALLEL_THRESHOLD = 512;
+
+	/**
+	 * Utility class, not to be instantiated.
+	 */
+	private PolynomialExpansion() {
+	}
+
+	/**
+	 * Expands the polynomial with the given roots into its factors.
+	 *
+	 * @param rootsRe
+	 *            real parts of the roots
+	 * @param rootsIm
+	 *            imaginary parts of the roots
+	 * @return the factors from the highest power down, as real and imaginary
+	 *         parts next to each other
+	 * @throws IllegalArgumentException
+	 *             if there are no roots, or the arrays differ in length
+	 */
+	public static double[] expand(double[] rootsRe, double[] rootsIm) {
+		if (rootsRe.length == 0 || rootsRe.length != rootsIm.length) {
+			throw new IllegalArgumentException(
+					"There must be at least one root, with both parts given!");
+		}
+		int n = rootsRe.length;
+		if (n <= SEQUENTIAL_ROOTS) {
+			return new Product(rootsRe, rootsIm, 0, 1, n).leaf();
+		}
+
+		Integer[] order = new Integer[n];
+		double[] arguments = new double[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+			arguments[i] = Math.atan2(rootsIm[i], rootsRe[i]);
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(arguments[a],
+				arguments[b]));
+
+		double[] sortedRe = new double[n];
+		double[] sortedIm = new double[n];
+		for (int i = 0; i < n; i++) {
+			sortedRe[i] = rootsRe[order[i]];
+			sortedIm[i] = rootsIm[order[i]];
+		}
+		return new Product(sortedRe, sortedIm, 0, 1, n).invoke();
+	}
+
+	/**
+	 * Multiplies two polynomials, using the Fourier transform if both are
+	 * long enough.
+	 *
+	 * @param a
+	 *            factors of the first polynomial
+	 * @param b
+	 *            factors of the second polynomial
+	 * @return factors of the product
+	 */
+	public static double[] multiply(double[] a, double[] b) {
+		int la = a.length / 2;
+		int lb = b.length / 2;
+		if (Math.min(la, lb) > FFT_THRESHOLD) {
+			return multiplyFft(a, b);
+		}
+
+		double[] result = new double[2 * (la + lb - 1)];
+		for (int i = 0; i < la; i++) {
+			double aRe = a[2 * i];
+			double aIm = a[2 * i + 1];
+			for (int j = 0; j < lb; j++) {
+				double bRe = b[2 * j];
+				double bIm = b[2 * j + 1];
+				result[2 * (i + j)] += aRe * bRe - aIm * bIm;
+				result[2 * (i + j) + 1] += aRe * bIm + aIm * bRe;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Multiplies two polynomials using the Fourier transform.
+	 *
+	 * @param a
+	 *            factors of the first polynomial
+	 * @param b
+	 *            factors of the second polynomial
+	 * @return factors of the product
+	 */
+	static double[] multiplyFft(double[] a, double[] b) {
+		int la = a.length / 2;
+		int lb = b.length / 2;
+		int length = la + lb - 1;
+		int n = Integer.highestOneBit(length);
+		if (n < length) {
+			n <<= 1;
+		}
+
+		double[] aRe = new double[n];
+		double[] aIm = new double[n];
+		double[] bRe = new double[n];
+		double[] bIm = new double[n];
+		for (int i = 0; i < la; i++) {
+			aRe[i] = a[2 * i];
+			aIm[i] = a[2 * i + 1];
+		}
+		for (int i = 0; i < lb; i++) {
+			bRe[i] = b[2 * i];
+			bIm[i] = b[2 * i + 1];
+		}
+
+		fft(aRe, aIm, false);
+		fft(bRe, bIm, false);
+		for (int i = 0; i < n; i++) {
+			double re = aRe[i] * bRe[i] - aIm[i] * bIm[i];
+			aIm[i] = aRe[i] * bIm[i] + aIm[i] * bRe[i];
+			aRe[i] = re;
+		}
+		fft(aRe, aIm, true);
+
+		double[] result = new double[2 * length];
+		for (int i = 0; i < length; i++) {
+			result[2 * i] = aRe[i] / n;
+			result[2 * i + 1] = aIm[i] / n;
+		}
+		return result;
+	}
+
+	/**
+	 * Calculates the discrete Fourier transform in place, using the iterative
+	 * radix-2 algorithm. The result of the inverse transform is not scaled.
+	 *
+	 * @param re
+	 *            real parts, whose length is a power of two
+	 * @param im
+	 *            imaginary parts
+	 * @param inverse
+	 *            true for the inverse transform
+	 */
+	static void fft(double[] re, double[] im, boolean inverse) {
+		int n = re.length;
+
+		for (int i = 1, j = 0; i < n; i++) {
+			int bit = n >> 1;
+			for (; (j & bit) != 0; bit >>= 1) {
+				j ^= bit;
+			}
+			j ^= bit;
+			if (i < j) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+
+		for (int length = 2; length <= n; length <<= 1) {
+			int half = length >> 1;
+			double angle = (inverse ? 2 : -2) * Math.PI / length;
+			for (int k = 0; k < half; k++) {
+				// each twiddle factor is calculated directly, so rounding
+				// errors do not accumulate
+				double wRe = Math.cos(angle * k);
+				double wIm = Math.sin(angle * k);
+				for (int i = k; i < n; i += length) {
+					int j = i + half;
+					double tRe = re[j] * wRe - im[j] * wIm;
+					double tIm = re[j] * wIm + im[j] * wRe;
+					re[j] = re[i] - tRe;
+					im[j] = im[i] - tIm;
+					re[i] += tRe;
+					im[i] += tIm;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculates the product of the linear factors of the roots at evenly
+	 * spaced indexes.
+	 */
+	private static class Product extends RecursiveTask<double[]> {
+		/**
+		 * Auto-generated serial ID.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * Real parts of the roots.
+		 */
+		private final double[] rootsRe;
+		/**
+		 * Imaginary parts of the roots.
+		 */
+		private final double[] rootsIm;
+		/**
+		 * The index of the first root.
+		 */
+		private final int offset;
+		/**
+		 * The distance between the indexes of two consecutive roots.
+		 */
+		private final int stride;
+		/**
+		 * The number of roots.
+		 */
+		private final int count;
+
+		/**
+		 * Constructs a new {@link Product}.
+		 *
+		 * @param rootsRe
+		 *            real parts of the roots
+		 * @param rootsIm
+		 *            imaginary parts of the roots
+		 * @param offset
+		 *            the index of the first root
+		 * @param stride
+		 *            the distance between the indexes of two consecutive
+		 *            roots
+		 * @param count
+		 *            the number of roots
+		 */
+		Product(double[] rootsRe, double[] rootsIm, int offset, int stride,
+				int count) {
+			this.rootsRe = rootsRe;
+			this.rootsIm = rootsIm;
+			this.offset = offset;
+			this.stride = stride;
+			this.count = count;
+		}
+
+		@Override
+		protected double[] compute() {
+			if (count <= LEAF_ROOTS) {
+				return leaf();
+			}
+
+			Product even = new Product(rootsRe, rootsIm, offset, 2 * stride,
+					(count + 1) / 2);
+			Product odd = new Product(rootsRe, rootsIm, offset + stride,
+					2 * stride, count / 2);
+			if (count > PARALLEL_THRESHOLD) {
+				even.fork();
+				double[] b = odd.compute();
+				return multiply(even.join(), b);
+			}
+			return multiply(even.compute(), odd.compute());
+		}
+
+		/**
+		 * Multiplies out the linear factors one at a time.
+		 *
+		 * @return factors of the product
+		 */
+		private double[] leaf() {
+			double[] factors = new double[2 * (count + 1)];
+			factors[0] = 1;
+			factors[2] = -rootsRe[offset];
+			factors[3] = -rootsIm[offset];
+
+			for (int i = 1; i < count; i++) {
+				int r = offset + i * stride;
+				double nRe = -rootsRe[r];
+				double nIm = -rootsIm[r];
+				int length = i + 1;
+				// multiply by (z - r), from the lowest power up so the
+				// factors can be updated in place
+				for (int k = length; k > 0; k--) {
+					double aRe = factors[2 * (k - 1)];
+					double aIm = factors[2 * (k - 1) + 1];
+					double tRe = aRe * nRe - aIm * nIm;
+					double tIm = aRe * nIm + aIm * nRe;
+					if (k < length) {
+						tRe += factors[2 * k];
+						tIm += factors[2 * k + 1];
+					}
+					factors[2 * k] = tRe;
+					factors[2 * k + 1] = tIm;
+				}
+			}
+			return factors;
+		}
+	}
+}
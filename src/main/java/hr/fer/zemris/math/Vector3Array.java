@@ -0,0 +1,158 @@
+package hr.fer.zemris.math;
+
+/**
+ * A fixed number of 3D vectors, stored as three primitive arrays, one per
+ * coordinate. Used for batches of vectors which are all processed the same
+ * way, such as the ray directions of a row of pixels, without allocating an
+ * object per vector.
+ *
+ * @author 0036502252
+ *
+ */
+public class Vector3Array {
+	/**
+	 * The x-coordinates of the vectors.
+	 */
+	private final double[] x;
+	/**
+	 * The y-coordinates of the vectors.
+	 */
+	private final double[] y;
+	/**
+	 * The z-coordinates of the vectors.
+	 */
+	private final double[] z;
+
+	/**
+	 * Constructs a new {@link Vector3Array} of zero vectors.
+	 *
+	 * @param size
+	 *            the number of vectors
+	 * @throws IllegalArgumentException
+	 *             if the size is negative
+	 */
+	public Vector3Array(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException(
+					"The size must not be negative!");
+		}
+		x = new double[size];
+		y = new double[size];
+		z = new double[size];
+	}
+
+	/**
+	 * @return the number of vectors
+	 */
+	public int size() {
+		return x.length;
+	}
+
+	/**
+	 * @param i
+	 *            the index of the vector
+	 * @return the x-coordinate of the vector
+	 */
+	public double getX(int i) {
+		return x[i];
+	}
+
+	/**
+	 * @param i
+	 *            the index of the vector
+	 * @return the y-coordinate of the vector
+	 */
+	public double getY(int i) {
+		return y[i];
+	}
+
+	/**
+	 * @param i
+	 *            the index of the vector
+	 * @return the z-coordinate of the vector
+	 */
+	public double getZ(int i) {
+		return z[i];
+	}
+
+	/**
+	 * Copies a vector into the given mutable vector.
+	 *
+	 * @param i
+	 *            the index of the vector
+	 * @param dest
+	 *            receives the vector
+	 * @return the given mutable vector
+	 */
+	public MutableVector3 get(int i, MutableVector3 dest) {
+		return dest.set(x[i], y[i], z[i]);
+	}
+
+	/**
+	 * Sets a vector.
+	 *
+	 * @param i
+	 *            the index of the vector
+	 * @param x
+	 *            x-coordinate of the vector
+	 * @param y
+	 *            y-coordinate of the vector
+	 * @param z
+	 *            z-coordinate of the vector
+	 */
+	public void set(int i, double x, double y, double z) {
+		this.x[i] = x;
+		this.y[i] = y;
+		this.z[i] = z;
+	}
+
+	/**
+	 * Sets a vector.
+	 *
+	 * @param i
+	 *            the index of the vector
+	 * @param v
+	 *            the new value of the vector
+	 */
+	public void set(int i, MutableVector3 v) {
+		set(i, v.getX(), v.getY(), v.getZ());
+	}
+
+	/**
+	 * Subtracts a vector from all the vectors in a range.
+	 *
+	 * @param from
+	 *            the index of the first vector, inclusive
+	 * @param to
+	 *            the index of the last vector, exclusive
+	 * @param v
+	 *            the vector to be subtracted
+	 */
+	public void sub(int from, int to, MutableVector3 v) {
+		double vx = v.getX();
+		double vy = v.getY();
+		double vz = v.getZ();
+		for (int i = from; i < to; i++) {
+			x[i] -= vx;
+			y[i] -= vy;
+			z[i] -= vz;
+		}
+	}
+
+	/**
+	 * Normalizes all the vectors in a range.
+	 *
+	 * @param from
+	 *            the index of the first vector, inclusive
+	 * @param to
+	 *            the index of the last vector, exclusive
+	 */
+	public void normalize(int from, int to) {
+		for (int i = from; i < to; i++) {
+			double norm = Math.sqrt(x[i] * x[i] + y[i] * y[i] + z[i] * z[i]);
+			x[i] /= norm;
+			y[i] /= norm;
+			z[i] /= norm;
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package hr.fer.zemris.java.fractals;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.render.RenderRuntime;
+import hr.fer.zemris.math.Complex;
+import hr.fer.zemris.math.ComplexRootedPolynomial;
+
+/**
+ * Testing class for the {@link BatchRenderer} class.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestBatchRenderer {
+
+	private static ComplexRootedPolynomial rotatedRoots(int n, double angle) {
+		Complex[] roots = new Complex[n];
+		for (int i = 0; i < n; i++) {
+			double phi = angle + 2 * Math.PI * i / n;
+			roots[i] = new Complex(Math.cos(phi), Math.sin(phi));
+		}
+		return new ComplexRootedPolynomial(roots);
+	}
+
+	private static ComplexRootedPolynomial rootsOf(BatchRenderer.Job job) {
+		return ((NewtonKernel) job.kernel).getRoots();
+	}
+
+	private static List<BatchRenderer.Job> family(int count) {
+		List<BatchRenderer.Job> jobs = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			jobs.add(new BatchRenderer.Job(rotatedRoots(12 + i % 4, 0.1 * i),
+					-1.5, 1.5, -1.5, 1.5, 40, 37));
+		}
+		return jobs;
+	}
+
+	@Test
+	public void rendersEveryImageTest() throws Exception {
+		List<BatchRenderer.Job> jobs = family(10);
+		ConcurrentHashMap<Long, short[]> results = new ConcurrentHashMap<>();
+
+		try (RenderRuntime runtime = new RenderRuntime(3, 64)) {
+			new BatchRenderer(runtime, 4).render(jobs,
+					(data, numberOfColors, index) -> {
+						assertEquals(rootsOf(jobs.get((int) index))
+								.toComplexPolynom().order() + 1,
+								numberOfColors);
+						results.put(index, data);
+					});
+		}
+
+		assertEquals(jobs.size(), results.size());
+		for (int i = 0; i < jobs.size(); i++) {
+			BatchRenderer.Job job = jobs.get(i);
+			ComplexRootedPolynomial roots = rootsOf(job);
+			short[] expected = new short[job.width * job.height];
+			new RootFormCalculation(job.reMin, job.reMax, job.imMin,
+					job.imMax, job.width, job.height, 0, job.height - 1,
+					expected, roots.toComplexPolynom(), roots).call();
+			assertArrayEquals(expected, results.get((long) i));
+		}
+	}
+
+	@Test
+	public void boundsImagesInFlightTest() throws Exception {
+		List<BatchRenderer.Job> jobs = family(30);
+		AtomicInteger started = new AtomicInteger();
+		AtomicInteger delivered = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+
+		Iterable<BatchRenderer.Job> counting = () -> new Iterator<BatchRenderer.Job>() {
+			private Iterator<BatchRenderer.Job> it = jobs.iterator();
+
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public BatchRenderer.Job next() {
+				maxInFlight.accumulateAndGet(
+						started.getAndIncrement() - delivered.get(), Math::max);
+				return it.next();
+			}
+		};
+
+		try (RenderRuntime runtime = new RenderRuntime(2, 64)) {
+			new BatchRenderer(runtime, 2).render(counting,
+					(data, numberOfColors, index) -> delivered
+							.incrementAndGet());
+		}
+
+		assertEquals(jobs.size(), delivered.get());
+		// a job is only taken once its image has a permit
+		assertTrue("in flight: " + maxInFlight.get(), maxInFlight.get() < 2);
+	}
+
+	@Test(expected = ExecutionException.class)
+	public void sinkFailureTest() throws Exception {
+		try (RenderRuntime runtime = new RenderRuntime(2, 64)) {
+			new BatchRenderer(runtime, 2).render(family(5),
+					(data, numberOfColors, index) -> {
+						throw new IllegalStateException("disk full");
+					});
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void runtimeClosedTest() throws Exception {
+		List<BatchRenderer.Job> jobs = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			jobs.add(new BatchRenderer.Job(rotatedRoots(40, 0.1 * i), -1.5,
+					1.5, -1.5, 1.5, 300, 300));
+		}
+		RenderRuntime runtime = new RenderRuntime(1, 4096);
+		AtomicInteger started = new AtomicInteger();
+		Iterable<BatchRenderer.Job> closing = () -> new Iterator<BatchRenderer.Job>() {
+			private Iterator<BatchRenderer.Job> it = jobs.iterator();
+
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public BatchRenderer.Job next() {
+				if (started.incrementAndGet() == 3) {
+					// the sections of the first two images are still queued
+					runtime.close();
+				}
+				return it.next();
+			}
+		};
+
+		List<Long> delivered = new ArrayList<>();
+		try {
+			new BatchRenderer(runtime, 4).render(closing,
+					(data, numberOfColors, index) -> {
+						synchronized (delivered) {
+							delivered.add(index);
+						}
+					});
+			fail("The closed runtime must fail the batch!");
+		} catch (ExecutionException ex) {
+			// expected
+		} finally {
+			runtime.close();
+		}
+		assertTrue(delivered.isEmpty());
+		assertEquals(3, started.get());
+	}
+}
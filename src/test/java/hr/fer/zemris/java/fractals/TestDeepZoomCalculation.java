@@ -0,0 +1,51 @@
+package hr.fer.zemris.java.fractals;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+import hr.fer.zemris.math.Complex;
+import hr.fer.zemris.math.ComplexPolynomial;
+import hr.fer.zemris.math.ComplexRootedPolynomial;
+
+/**
+ * Compares the {@link DeepZoomCalculation} kernel against the double
+ * precision {@link Calculation} kernel.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestDeepZoomCalculation {
+
+	private static short[] render(boolean deepZoom,
+			ComplexRootedPolynomial roots, double reMin, double reMax,
+			double imMin, double imMax, int width, int height)
+			throws Exception {
+		ComplexPolynomial polynom = roots.toComplexPolynom();
+		short[] data = new short[width * height];
+		Calculation calculation = deepZoom
+				? new DeepZoomCalculation(reMin, reMax, imMin, imMax, width,
+						height, 0, height - 1, data, polynom, roots)
+				: new Calculation(reMin, reMax, imMin, imMax, width, height,
+						0, height - 1, data, polynom, roots);
+		calculation.call();
+		return data;
+	}
+
+	@Test
+	public void matchesDoubleKernelTest() throws Exception {
+		ComplexRootedPolynomial roots = new ComplexRootedPolynomial(
+				new Complex(1, 0), new Complex(-1, 0), new Complex(0, 1),
+				new Complex(0, -1), new Complex(0.3, 0.7),
+				new Complex(-1.2, -0.4));
+
+		// at shallow zooms doubles are precise enough, so every pixel,
+		// including the ones on basin boundaries, must be the same
+		assertArrayEquals(render(false, roots, -2, 2, -2, 2, 120, 90),
+				render(true, roots, -2, 2, -2, 2, 120, 90));
+		// a small area where the basins of all six roots meet
+		assertArrayEquals(
+				render(false, roots, 0.65, 0.66, 0.2, 0.21, 64, 48),
+				render(true, roots, 0.65, 0.66, 0.2, 0.21, 64, 48));
+	}
+}
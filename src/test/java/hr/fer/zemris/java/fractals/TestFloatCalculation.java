@@ -0,0 +1,86 @@
+package hr.fer.zemris.java.fractals;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import hr.fer.zemris.math.Complex;
+import hr.fer.zemris.math.ComplexPolynomial;
+import hr.fer.zemris.math.ComplexRootedPolynomial;
+
+/**
+ * Compares the {@link FloatCalculation} kernel against the double precision
+ * {@link Calculation} kernel.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestFloatCalculation {
+
+	private static short[] render(boolean useFloat,
+			ComplexRootedPolynomial roots, double reMin, double reMax,
+			double imMin, double imMax, int width, int height)
+			throws Exception {
+		ComplexPolynomial polynom = roots.toComplexPolynom();
+		short[] data = new short[width * height];
+		Calculation calculation = useFloat
+				? new FloatCalculation(reMin, reMax, imMin, imMax, width,
+						height, 0, height - 1, data, polynom, roots)
+				: new Calculation(reMin, reMax, imMin, imMax, width, height,
+						0, height - 1, data, polynom, roots);
+		calculation.call();
+		return data;
+	}
+
+	@Test
+	public void matchesDoubleKernelTest() throws Exception {
+		ComplexRootedPolynomial roots = new ComplexRootedPolynomial(
+				new Complex(1, 0), new Complex(-1, 0), new Complex(0, 1),
+				new Complex(0, -1));
+
+		short[] expected = render(false, roots, -2, 2, -2, 2, 120, 90);
+		short[] actual = render(true, roots, -2, 2, -2, 2, 120, 90);
+
+		int mismatches = 0;
+		for (int i = 0; i < expected.length; i++) {
+			if (expected[i] != actual[i]) {
+				mismatches++;
+			}
+		}
+		// only pixels on basin boundaries may be classified differently
+		assertTrue("mismatches: " + mismatches,
+				mismatches < expected.length / 100);
+	}
+
+	@Test
+	public void solidBasinMatchesExactlyTest() throws Exception {
+		ComplexRootedPolynomial roots = new ComplexRootedPolynomial(
+				new Complex(1, 0), new Complex(-1, 0), new Complex(0, 1),
+				new Complex(0, -1));
+
+		short[] expected = render(false, roots, 0.8, 1.2, -0.2, 0.2, 40, 40);
+		short[] actual = render(true, roots, 0.8, 1.2, -0.2, 0.2, 40, 40);
+
+		assertArrayEquals(expected, actual);
+	}
+
+	@Test
+	public void escalatesOnNonConvergentOrbitsTest() throws Exception {
+		// z^3 - 2z + 2 has an attracting cycle 0 -> 1 -> 0
+		ComplexRootedPolynomial roots = new ComplexRootedPolynomial(
+				new Complex(-1.7692923542386314, 0),
+				new Complex(0.884646177119316, 0.589742805022206),
+				new Complex(0.884646177119316, -0.589742805022206));
+		ComplexPolynomial polynom = roots.toComplexPolynom();
+		short[] data = new short[20 * 20];
+
+		FloatCalculation calculation = new FloatCalculation(-0.1, 0.1, -0.1,
+				0.1, 20, 20, 0, 19, data, polynom, roots);
+		calculation.call();
+
+		assertTrue(calculation.isEscalated());
+		assertArrayEquals(render(false, roots, -0.1, 0.1, -0.1, 0.1, 20, 20),
+				data);
+	}
+}
@@ -0,0 +1,109 @@
+package hr.fer.zemris.java.fractals;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.render.RenderRuntime;
+import hr.fer.zemris.math.Complex;
+import hr.fer.zemris.math.ComplexRootedPolynomial;
+
+/**
+ * Testing class for the {@link IterationKernel} implementations.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestIterationKernels {
+
+	private static final ComplexRootedPolynomial ROOTS = new ComplexRootedPolynomial(
+			new Complex(1, 0), new Complex(-1, 0), new Complex(0, 1),
+			new Complex(0, -1));
+
+	// 5x5 pixels at -2, -1, 0, 1 and 2 on both axes
+	private static short[] render(IterationKernel kernel) throws Exception {
+		short[] data = new short[5 * 5];
+		kernel.newCalculation(-2, 2, -2, 2, 5, 5, 0, 4, data).call();
+		return data;
+	}
+
+	private static short pixel(short[] data, int re, int im) {
+		return data[(2 - im) * 5 + re + 2];
+	}
+
+	@Test
+	public void mandelbrotTest() throws Exception {
+		MandelbrotKernel kernel = new MandelbrotKernel(100);
+		short[] data = render(kernel);
+
+		assertEquals(101, kernel.getNumberOfColors());
+		assertEquals(0, pixel(data, 0, 0));
+		assertEquals(0, pixel(data, -1, 0));
+		assertEquals(0, pixel(data, -2, 0));
+		// 0 -> 1 -> 2 -> 5, escaping after three iterations
+		assertEquals(4, pixel(data, 1, 0));
+		assertEquals(2, pixel(data, 2, 2));
+	}
+
+	@Test
+	public void juliaTest() throws Exception {
+		// with c = 0, the filled Julia set is the closed unit disc
+		short[] data = render(new JuliaKernel(Complex.ZERO, 50));
+
+		assertEquals(0, pixel(data, 0, 0));
+		assertEquals(0, pixel(data, 1, 0));
+		assertEquals(0, pixel(data, 0, -1));
+		assertTrue(pixel(data, 1, 1) != 0);
+		assertTrue(pixel(data, -2, 0) != 0);
+	}
+
+	@Test
+	public void halleyTest() throws Exception {
+		HalleyKernel kernel = new HalleyKernel(ROOTS);
+		short[] data = new short[9 * 9];
+		kernel.newCalculation(-1.2, 1.2, -1.2, 1.2, 9, 9, 0, 8, data).call();
+
+		assertEquals(5, kernel.getNumberOfColors());
+		// pixels on the axes near the roots converge to them
+		assertEquals(1, data[4 * 9 + 8]);
+		assertEquals(2, data[4 * 9]);
+		assertEquals(3, data[4]);
+		assertEquals(4, data[8 * 9 + 4]);
+	}
+
+	@Test
+	public void novaTest() throws Exception {
+		NovaKernel kernel = new NovaKernel(ROOTS);
+		short[] data = render(kernel);
+
+		// c = 0 leaves the orbit at the root it starts from
+		assertEquals(EscapeTimeCalculation.color(1,
+				kernel.getNumberOfColors()), pixel(data, 0, 0));
+	}
+
+	@Test
+	public void batchRendererTest() throws Exception {
+		MandelbrotKernel kernel = new MandelbrotKernel(64);
+		ConcurrentHashMap<Long, short[]> results = new ConcurrentHashMap<>();
+
+		try (RenderRuntime runtime = new RenderRuntime(2, 64)) {
+			new BatchRenderer(runtime, 2).render(
+					Arrays.asList(new BatchRenderer.Job(kernel, -2, 1, -1.5,
+							1.5, 31, 27)),
+					(data, numberOfColors, index) -> {
+						assertEquals(65, numberOfColors);
+						results.put(index, data);
+					});
+		}
+
+		short[] expected = new short[31 * 27];
+		kernel.newCalculation(-2, 1, -1.5, 1.5, 31, 27, 0, 26, expected)
+				.call();
+		assertArrayEquals(expected, results.get(0L));
+	}
+}
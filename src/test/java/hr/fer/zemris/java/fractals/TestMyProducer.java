@@ -0,0 +1,93 @@
+package hr.fer.zemris.java.fractals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.render.RenderRuntime;
+import hr.fer.zemris.math.Complex;
+import hr.fer.zemris.math.ComplexRootedPolynomial;
+
+/**
+ * Testing class for the {@link MyProducer} class.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestMyProducer {
+
+	private static final ComplexRootedPolynomial ROOTS = new ComplexRootedPolynomial(
+			new Complex(1, 0), new Complex(-1, 0), new Complex(0, 1),
+			new Complex(0, -1));
+
+	/**
+	 * Blocks the only worker of a runtime until it is closed, so that the
+	 * jobs submitted in the meantime stay queued.
+	 */
+	private static void blockUntilClosed(RenderRuntime runtime)
+			throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		runtime.submit(new Object(), () -> {
+			started.countDown();
+			while (!runtime.isClosed()) {
+				Thread.yield();
+			}
+			return null;
+		});
+		started.await();
+	}
+
+	@Test
+	public void runtimeClosedDuringProduceTest() throws Exception {
+		for (boolean subdivide : new boolean[] { false, true }) {
+			RenderRuntime runtime = new RenderRuntime(1, 4096);
+			MyProducer producer = new MyProducer(ROOTS, subdivide, runtime);
+			blockUntilClosed(runtime);
+
+			Thread closer = new Thread(() -> {
+				while (runtime.getQueuedTasks() < 8) {
+					Thread.yield();
+				}
+				runtime.close();
+			});
+			closer.start();
+
+			AtomicBoolean notified = new AtomicBoolean();
+			producer.produce(-2, 2, -2, 2, 200, 200, 0,
+					(data, numberOfColors, requestNo) -> notified.set(true));
+			closer.join();
+
+			assertTrue(runtime.isClosed());
+			assertTrue(!notified.get());
+			producer.close();
+		}
+	}
+
+	@Test
+	public void closeUnregistersMetricsTest() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName pattern = new ObjectName(
+				"hr.fer.zemris.java.fractals:type=MyProducer,*");
+		int before = server.queryNames(pattern, null).size();
+
+		try (RenderRuntime runtime = new RenderRuntime(1, 64)) {
+			MyProducer first = new MyProducer(ROOTS, false, runtime);
+			MyProducer second = new MyProducer(ROOTS, false, runtime);
+			assertEquals(before + 2, server.queryNames(pattern, null).size());
+
+			first.close();
+			assertEquals(before + 1, server.queryNames(pattern, null).size());
+			first.close();
+			second.close();
+			assertEquals(before, server.queryNames(pattern, null).size());
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package hr.fer.zemris.java.fractals;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import hr.fer.zemris.math.Complex;
+import hr.fer.zemris.math.ComplexPolynomial;
+import hr.fer.zemris.math.ComplexRootedPolynomial;
+
+/**
+ * Compares the {@link RootFormCalculation} kernel against the double
+ * precision {@link Calculation} kernel.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestRootFormCalculation {
+
+	private static short[] render(boolean rootForm,
+			ComplexRootedPolynomial roots, double reMin, double reMax,
+			double imMin, double imMax, int width, int height)
+			throws Exception {
+		ComplexPolynomial polynom = roots.toComplexPolynom();
+		short[] data = new short[width * height];
+		Calculation calculation = rootForm
+				? new RootFormCalculation(reMin, reMax, imMin, imMax, width,
+						height, 0, height - 1, data, polynom, roots)
+				: new Calculation(reMin, reMax, imMin, imMax, width, height,
+						0, height - 1, data, polynom, roots);
+		calculation.call();
+		return data;
+	}
+
+	@Test
+	public void matchesDoubleKernelTest() throws Exception {
+		ComplexRootedPolynomial roots = new ComplexRootedPolynomial(
+				new Complex(1, 0), new Complex(-1, 0), new Complex(0, 1),
+				new Complex(0, -1), new Complex(0.3, 0.7),
+				new Complex(-1.2, -0.4));
+
+		short[] expected = render(false, roots, -2, 2, -2, 2, 120, 90);
+		short[] actual = render(true, roots, -2, 2, -2, 2, 120, 90);
+
+		int mismatches = 0;
+		for (int i = 0; i < expected.length; i++) {
+			if (expected[i] != actual[i]) {
+				mismatches++;
+			}
+		}
+		// only pixels on basin boundaries may be classified differently
+		assertTrue("mismatches: " + mismatches,
+				mismatches < expected.length / 100);
+	}
+
+	@Test
+	public void highDegreeTest() throws Exception {
+		// near each root of z^200 - 1, the pixel must converge to that root
+		int n = 200;
+		Complex[] values = new Complex[n];
+		for (int i = 0; i < n; i++) {
+			values[i] = new Complex(Math.cos(2 * Math.PI * i / n),
+					Math.sin(2 * Math.PI * i / n));
+		}
+		ComplexRootedPolynomial roots = new ComplexRootedPolynomial(values);
+
+		for (int i = 0; i < n; i += 17) {
+			double re = 1.001 * values[i].getReal();
+			double im = 1.001 * values[i].getImaginary();
+			short[] data = render(true, roots, re, re + 1E-6, im, im + 1E-6,
+					2, 2);
+
+			assertEquals(i + 1, data[2]);
+		}
+	}
+
+	@Test
+	public void pixelOnRootTest() throws Exception {
+		ComplexRootedPolynomial roots = new ComplexRootedPolynomial(
+				new Complex(1, 0), new Complex(-1, 0), new Complex(0, 1));
+
+		short[] data = render(true, roots, -1, 1, 0, 1, 3, 2);
+
+		// bottom row: -1, 0 and 1 on the real axis
+		assertEquals(2, data[3]);
+		assertEquals(1, data[5]);
+	}
+
+	@Test
+	public void rowsMatchSinglePixelsTest() throws Exception {
+		ComplexRootedPolynomial roots = new ComplexRootedPolynomial(
+				new Complex(1, 0), new Complex(-1, 0), new Complex(0, 1),
+				new Complex(0, -1), new Complex(0.3, 0.7),
+				new Complex(-1.2, -0.4), new Complex(0.5, -0.5));
+		ComplexPolynomial polynom = roots.toComplexPolynom();
+		int width = 151;
+		int height = 97;
+
+		short[] rows = new short[width * height];
+		RootFormCalculation batched = new RootFormCalculation(-2, 2, -2, 2,
+				width, height, 0, height - 1, rows, polynom, roots);
+		batched.call();
+
+		RootFormCalculation single = new RootFormCalculation(-2, 2, -2, 2,
+				width, height, 0, height - 1, new short[0], polynom, roots);
+		short[] pixels = new short[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				pixels[y * width + x] = single.calculatePixel(x, y);
+			}
+		}
+
+		assertArrayEquals(pixels, rows);
+		assertEquals(single.getIterations(), batched.getIterations());
+		assertEquals(single.getBailouts(), batched.getBailouts());
+		assertArrayEquals(single.getHistogram(), batched.getHistogram());
+	}
+}
@@ -0,0 +1,125 @@
+package hr.fer.zemris.java.fractals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+import hr.fer.zemris.math.Complex;
+
+/**
+ * Testing class for the {@link RootLoader} class.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestRootLoader {
+
+	private static RootLoader parse(String text) {
+		RootLoader loader = new RootLoader();
+		loader.parse(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)));
+		return loader;
+	}
+
+	@Test
+	public void sameAsComplexParserTest() {
+		String[] lines = { "1", "-1 + i0", "i", "-i", "0 - i1", "-2.5 + i3",
+				"i0.5", ".25 - i.75", "3 -i2", "  7  " };
+		StringBuilder text = new StringBuilder();
+		for (String line : lines) {
+			text.append(line).append('\n');
+		}
+
+		RootLoader loader = parse(text.toString());
+
+		assertEquals(lines.length, loader.size());
+		for (int i = 0; i < lines.length; i++) {
+			Complex expected = new ComplexParser(lines[i]).parse();
+			assertEquals(expected.getReal(), loader.getReal()[i], 0);
+			assertEquals(expected.getImaginary(), loader.getImaginary()[i], 0);
+		}
+	}
+
+	@Test
+	public void skipsBlankLinesAndDoneTest() {
+		RootLoader loader = parse("1\r\n\r\n   \n-1\ndone\n");
+
+		assertEquals(2, loader.size());
+		assertEquals(-1, loader.getReal()[1], 0);
+	}
+
+	@Test
+	public void lastLineWithoutBreakTest() {
+		RootLoader loader = parse("1\n2 + i3");
+
+		assertEquals(2, loader.size());
+		assertEquals(3, loader.getImaginary()[1], 0);
+	}
+
+	@Test
+	public void correctlyRoundedTest() {
+		String[] numbers = { "0.1", "123456.789012345", "1.5e-7", "2E+10",
+				"0.30000000000000004", "1234567890123456789012", "1e-300",
+				"0.000000000000000000000000001" };
+		StringBuilder text = new StringBuilder();
+		for (String number : numbers) {
+			text.append(number).append(" - i").append(number).append('\n');
+		}
+
+		RootLoader loader = parse(text.toString());
+
+		for (int i = 0; i < numbers.length; i++) {
+			assertEquals(Double.parseDouble(numbers[i]), loader.getReal()[i], 0);
+			assertEquals(-Double.parseDouble(numbers[i]),
+					loader.getImaginary()[i], 0);
+		}
+	}
+
+	@Test
+	public void errorReportsLineNumberTest() {
+		try {
+			parse("1\n\n2 + i3\n4 + j5\n");
+			fail();
+		} catch (ParserException ex) {
+			assertTrue(ex.getMessage(), ex.getMessage().startsWith("Line 4:"));
+		}
+	}
+
+	@Test(expected = ParserException.class)
+	public void invalidNumberTest() {
+		parse("1.2.3");
+	}
+
+	@Test
+	public void streamAcrossChunksTest() throws Exception {
+		Random random = new Random(7);
+		int n = 20000;
+		double[] re = new double[n];
+		double[] im = new double[n];
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			re[i] = random.nextGaussian();
+			im[i] = random.nextGaussian();
+			text.append(String.format(Locale.ROOT, "%.17f %s i%.17f%n", re[i],
+					im[i] < 0 ? "-" : "+", Math.abs(im[i])));
+		}
+
+		RootLoader loader = RootLoader.load(new ByteArrayInputStream(
+				text.toString().getBytes(StandardCharsets.US_ASCII)));
+
+		double[] loadedRe = loader.getReal();
+		double[] loadedIm = loader.getImaginary();
+		assertEquals(n, loader.size());
+		for (int i = 0; i < n; i++) {
+			assertEquals(re[i], loadedRe[i], 1E-16);
+			assertEquals(im[i], loadedIm[i], 1E-16);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package hr.fer.zemris.java.raytracer;
+
+import java.util.Arrays;
+
+import hr.fer.zemris.java.raytracer.SceneGenerator.Distribution;
+import hr.fer.zemris.java.raytracer.model.Point3D;
+import hr.fer.zemris.java.raytracer.model.Scene;
+import hr.fer.zemris.java.render.RenderRuntime;
+
+/**
+ * Scenes and renders shared by the tests of the ray caster. Every render
+ * looks from an eye towards the origin, with the z-axis up, through a
+ * 20x20 screen.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+final class SceneFixtures {
+
+	/**
+	 * The eye of the {@link RayCaster} scene.
+	 */
+	static final Point3D EYE = new Point3D(10, 0, 0);
+
+	private SceneFixtures() {
+	}
+
+	static Scene generate(Distribution distribution, int spheres, int lights,
+			long seed) {
+		return generate(distribution, spheres, lights, seed, 0);
+	}
+
+	static Scene generate(Distribution distribution, int spheres, int lights,
+			long seed, double mirrors) {
+		try (RenderRuntime runtime = new RenderRuntime(2, 64)) {
+			return new SceneGenerator(distribution, spheres, lights, seed,
+					mirrors).generate(runtime);
+		}
+	}
+
+	/**
+	 * @return the red, green and blue channels of the image
+	 */
+	static short[][] render(RayTracerProducerImpl producer, Point3D eye,
+			int width, int height) {
+		short[][] result = new short[3][];
+		producer.produce(eye, new Point3D(0, 0, 0), new Point3D(0, 0, 10), 20,
+				20, width, height, 0, (red, green, blue, requestNo) -> {
+					result[0] = red;
+					result[1] = green;
+					result[2] = blue;
+				});
+		return result;
+	}
+
+	/**
+	 * @return the red, green and blue channels of the image, one after
+	 *         another
+	 */
+	static short[] join(short[][] channels) {
+		int length = channels[0].length;
+		short[] joined = Arrays.copyOf(channels[0], 3 * length);
+		System.arraycopy(channels[1], 0, joined, length, length);
+		System.arraycopy(channels[2], 0, joined, 2 * length, length);
+		return joined;
+	}
+}
@@ -0,0 +1,176 @@
+package hr.fer.zemris.java.raytracer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.raytracer.SceneGenerator.Distribution;
+import hr.fer.zemris.java.raytracer.model.LightSource;
+import hr.fer.zemris.java.raytracer.model.Point3D;
+import hr.fer.zemris.java.raytracer.model.Scene;
+import hr.fer.zemris.java.render.RenderRuntime;
+import hr.fer.zemris.math.MutableVector3;
+import hr.fer.zemris.math.Vector3Array;
+
+/**
+ * Testing class for the {@link LightSampling} and {@link LightTree} classes.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestLightSampling {
+
+	private static final int WIDTH = 48;
+	private static final int HEIGHT = 40;
+
+	/**
+	 * A scene of spheres lit by a rig of many light sources among them.
+	 */
+	private static Scene rig(int lights) {
+		Scene spheres = SceneFixtures.generate(Distribution.UNIFORM, 300, 0,
+				11);
+		Scene scene = new Scene();
+		spheres.getObjects().forEach(scene::add);
+		Random random = new Random(lights);
+		for (int i = 0; i < lights; i++) {
+			scene.add(new LightSource(
+					new Point3D(random.nextDouble() * 14 - 7,
+							random.nextDouble() * 14 - 7,
+							random.nextDouble() * 14 - 7),
+					50 + random.nextInt(150), 50 + random.nextInt(150),
+					50 + random.nextInt(150)));
+		}
+		return scene;
+	}
+
+	private static short[] render(RayTracerProducerImpl producer) {
+		return SceneFixtures.join(SceneFixtures.render(producer,
+				SceneFixtures.EYE, WIDTH, HEIGHT));
+	}
+
+	private static long sum(short[] image) {
+		long sum = 0;
+		for (short value : image) {
+			sum += value;
+		}
+		return sum;
+	}
+
+	@Test
+	public void influenceRadiusTest() {
+		LightSampling lighting = new LightSampling(2, 0);
+		assertEquals(0.5, lighting.attenuation(2), 1E-15);
+		for (double intensity : new double[] { 1, 2, 17.5, 200 }) {
+			double radius = lighting.influenceRadius(intensity);
+			assertEquals(1, intensity * lighting.attenuation(radius), 1E-12);
+		}
+		assertEquals(0, lighting.influenceRadius(0.5), 0);
+		assertEquals(1, LightSampling.DEFAULT.attenuation(1E100), 0);
+		assertTrue(LightSampling.DEFAULT
+				.influenceRadius(10) == Double.POSITIVE_INFINITY);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidFalloffTest() {
+		new LightSampling(0, 1);
+	}
+
+	@Test
+	public void gatherTest() {
+		Random random = new Random(5);
+		int n = 500;
+		Vector3Array positions = new Vector3Array(n);
+		double[] radii = new double[n];
+		for (int i = 0; i < n; i++) {
+			positions.set(i, random.nextDouble() * 20, random.nextDouble() * 20,
+					random.nextDouble() * 20);
+			radii[i] = i % 50 == 0 ? Double.POSITIVE_INFINITY
+					: i % 7 == 0 ? 0 : random.nextDouble() * 3;
+		}
+		LightTree tree = new LightTree(positions, radii);
+
+		int[] result = new int[n];
+		int[] stack = new int[tree.getStackSize()];
+		MutableVector3 point = new MutableVector3();
+		MutableVector3 light = new MutableVector3();
+		int gathered = 0;
+		for (int k = 0; k < 1000; k++) {
+			point.set(random.nextDouble() * 20, random.nextDouble() * 20,
+					random.nextDouble() * 20);
+			int count = tree.gather(point, result, stack);
+			gathered += count;
+
+			boolean[] expected = new boolean[n];
+			int expectedCount = 0;
+			for (int i = 0; i < n; i++) {
+				if (point.distance(positions.get(i, light)) < radii[i]) {
+					expected[i] = true;
+					expectedCount++;
+				}
+			}
+			assertEquals(expectedCount, count);
+			for (int j = 0; j < count; j++) {
+				assertTrue(expected[result[j]]);
+			}
+		}
+		assertTrue(gathered > 1000 * 11);
+		assertTrue(gathered < 1000 * n / 10);
+	}
+
+	@Test
+	public void falloffCullsLightsTest() {
+		Scene scene = rig(200);
+		try (RenderRuntime runtime = new RenderRuntime(2, 64)) {
+			RayTracerProducerImpl producer = new RayTracerProducerImpl(true,
+					runtime, scene);
+			producer.setLightSampling(new LightSampling(0.5, 0));
+			short[] image = render(producer);
+			long shadowRays = producer.getLastCounters().getShadowRays(0);
+			long rays = producer.getLastCounters().getRays(0);
+
+			int lit = 0;
+			for (short value : image) {
+				if (value > 15) {
+					lit++;
+				}
+			}
+			assertTrue(lit > image.length / 10);
+			assertTrue("shadow rays: " + shadowRays,
+					shadowRays < 200 * rays / 4);
+		}
+	}
+
+	@Test
+	public void samplingTest() {
+		Scene scene = rig(100);
+		LightSampling sampled = new LightSampling(0.5, 4);
+
+		short[] single;
+		long full;
+		try (RenderRuntime runtime = new RenderRuntime(1, 64)) {
+			RayTracerProducerImpl producer = new RayTracerProducerImpl(true,
+					runtime, scene);
+			producer.setLightSampling(new LightSampling(0.5, 0));
+			full = sum(render(producer));
+
+			producer.setLightSampling(sampled);
+			single = render(producer);
+			RayCounters counters = producer.getLastCounters();
+			assertTrue(counters.getShadowRays(0) <= 4 * counters.getRays(0));
+		}
+		long estimate = sum(single);
+		assertTrue(full + " vs " + estimate,
+				Math.abs(estimate - full) < 0.2 * full);
+
+		try (RenderRuntime runtime = new RenderRuntime(4, 64)) {
+			RayTracerProducerImpl producer = new RayTracerProducerImpl(true,
+					runtime, scene);
+			producer.setLightSampling(sampled);
+			assertArrayEquals(single, render(producer));
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package hr.fer.zemris.java.raytracer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.raytracer.SceneGenerator.Distribution;
+import hr.fer.zemris.java.raytracer.model.GraphicalObject;
+import hr.fer.zemris.java.raytracer.model.LightSource;
+import hr.fer.zemris.java.raytracer.model.Scene;
+import hr.fer.zemris.java.raytracer.model.Sphere;
+import hr.fer.zemris.java.render.RenderRuntime;
+
+/**
+ * Testing class for the secondary rays of {@link RayTracerProducerImpl},
+ * limited by a {@link RayBudget}.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestRayBudget {
+
+	private static final int WIDTH = 48;
+	private static final int HEIGHT = 40;
+
+	private static Scene generate(int spheres, double mirrors) {
+		return SceneFixtures.generate(Distribution.UNIFORM, spheres, 2, 7,
+				mirrors);
+	}
+
+	private static Scene mirrored(Scene scene, double reflectivity) {
+		Scene result = new Scene();
+		for (GraphicalObject object : scene.getObjects()) {
+			Sphere s = (Sphere) object;
+			result.add(new Sphere(s.getCenter(), s.getRadius(), s.getKdr(),
+					s.getKdg(), s.getKdb(), s.getKrr(), s.getKrg(), s.getKrb(),
+					s.getKrn(), reflectivity, 0, 1));
+		}
+		for (LightSource light : scene.getLights()) {
+			result.add(light);
+		}
+		return result;
+	}
+
+	private static short[] render(RayTracerProducerImpl producer,
+			RayBudget budget) {
+		producer.setRayBudget(budget);
+		return SceneFixtures.join(SceneFixtures.render(producer,
+				SceneFixtures.EYE, WIDTH, HEIGHT));
+	}
+
+	@Test
+	public void mirrorsTest() {
+		Scene plain = generate(500, 0);
+		Scene mirrors = mirrored(plain, 0.8);
+
+		try (RenderRuntime runtime = new RenderRuntime(2, 64)) {
+			RayTracerProducerImpl plainProducer = new RayTracerProducerImpl(
+					true, runtime, plain);
+			RayTracerProducerImpl mirrorProducer = new RayTracerProducerImpl(
+					true, runtime, mirrors);
+
+			short[] local = render(plainProducer, RayBudget.DEFAULT);
+			RayCounters plainCounters = plainProducer.getLastCounters();
+			assertEquals(0, plainCounters.getRays(1));
+			assertArrayEquals(local,
+					render(mirrorProducer, RayBudget.NONE));
+
+			short[] reflected = render(mirrorProducer, RayBudget.DEFAULT);
+			RayCounters counters = mirrorProducer.getLastCounters();
+			assertEquals(plainCounters.getRays(0), counters.getRays(0));
+			assertTrue(counters.getRays(1) > 0);
+			assertTrue(counters.getRays(2) > 0);
+			assertFalse(Arrays.equals(local, reflected));
+			for (int i = 0; i < local.length; i++) {
+				assertTrue(reflected[i] >= local[i]);
+			}
+		}
+	}
+
+	@Test
+	public void budgetTest() {
+		Scene scene = mirrored(generate(500, 0), 0.8);
+		try (RenderRuntime runtime = new RenderRuntime(2, 64)) {
+			RayTracerProducerImpl producer = new RayTracerProducerImpl(true,
+					runtime, scene);
+			render(producer, new RayBudget(5, 0, 0, 0.05));
+			RayCounters counters = producer.getLastCounters();
+
+			long secondary = 0;
+			for (int depth = 1; depth <= counters.getMaxDepth(); depth++) {
+				secondary += counters.getRays(depth);
+			}
+			assertTrue(secondary > 0);
+			assertTrue("secondary rays: " + secondary,
+					secondary <= 0.05 * WIDTH * HEIGHT);
+			assertTrue(counters.getDroppedForBudget() > 0);
+		}
+	}
+
+	@Test
+	public void deterministicTest() throws IOException {
+		Scene scene = generate(2000, 0.5);
+		RayBudget budget = new RayBudget(8, 1E-3, 0.3, 1000);
+
+		short[] single;
+		try (RenderRuntime runtime = new RenderRuntime(1, 64)) {
+			RayTracerProducerImpl producer = new RayTracerProducerImpl(true,
+					runtime, scene);
+			single = render(producer, budget);
+			assertTrue(producer.getLastCounters().getDroppedByRoulette() > 0);
+		}
+
+		Path file = Files.createTempFile("scene", ".bin");
+		file.toFile().deleteOnExit();
+		SceneWriter.write(scene, file, true);
+		try (RenderRuntime runtime = new RenderRuntime(4, 64)) {
+			assertArrayEquals(single, render(
+					new RayTracerProducerImpl(true, runtime, scene), budget));
+			assertArrayEquals(single,
+					render(new RayTracerProducerImpl(true, runtime,
+							MappedScene.map(file)), budget));
+		}
+	}
+}
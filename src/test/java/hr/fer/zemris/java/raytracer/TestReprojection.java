@@ -0,0 +1,120 @@
+package hr.fer.zemris.java.raytracer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.raytracer.SceneGenerator.Distribution;
+import hr.fer.zemris.java.raytracer.model.Point3D;
+import hr.fer.zemris.java.raytracer.model.Scene;
+import hr.fer.zemris.java.render.RenderRuntime;
+
+/**
+ * Testing class for the reprojection of frames by
+ * {@link RayTracerProducerImpl}.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestReprojection {
+
+	private static final int WIDTH = 64;
+	private static final int HEIGHT = 48;
+
+	private static Scene scene() {
+		return SceneFixtures.generate(Distribution.CLUSTERED, 1000, 3, 8);
+	}
+
+	private static short[] render(RayTracerProducerImpl producer,
+			double degrees) {
+		double angle = Math.toRadians(degrees);
+		Point3D eye = new Point3D(10 * Math.cos(angle),
+				10 * Math.sin(angle), 0);
+		return SceneFixtures.render(producer, eye, WIDTH, HEIGHT)[1];
+	}
+
+	@Test
+	public void disabledByDefaultTest() {
+		try (RenderRuntime runtime = new RenderRuntime(2, 64)) {
+			RayTracerProducerImpl producer = new RayTracerProducerImpl(true,
+					runtime, scene());
+			assertEquals(Reprojection.NONE, producer.getReprojection());
+			short[] first = render(producer, 0);
+			assertArrayEquals(first, render(producer, 0));
+			assertEquals(0, producer.getLastCounters().getReusedPixels());
+			assertTrue(producer.getLastCounters().getHitPixels() > 0);
+		}
+	}
+
+	@Test
+	public void sameViewTest() {
+		try (RenderRuntime runtime = new RenderRuntime(2, 64)) {
+			RayTracerProducerImpl producer = new RayTracerProducerImpl(true,
+					runtime, scene());
+			producer.setReprojection(Reprojection.DEFAULT);
+			short[] first = render(producer, 0);
+			assertEquals(0, producer.getLastCounters().getReuseRatio(), 0);
+
+			assertArrayEquals(first, render(producer, 0));
+			RayCounters counters = producer.getLastCounters();
+			assertEquals(1, counters.getReuseRatio(), 0);
+			assertEquals(0, counters.getShadowRays(0));
+		}
+	}
+
+	@Test
+	public void smallMoveTest() {
+		Scene scene = scene();
+		try (RenderRuntime runtime = new RenderRuntime(2, 64)) {
+			RayTracerProducerImpl producer = new RayTracerProducerImpl(true,
+					runtime, scene);
+			producer.setReprojection(Reprojection.DEFAULT);
+			render(producer, 0);
+			short[] reprojected = render(producer, 0.5);
+			double ratio = producer.getLastCounters().getReuseRatio();
+			assertTrue("reuse ratio: " + ratio, ratio > 0.5 && ratio < 1);
+
+			short[] traced = render(
+					new RayTracerProducerImpl(true, runtime, scene), 0.5);
+			int different = 0;
+			for (int i = 0; i < traced.length; i++) {
+				if (Math.abs(traced[i] - reprojected[i]) > 16) {
+					different++;
+				}
+			}
+			assertTrue("different: " + different,
+					different < traced.length / 20);
+		}
+	}
+
+	@Test
+	public void maxAgeTest() {
+		try (RenderRuntime runtime = new RenderRuntime(2, 64)) {
+			RayTracerProducerImpl producer = new RayTracerProducerImpl(true,
+					runtime, scene());
+			producer.setReprojection(new Reprojection(0.01, 1));
+			render(producer, 0);
+			render(producer, 0);
+			assertEquals(1, producer.getLastCounters().getReuseRatio(), 0);
+			render(producer, 0);
+			assertEquals(0, producer.getLastCounters().getReuseRatio(), 0);
+			render(producer, 0);
+			assertEquals(1, producer.getLastCounters().getReuseRatio(), 0);
+		}
+	}
+
+	@Test
+	public void changedSettingsTest() {
+		try (RenderRuntime runtime = new RenderRuntime(2, 64)) {
+			RayTracerProducerImpl producer = new RayTracerProducerImpl(true,
+					runtime, scene());
+			producer.setReprojection(Reprojection.DEFAULT);
+			render(producer, 0);
+			producer.setLightSampling(new LightSampling(5, 0));
+			render(producer, 0);
+			assertEquals(0, producer.getLastCounters().getReusedPixels());
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package hr.fer.zemris.java.raytracer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.raytracer.SceneGenerator.Distribution;
+import hr.fer.zemris.java.raytracer.model.LightSource;
+import hr.fer.zemris.java.raytracer.model.Scene;
+import hr.fer.zemris.java.raytracer.model.Sphere;
+import hr.fer.zemris.java.render.RenderRuntime;
+import hr.fer.zemris.math.MutableVector3;
+
+/**
+ * Testing class for the {@link SceneWriter} and {@link MappedScene} classes.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestSceneFile {
+
+	private static Scene generate(Distribution distribution, int spheres,
+			int lights) {
+		return SceneFixtures.generate(distribution, spheres, lights, 5);
+	}
+
+	private static MappedScene writeAndMap(Scene scene, boolean hierarchy)
+			throws IOException {
+		Path file = Files.createTempFile("scene", ".bin");
+		file.toFile().deleteOnExit();
+		SceneWriter.write(scene, file, hierarchy);
+		return MappedScene.map(file);
+	}
+
+	@Test
+	public void roundTripTest() throws IOException {
+		Scene scene = generate(Distribution.UNIFORM, 100, 3);
+		MappedScene mapped = writeAndMap(scene, false);
+
+		assertEquals(100, mapped.getSphereCount());
+		assertEquals(3, mapped.getLightCount());
+		assertFalse(mapped.hasHierarchy());
+		for (int i = 0; i < 100; i++) {
+			Sphere expected = (Sphere) scene.getObjects().get(i);
+			Sphere actual = mapped.getSphere(i);
+			assertEquals(expected.getCenter().y, actual.getCenter().y, 0);
+			assertEquals(expected.getRadius(), actual.getRadius(), 0);
+			assertEquals(expected.getKdg(), actual.getKdg(), 0);
+			assertEquals(expected.getKrn(), mapped.getKrn(i), 0);
+		}
+		for (int i = 0; i < 3; i++) {
+			LightSource expected = scene.getLights().get(i);
+			LightSource actual = mapped.getLight(i);
+			assertEquals(expected.getPoint().z, actual.getPoint().z, 0);
+			assertEquals(expected.getB(), actual.getB());
+		}
+	}
+
+	@Test
+	public void hierarchyTest() throws IOException {
+		Scene scene = generate(Distribution.CLUSTERED, 5000, 1);
+		MappedScene linear = writeAndMap(scene, false);
+		MappedScene tree = writeAndMap(scene, true);
+		assertTrue(tree.hasHierarchy());
+
+		int[] stack = new int[tree.getStackSize()];
+		MutableVector3 linearPoint = new MutableVector3();
+		MutableVector3 treePoint = new MutableVector3();
+		MutableVector3 normal = new MutableVector3();
+		Random random = new Random(3);
+		int hits = 0;
+		for (int i = 0; i < 2000; i++) {
+			MutableVector3 start = new MutableVector3(
+					random.nextDouble() * 24 - 12,
+					random.nextDouble() * 24 - 12,
+					random.nextDouble() * 24 - 12);
+			MutableVector3 direction = new MutableVector3(
+					random.nextGaussian(), random.nextGaussian(),
+					random.nextGaussian()).normalize();
+
+			int a = linear.findClosestIntersection(start, direction,
+					linearPoint, null);
+			int b = tree.findClosestIntersection(start, direction, treePoint,
+					stack);
+			assertEquals(a == -1, b == -1);
+			if (a != -1) {
+				hits++;
+				assertEquals(linear.getSphere(a).getCenter().x,
+						tree.getSphere(b).getCenter().x, 0);
+				assertEquals(linearPoint.toString(), treePoint.toString());
+				tree.getNormal(b, treePoint, normal);
+				assertEquals(1, normal.norm(), 1E-12);
+			}
+		}
+		assertTrue(hits > 100);
+	}
+
+	@Test
+	public void rendersLikeSceneTest() throws IOException {
+		Scene scene = generate(Distribution.LAYERED, 3000, 3);
+		MappedScene mapped = writeAndMap(scene, true);
+
+		try (RenderRuntime runtime = new RenderRuntime(2, 64)) {
+			short[][] expected = SceneFixtures.render(
+					new RayTracerProducerImpl(true, runtime, scene),
+					SceneFixtures.EYE, 48, 40);
+			short[][] actual = SceneFixtures.render(
+					new RayTracerProducerImpl(true, runtime, mapped),
+					SceneFixtures.EYE, 48, 40);
+			for (int c = 0; c < 3; c++) {
+				assertArrayEquals(expected[c], actual[c]);
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void notASceneFileTest() throws IOException {
+		Path file = Files.createTempFile("scene", ".bin");
+		file.toFile().deleteOnExit();
+		Files.write(file, new byte[64]);
+		MappedScene.map(file);
+	}
+}
@@ -0,0 +1,84 @@
+package hr.fer.zemris.java.raytracer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.raytracer.SceneGenerator.Distribution;
+import hr.fer.zemris.java.raytracer.model.GraphicalObject;
+import hr.fer.zemris.java.raytracer.model.Scene;
+import hr.fer.zemris.java.raytracer.model.Sphere;
+import hr.fer.zemris.java.render.RenderRuntime;
+
+/**
+ * Testing class for the {@link SceneGenerator} class.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestSceneGenerator {
+
+	private static Scene generate(Distribution distribution, int spheres,
+			int lights, long seed, int parallelism) {
+		try (RenderRuntime runtime = new RenderRuntime(parallelism, 64)) {
+			return new SceneGenerator(distribution, spheres, lights, seed)
+					.generate(runtime);
+		}
+	}
+
+	private static void assertSameSpheres(Scene expected, Scene actual) {
+		List<GraphicalObject> a = expected.getObjects();
+		List<GraphicalObject> b = actual.getObjects();
+		assertEquals(a.size(), b.size());
+		for (int i = 0; i < a.size(); i++) {
+			Sphere s = (Sphere) a.get(i);
+			Sphere t = (Sphere) b.get(i);
+			assertEquals(s.getCenter().x, t.getCenter().x, 0);
+			assertEquals(s.getCenter().y, t.getCenter().y, 0);
+			assertEquals(s.getCenter().z, t.getCenter().z, 0);
+			assertEquals(s.getRadius(), t.getRadius(), 0);
+			assertEquals(s.getKrn(), t.getKrn(), 0);
+		}
+	}
+
+	@Test
+	public void countsTest() {
+		Scene scene = generate(Distribution.LAYERED, 10_000, 7, 1, 2);
+
+		assertEquals(10_000, scene.getObjects().size());
+		assertEquals(7, scene.getLights().size());
+	}
+
+	@Test
+	public void deterministicTest() {
+		for (Distribution distribution : Distribution.values()) {
+			assertSameSpheres(generate(distribution, 9_000, 3, 42, 1),
+					generate(distribution, 9_000, 3, 42, 3));
+		}
+	}
+
+	@Test
+	public void seedTest() {
+		Sphere a = (Sphere) generate(Distribution.UNIFORM, 10, 0, 1, 1)
+				.getObjects().get(0);
+		Sphere b = (Sphere) generate(Distribution.UNIFORM, 10, 0, 2, 1)
+				.getObjects().get(0);
+
+		assertTrue(a.getCenter().x != b.getCenter().x);
+	}
+
+	@Test
+	public void uniformBoundsTest() {
+		for (GraphicalObject object : generate(Distribution.UNIFORM, 5_000, 1,
+				7, 2).getObjects()) {
+			Sphere sphere = (Sphere) object;
+			assertTrue(Math.abs(sphere.getCenter().x) <= 5);
+			assertTrue(Math.abs(sphere.getCenter().y) <= 5);
+			assertTrue(Math.abs(sphere.getCenter().z) <= 5);
+			assertTrue(sphere.getRadius() > 0);
+		}
+	}
+}
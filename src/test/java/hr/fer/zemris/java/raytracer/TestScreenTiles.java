@@ -0,0 +1,161 @@
+package hr.fer.zemris.java.raytracer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.raytracer.SceneGenerator.Distribution;
+import hr.fer.zemris.java.raytracer.model.Point3D;
+import hr.fer.zemris.java.raytracer.model.Scene;
+import hr.fer.zemris.java.raytracer.model.Sphere;
+import hr.fer.zemris.java.render.RenderRuntime;
+import hr.fer.zemris.math.MutableVector3;
+
+/**
+ * Testing class for the {@link ScreenTiles} class.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestScreenTiles {
+
+	private static final int WIDTH = 70;
+	private static final int HEIGHT = 50;
+	private static final double HORIZONTAL = 4;
+	private static final double VERTICAL = 3;
+
+	/**
+	 * Sets up the view the same way the producer does, and bins the spheres.
+	 * The view is kept in <code>axes</code>: the eye, the screen corner and
+	 * the x and y axes.
+	 */
+	private static ScreenTiles bin(Sphere[] spheres, Point3D eye,
+			Point3D view, Point3D viewUp, Point3D[] axes) {
+		Point3D og = view.sub(eye).normalize();
+		Point3D up = viewUp.normalize();
+		Point3D yAxis = up.sub(og.scalarMultiply(og.scalarProduct(up)));
+		Point3D xAxis = og.vectorProduct(yAxis).normalize();
+		Point3D corner = view.sub(xAxis.scalarMultiply(HORIZONTAL / 2))
+				.add(yAxis.scalarMultiply(HORIZONTAL / 2));
+		axes[0] = eye;
+		axes[1] = corner;
+		axes[2] = xAxis;
+		axes[3] = yAxis;
+		return new ScreenTiles(spheres, new ScreenProjection(eye, corner,
+				xAxis, yAxis, HORIZONTAL, VERTICAL, WIDTH, HEIGHT));
+	}
+
+	private static MutableVector3 direction(Point3D[] axes, int x, int y) {
+		Point3D p = axes[1]
+				.add(axes[2].scalarMultiply(x * HORIZONTAL / (WIDTH - 1)))
+				.sub(axes[3].scalarMultiply(y * VERTICAL / (HEIGHT - 1)))
+				.sub(axes[0]);
+		return new MutableVector3(p.x, p.y, p.z).normalize();
+	}
+
+	private static boolean inTile(ScreenTiles tiles, int tile, int object) {
+		for (int k = tiles.getStart(tile); k < tiles.getEnd(tile); k++) {
+			if (tiles.getObjects()[k] == object) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void everyHitIsBinnedTest() {
+		Scene scene = SceneFixtures.generate(Distribution.UNIFORM, 3000, 1, 9);
+		Sphere[] spheres = scene.getObjects().toArray(new Sphere[0]);
+
+		// from inside the scene, with an up vector not normal to the view
+		Point3D[] axes = new Point3D[4];
+		Point3D eye = new Point3D(0.5, -1, 0.2);
+		ScreenTiles tiles = bin(spheres, eye, new Point3D(2, 0, 1),
+				new Point3D(0.3, 0.2, 1), axes);
+		assertEquals(5 * 4, tiles.getTileCount());
+		assertTrue(tiles.getVisibleCount() > 0);
+		assertTrue(tiles.getVisibleCount() < spheres.length / 2);
+
+		MutableVector3 start = new MutableVector3(eye.x, eye.y, eye.z);
+		int hits = 0;
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				MutableVector3 direction = direction(axes, x, y);
+				int tile = tiles.tile(x, y);
+				for (int i = 0; i < spheres.length; i++) {
+					if (spheres[i].findRayHit(start, direction,
+							0) < Double.POSITIVE_INFINITY) {
+						hits++;
+						assertTrue(i + " at " + x + ", " + y,
+								inTile(tiles, tile, i));
+					}
+				}
+			}
+		}
+		assertTrue(hits > WIDTH * HEIGHT);
+	}
+
+	@Test
+	public void cullingTest() {
+		Sphere[] spheres = {
+				// in front, in the middle of the screen
+				new Sphere(new Point3D(0, 0, 0), 0.5, 1, 1, 1, 1, 1, 1, 1),
+				// behind the eye
+				new Sphere(new Point3D(20, 0, 0), 1, 1, 1, 1, 1, 1, 1, 1),
+				// around the eye
+				new Sphere(new Point3D(10, 0, 0), 2, 1, 1, 1, 1, 1, 1, 1),
+				// in front, far to the side
+				new Sphere(new Point3D(0, 30, 0), 1, 1, 1, 1, 1, 1, 1, 1),
+				// not a sphere
+				null };
+		Point3D[] axes = new Point3D[4];
+		ScreenTiles tiles = bin(spheres, new Point3D(10, 0, 0),
+				new Point3D(0, 0, 0), new Point3D(0, 0, 10), axes);
+
+		assertEquals(3, tiles.getVisibleCount());
+		int everywhere = 0;
+		for (int t = 0; t < tiles.getTileCount(); t++) {
+			assertTrue(inTile(tiles, t, 2));
+			assertTrue(inTile(tiles, t, 4));
+			assertTrue(!inTile(tiles, t, 1) && !inTile(tiles, t, 3));
+			if (inTile(tiles, t, 0)) {
+				everywhere++;
+			}
+		}
+		assertTrue(inTile(tiles, tiles.tile(WIDTH / 2, HEIGHT / 2), 0));
+		assertTrue(everywhere < tiles.getTileCount());
+	}
+
+	@Test
+	public void rendersLikeWholeSceneTest() throws IOException {
+		Scene scene = SceneFixtures.generate(Distribution.CLUSTERED, 2000, 2,
+				4);
+		// a mapped scene without a hierarchy tests every sphere
+		Path file = Files.createTempFile("scene", ".bin");
+		file.toFile().deleteOnExit();
+		SceneWriter.write(scene, file, false);
+
+		try (RenderRuntime runtime = new RenderRuntime(2, 64)) {
+			RayTracerProducerImpl mapped = new RayTracerProducerImpl(true,
+					runtime, MappedScene.map(file));
+			short[][] expected = SceneFixtures.render(mapped,
+					SceneFixtures.EYE, WIDTH, HEIGHT);
+			RayTracerProducerImpl binned = new RayTracerProducerImpl(true,
+					runtime, scene);
+			short[][] actual = SceneFixtures.render(binned, SceneFixtures.EYE,
+					WIDTH, HEIGHT);
+			for (int c = 0; c < 3; c++) {
+				assertArrayEquals(expected[c], actual[c]);
+			}
+			assertNull(mapped.getLastTiles());
+			assertEquals(5 * 4, binned.getLastTiles().getTileCount());
+		}
+	}
+}
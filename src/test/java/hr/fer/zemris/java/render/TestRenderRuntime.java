@@ -0,0 +1,103 @@
+package hr.fer.zemris.java.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+/**
+ * Testing class for the {@link RenderRuntime} class.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestRenderRuntime {
+
+	@Test
+	public void requestsTakeTurnsTest() throws Exception {
+		try (RenderRuntime runtime = new RenderRuntime(1, 16)) {
+			CountDownLatch started = new CountDownLatch(1);
+			CountDownLatch blocker = new CountDownLatch(1);
+			Object first = new Object();
+			Object second = new Object();
+			List<String> order = Collections
+					.synchronizedList(new ArrayList<String>());
+
+			// keeps the only worker busy until everything is queued
+			runtime.submit(first, () -> {
+				started.countDown();
+				blocker.await();
+				return null;
+			});
+			started.await();
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				String name = "a" + i;
+				futures.add(runtime.submit(first, () -> order.add(name)));
+			}
+			futures.add(runtime.submit(second, () -> order.add("b0")));
+			blocker.countDown();
+
+			for (Future<?> future : futures) {
+				future.get();
+			}
+			assertEquals("[a0, b0, a1, a2]", order.toString());
+		}
+	}
+
+	@Test
+	public void closeCancelsQueuedTasksTest() throws Exception {
+		RenderRuntime runtime = new RenderRuntime(1, 16);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch blocker = new CountDownLatch(1);
+		Object request = new Object();
+
+		runtime.submit(request, () -> {
+			started.countDown();
+			blocker.await();
+			return null;
+		});
+		Future<?> queued = runtime.submit(request, () -> null);
+		started.await();
+
+		// let the running task finish only once the queue has been cancelled
+		new Thread(() -> {
+			while (!runtime.isClosed()) {
+				Thread.yield();
+			}
+			blocker.countDown();
+		}).start();
+		runtime.close();
+
+		assertTrue(queued.isCancelled());
+		assertTrue(runtime.isClosed());
+		assertEquals(0, runtime.getQueuedTasks());
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void submitAfterCloseTest() {
+		RenderRuntime runtime = new RenderRuntime(1, 1);
+		runtime.close();
+		runtime.submit(new Object(), () -> null);
+	}
+
+	@Test
+	public void fullQueueRunsInlineOnWorkerTest() throws Exception {
+		try (RenderRuntime runtime = new RenderRuntime(1, 1)) {
+			Object request = new Object();
+			// a worker submitting into a full queue must not deadlock
+			Future<Integer> outer = runtime.submit(request, () -> {
+				runtime.submit(request, () -> 1);
+				return runtime.submit(request, () -> 2).get();
+			});
+			assertEquals(2, (int) outer.get());
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package hr.fer.zemris.math;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -103,4 +104,92 @@ public class TestComplex {
 		assertEquals(0.9101797211, result.getImaginary(), 1E-5);
 	}
 
-}
\ No newline at end of file
+	/**
+	 * The power as it was calculated before, through the polar form.
+	 */
+	private static Complex polarPower(Complex c, int n) {
+		double angle = Math.atan2(c.getImaginary(), c.getReal());
+		return new Complex(Math.pow(c.module(), n) * Math.cos(n * angle),
+				Math.pow(c.module(), n) * Math.sin(n * angle));
+	}
+
+	@Test
+	public void powerIsExactForIntegersTest() {
+		Complex c = new Complex(3, -5);
+		Complex expected = Complex.ONE;
+
+		for (int n = 0; n <= 12; n++) {
+			Complex actual = c.power(n);
+			assertEquals(expected.getReal(), actual.getReal(), 0);
+			assertEquals(expected.getImaginary(), actual.getImaginary(), 0);
+			expected = expected.mul(c);
+		}
+
+		Complex i = Complex.IM.power(4);
+		assertEquals(1, i.getReal(), 0);
+		assertEquals(0, i.getImaginary(), 0);
+	}
+
+	@Test
+	public void powerMatchesPolarFormTest() {
+		java.util.Random random = new java.util.Random(42);
+
+		for (int k = 0; k < 1000; k++) {
+			Complex c = new Complex(random.nextGaussian(),
+					random.nextGaussian());
+			int n = random.nextInt(40);
+			Complex expected = polarPower(c, n);
+			Complex actual = c.power(n);
+
+			double error = Math.sqrt(expected.distanceSquared(actual));
+			assertTrue(n + ": " + error, error <= 1E-12 * expected.module());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativePowerTest() {
+		new Complex(1, 1).power(-1);
+	}
+
+	@Test
+	public void moduleSquaredTest() {
+		Complex c = new Complex(6, -8);
+
+		assertEquals(100, c.moduleSquared(), 0);
+		assertEquals(25, c.distanceSquared(new Complex(3, -4)), 0);
+	}
+
+	@Test
+	public void polarFormTest() {
+		Complex c = new Complex(-1, -1);
+		Complex.Polar polar = c.toPolar();
+
+		assertSame(polar, c.toPolar());
+		assertEquals(Math.sqrt(2), polar.getModule(), 1E-15);
+		assertEquals(5 * Math.PI / 4, polar.getAngle(), 1E-15);
+		assertEquals(c.angle(), polar.getAngle(), 0);
+
+		Complex back = Complex.fromPolar(polar.getModule(), polar.getAngle());
+		assertEquals(c.getReal(), back.getReal(), 1E-15);
+		assertEquals(c.getImaginary(), back.getImaginary(), 1E-15);
+	}
+
+	@Test
+	public void applyMatchesPowersTest() {
+		ComplexPolynomial p = new ComplexPolynomial(new Complex(2, 1),
+				new Complex(0, -3), Complex.ONE_NEG, new Complex(0.5, 0.5));
+		Complex z = new Complex(0.7, -1.3);
+
+		Complex expected = Complex.ZERO;
+		Complex[] factors = p.getFactors();
+		for (int i = 0; i < factors.length; i++) {
+			expected = expected.add(
+					polarPower(z, factors.length - 1 - i).mul(factors[i]));
+		}
+		Complex actual = p.apply(z);
+
+		assertEquals(expected.getReal(), actual.getReal(), 1E-12);
+		assertEquals(expected.getImaginary(), actual.getImaginary(), 1E-12);
+	}
+
+}
@@ -0,0 +1,157 @@
+package hr.fer.zemris.math;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Testing class for the {@link ComplexRootedPolynomial} class.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestComplexRootedPolynomial {
+
+	@Test
+	public void convergenceRadiiTest() {
+		ComplexRootedPolynomial p = new ComplexRootedPolynomial(Complex.ONE,
+				Complex.ONE_NEG, Complex.IM, Complex.IM_NEG);
+
+		double[] radii = p.getConvergenceRadii();
+
+		for (double radius : radii) {
+			assertEquals(Math.sqrt(2) / 7, radius, 1E-15);
+		}
+	}
+
+	@Test
+	public void convergenceRadiusUsesNearestRootTest() {
+		ComplexRootedPolynomial p = new ComplexRootedPolynomial(
+				new Complex(0, 0), new Complex(0.5, 3), new Complex(10, 0));
+
+		double[] radii = p.getConvergenceRadii();
+
+		assertEquals(Math.sqrt(9.25) / 5, radii[0], 1E-15);
+		assertEquals(Math.sqrt(9.25) / 5, radii[1], 1E-15);
+		assertEquals(Math.sqrt(9.5 * 9.5 + 9) / 5, radii[2], 1E-15);
+	}
+
+	@Test
+	public void multipleRootHasNoDiscTest() {
+		ComplexRootedPolynomial p = new ComplexRootedPolynomial(Complex.ONE,
+				Complex.ONE, Complex.ONE_NEG);
+
+		double[] radii = p.getConvergenceRadii();
+
+		assertEquals(0, radii[0], 0);
+		assertEquals(0, radii[1], 0);
+		assertEquals(2.0 / 5, radii[2], 1E-15);
+	}
+
+	@Test
+	public void newtonConvergesInsideDiscTest() {
+		Random random = new Random(42);
+		Complex[] roots = new Complex[12];
+		for (int i = 0; i < roots.length; i++) {
+			roots[i] = new Complex(random.nextGaussian(),
+					random.nextGaussian());
+		}
+		ComplexRootedPolynomial p = new ComplexRootedPolynomial(roots);
+		ComplexPolynomial polynom = p.toComplexPolynom();
+		ComplexPolynomial derived = polynom.derive();
+		double[] radii = p.getConvergenceRadii();
+
+		for (int i = 0; i < roots.length; i++) {
+			for (int k = 0; k < 50; k++) {
+				double angle = random.nextDouble() * 2 * Math.PI;
+				double r = radii[i] * 0.999 * random.nextDouble();
+				Complex z = roots[i].add(new Complex(r * Math.cos(angle),
+						r * Math.sin(angle)));
+
+				for (int iter = 0; iter < 20; iter++) {
+					z = z.sub(polynom.apply(z).div(derived.apply(z)));
+				}
+
+				assertEquals(i + 1, p.indexOfClosestRootFor(z, 1E-9));
+			}
+		}
+	}
+
+	private static ComplexPolynomial naiveProduct(Complex[] roots) {
+		ComplexPolynomial result = new ComplexPolynomial(Complex.ONE,
+				roots[0].negate());
+		for (int i = 1; i < roots.length; i++) {
+			result = result.multiply(
+					new ComplexPolynomial(Complex.ONE, roots[i].negate()));
+		}
+		return result;
+	}
+
+	private static Complex[] randomRoots(int n, long seed) {
+		Random random = new Random(seed);
+		Complex[] roots = new Complex[n];
+		for (int i = 0; i < n; i++) {
+			double angle = random.nextDouble() * 2 * Math.PI;
+			double r = 0.9 + 0.2 * random.nextDouble();
+			roots[i] = new Complex(r * Math.cos(angle), r * Math.sin(angle));
+		}
+		return roots;
+	}
+
+	@Test
+	public void smallExpansionMatchesNaiveProductTest() {
+		Complex[] roots = randomRoots(20, 3);
+
+		Complex[] expected = naiveProduct(roots).getFactors();
+		Complex[] actual = new ComplexRootedPolynomial(roots)
+				.toComplexPolynom().getFactors();
+
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i].getReal(), actual[i].getReal(), 0);
+			assertEquals(expected[i].getImaginary(), actual[i].getImaginary(),
+					0);
+		}
+	}
+
+	@Test
+	public void largeExpansionMatchesNaiveProductTest() {
+		Complex[] roots = randomRoots(200, 5);
+
+		Complex[] expected = naiveProduct(roots).getFactors();
+		Complex[] actual = new ComplexRootedPolynomial(roots)
+				.toComplexPolynom().getFactors();
+
+		double largest = 0;
+		for (Complex factor : expected) {
+			largest = Math.max(largest, factor.module());
+		}
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(0, actual[i].sub(expected[i]).module() / largest,
+					1E-9);
+		}
+	}
+
+	@Test
+	public void rootsOfUnityExpansionTest() {
+		int n = 4096;
+		Complex[] roots = new Complex[n];
+		for (int i = 0; i < n; i++) {
+			roots[i] = new Complex(Math.cos(2 * Math.PI * i / n),
+					Math.sin(2 * Math.PI * i / n));
+		}
+
+		Complex[] factors = new ComplexRootedPolynomial(roots)
+				.toComplexPolynom().getFactors();
+
+		assertEquals(n + 1, factors.length);
+		assertEquals(0, factors[0].sub(Complex.ONE).module(), 1E-11);
+		assertEquals(0, factors[n].sub(Complex.ONE_NEG).module(), 1E-11);
+		for (int i = 1; i < n; i++) {
+			assertEquals(0, factors[i].module(), 1E-11);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package hr.fer.zemris.math;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import org.junit.Test;
+
+/**
+ * Testing class for the {@link DoubleDouble} class.
+ *
+ * @author 0036502252
+ */
+@SuppressWarnings("javadoc")
+public class TestDoubleDouble {
+
+	private static BigDecimal exact(DoubleDouble d) {
+		return new BigDecimal(d.getHi()).add(new BigDecimal(d.getLo()));
+	}
+
+	@Test
+	public void addKeepsSmallPartTest() {
+		DoubleDouble d = new DoubleDouble(1).add(1E-20);
+
+		assertEquals(1.0, d.getHi(), 0);
+		assertEquals(1E-20, d.getLo(), 1E-36);
+	}
+
+	@Test
+	public void subCancellationTest() {
+		DoubleDouble d = new DoubleDouble(1).add(1E-20).sub(1);
+
+		assertEquals(1E-20, d.doubleValue(), 1E-36);
+	}
+
+	@Test
+	public void mulTest() {
+		double a = 1 + Math.ulp(1.0);
+		DoubleDouble d = new DoubleDouble(a).mul(a);
+		BigDecimal expected = new BigDecimal(a).multiply(new BigDecimal(a));
+
+		assertEquals(0, expected.compareTo(exact(d)));
+	}
+
+	@Test
+	public void divTest() {
+		DoubleDouble d = new DoubleDouble(1).div(3);
+		BigDecimal expected = BigDecimal.ONE.divide(new BigDecimal(3),
+				MathContext.DECIMAL128);
+
+		assertEquals(0, expected.subtract(exact(d)).doubleValue(), 1E-31);
+	}
+
+	@Test
+	public void divByDoubleDoubleTest() {
+		DoubleDouble three = new DoubleDouble(3);
+		DoubleDouble d = new DoubleDouble(2).div(three).mul(three);
+
+		assertEquals(2, d.getHi(), 0);
+		assertEquals(0, d.getLo(), 1E-31);
+	}
+}
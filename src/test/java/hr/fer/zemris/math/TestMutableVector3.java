@@ -0,0 +1,79 @@
+package hr.fer.zemris.math;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Testing class for the {@link MutableVector3} and {@link Vector3Array}
+ * classes.
+ *
+ * @author 0036502252
+ *
+ */
+@SuppressWarnings("javadoc")
+public class TestMutableVector3 {
+	public static final double DELTA = 1E-12;
+
+	@Test
+	public void chainingTest() {
+		MutableVector3 v = new MutableVector3(1, 0, 0);
+		MutableVector3 j = new MutableVector3(0, 1, 0);
+
+		assertSame(v, v.cross(v, j).add(j).scale(5));
+		assertEquals("(0.000000, 5.000000, 5.000000)", v.toString());
+		assertEquals(5, v.dot(j), DELTA);
+	}
+
+	@Test
+	public void crossTest() {
+		MutableVector3 a = new MutableVector3(1, 2, 3);
+		MutableVector3 b = new MutableVector3(-4, 5, 0.5);
+		MutableVector3 c = new MutableVector3().cross(a, b);
+
+		assertEquals(0, c.dot(a), DELTA);
+		assertEquals(0, c.dot(b), DELTA);
+		assertEquals(2 * 0.5 - 3 * 5, c.getX(), DELTA);
+		assertEquals(3 * -4 - 1 * 0.5, c.getY(), DELTA);
+		assertEquals(1 * 5 - 2 * -4, c.getZ(), DELTA);
+	}
+
+	@Test
+	public void normalizeTest() {
+		MutableVector3 v = new MutableVector3(3, -4, 12).normalize();
+
+		assertEquals(1, v.norm(), DELTA);
+		assertEquals(3. / 13, v.getX(), DELTA);
+		assertEquals(13, new MutableVector3(3, -4, 12)
+				.distance(new MutableVector3()), DELTA);
+	}
+
+	@Test
+	public void addScaledTest() {
+		MutableVector3 v = new MutableVector3(1, 1, 1)
+				.addScaled(new MutableVector3(1, -2, 3), 0.5).sub(
+						new MutableVector3(0.5, 0.5, 0.5));
+
+		assertEquals(1, v.getX(), DELTA);
+		assertEquals(-0.5, v.getY(), DELTA);
+		assertEquals(2, v.getZ(), DELTA);
+	}
+
+	@Test
+	public void arrayTest() {
+		Vector3Array array = new Vector3Array(3);
+		array.set(0, 3, 4, 0);
+		array.set(1, new MutableVector3(1, 4, 8));
+		array.set(2, 1, 1, 1);
+
+		array.sub(0, 2, new MutableVector3(0, 0, 0.5));
+		array.normalize(1, 2);
+
+		MutableVector3 v = array.get(1, new MutableVector3());
+		assertEquals(1, v.norm(), DELTA);
+		assertEquals(7.5 / Math.sqrt(1 + 16 + 7.5 * 7.5), v.getZ(), DELTA);
+		assertEquals(-0.5, array.getZ(0), DELTA);
+		assertEquals(1, array.getZ(2), DELTA);
+	}
+}